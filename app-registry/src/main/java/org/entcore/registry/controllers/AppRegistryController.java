@@ -55,6 +55,7 @@ import org.vertx.java.core.http.RouteMatcher;
 
 import static fr.wseduc.webutils.Utils.handlerToAsyncHandler;
 import static fr.wseduc.webutils.request.RequestUtils.bodyToJson;
+import static org.entcore.common.appregistry.AppRegistryEvents.APPLICATION_UPDATED;
 import static org.entcore.common.appregistry.AppRegistryEvents.APP_REGISTRY_PUBLISH_ADDRESS;
 import static org.entcore.common.appregistry.AppRegistryEvents.PROFILE_GROUP_ACTIONS_UPDATED;
 import static org.entcore.common.bus.BusResponseHandler.busArrayHandler;
@@ -343,6 +344,7 @@ public class AppRegistryController extends BaseController {
 
 							if (event.right().getValue() != null && event.right().getValue().size() > 0) {
 								sendPatternToCasConfiguration(updateCas, body, addressURL, casType, structureId, inherits, statCasType);
+								updatedApplications();
 								Renders.renderJson(request, event.right().getValue(), 201);
 							} else {
 								JsonObject error = new JsonObject()
@@ -419,6 +421,7 @@ public class AppRegistryController extends BaseController {
 								}
 								final String structureId = event.right().getValue().getString("structureId");
 								sendPatternToCasConfiguration(updateCas, body, addressURL, casType, structureId, inherits, statCasType);
+								updatedApplications();
 								Renders.renderJson(request, event.right().getValue());
 							}
 						});
@@ -439,7 +442,13 @@ public class AppRegistryController extends BaseController {
 	public void deleteApplication(final HttpServerRequest request) {
 		String id = request.params().get("id");
 		if (id != null && !id.trim().isEmpty()) {
-			appRegistryService.deleteApplication(id, defaultResponseHandler(request, 204));
+			final Handler<Either<String, JsonObject>> responseHandler = defaultResponseHandler(request, 204);
+			appRegistryService.deleteApplication(id, event -> {
+				if (event.isRight()) {
+					updatedApplications();
+				}
+				responseHandler.handle(event);
+			});
 		} else {
 			badRequest(request, "invalid.application.id");
 		}
@@ -472,6 +481,7 @@ public class AppRegistryController extends BaseController {
 					JsonObject j = new JsonObject();
 					if (event.isRight()) {
 						j.put("status", "ok");
+						updatedApplications();
 					} else {
 						j.put("status", "error").put("message", event.left().getValue());
 					}
@@ -706,6 +716,10 @@ public class AppRegistryController extends BaseController {
 		}
 	}
 
+	private void updatedApplications() {
+		eb.publish(APP_REGISTRY_PUBLISH_ADDRESS, new JsonObject().put("type", APPLICATION_UPDATED));
+	}
+
 	private void updatedProfileGroupActions(String groupId) {
 		JsonObject message = new JsonObject().put("type", PROFILE_GROUP_ACTIONS_UPDATED);
 		if (groupId != null && !groupId.trim().isEmpty()) {
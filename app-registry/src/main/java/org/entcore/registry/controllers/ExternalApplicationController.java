@@ -20,6 +20,8 @@
 package org.entcore.registry.controllers;
 
 import static fr.wseduc.webutils.request.RequestUtils.bodyToJson;
+import static org.entcore.common.appregistry.AppRegistryEvents.APPLICATION_UPDATED;
+import static org.entcore.common.appregistry.AppRegistryEvents.APP_REGISTRY_PUBLISH_ADDRESS;
 import static org.entcore.common.bus.BusResponseHandler.busArrayHandler;
 import static org.entcore.common.bus.BusResponseHandler.busResponseHandler;
 import static org.entcore.common.http.response.DefaultResponseHandler.arrayResponseHandler;
@@ -97,7 +99,13 @@ public class ExternalApplicationController extends BaseController {
 	public void deleteExternalApplication(final HttpServerRequest request) {
 		String id = request.params().get("id");
 		if (id != null && !id.trim().isEmpty()) {
-			externalAppService.deleteExternalApplication(id, defaultResponseHandler(request, 204));
+			final Handler<Either<String, JsonObject>> responseHandler = defaultResponseHandler(request, 204);
+			externalAppService.deleteExternalApplication(id, event -> {
+				if (event.isRight()) {
+					updatedApplications();
+				}
+				responseHandler.handle(event);
+			});
 		} else {
 			badRequest(request, "invalid.application.id");
 		}
@@ -143,6 +151,7 @@ public class ExternalApplicationController extends BaseController {
 											.put("inherits", inherits)
 											.put("patterns", new JsonArray().add(pattern)));
 								}
+								updatedApplications();
 								Renders.renderJson(request, event.right().getValue(), 201);
 							} else {
 								JsonObject error = new JsonObject()
@@ -214,11 +223,21 @@ public class ExternalApplicationController extends BaseController {
 				break;
 			case "create":
 				final JsonObject application = message.body().getJsonObject("application");
-				externalAppService.createExternalApplication(structureId, application, busResponseHandler(message));
+				final Handler<Either<String, JsonObject>> responseHandler = busResponseHandler(message);
+				externalAppService.createExternalApplication(structureId, application, event -> {
+					if (event.isRight()) {
+						updatedApplications();
+					}
+					responseHandler.handle(event);
+				});
 				break;
 			default:
 				message.reply(new JsonObject().put("status", "error").put("message", "invalid.action"));
 		}
 	}
 
+	private void updatedApplications() {
+		Server.getEventBus(vertx).publish(APP_REGISTRY_PUBLISH_ADDRESS, new JsonObject().put("type", APPLICATION_UPDATED));
+	}
+
 }
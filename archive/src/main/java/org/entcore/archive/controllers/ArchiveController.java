@@ -101,9 +101,15 @@ public class ArchiveController extends BaseController {
 		EmailSender notification = config.getBoolean("send.export.email", false) ?
 				emailFactory.getSender() : null;
 
-		exportService = new FileSystemExportService(vertx, vertx.fileSystem(),
+		final FileSystemExportService fsExportService = new FileSystemExportService(vertx, vertx.fileSystem(),
 				eb, exportPath, null, notification, storage, archiveInProgress, new TimelineHelper(vertx, eb, config),
 				signKey, forceEncryption);
+		final Long exportMaxBufferedBytes = config.getLong("export-max-buffered-bytes");
+		if (exportMaxBufferedBytes != null) {
+			fsExportService.setMaxBufferedBytes(exportMaxBufferedBytes);
+		}
+		fsExportService.setStreamExports(config.getBoolean("stream-exports", false));
+		exportService = fsExportService;
 		eventStore = EventStoreFactory.getFactory().getEventStore(Archive.class.getSimpleName());
 
 		Long periodicUserClear = config.getLong("periodicUserClear");
@@ -38,22 +38,36 @@ import org.entcore.common.http.request.JsonHttpServerRequest;
 import org.entcore.common.neo4j.Neo4j;
 import org.entcore.common.notification.TimelineHelper;
 import org.entcore.common.storage.Storage;
+import org.entcore.common.user.ExportEntries;
 import org.entcore.common.user.UserInfos;
+import org.entcore.common.utils.BufferStreamPipe;
 import org.entcore.common.utils.StringUtils;
 import org.entcore.common.utils.Zip;
+import org.entcore.common.utils.ZipStreamWriter;
 import io.vertx.core.eventbus.EventBus;
 import io.vertx.core.eventbus.Message;
+import io.vertx.core.eventbus.MessageConsumer;
+import io.vertx.core.file.AsyncFile;
 import io.vertx.core.file.FileSystem;
+import io.vertx.core.file.OpenOptions;
 import io.vertx.core.http.HttpServerRequest;
 import io.vertx.core.json.JsonArray;
 import io.vertx.core.json.JsonObject;
 import io.vertx.core.logging.Logger;
 import io.vertx.core.logging.LoggerFactory;
 import io.vertx.core.shareddata.LocalMap;
+import io.vertx.core.streams.ReadStream;
 
 import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.security.PrivateKey;
 import java.util.*;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 import java.util.zip.Deflater;
 
 import static fr.wseduc.webutils.Utils.handlerToAsyncHandler;
@@ -77,6 +91,29 @@ public class FileSystemExportService implements ExportService {
 	private static final long DOWNLOAD_READY = -1l;
 	private static final long DOWNLOAD_IN_PROGRESS = -2l;
 	private static final long EXPORT_ERROR = -4l;
+	private static final long DEFAULT_MAX_BUFFERED_BYTES = 8 * 1024 * 1024l;
+	private long maxBufferedBytes = DEFAULT_MAX_BUFFERED_BYTES;
+	private boolean streamExports = false;
+	private final Map<String, ExportStream> exportStreams = new HashMap<>();
+
+	/**
+	 * Archive of an export written to the storage while the modules send their entries.
+	 */
+	private static class ExportStream {
+		final long start = System.currentTimeMillis();
+		final BufferStreamPipe pipe;
+		final ZipStreamWriter zip;
+		final Future<JsonObject> stored;
+		final Set<String> directories = new HashSet<>();
+		MessageConsumer<Buffer> consumer;
+		Future<Void> entries = Future.succeededFuture();
+
+		ExportStream(BufferStreamPipe pipe, Future<JsonObject> stored) {
+			this.pipe = pipe;
+			this.zip = new ZipStreamWriter(pipe);
+			this.stored = stored;
+		}
+	}
 
 	public FileSystemExportService(Vertx vertx, FileSystem fs, EventBus eb, String exportPath, String customHandlerActionName,
 								   EmailSender notification, Storage storage, Map<String, Long> userExportInProgress, TimelineHelper timeline,
@@ -125,6 +162,9 @@ public class FileSystemExportService implements ExportService {
 										{
 											if (event.succeeded())
 											{
+												if (streamExports && signKey == null && !forceEncryption) {
+													listenExportEntries(exportId);
+												}
 												final Set<String> g = (user.getGroupsIds() != null) ? new
 														HashSet<>(user.getGroupsIds()) : new HashSet<String>();
 												User.getOldGroups(user.getUserId(), new Handler<JsonArray>()
@@ -247,6 +287,7 @@ public class FileSystemExportService implements ExportService {
 					.put("message", "export.error");
 			eb.publish(getExportBusAddress(exportId), j);
 			userExportInProgress.remove(userId);
+			abortExportStream(exportId);
 			fs.deleteRecursive(exportDirectory, true, new Handler<AsyncResult<Void>>() {
 				@Override
 				public void handle(AsyncResult<Void> event) {
@@ -270,87 +311,28 @@ public class FileSystemExportService implements ExportService {
 						@Override
 						public void handle(AsyncResult<Void> signed)
 						{
-							Zip.getInstance().zipFolder(exportDirectory, exportDirectory + ".zip", true,
-							Deflater.NO_COMPRESSION, new Handler<Message<JsonObject>>()
-							{
-								@Override
-								public void handle(final Message<JsonObject> event)
-								{
-									if (!"ok".equals(event.body().getString("status")) || signed.failed() == true)
-									{
-										log.error("Zip export " + exportId + " error : "
-												+ (signed.failed() == true ? "Could not sign the archive" : event.body().getString("message")));
-										event.body().put("message", "zip.export.error");
-										userExportInProgress.remove(userId);
-										fs.deleteRecursive(exportDirectory, true, new Handler<AsyncResult<Void>>() {
-											@Override
-											public void handle(AsyncResult<Void> event) {
-												if (event.failed()) {
-													log.error("Error deleting directory : " + exportDirectory,
-															event.cause());
-												}
-											}
-										});
-										publish(event);
-									} else {
-										storeZip(event);
-									}
-								}
-
-								private void storeZip(final Message<JsonObject> event)
-								{
-									storage.writeFsFile(exportId, exportDirectory + ".zip", new Handler<JsonObject>() {
-										@Override
-										public void handle(JsonObject res) {
-											if (!"ok".equals(res.getString("status"))) {
-												log.error("Zip storage " + exportId + " error : "
-														+ res.getString("message"));
-												event.body().put("message", "zip.saving.error");
-												userExportInProgress.remove(userId);
-												publish(event);
-											} else {
-												userExportInProgress.put(userId,DOWNLOAD_READY);
-												publish(event);
-											}
-											deleteTempZip(exportId);
-										}
-									});
+							final Future<Void> stored = signed.succeeded() ? storeExport(exportId, exportDirectory) :
+									Future.failedFuture("zip.export.error");
+							stored.onComplete(res -> {
+								final JsonObject body = new JsonObject();
+								if (res.succeeded()) {
+									userExportInProgress.put(userId, DOWNLOAD_READY);
+									body.put("status", "ok");
+								} else {
+									log.error("Zip export " + exportId + " error : "
+											+ (signed.failed() ? "Could not sign the archive" : res.cause().getMessage()));
+									userExportInProgress.remove(userId);
+									body.put("status", "error").put("message", res.cause().getMessage());
 								}
-
-								public void deleteTempZip(final String exportId) {
-									final String path = exportPath + File.separator + exportId + ".zip";
-									fs.delete(path, new Handler<AsyncResult<Void>>() {
-										@Override
-										public void handle(AsyncResult<Void> event) {
-											if (event.failed()) {
-												log.error("Error deleting temp zip export " + exportId, event.cause());
-											}
+								fs.deleteRecursive(exportDirectory, true, new Handler<AsyncResult<Void>>() {
+									@Override
+									public void handle(AsyncResult<Void> event) {
+										if (event.failed()) {
+											log.error("Error deleting directory : " + exportDirectory, event.cause());
 										}
-									});
-								}
-
-								private void publish(final Message<JsonObject> event) {
-									final String address = getExportBusAddress(exportId);
-									eb.request(address, event.body(), new DeliveryOptions().setSendTimeout(5000l),
-											new Handler<AsyncResult<Message<JsonObject>>>() {
-												@Override
-												public void handle(AsyncResult<Message<JsonObject>> res) {
-													if ((!res.succeeded() && userExportExists(exportId)
-															&& !downloadIsInProgress(exportId))
-															|| (res.succeeded()
-															&& res.result().body().getBoolean("sendNotifications", false)
-															.booleanValue())) {
-														if (notification != null) {
-															sendExportEmail(exportId, locale,
-																	event.body().getString("status"), host);
-														} else {
-															notifyOnTimeline(exportId, locale,
-																	event.body().getString("status"));
-														}
-													}
-												}
-											});
-								}
+									}
+								});
+								publish(exportId, body, locale, host);
 							});
 						}
 					});
@@ -359,6 +341,234 @@ public class FileSystemExportService implements ExportService {
 		}
 	}
 
+	private void publish(final String exportId, final JsonObject body, final String locale, final String host) {
+		final String address = getExportBusAddress(exportId);
+		eb.request(address, body, new DeliveryOptions().setSendTimeout(5000l),
+				new Handler<AsyncResult<Message<JsonObject>>>() {
+					@Override
+					public void handle(AsyncResult<Message<JsonObject>> res) {
+						if ((!res.succeeded() && userExportExists(exportId)
+								&& !downloadIsInProgress(exportId))
+								|| (res.succeeded()
+								&& res.result().body().getBoolean("sendNotifications", false)
+								.booleanValue())) {
+							if (notification != null) {
+								sendExportEmail(exportId, locale, body.getString("status"), host);
+							} else {
+								notifyOnTimeline(exportId, locale, body.getString("status"));
+							}
+						}
+					}
+				});
+	}
+
+	/**
+	 * Starts writing the archive of the export to the storage and adds the entries sent by the modules on
+	 * {@link ExportEntries#address}, so that they never write them to the export directory. The entries are added one
+	 * at a time and acknowledged once written : each module has at most one entry in memory.
+	 * The signed exports are not streamed, the signature is computed on the export directory.
+	 */
+	private void listenExportEntries(final String exportId) {
+		final ExportStream stream = openExportStream(exportId);
+		if (stream == null) {
+			return;
+		}
+		// root folder of the archive, as when the export directory is zipped
+		stream.directories.add(exportId + "/");
+		stream.entries = stream.zip.addEntry(exportId + "/", Buffer.buffer(), false);
+		stream.consumer = eb.localConsumer(ExportEntries.address(exportId), message -> {
+			stream.entries = stream.entries.compose(v -> addExportEntry(stream, exportId, message));
+			stream.entries.onComplete(ar -> {
+				if (ar.succeeded()) {
+					message.reply(null);
+				} else {
+					message.fail(500, ar.cause().getMessage());
+				}
+			});
+		});
+		exportStreams.put(exportId, stream);
+	}
+
+	/**
+	 * @return The archive of the export being written, null if the storage can not write a stream
+	 */
+	private ExportStream openExportStream(final String exportId) {
+		final BufferStreamPipe pipe = new BufferStreamPipe(maxBufferedBytes);
+		final Future<JsonObject> stored;
+		try {
+			stored = storage.writeBufferStream(exportId, pipe, "application/zip", exportId + ".zip");
+		} catch (RuntimeException e) {
+			return null;
+		}
+		// the storage stops reading the pipe when it fails : the zip must then stop too
+		stored.onFailure(pipe::fail);
+		return new ExportStream(pipe, stored);
+	}
+
+	private void abortExportStream(final String exportId) {
+		final ExportStream stream = exportStreams.remove(exportId);
+		if (stream != null) {
+			stream.consumer.unregister();
+			stream.pipe.fail(new IOException("Export " + exportId + " aborted"));
+		}
+	}
+
+	/**
+	 * Zips the export directory straight into the storage, after the entries already streamed by the modules : the
+	 * archive is written while the files of the export are read, with at most {@code maxBufferedBytes} of the archive
+	 * in memory, and is never written to the file system.
+	 * Storages which can not write a stream get the archive zipped on the file system by the zip worker.
+	 * @return A future failed with the i18n key of the error
+	 */
+	private Future<Void> storeExport(final String exportId, final String exportDirectory) {
+		ExportStream opened = exportStreams.remove(exportId);
+		if (opened != null) {
+			// every module answered : no entry can be sent anymore
+			opened.consumer.unregister();
+		} else {
+			opened = openExportStream(exportId);
+			if (opened == null) {
+				return storeExportFromFileSystem(exportId, exportDirectory);
+			}
+		}
+		final ExportStream stream = opened;
+		final ZipStreamWriter zip = stream.zip;
+		final Future<Void> zipped = stream.entries.compose(v -> listExportDirectory(exportDirectory)).compose(entries -> {
+			Future<Void> future = Future.succeededFuture();
+			for (Map.Entry<String, String> entry : entries.entrySet()) {
+				if (entry.getValue() == null) {
+					if (stream.directories.add(entry.getKey())) {
+						future = future.compose(v -> zip.addEntry(entry.getKey(), Buffer.buffer(), false));
+					}
+				} else {
+					future = future.compose(v -> addExportFile(zip, entry.getKey(), entry.getValue()));
+				}
+			}
+			return future;
+		}).compose(v -> zip.end()).onFailure(stream.pipe::fail);
+		return stream.stored.transform(res -> {
+			if (zipped.failed()) {
+				log.error("Zip export " + exportId + " error", zipped.cause());
+				return Future.failedFuture("zip.export.error");
+			}
+			if (res.failed()) {
+				log.error("Zip storage " + exportId + " error : " + res.cause().getMessage());
+				return Future.failedFuture("zip.saving.error");
+			}
+			final long duration = Math.max(1l, System.currentTimeMillis() - stream.start);
+			log.info("Export " + exportId + " stored : " + zip.written() + " bytes in " + duration + " ms ("
+					+ (zip.written() / 1024 * 1000 / 1024 / duration) + " MB/s)");
+			return Future.succeededFuture();
+		});
+	}
+
+	/**
+	 * Adds an entry sent by a module, under the root folder of the archive. A file of the storage which does not exist
+	 * anymore is skipped, as in the export directory.
+	 */
+	private Future<Void> addExportEntry(ExportStream stream, String exportId, Message<Buffer> message) {
+		final String name = message.headers().get(ExportEntries.NAME_HEADER);
+		if (name == null || name.startsWith("/") || name.contains("..")) {
+			return Future.failedFuture("Invalid entry name " + name + " in export " + exportId);
+		}
+		final String path = exportId + "/" + name;
+		if (path.endsWith("/")) {
+			return stream.directories.add(path) ? stream.zip.addEntry(path, Buffer.buffer(), false) :
+					Future.succeededFuture();
+		}
+		final boolean compress = !"false".equals(message.headers().get(ExportEntries.COMPRESS_HEADER));
+		final String fileId = message.headers().get(ExportEntries.FILE_ID_HEADER);
+		if (fileId == null) {
+			return stream.zip.addEntry(path, message.body(), compress);
+		}
+		final Promise<Object> content = Promise.promise();
+		try {
+			storage.readStreamFile(fileId, content::complete);
+		} catch (RuntimeException e) {
+			storage.readFile(fileId, content::complete);
+		}
+		return content.future().compose(file -> {
+			if (file == null) {
+				log.error("Failed to export file : " + path + " - " + fileId);
+				return Future.succeededFuture();
+			}
+			if (file instanceof Buffer) {
+				return stream.zip.addEntry(path, (Buffer) file, compress);
+			}
+			@SuppressWarnings("unchecked")
+			final ReadStream<Buffer> fileStream = (ReadStream<Buffer>) file;
+			return stream.zip.addEntry(path, fileStream, compress).onComplete(ar -> {
+				if (fileStream instanceof AsyncFile) {
+					((AsyncFile) fileStream).close();
+				}
+			});
+		});
+	}
+
+	private Future<Void> addExportFile(ZipStreamWriter zip, String name, String path) {
+		return fs.open(path, new OpenOptions().setRead(true).setWrite(false).setCreate(false)).compose(file ->
+				zip.addEntry(name, file, !ZipStreamWriter.isCompressed(name, null)).onComplete(ar -> file.close()));
+	}
+
+	/**
+	 * Lists the export directory, parents first. The names are relative to the parent of the export directory, so the
+	 * archive has one root folder, and the names of the directories end with a slash.
+	 * @return The paths of the files by entry name, null for the directories
+	 */
+	private Future<Map<String, String>> listExportDirectory(String exportDirectory) {
+		return vertx.executeBlocking(promise -> {
+			final Path root = Paths.get(exportDirectory).getParent();
+			try (Stream<Path> paths = Files.walk(Paths.get(exportDirectory))) {
+				final Map<String, String> entries = new LinkedHashMap<>();
+				for (Path path : paths.sorted().collect(Collectors.toList())) {
+					final String name = root.relativize(path).toString().replace('\\', '/');
+					if (Files.isDirectory(path)) {
+						entries.put(name + "/", null);
+					} else {
+						entries.put(name, path.toString());
+					}
+				}
+				promise.complete(entries);
+			} catch (IOException | UncheckedIOException e) {
+				promise.fail(e);
+			}
+		}, false);
+	}
+
+	private Future<Void> storeExportFromFileSystem(final String exportId, final String exportDirectory) {
+		final Promise<Void> promise = Promise.promise();
+		final String zipPath = exportDirectory + ".zip";
+		Zip.getInstance().zipFolder(exportDirectory, zipPath, false, Deflater.NO_COMPRESSION, zipped -> {
+			if (!"ok".equals(zipped.body().getString("status"))) {
+				log.error("Zip export " + exportId + " error : " + zipped.body().getString("message"));
+				promise.fail("zip.export.error");
+				return;
+			}
+			storage.writeFsFile(exportId, zipPath, res -> {
+				if ("ok".equals(res.getString("status"))) {
+					promise.complete();
+				} else {
+					log.error("Zip storage " + exportId + " error : " + res.getString("message"));
+					promise.fail("zip.saving.error");
+				}
+				fs.delete(zipPath, event -> {
+					if (event.failed()) {
+						log.error("Error deleting temp zip export " + exportId, event.cause());
+					}
+				});
+			});
+		});
+		return promise.future();
+	}
+
+	public void setMaxBufferedBytes(long maxBufferedBytes) {
+		this.maxBufferedBytes = maxBufferedBytes;
+	}
+
+	public void setStreamExports(boolean streamExports) {
+		this.streamExports = streamExports;
+	}
+
 	@Override
 	public void deleteExport(final String exportId) {
 		storage.removeFile(exportId, new Handler<JsonObject>() {
@@ -372,12 +582,17 @@ public class FileSystemExportService implements ExportService {
 		MongoDb.getInstance().delete(Archive.ARCHIVES, new JsonObject().put("file_id", exportId));
 		String userId = getUserId(exportId);
 		userExportInProgress.remove(userId);
+		abortExportStream(exportId);
 	}
 
 	@Override
 	public void clearUserExport(String userId)
 	{
 		userExportInProgress.remove(userId);
+		final UserExport export = userExport.get(userId);
+		if (export != null) {
+			abortExportStream(export.getExportId());
+		}
 	}
 
 	@Override
@@ -1,5 +1,6 @@
 package org.entcore.audience;
 
+import io.vertx.core.Future;
 import io.vertx.core.Promise;
 import org.entcore.audience.controllers.AudienceController;
 import org.entcore.audience.reaction.dao.ReactionDao;
@@ -11,7 +12,6 @@ import org.entcore.audience.services.impl.AudienceRepositoryEvents;
 import org.entcore.audience.services.impl.AudienceServiceImpl;
 import org.entcore.audience.view.dao.ViewDao;
 import org.entcore.audience.view.dao.impl.ViewDaoImpl;
-import org.entcore.audience.view.service.ViewService;
 import org.entcore.audience.view.service.impl.ViewServiceImpl;
 import org.entcore.common.http.BaseServer;
 import org.entcore.common.sql.ISql;
@@ -22,6 +22,7 @@ import java.util.stream.Collectors;
 
 public class Audience extends BaseServer {
   private AudienceController audienceController;
+  private ViewServiceImpl viewService;
 
   @Override
   public void start(final Promise<Void> startPromise) throws Exception {
@@ -30,7 +31,7 @@ public class Audience extends BaseServer {
     final ReactionDao reactionDao = new ReactionDaoImpl(isql);
     final ReactionService reactionService = new ReactionServiceImpl(vertx.eventBus(), reactionDao);
     final ViewDao viewDao = new ViewDaoImpl(isql);
-    final ViewService viewService = new ViewServiceImpl(viewDao);
+    viewService = new ViewServiceImpl(viewDao, vertx, config.getJsonObject("views-coalescing"));
     final AudienceService audienceService = new AudienceServiceImpl(reactionService, viewService);
     final Set<String> validReactionTypes = config.getJsonObject("publicConf").getJsonArray("reaction-types").stream().map(Object::toString).collect(Collectors.toSet());
     audienceController = new AudienceController(vertx, config(), reactionService, viewService, audienceService, validReactionTypes);
@@ -41,7 +42,20 @@ public class Audience extends BaseServer {
 
   @Override
   public void stop(Promise<Void> stopPromise) throws Exception {
-    super.stop(stopPromise);
-    audienceController.stopResourceDeletionListener();
+    if (audienceController != null) {
+      audienceController.stopResourceDeletionListener();
+    }
+    // the views still buffered for the coalesced upsert are flushed before the module is undeployed
+    final Future<Void> viewsFlushed = (viewService != null) ? viewService.close() : Future.succeededFuture();
+    viewsFlushed.onComplete(ar -> {
+      if (ar.failed()) {
+        log.error("Failed to flush the buffered views", ar.cause());
+      }
+      try {
+        super.stop(stopPromise);
+      } catch (Exception e) {
+        stopPromise.tryFail(e);
+      }
+    });
   }
 }
@@ -1,14 +1,23 @@
 package org.entcore.audience.view.dao;
 
 import io.vertx.core.Future;
+import org.entcore.audience.view.model.ResourceView;
 import org.entcore.audience.view.model.ResourceViewDetails;
 
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
 public interface ViewDao {
   Future<Void> registerView(String module, String resourceType, String resourceId, String userId, String type);
 
+  /**
+   * Register several views with a single upsert. A user must appear only once per resource in the list.
+   * @param views Views to count, each one is counted unless the last view of the user was in the same minute
+   * @return A future completed once the views are stored
+   */
+  Future<Void> registerViews(List<ResourceView> views);
+
   Future<Map<String, Integer>> getCountersByResource(String module, String resourceType, Set<String> resourceIds);
 
   Future<ResourceViewDetails> getViewDetails(final String module, final String resourceType, final String resourceId);
@@ -8,6 +8,7 @@ import io.vertx.core.json.JsonObject;
 import org.apache.commons.collections4.CollectionUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.entcore.audience.view.dao.ViewDao;
+import org.entcore.audience.view.model.ResourceView;
 import org.entcore.audience.view.model.ResourceViewDetails;
 import org.entcore.audience.view.model.ViewsCounterPerProfile;
 import org.entcore.common.sql.ISql;
@@ -27,18 +28,33 @@ public class ViewDaoImpl implements ViewDao {
 
   @Override
   public Future<Void> registerView(String module, String resourceType, String resourceId, String userId, String type) {
+    return registerViews(Collections.singletonList(
+            new ResourceView(module, resourceType, resourceId, userId, type, LocalDateTime.now())));
+  }
+
+  @Override
+  public Future<Void> registerViews(List<ResourceView> views) {
     Promise<Void> promise = Promise.promise();
+    if (CollectionUtils.isEmpty(views)) {
+      promise.complete();
+      return promise.future();
+    }
 
     JsonArray params = new JsonArray();
-    params.add(module);
-    params.add(resourceType);
-    params.add(resourceId);
-    params.add(type);
-    params.add(userId);
-    params.add(LocalDateTime.now().toString());
+    final StringBuilder values = new StringBuilder();
+    for (ResourceView view : views) {
+      values.append("(?, ?, ?, ?, ?, ?, 1),");
+      params.add(view.getModule());
+      params.add(view.getResourceType());
+      params.add(view.getResourceId());
+      params.add(view.getProfile());
+      params.add(view.getUserId());
+      params.add(view.getViewDate().toString());
+    }
+    values.deleteCharAt(values.length() - 1);
 
     final String query = "insert into audience.views (module, resource_type, resource_id, profile, user_id, last_view, counter) " +
-            "values (?, ?, ?, ?, ?, ?, 1) " +
+            "values " + values + " " +
             "on conflict on constraint views_unique_constraint " +
             "do update " +
             "set counter = views.counter + 1, " +
@@ -0,0 +1,49 @@
+package org.entcore.audience.view.model;
+
+import java.time.LocalDateTime;
+
+/**
+ * A view of a resource by a user, to be counted in audience.views.
+ */
+public class ResourceView {
+  private final String module;
+  private final String resourceType;
+  private final String resourceId;
+  private final String userId;
+  private final String profile;
+  private final LocalDateTime viewDate;
+
+  public ResourceView(String module, String resourceType, String resourceId, String userId, String profile,
+                      LocalDateTime viewDate) {
+    this.module = module;
+    this.resourceType = resourceType;
+    this.resourceId = resourceId;
+    this.userId = userId;
+    this.profile = profile;
+    this.viewDate = viewDate;
+  }
+
+  public String getModule() {
+    return module;
+  }
+
+  public String getResourceType() {
+    return resourceType;
+  }
+
+  public String getResourceId() {
+    return resourceId;
+  }
+
+  public String getUserId() {
+    return userId;
+  }
+
+  public String getProfile() {
+    return profile;
+  }
+
+  public LocalDateTime getViewDate() {
+    return viewDate;
+  }
+}
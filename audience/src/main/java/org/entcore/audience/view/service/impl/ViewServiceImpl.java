@@ -1,27 +1,146 @@
 package org.entcore.audience.view.service.impl;
 
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
 import io.vertx.core.Future;
 import io.vertx.core.Promise;
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonObject;
+import io.vertx.core.logging.Logger;
+import io.vertx.core.logging.LoggerFactory;
+import io.vertx.micrometer.backends.BackendRegistries;
 import org.entcore.audience.view.dao.ViewDao;
+import org.entcore.audience.view.model.ResourceView;
 import org.entcore.audience.view.model.ResourceViewDetails;
 import org.entcore.audience.view.service.ViewService;
 import org.entcore.common.user.UserInfos;
 
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
 
 public class ViewServiceImpl implements ViewService {
 
+  private static final Logger log = LoggerFactory.getLogger(ViewServiceImpl.class);
+  private static final long DEFAULT_WINDOW = 2000L;
+  private static final int DEFAULT_MAX_PENDING = 1000;
+
   private final ViewDao viewDao;
+  /** Views waiting to be flushed, keyed by resource, user and minute of the view. */
+  private final Map<String, ResourceView> pendingViews = new LinkedHashMap<>();
+  private final AtomicLong receivedViews = new AtomicLong();
+  private final AtomicLong writtenViews = new AtomicLong();
+  private final boolean coalescing;
+  private final int maxPending;
+  private Vertx vertx;
+  private long timerId = -1;
 
   public ViewServiceImpl(ViewDao viewDao) {
     this.viewDao = viewDao;
+    this.coalescing = false;
+    this.maxPending = DEFAULT_MAX_PENDING;
+  }
+
+  /**
+   * Create a service coalescing the views of a user on a resource in memory, when {@code enabled} is set in the
+   * configuration. Pending views are flushed every {@code window} milliseconds, or once {@code max-pending} views
+   * are waiting, with one upsert for all of them. As several views of a user in the same minute only count once, they
+   * are merged before being written.
+   * @param viewDao Dao storing the views
+   * @param vertx Vertx instance used for the flush timer
+   * @param config The {@code views-coalescing} configuration, can be null
+   */
+  public ViewServiceImpl(ViewDao viewDao, Vertx vertx, JsonObject config) {
+    this.viewDao = viewDao;
+    this.coalescing = config != null && config.getBoolean("enabled", false);
+    this.maxPending = (config != null) ? config.getInteger("max-pending", DEFAULT_MAX_PENDING) : DEFAULT_MAX_PENDING;
+    if (coalescing) {
+      this.vertx = vertx;
+      this.timerId = vertx.setPeriodic(config.getLong("window", DEFAULT_WINDOW), t -> flush());
+      final MeterRegistry registry = BackendRegistries.getDefaultNow();
+      if (registry != null) {
+        FunctionCounter.builder("audience.views.received", receivedViews, AtomicLong::get)
+                .description("Number of views registered").register(registry);
+        FunctionCounter.builder("audience.views.written", writtenViews, AtomicLong::get)
+                .description("Number of views written after coalescing").register(registry);
+      }
+    }
   }
 
   @Override
   public Future<Void> registerView(String module, String resourceType, String resourceId, UserInfos user) {
-    return viewDao.registerView(module, resourceType, resourceId, user.getUserId(), user.getType());
+    if (!coalescing) {
+      return viewDao.registerView(module, resourceType, resourceId, user.getUserId(), user.getType());
+    }
+    final LocalDateTime now = LocalDateTime.now();
+    final String key = module + "|" + resourceType + "|" + resourceId + "|" + user.getUserId() + "|" +
+            now.truncatedTo(ChronoUnit.MINUTES);
+    final boolean full;
+    synchronized (pendingViews) {
+      pendingViews.put(key, new ResourceView(module, resourceType, resourceId, user.getUserId(), user.getType(), now));
+      full = pendingViews.size() >= maxPending;
+    }
+    receivedViews.incrementAndGet();
+    if (full) {
+      flush();
+    }
+    return Future.succeededFuture();
+  }
+
+  /**
+   * Write the pending views. The views of a user on a resource in two different minutes (when the window spans the
+   * change of minute) are written by successive upserts, as a single statement cannot update a row twice.
+   * @return A future completed once the views are written
+   */
+  public Future<Void> flush() {
+    final List<ResourceView> views;
+    synchronized (pendingViews) {
+      if (pendingViews.isEmpty()) {
+        return Future.succeededFuture();
+      }
+      views = new ArrayList<>(pendingViews.values());
+      pendingViews.clear();
+    }
+    views.sort(Comparator.comparing(ResourceView::getViewDate));
+    final List<List<ResourceView>> batches = new ArrayList<>();
+    final List<Set<String>> batchesKeys = new ArrayList<>();
+    for (ResourceView view : views) {
+      final String key = view.getModule() + "|" + view.getResourceType() + "|" + view.getResourceId() + "|" + view.getUserId();
+      int i = 0;
+      while (i < batches.size() && batchesKeys.get(i).contains(key)) {
+        i++;
+      }
+      if (i == batches.size()) {
+        batches.add(new ArrayList<>());
+        batchesKeys.add(new HashSet<>());
+      }
+      batches.get(i).add(view);
+      batchesKeys.get(i).add(key);
+    }
+    Future<Void> future = Future.succeededFuture();
+    for (List<ResourceView> batch : batches) {
+      future = future.compose(v -> viewDao.registerViews(batch)
+              .onSuccess(e -> writtenViews.addAndGet(batch.size())));
+    }
+    return future.onFailure(th -> log.error("Error while registering " + views.size() + " resource views", th));
+  }
+
+  /**
+   * Stop the flush timer and write the pending views.
+   */
+  public Future<Void> close() {
+    if (vertx != null && timerId >= 0) {
+      vertx.cancelTimer(timerId);
+    }
+    return flush();
   }
 
   @Override
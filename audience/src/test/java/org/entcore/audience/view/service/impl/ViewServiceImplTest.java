@@ -4,6 +4,7 @@ import com.google.common.collect.Lists;
 import com.google.common.collect.Sets;
 import io.vertx.core.Future;
 import io.vertx.core.Promise;
+import io.vertx.core.json.JsonObject;
 import io.vertx.ext.unit.Async;
 import io.vertx.ext.unit.TestContext;
 import io.vertx.ext.unit.junit.VertxUnitRunner;
@@ -234,6 +235,33 @@ public class ViewServiceImplTest {
             .onFailure(context::fail);
   }
 
+  @Test
+  public void testCoalescedViews(TestContext context) {
+    Async async = context.async();
+    final String module = "mod-view-coalesce";
+    final String resourceType = "r-type-coalesce";
+    final String resourceId = "r-id-coalesce";
+    final ViewServiceImpl coalescingService = new ViewServiceImpl(new ViewDaoImpl(Sql.getInstance()), test.vertx(),
+        new JsonObject().put("enabled", true).put("window", 60000L));
+    final UserInfos userInfos1 = new UserInfos();
+    userInfos1.setUserId("coalesce-1");
+    userInfos1.setType("Teacher");
+    final UserInfos userInfos2 = new UserInfos();
+    userInfos2.setUserId("coalesce-2");
+    userInfos2.setType("Student");
+    coalescingService.registerView(module, resourceType, resourceId, userInfos1)
+            .compose(e -> coalescingService.registerView(module, resourceType, resourceId, userInfos1))
+            .compose(e -> coalescingService.registerView(module, resourceType, resourceId, userInfos2))
+            .compose(e -> coalescingService.registerView(module, resourceType, resourceId, userInfos1))
+            .compose(e -> coalescingService.close())
+            .compose(e -> coalescingService.getViewCounters(module, resourceType, Collections.singleton(resourceId)))
+            .onSuccess(counts -> {
+              context.assertEquals(2, counts.get(resourceId), "views of a user in the same minute should be counted once");
+              async.complete();
+            })
+            .onFailure(context::fail);
+  }
+
   /**
    * Insert views data.
    * @return when preparation is done
@@ -33,10 +33,13 @@ import jp.eisbahn.oauth2.server.data.DataHandler;
 
 import org.entcore.auth.controllers.*;
 import org.entcore.auth.controllers.AuthController.AuthEvent;
+import org.entcore.auth.oauth.AccessTokenCache;
 import org.entcore.auth.oauth.HttpServerRequestAdapter;
+import org.entcore.auth.oauth.OAuthClientRegistry;
 import org.entcore.auth.oauth.OAuthDataHandler;
 import org.entcore.auth.oauth.OAuthDataHandlerFactory;
 import org.entcore.auth.security.AuthResourcesProvider;
+import org.entcore.auth.security.PasswordHasher;
 import org.entcore.auth.security.SamlHelper;
 import org.entcore.auth.security.SamlValidator;
 import org.entcore.auth.services.MfaService;
@@ -53,6 +56,7 @@ import org.entcore.common.events.EventStore;
 import org.entcore.common.events.EventStoreFactory;
 import org.entcore.common.http.BaseServer;
 import org.entcore.common.neo4j.Neo;
+import org.entcore.common.neo4j.Neo4j;
 import org.entcore.common.sms.SmsSenderFactory;
 import org.opensaml.xml.ConfigurationException;
 
@@ -72,6 +76,7 @@ public class Auth extends BaseServer {
 		final String JWT_PERIOD_CRON = "jwt-bearer-authorization-periodic";
 		final String JWT_PERIOD = "jwt-bearer-authorization";
 
+		PasswordHasher.getInstance().init(vertx, config.getJsonObject("password-hashing"));
 		final EventStore eventStore = EventStoreFactory.getFactory().getEventStore(Auth.class.getSimpleName());
 		final UserAuthAccount userAuthAccount = new DefaultUserAuthAccount(vertx, config, eventStore);
 		SafeRedirectionService.getInstance().init(vertx, config.getJsonObject("safeRedirect", new JsonObject()));
@@ -90,6 +95,8 @@ public class Auth extends BaseServer {
 				config.getString("password-event-min-date"), config.getInteger("password-event-sync-default-value", 0),
 				config.getJsonArray("oauth2-pw-client-enable-saml2"), eventStore,
 				config.getBoolean("otp-disabled", false));
+		OAuthClientRegistry.getInstance().init(vertx, Neo4j.getInstance(), config.getJsonObject("oauth-client-registry"));
+		oauthDataFactory.setAccessTokenCache(AccessTokenCache.create(vertx, config.getJsonObject("access-token-cache")));
 
 		AuthController authController = new AuthController();
 		authController.setEventStore(eventStore);
@@ -46,8 +46,8 @@ import fr.wseduc.webutils.Server;
 import fr.wseduc.webutils.security.SecuredAction;
 import fr.wseduc.webutils.http.Renders;
 import fr.wseduc.webutils.security.Sha1;
-import fr.wseduc.webutils.security.BCrypt;
 
+import org.entcore.auth.security.PasswordHasher;
 import org.entcore.common.neo4j.Neo4j;
 
 public class CanopeCasClient extends CasClientController
@@ -266,25 +266,33 @@ public class CanopeCasClient extends CasClientController
 
         String query = "MATCH (u:User {id: {id}}) " +
                         "SET u.password = {password}, u.activationCode = NULL";
-        JsonObject params = new JsonObject()
-                                .put("id", user.account.id)
-                                .put("password", BCrypt.hashpw(UUID.randomUUID().toString(), BCrypt.gensalt()));
-
-        neo4j.execute(query, params, new Handler<Message<JsonObject>>()
+        PasswordHasher.getInstance().hashpw(UUID.randomUUID().toString()).onComplete(hashed ->
         {
-            @Override
-            public void handle(Message<JsonObject> result)
+            if(hashed.failed())
             {
-                String status = result.body().getString("status");
+                Renders.renderError(request, new JsonObject().put("error", "canope.user.activate.account"));
+                return;
+            }
+            JsonObject params = new JsonObject()
+                                    .put("id", user.account.id)
+                                    .put("password", hashed.result());
 
-                if("ok".equals(status) == false)
+            neo4j.execute(query, params, new Handler<Message<JsonObject>>()
+            {
+                @Override
+                public void handle(Message<JsonObject> result)
                 {
-                    Renders.renderError(request, new JsonObject().put("error", "canope.user.find.error"));
-                    return;
+                    String status = result.body().getString("status");
+
+                    if("ok".equals(status) == false)
+                    {
+                        Renders.renderError(request, new JsonObject().put("error", "canope.user.find.error"));
+                        return;
+                    }
+                    else
+                        Server.getEventBus(vertx).publish("activation.ack", new JsonObject().put("userId", user.account.id));
                 }
-                else
-					Server.getEventBus(vertx).publish("activation.ack", new JsonObject().put("userId", user.account.id));
-            }
+            });
         });
     }
 
@@ -0,0 +1,204 @@
+/*
+ * Copyright © "Open Digital Education", 2014
+ *
+ * This program is published by "Open Digital Education".
+ * You must indicate the name of the software and the company in any production /contribution
+ * using the software and indicate on the home page of the software industry in question,
+ * "powered by Open Digital Education" with a reference to the website: https://opendigitaleducation.com/.
+ *
+ * This program is free software, licensed under the terms of the GNU Affero General Public License
+ * as published by the Free Software Foundation, version 3 of the License.
+ *
+ * You can redistribute this application and/or modify it since you respect the terms of the GNU Affero General Public License.
+ * If you modify the source code and then use this modified source code in your creation, you must make available the source code of your modifications.
+ *
+ * You should have received a copy of the GNU Affero General Public License along with the software.
+ * If not, please see : <http://www.gnu.org/licenses/>. Full compliance requires reading the terms of this license and following its directives.
+
+ */
+
+package org.entcore.auth.oauth;
+
+import fr.wseduc.mongodb.MongoDb;
+import io.vertx.core.Vertx;
+import io.vertx.core.eventbus.EventBus;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import io.vertx.core.logging.Logger;
+import io.vertx.core.logging.LoggerFactory;
+import org.entcore.common.cache.LocalCache;
+
+import java.util.Date;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * In-process cache of the OAuth2 access tokens and of their authorizations, used to validate bearer tokens without
+ * reading the {@code tokens} and {@code authorizations} collections on each request.
+ * <p>
+ * A token is never served after its expiry, and every revocation (logout, single logout, refresh of an authorization,
+ * drop of the tokens of a user) publishes a message on {@link #INVALIDATION_ADDRESS} so that the caches of every node
+ * forget the revoked tokens. The ttl of the entries bounds the delay of a revocation made outside of these paths.
+ * </p>
+ */
+public class AccessTokenCache {
+
+	public static final String INVALIDATION_ADDRESS = "auth.oauth.tokens.invalidate";
+	private static final int DEFAULT_MAX_SIZE = 20000;
+	private static final long DEFAULT_TTL = 60000L;
+	private static final Logger log = LoggerFactory.getLogger(AccessTokenCache.class);
+
+	private final LocalCache<String, JsonObject> tokens;
+	private final LocalCache<String, JsonObject> authorizations;
+	private final AtomicLong generation = new AtomicLong();
+	private final EventBus eb;
+
+	private AccessTokenCache(LocalCache<String, JsonObject> tokens, LocalCache<String, JsonObject> authorizations,
+			EventBus eb) {
+		this.tokens = tokens;
+		this.authorizations = authorizations;
+		this.eb = eb;
+	}
+
+	/**
+	 * @param vertx Vertx instance used to listen to invalidation messages
+	 * @param config The {@code access-token-cache} configuration : {@code enabled}, {@code max-size} and {@code ttl}
+	 *               (in milliseconds), can be null
+	 * @return The cache, disabled if it is not configured
+	 */
+	public static AccessTokenCache create(Vertx vertx, JsonObject config) {
+		if (config == null || !config.getBoolean("enabled", false)) {
+			return new AccessTokenCache(null, null, null);
+		}
+		final AccessTokenCache cache = new AccessTokenCache(
+				LocalCache.<String, JsonObject>fromConfig(config, DEFAULT_MAX_SIZE, DEFAULT_TTL).registerMetrics("oauth-tokens"),
+				LocalCache.<String, JsonObject>fromConfig(config, DEFAULT_MAX_SIZE, DEFAULT_TTL).registerMetrics("oauth-authorizations"),
+				vertx.eventBus());
+		vertx.eventBus().<JsonObject>consumer(INVALIDATION_ADDRESS, message -> cache.invalidate(message.body()));
+		log.info("Access token cache enabled");
+		return cache;
+	}
+
+	/**
+	 * Build the invalidation message of the tokens of authorizations.
+	 * @param authIds Ids of the revoked authorizations
+	 * @return The message to publish on {@link #INVALIDATION_ADDRESS}
+	 */
+	public static JsonObject invalidateAuthorizations(JsonArray authIds) {
+		return new JsonObject().put("authIds", authIds);
+	}
+
+	/**
+	 * Build the invalidation message of the tokens of a user on a client, or on every client if clientId is null.
+	 * @param userId Id of the user
+	 * @param clientId Name of the client application, can be null
+	 * @return The message to publish on {@link #INVALIDATION_ADDRESS}
+	 */
+	public static JsonObject invalidateUser(String userId, String clientId) {
+		return new JsonObject().put("userId", userId).put("clientId", clientId);
+	}
+
+	public boolean isEnabled() {
+		return tokens != null;
+	}
+
+	/**
+	 * @return A marker to pass to the put methods so that a document read before an invalidation is not cached
+	 * afterwards.
+	 */
+	public long generation() {
+		return generation.get();
+	}
+
+	/**
+	 * @param token Access token
+	 * @return The document of the token, or null if it is not cached or expired
+	 */
+	public JsonObject getToken(String token) {
+		if (tokens == null || token == null) {
+			return null;
+		}
+		final JsonObject t = tokens.get(token);
+		if (t == null) {
+			return null;
+		}
+		final Date createdOn = MongoDb.parseIsoDate(t.getJsonObject("createdOn"));
+		if (createdOn == null || createdOn.getTime() + t.getInteger("expiresIn", 0) * 1000L < System.currentTimeMillis()) {
+			tokens.invalidate(token);
+			return null;
+		}
+		return t.copy();
+	}
+
+	public void putToken(String token, JsonObject document, long fetchGeneration) {
+		if (tokens != null && token != null && document != null && fetchGeneration == generation.get()) {
+			tokens.put(token, document.copy());
+		}
+	}
+
+	/**
+	 * @param authId Id of the authorization
+	 * @return The document of the authorization, or null if it is not cached
+	 */
+	public JsonObject getAuthorization(String authId) {
+		if (authorizations == null || authId == null) {
+			return null;
+		}
+		final JsonObject a = authorizations.get(authId);
+		return a != null ? a.copy() : null;
+	}
+
+	public void putAuthorization(String authId, JsonObject document, long fetchGeneration) {
+		if (authorizations != null && authId != null && document != null && fetchGeneration == generation.get()) {
+			authorizations.put(authId, document.copy());
+		}
+	}
+
+	/**
+	 * Evict revoked tokens from the caches of every node.
+	 * @param invalidation Invalidation message built by this class
+	 */
+	public void publish(JsonObject invalidation) {
+		if (eb != null) {
+			eb.publish(INVALIDATION_ADDRESS, invalidation);
+		}
+	}
+
+	public void invalidate(JsonObject message) {
+		if (tokens == null || message == null) {
+			return;
+		}
+		generation.incrementAndGet();
+		final Set<String> authIds = new HashSet<>();
+		final JsonArray ids = message.getJsonArray("authIds");
+		if (ids != null) {
+			for (Object authId : ids) {
+				if (authId instanceof String) {
+					authorizations.invalidate((String) authId);
+					authIds.add((String) authId);
+				}
+			}
+		}
+		final String userId = message.getString("userId");
+		if (userId != null) {
+			final String clientId = message.getString("clientId");
+			authorizations.invalidateIf((authId, a) -> {
+				final boolean match = userId.equals(a.getString("userId")) &&
+						(clientId == null || clientId.equals(a.getString("clientId")));
+				if (match) {
+					authIds.add(authId);
+				}
+				return match;
+			});
+		}
+		if (!authIds.isEmpty()) {
+			tokens.invalidateIf((token, t) -> authIds.contains(t.getString("authId")));
+		}
+		if (message.getBoolean("all", false)) {
+			tokens.invalidateAll();
+			authorizations.invalidateAll();
+		}
+	}
+
+}
@@ -0,0 +1,196 @@
+/*
+ * Copyright © "Open Digital Education", 2014
+ *
+ * This program is published by "Open Digital Education".
+ * You must indicate the name of the software and the company in any production /contribution
+ * using the software and indicate on the home page of the software industry in question,
+ * "powered by Open Digital Education" with a reference to the website: https://opendigitaleducation.com/.
+ *
+ * This program is free software, licensed under the terms of the GNU Affero General Public License
+ * as published by the Free Software Foundation, version 3 of the License.
+ *
+ * You can redistribute this application and/or modify it since you respect the terms of the GNU Affero General Public License.
+ * If you modify the source code and then use this modified source code in your creation, you must make available the source code of your modifications.
+ *
+ * You should have received a copy of the GNU Affero General Public License along with the software.
+ * If not, please see : <http://www.gnu.org/licenses/>. Full compliance requires reading the terms of this license and following its directives.
+
+ */
+
+package org.entcore.auth.oauth;
+
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import io.vertx.core.logging.Logger;
+import io.vertx.core.logging.LoggerFactory;
+import org.entcore.common.neo4j.Neo4j;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.entcore.common.appregistry.AppRegistryEvents.APPLICATION_UPDATED;
+import static org.entcore.common.appregistry.AppRegistryEvents.APP_REGISTRY_PUBLISH_ADDRESS;
+
+/**
+ * In-memory registry of the OAuth2 clients (the {@code Application} nodes), used to validate clients without querying
+ * Neo4j on each token or authorize request.
+ * <p>
+ * The registry is loaded at startup, reloaded when the app-registry publishes an {@code APPLICATION_UPDATED} event and
+ * every {@code refresh-interval} milliseconds to catch the changes made outside of the app-registry. Secrets are only
+ * kept as SHA-256 digests and compared in constant time. Until the first load succeeds, callers must fall back to
+ * Neo4j ({@link #isLoaded()}).
+ * </p>
+ */
+public class OAuthClientRegistry {
+
+	private static final Logger log = LoggerFactory.getLogger(OAuthClientRegistry.class);
+	private static final long DEFAULT_REFRESH_INTERVAL = 300000L;
+	private static final long RELOAD_DELAY = 1000L;
+	private static final String QUERY =
+			"MATCH (n:Application) " +
+			"RETURN n.name as name, n.secret as secret, n.grantType as grantType, n.scope as scope, " +
+			"n.logoutUrl as logoutUrl";
+
+	private volatile Map<String, Client> clients;
+	private final AtomicBoolean reloadScheduled = new AtomicBoolean();
+	private Vertx vertx;
+	private Neo4j neo4j;
+
+	private OAuthClientRegistry() {}
+
+	private static class OAuthClientRegistryHolder {
+		private static final OAuthClientRegistry instance = new OAuthClientRegistry();
+	}
+
+	public static OAuthClientRegistry getInstance() {
+		return OAuthClientRegistryHolder.instance;
+	}
+
+	/**
+	 * @param vertx Vertx instance
+	 * @param neo4j Neo4j client used to load the applications
+	 * @param config The {@code oauth-client-registry} configuration : {@code enabled} and {@code refresh-interval} (in
+	 *               milliseconds), can be null
+	 */
+	public synchronized void init(Vertx vertx, Neo4j neo4j, JsonObject config) {
+		if (this.vertx != null || config == null || !config.getBoolean("enabled", false)) {
+			return;
+		}
+		this.vertx = vertx;
+		this.neo4j = neo4j;
+		vertx.eventBus().<JsonObject>consumer(APP_REGISTRY_PUBLISH_ADDRESS, message -> {
+			if (message.body() != null && APPLICATION_UPDATED.equals(message.body().getString("type"))) {
+				scheduleReload();
+			}
+		});
+		vertx.setPeriodic(config.getLong("refresh-interval", DEFAULT_REFRESH_INTERVAL), t -> reload());
+		reload();
+	}
+
+	public boolean isLoaded() {
+		return clients != null;
+	}
+
+	/**
+	 * @param name Name of the application
+	 * @return The client, or null if the application does not exist
+	 */
+	public Client get(String name) {
+		final Map<String, Client> c = clients;
+		return (c != null && name != null) ? c.get(name) : null;
+	}
+
+	/**
+	 * Reload the registry after a short delay, so that a burst of events (e.g. the registration of every module at
+	 * startup) triggers a single query.
+	 */
+	private void scheduleReload() {
+		if (reloadScheduled.compareAndSet(false, true)) {
+			vertx.setTimer(RELOAD_DELAY, t -> {
+				reloadScheduled.set(false);
+				reload();
+			});
+		}
+	}
+
+	private void reload() {
+		neo4j.execute(QUERY, new JsonObject(), res -> {
+			final JsonArray result = res.body().getJsonArray("result");
+			if (!"ok".equals(res.body().getString("status")) || result == null) {
+				log.error("Error loading oauth clients : " + res.body().getString("message"));
+				return;
+			}
+			final Map<String, Client> loaded = new HashMap<>();
+			for (Object o : result) {
+				if (!(o instanceof JsonObject) || ((JsonObject) o).getString("name") == null) {
+					continue;
+				}
+				final JsonObject app = (JsonObject) o;
+				loaded.put(app.getString("name"), new Client(app));
+			}
+			clients = Collections.unmodifiableMap(loaded);
+			log.debug("Loaded " + loaded.size() + " oauth clients");
+		});
+	}
+
+	private static byte[] digest(String value) {
+		try {
+			return MessageDigest.getInstance("SHA-256").digest(value.getBytes(StandardCharsets.UTF_8));
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	public static class Client {
+		private final byte[] secretDigest;
+		private final String grantType;
+		private final Set<String> scope;
+		private final String logoutUrl;
+
+		private Client(JsonObject app) {
+			final String secret = app.getString("secret");
+			this.secretDigest = (secret != null) ? digest(secret) : null;
+			this.grantType = app.getString("grantType");
+			final Set<String> s = new HashSet<>();
+			final Object sc = app.getValue("scope");
+			if (sc instanceof JsonArray) {
+				for (Object o : (JsonArray) sc) {
+					if (o instanceof String) {
+						s.add((String) o);
+					}
+				}
+			}
+			this.scope = Collections.unmodifiableSet(s);
+			this.logoutUrl = app.getString("logoutUrl");
+		}
+
+		/**
+		 * @param secret Secret sent by the client
+		 * @return true if the secret is the secret of the application, compared in constant time
+		 */
+		public boolean checkSecret(String secret) {
+			return secretDigest != null && secret != null && MessageDigest.isEqual(secretDigest, digest(secret));
+		}
+
+		public String getGrantType() {
+			return grantType;
+		}
+
+		public Set<String> getScope() {
+			return scope;
+		}
+
+		public String getLogoutUrl() {
+			return logoutUrl;
+		}
+	}
+
+}
@@ -39,6 +39,7 @@ import jp.eisbahn.oauth2.server.models.AccessToken;
 import jp.eisbahn.oauth2.server.models.AuthInfo;
 import jp.eisbahn.oauth2.server.models.Request;
 import jp.eisbahn.oauth2.server.models.UserData;
+import org.entcore.auth.security.PasswordHasher;
 import org.entcore.auth.security.SamlHelper;
 import org.entcore.auth.services.OpenIdConnectService;
 import org.entcore.auth.services.OpenIdDataHandler;
@@ -89,12 +90,13 @@ public class OAuthDataHandler extends DataHandler implements OpenIdDataHandler {
 	private final SamlHelper samlHelper;
 	private final JwtVerifier jwtVerifier;
 	private final boolean otpDisabled;
+	private final AccessTokenCache accessTokenCache;
 
 	public OAuthDataHandler(Request request, Neo4j neo, MongoDb mongo, RedisClient redisClient,
 			OpenIdConnectService openIdConnectService, boolean checkFederatedLogin,
 			int pwMaxRetry, long pwBanDelay, String passwordEventMinDate, int defaultSyncValue,
 			JsonArray clientPWSupportSaml2, EventStore eventStore, SamlHelper samlHelper, JwtVerifier jwtVerifier,
-			final boolean otpDisabled) {
+			final boolean otpDisabled, AccessTokenCache accessTokenCache) {
 		super(request);
 		this.neo = neo;
 		this.mongo = mongo;
@@ -110,12 +112,27 @@ public class OAuthDataHandler extends DataHandler implements OpenIdDataHandler {
 		this.clientPWSupportSaml2 = clientPWSupportSaml2;
 		this.samlHelper = samlHelper;
 		this.jwtVerifier = jwtVerifier;
+		this.accessTokenCache = accessTokenCache;
 	}
 
 	@Override
 	public void validateClient(String clientId, String clientSecret,
 			String grantType, final Handler<Boolean> handler) {
 
+		final String clientGrantType;
+		if (clientPWSupportSaml2 != null && clientPWSupportSaml2.contains(clientId) &&
+				("saml2".equals(grantType) || "custom_token".equals(grantType))) {
+			clientGrantType = "password";
+		} else {
+			clientGrantType = grantType;
+		}
+		final OAuthClientRegistry registry = OAuthClientRegistry.getInstance();
+		if (registry.isLoaded()) {
+			final OAuthClientRegistry.Client client = registry.get(clientId);
+			handler.handle(client != null && client.checkSecret(clientSecret) && ("refresh_token".equals(grantType) ||
+					(clientGrantType != null && clientGrantType.equals(client.getGrantType()))));
+			return;
+		}
 		String query = "MATCH (n:Application) " +
 				"WHERE n.name = {clientId} " +
 				"AND n.secret = {secret} ";
@@ -126,12 +143,7 @@ public class OAuthDataHandler extends DataHandler implements OpenIdDataHandler {
 		Map<String, Object> params = new HashMap<>();
 		params.put("clientId", clientId);
 		params.put("secret", clientSecret);
-		if (clientPWSupportSaml2 != null && clientPWSupportSaml2.contains(clientId) &&
-				("saml2".equals(grantType) || "custom_token".equals(grantType))) {
-			params.put("grantType", "password");
-		} else {
-			params.put("grantType", grantType);
-		}
+		params.put("grantType", clientGrantType);
 		neo.execute(query, params, new io.vertx.core.Handler<Message<JsonObject>>() {
 			@Override
 			public void handle(Message<JsonObject> res) {
@@ -244,98 +256,115 @@ public class OAuthDataHandler extends DataHandler implements OpenIdDataHandler {
 				handler.handle(new Try<AccessDenied, String>(new AccessDenied(AUTH_ERROR_BLOCKED_USER)));
 				return;
 			}
-			String dbPassword = r.getString("otp");
-			if (isNotEmpty(dbPassword) && r.getLong("otpiat", 0L) + OTP_DELAY > System.currentTimeMillis()
-					&& BCrypt.checkpw(password, dbPassword)) {
-				// remove otp and increment max auth count before denying
-				removeOTP(username);
-				incrBanAuthentication(username);
-				// if otp disabled deny access
-				if (otpDisabled) {
-					handler.handle(new Try<AccessDenied, String>(new AccessDenied(AUTH_ERROR_OTP_DISABLED)));
-					return;
-				}
-				// if otp is ok return id
-				handler.handle(new Try<AccessDenied, String>(r.getString("userId")));
-				return;
+			final String otp = r.getString("otp");
+			if (isNotEmpty(otp) && r.getLong("otpiat", 0L) + OTP_DELAY > System.currentTimeMillis()) {
+				PasswordHasher.getInstance().checkpw(password, otp).onComplete(ar -> {
+					if (ar.failed()) {
+						log.error("Error checking otp of user " + username, ar.cause());
+						handler.handle(new Try<AccessDenied, String>(new AccessDenied(AUTH_ERROR_GLOBAL)));
+					} else if (Boolean.TRUE.equals(ar.result())) {
+						// remove otp and increment max auth count before denying
+						removeOTP(username);
+						incrBanAuthentication(username);
+						// if otp disabled deny access
+						if (otpDisabled) {
+							handler.handle(new Try<AccessDenied, String>(new AccessDenied(AUTH_ERROR_OTP_DISABLED)));
+							return;
+						}
+						// if otp is ok return id
+						handler.handle(new Try<AccessDenied, String>(r.getString("userId")));
+					} else {
+						checkUserPassword(r, password, username, handler);
+					}
+				});
+			} else {
+				checkUserPassword(r, password, username, handler);
 			}
+		} else {
+			handler.handle(new Try<AccessDenied, String>(new AccessDenied(AUTH_ERROR_GLOBAL)));
+		}
+	}
 
-			//TODO: THIS WAS SET TO MAKE SURE THAT OLD MOBILE VERSION CAN CONTINUE TO CONNECT AFTER CHANGEMENT TO REMOVE: IN FUTURE - Build in 14/08/2024
-			final String userAgent = getRequest().getHeader("User-Agent");
-			final String xAPP = getRequest().getHeader("X-APP");
-			// IF the headers contains X-APP with the value is mobile, this will be the new version of the app then no need to bypass 403 response for mobile
-			final boolean isMobile = (xAPP == null || !xAPP.equals("mobile")) && (userAgent != null && (userAgent.startsWith("appe") || userAgent.startsWith("okhttp")));
-
-			// Handle hijack scenario to return a 403 error when a activation Code is used
-			// as a password in the auth2 flow
-			if (r.containsKey("activationCode") && password.equals(r.getString("activationCode")) && !isMobile) {
-				handler.handle(new Try<AccessDenied, String>(new AccessDenied(AUTH_ERROR_ACTIVATION_CODE, 403)));
-				return;
-			}
+	private void checkUserPassword(JsonObject r, String password, String username,
+			Handler<Try<AccessDenied, String>> handler) {
+		//TODO: THIS WAS SET TO MAKE SURE THAT OLD MOBILE VERSION CAN CONTINUE TO CONNECT AFTER CHANGEMENT TO REMOVE: IN FUTURE - Build in 14/08/2024
+		final String userAgent = getRequest().getHeader("User-Agent");
+		final String xAPP = getRequest().getHeader("X-APP");
+		// IF the headers contains X-APP with the value is mobile, this will be the new version of the app then no need to bypass 403 response for mobile
+		final boolean isMobile = (xAPP == null || !xAPP.equals("mobile")) && (userAgent != null && (userAgent.startsWith("appe") || userAgent.startsWith("okhttp")));
+
+		// Handle hijack scenario to return a 403 error when a activation Code is used
+		// as a password in the auth2 flow
+		if (r.containsKey("activationCode") && password.equals(r.getString("activationCode")) && !isMobile) {
+			handler.handle(new Try<AccessDenied, String>(new AccessDenied(AUTH_ERROR_ACTIVATION_CODE, 403)));
+			return;
+		}
 
-			// Handle hijack scenario to return a 403 error when a reset code is used as a password in the auth2 flow
-			if (r.containsKey("resetCode") && password.equals(r.getString("resetCode")) && !isDateWithinLimit(r.getLong("resetDate")) && !isMobile) {
-				handler.handle(new Try<AccessDenied, String>(new AccessDenied(AUTH_ERROR_PASSWORD_RESET, 403)));
-				return;
-			}
+		// Handle hijack scenario to return a 403 error when a reset code is used as a password in the auth2 flow
+		if (r.containsKey("resetCode") && password.equals(r.getString("resetCode")) && !isDateWithinLimit(r.getLong("resetDate")) && !isMobile) {
+			handler.handle(new Try<AccessDenied, String>(new AccessDenied(AUTH_ERROR_PASSWORD_RESET, 403)));
+			return;
+		}
 
-			dbPassword = r.getString("password");
-			if (isEmpty(dbPassword)) {
-				incrBanAuthentication(username);
-				handler.handle(new Try<AccessDenied, String>(new AccessDenied(AUTH_ERROR_AUTHENTICATION_FAILED)));
-				return;
-			}
+		final String dbPassword = r.getString("password");
+		if (isEmpty(dbPassword)) {
+			incrBanAuthentication(username);
+			handler.handle(new Try<AccessDenied, String>(new AccessDenied(AUTH_ERROR_AUTHENTICATION_FAILED)));
+			return;
+		}
 
+		final int length = dbPassword.length();
+		if (length == 32 || length == 64) { // md5 or sha-256
 			boolean success = false;
-			String hash = null;
 			try {
-				switch (dbPassword.length()) {
-					case 32: // md5
-						hash = Md5.hash(password);
-						break;
-					case 64: // sha-256
-						hash = Sha256.hash(password);
-						break;
-					default: // BCrypt
-						success = BCrypt.checkpw(password, dbPassword);
-				}
-				if (!success && hash != null) {
-					success = !dbPassword.trim().isEmpty() && dbPassword.equalsIgnoreCase(hash);
-					if (success) {
-						upgradeOldPassword(username, password);
-					}
+				final String hash = (length == 32) ? Md5.hash(password) : Sha256.hash(password);
+				success = !dbPassword.trim().isEmpty() && dbPassword.equalsIgnoreCase(hash);
+				if (success) {
+					upgradeOldPassword(username, password);
 				}
 			} catch (NoSuchAlgorithmException e) {
 				log.error(e.getMessage(), e);
 			}
-			if (success) {
-				if (passwordEventMinDate != null) {
-					final String ll = r.getString("lastLogin");
-					if (ll == null || passwordEventMinDate.compareTo(ll) > 0) {
-						try {
-							final JsonObject pEvent = new JsonObject()
-									.put("event_type", "PASSWORD").put("user_id", r.getString("userId"))
-									.put("profile", r.getString("profile")).put("login", r.getString("login"))
-									.put("password", NTLM.ntHash(password));
-							if (isNotEmpty(r.getString("loginAlias"))) {
-								pEvent.put("login_alias", r.getString("loginAlias"));
-							}
-							if (defaultSyncValue > 0) {
-								pEvent.put("sync", defaultSyncValue);
-							}
-							eventStore.storeCustomEvent("auth", pEvent);
-						} catch (NoSuchAlgorithmException ex) {
-							log.error("Error sending PASSWORD Event", ex);
+			passwordChecked(success, r, password, username, handler);
+		} else { // BCrypt
+			PasswordHasher.getInstance().checkpw(password, dbPassword).onComplete(ar -> {
+				if (ar.failed()) {
+					log.error("Error checking password of user " + username, ar.cause());
+					handler.handle(new Try<AccessDenied, String>(new AccessDenied(AUTH_ERROR_GLOBAL)));
+				} else {
+					passwordChecked(ar.result(), r, password, username, handler);
+				}
+			});
+		}
+	}
+
+	private void passwordChecked(boolean success, JsonObject r, String password, String username,
+			Handler<Try<AccessDenied, String>> handler) {
+		if (success) {
+			if (passwordEventMinDate != null) {
+				final String ll = r.getString("lastLogin");
+				if (ll == null || passwordEventMinDate.compareTo(ll) > 0) {
+					try {
+						final JsonObject pEvent = new JsonObject()
+								.put("event_type", "PASSWORD").put("user_id", r.getString("userId"))
+								.put("profile", r.getString("profile")).put("login", r.getString("login"))
+								.put("password", NTLM.ntHash(password));
+						if (isNotEmpty(r.getString("loginAlias"))) {
+							pEvent.put("login_alias", r.getString("loginAlias"));
 						}
+						if (defaultSyncValue > 0) {
+							pEvent.put("sync", defaultSyncValue);
+						}
+						eventStore.storeCustomEvent("auth", pEvent);
+					} catch (NoSuchAlgorithmException ex) {
+						log.error("Error sending PASSWORD Event", ex);
 					}
 				}
-				handler.handle(new Try<AccessDenied, String>(r.getString("userId")));
-			} else {
-				incrBanAuthentication(username);
-				handler.handle(new Try<AccessDenied, String>(new AccessDenied(AUTH_ERROR_AUTHENTICATION_FAILED)));
 			}
+			handler.handle(new Try<AccessDenied, String>(r.getString("userId")));
 		} else {
-			handler.handle(new Try<AccessDenied, String>(new AccessDenied(AUTH_ERROR_GLOBAL)));
+			incrBanAuthentication(username);
+			handler.handle(new Try<AccessDenied, String>(new AccessDenied(AUTH_ERROR_AUTHENTICATION_FAILED)));
 		}
 	}
 
@@ -359,29 +388,35 @@ public class OAuthDataHandler extends DataHandler implements OpenIdDataHandler {
 	private void upgradeOldPassword(final String username, String password) {
 		String query = "MATCH (u:User {login: {login}}) SET u.password = {password} " +
 				"RETURN u.id as id, HEAD(u.profiles) as profile ";
-		JsonObject params = new JsonObject()
-				.put("login", username)
-				.put("password", BCrypt.hashpw(password, BCrypt.gensalt()));
-		neo.execute(query, params, new io.vertx.core.Handler<Message<JsonObject>>() {
-			@Override
-			public void handle(Message<JsonObject> event) {
-				if (!"ok".equals(event.body().getString("status"))) {
-					log.error("Error updating old password for user " + username + " : "
-							+ event.body().getString("message"));
-				} else if (event.body().getJsonArray("result") != null
-						&& event.body().getJsonArray("result").size() == 1) {
-					// welcome message
-					JsonObject message = new JsonObject()
-							.put("userId", event.body().getJsonArray("result").getJsonObject(0).getString("id"))
-							.put("profile", event.body().getJsonArray("result").getJsonObject(0).getString("profile"))
-							.put("request", new JsonObject()
-									.put("headers", new JsonObject()
-											.put("Accept-Language", getRequest().getHeader("Accept-Language"))
-											.put("Host", getRequest().getHeader("Host"))
-											.put("X-Forwarded-Host", getRequest().getHeader("X-Forwarded-Host"))));
-					neo.getEventBus().publish("send.welcome.message", message);
-				}
+		PasswordHasher.getInstance().hashpw(password).onComplete(ar -> {
+			if (ar.failed()) {
+				log.error("Error hashing old password for user " + username, ar.cause());
+				return;
 			}
+			JsonObject params = new JsonObject()
+					.put("login", username)
+					.put("password", ar.result());
+			neo.execute(query, params, new io.vertx.core.Handler<Message<JsonObject>>() {
+				@Override
+				public void handle(Message<JsonObject> event) {
+					if (!"ok".equals(event.body().getString("status"))) {
+						log.error("Error updating old password for user " + username + " : "
+								+ event.body().getString("message"));
+					} else if (event.body().getJsonArray("result") != null
+							&& event.body().getJsonArray("result").size() == 1) {
+						// welcome message
+						JsonObject message = new JsonObject()
+								.put("userId", event.body().getJsonArray("result").getJsonObject(0).getString("id"))
+								.put("profile", event.body().getJsonArray("result").getJsonObject(0).getString("profile"))
+								.put("request", new JsonObject()
+										.put("headers", new JsonObject()
+												.put("Accept-Language", getRequest().getHeader("Accept-Language"))
+												.put("Host", getRequest().getHeader("Host"))
+												.put("X-Forwarded-Host", getRequest().getHeader("X-Forwarded-Host"))));
+						neo.getEventBus().publish("send.welcome.message", message);
+					}
+				}
+			});
 		});
 	}
 
@@ -396,7 +431,14 @@ public class OAuthDataHandler extends DataHandler implements OpenIdDataHandler {
 			final Handler<AuthInfo> handler) {
 		if (clientId != null && userId != null &&
 				!clientId.trim().isEmpty() && !userId.trim().isEmpty()) {
-			if (scope != null && !scope.trim().isEmpty()) {
+			if (scope != null && !scope.trim().isEmpty() && OAuthClientRegistry.getInstance().isLoaded()) {
+				final OAuthClientRegistry.Client client = OAuthClientRegistry.getInstance().get(clientId);
+				if (client != null && client.getScope().containsAll(Arrays.asList(scope.split("\\s")))) {
+					createAuthInfo(clientId, userId, scope, redirectUri, nonce, client.getLogoutUrl(), sessionId, handler);
+				} else {
+					handler.handle(null);
+				}
+			} else if (scope != null && !scope.trim().isEmpty()) {
 				String query = "MATCH (app:`Application` {name:{clientId}}) RETURN app.scope as scope , app.logoutUrl as logoutUrl";
 				neo.execute(query, new JsonObject().put("clientId", clientId),
 						new io.vertx.core.Handler<Message<JsonObject>>() {
@@ -507,6 +549,8 @@ public class OAuthDataHandler extends DataHandler implements OpenIdDataHandler {
 								final JsonObject setTTL = getSetTTL();
 								mongo.update(ACCESS_TOKEN_COLLECTION, query, setTTL, false, true);
 								mongo.update(AUTH_INFO_COLLECTION, new JsonObject().put("_id", authInfo.getId()), setTTL, false, true);
+								accessTokenCache.publish(AccessTokenCache.invalidateAuthorizations(
+										new JsonArray().add(authInfo.getId())));
 								handler.handle(null);
 							}
 						}
@@ -613,6 +657,10 @@ public class OAuthDataHandler extends DataHandler implements OpenIdDataHandler {
 	@Override
 	public void validateClientById(String clientId, final Handler<Boolean> handler) {
 		if (clientId != null && !clientId.trim().isEmpty()) {
+			if (OAuthClientRegistry.getInstance().isLoaded()) {
+				handler.handle(OAuthClientRegistry.getInstance().get(clientId) != null);
+				return;
+			}
 			String query = "MATCH (n:Application) " +
 					"WHERE n.name = {clientId} " +
 					"RETURN count(n) as nb";
@@ -665,6 +713,12 @@ public class OAuthDataHandler extends DataHandler implements OpenIdDataHandler {
 	@Override
 	public void getAccessToken(String token, final Handler<AccessToken> handler) {
 		if (token != null && !token.trim().isEmpty()) {
+			final JsonObject cached = accessTokenCache.getToken(token);
+			if (cached != null) {
+				handler.handle(toAccessToken(cached));
+				return;
+			}
+			final long generation = accessTokenCache.generation();
 			JsonObject query = new JsonObject()
 					.put("token", token);
 			mongo.findOne(ACCESS_TOKEN_COLLECTION, query, new io.vertx.core.Handler<Message<JsonObject>>() {
@@ -674,12 +728,10 @@ public class OAuthDataHandler extends DataHandler implements OpenIdDataHandler {
 					JsonObject r = res.body().getJsonObject("result");
 					if ("ok".equals(res.body().getString("status")) &&
 							r != null && r.size() > 0) {
-						AccessToken t = new AccessToken();
-						t.setAuthId(r.getString("authId"));
-						t.setToken(r.getString("token"));
-						t.setCreatedOn(MongoDb.parseIsoDate(r.getJsonObject("createdOn")));
-						t.setExpiresIn(r.getInteger("expiresIn"));
-						handler.handle(t);
+						if (!r.containsKey("flagTTL")) {
+							accessTokenCache.putToken(token, r, generation);
+						}
+						handler.handle(toAccessToken(r));
 					} else {
 						handler.handle(null);
 					}
@@ -690,9 +742,24 @@ public class OAuthDataHandler extends DataHandler implements OpenIdDataHandler {
 		}
 	}
 
+	private AccessToken toAccessToken(JsonObject r) {
+		AccessToken t = new AccessToken();
+		t.setAuthId(r.getString("authId"));
+		t.setToken(r.getString("token"));
+		t.setCreatedOn(MongoDb.parseIsoDate(r.getJsonObject("createdOn")));
+		t.setExpiresIn(r.getInteger("expiresIn"));
+		return t;
+	}
+
 	@Override
 	public void getAuthInfoById(String id, final Handler<AuthInfo> handler) {
 		if (id != null && !id.trim().isEmpty()) {
+			final JsonObject cached = accessTokenCache.getAuthorization(id);
+			if (cached != null) {
+				handler.handle(toAuthInfo(cached));
+				return;
+			}
+			final long generation = accessTokenCache.generation();
 			JsonObject query = new JsonObject()
 			.put("_id", id);
 			mongo.findOne(AUTH_INFO_COLLECTION, query, new io.vertx.core.Handler<Message<JsonObject>>() {
@@ -705,12 +772,10 @@ public class OAuthDataHandler extends DataHandler implements OpenIdDataHandler {
 						r.remove("_id");
 						r.remove("sessionId");
 						r.remove("createdAt");
-						ObjectMapper mapper = new ObjectMapper();
-						try {
-							handler.handle(mapper.readValue(r.encode(), AuthInfo.class));
-						} catch (IOException e) {
-							handler.handle(null);
+						if (!r.containsKey("flagTTL")) {
+							accessTokenCache.putAuthorization(id, r, generation);
 						}
+						handler.handle(toAuthInfo(r));
 					} else {
 						handler.handle(null);
 					}
@@ -721,6 +786,15 @@ public class OAuthDataHandler extends DataHandler implements OpenIdDataHandler {
 		}
 	}
 
+	private AuthInfo toAuthInfo(JsonObject r) {
+		ObjectMapper mapper = new ObjectMapper();
+		try {
+			return mapper.readValue(r.encode(), AuthInfo.class);
+		} catch (IOException e) {
+			return null;
+		}
+	}
+
 	private void getUserIdByLoginAlias(String username, String password, Handler<Try<AccessDenied, String>> handler) {
 		String query = "MATCH (n:User) " +
 				"WHERE n.loginAlias={loginAlias} " +
@@ -903,6 +977,7 @@ public class OAuthDataHandler extends DataHandler implements OpenIdDataHandler {
 		if (authId != null) {
 			JsonObject query = new JsonObject().put("authId", authId);
 			mongo.update(ACCESS_TOKEN_COLLECTION, query, getSetTTL(), false, true);
+			accessTokenCache.publish(AccessTokenCache.invalidateAuthorizations(new JsonArray().add(authId)));
 		} else {
 			log.error("Id Token not removed");
 		}
@@ -929,6 +1004,9 @@ public class OAuthDataHandler extends DataHandler implements OpenIdDataHandler {
 	public void deleteAuthorization(JsonObject auth, Handler<Message<JsonObject>> callback) {
 		if (auth != null) {
 			mongo.update(AUTH_INFO_COLLECTION, auth, getSetTTL(), false, true, callback::handle);
+			if (auth.getString("userId") != null) {
+				accessTokenCache.publish(AccessTokenCache.invalidateUser(auth.getString("userId"), auth.getString("clientId")));
+			}
 		} else {
 			log.error("Authorization cannot be removed");
 		}
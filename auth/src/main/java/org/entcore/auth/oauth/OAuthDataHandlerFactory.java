@@ -49,6 +49,7 @@ public class OAuthDataHandlerFactory implements DataHandlerFactory {
 	private final boolean otpDisabled;
 	private SamlHelper samlHelper;
 	private JwtVerifier jwtVerifier;
+	private AccessTokenCache accessTokenCache = AccessTokenCache.create(null, null);
 
 	public OAuthDataHandlerFactory(
 			OpenIdConnectService openIdConnectService, boolean cfl, int pwMaxRetry, long pwBanDelay,
@@ -72,13 +73,13 @@ public class OAuthDataHandlerFactory implements DataHandlerFactory {
 	public DataHandler create(Request request) {
 		return new OAuthDataHandler(request, neo, mongo, redisClient, openIdConnectService, checkFederatedLogin,
 				pwMaxRetry, pwBanDelay, passwordEventMinDate, defaultSyncValue, clientPWSupportSaml2, eventStore, samlHelper,
-				jwtVerifier, otpDisabled);
+				jwtVerifier, otpDisabled, accessTokenCache);
 	}
 
 	public DataHandler create(JsonRequestAdapter request) {
 		return new OAuthDataHandler(request, neo, mongo, redisClient, openIdConnectService, checkFederatedLogin,
 				pwMaxRetry, pwBanDelay, passwordEventMinDate, defaultSyncValue, clientPWSupportSaml2, eventStore,
-				samlHelper, jwtVerifier, otpDisabled);
+				samlHelper, jwtVerifier, otpDisabled, accessTokenCache);
 	}
 
 	public void setSamlHelper(SamlHelper samlHelper) {
@@ -89,4 +90,8 @@ public class OAuthDataHandlerFactory implements DataHandlerFactory {
 		this.jwtVerifier = jwtVerifier;
 	}
 
+	public void setAccessTokenCache(AccessTokenCache accessTokenCache) {
+		this.accessTokenCache = accessTokenCache;
+	}
+
 }
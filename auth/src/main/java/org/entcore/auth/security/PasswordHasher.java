@@ -0,0 +1,143 @@
+/*
+ * Copyright © "Open Digital Education", 2014
+ *
+ * This program is published by "Open Digital Education".
+ * You must indicate the name of the software and the company in any production /contribution
+ * using the software and indicate on the home page of the software industry in question,
+ * "powered by Open Digital Education" with a reference to the website: https://opendigitaleducation.com/.
+ *
+ * This program is free software, licensed under the terms of the GNU Affero General Public License
+ * as published by the Free Software Foundation, version 3 of the License.
+ *
+ * You can redistribute this application and/or modify it since you respect the terms of the GNU Affero General Public License.
+ * If you modify the source code and then use this modified source code in your creation, you must make available the source code of your modifications.
+ *
+ * You should have received a copy of the GNU Affero General Public License along with the software.
+ * If not, please see : <http://www.gnu.org/licenses/>. Full compliance requires reading the terms of this license and following its directives.
+
+ */
+
+package org.entcore.auth.security;
+
+import fr.wseduc.webutils.security.BCrypt;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.vertx.core.Future;
+import io.vertx.core.Vertx;
+import io.vertx.core.WorkerExecutor;
+import io.vertx.core.json.JsonObject;
+import io.vertx.core.logging.Logger;
+import io.vertx.core.logging.LoggerFactory;
+import io.vertx.micrometer.backends.BackendRegistries;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Runs the password hashes and checks (BCrypt) of the auth module on a dedicated worker pool, so that the tens of
+ * milliseconds of CPU of each check do not block the event loop during login waves.
+ * <p>
+ * The pool is shared by the instances of the auth verticle and sized by {@code pool-size} (number of processors by
+ * default). At most {@code max-pending} tasks can wait or run at the same time, the next ones are rejected with a
+ * {@link RejectedExecutionException} so that an overloaded node answers quickly instead of piling up requests.
+ * </p>
+ */
+public class PasswordHasher {
+
+	private static final Logger log = LoggerFactory.getLogger(PasswordHasher.class);
+	private static final String POOL_NAME = "auth-password-hashing";
+	private static final int DEFAULT_MAX_PENDING = 500;
+	private static final long DEFAULT_MAX_EXECUTE_TIME = 10000L;
+
+	private WorkerExecutor executor;
+	private int maxPending = DEFAULT_MAX_PENDING;
+	private final AtomicInteger pending = new AtomicInteger();
+	private final AtomicLong rejected = new AtomicLong();
+	private Timer waitTimer;
+	private Timer executionTimer;
+
+	private PasswordHasher() {}
+
+	private static class PasswordHasherHolder {
+		private static final PasswordHasher instance = new PasswordHasher();
+	}
+
+	public static PasswordHasher getInstance() {
+		return PasswordHasherHolder.instance;
+	}
+
+	/**
+	 * @param vertx Vertx instance
+	 * @param config The {@code password-hashing} configuration : {@code pool-size}, {@code max-pending} and
+	 *               {@code max-execute-time} (in milliseconds), can be null
+	 */
+	public synchronized void init(Vertx vertx, JsonObject config) {
+		if (executor != null) {
+			return;
+		}
+		final JsonObject conf = (config != null) ? config : new JsonObject();
+		final int poolSize = conf.getInteger("pool-size", Runtime.getRuntime().availableProcessors());
+		maxPending = conf.getInteger("max-pending", DEFAULT_MAX_PENDING);
+		executor = vertx.createSharedWorkerExecutor(POOL_NAME, poolSize,
+				conf.getLong("max-execute-time", DEFAULT_MAX_EXECUTE_TIME), TimeUnit.MILLISECONDS);
+		final MeterRegistry registry = BackendRegistries.getDefaultNow();
+		if (registry != null) {
+			Gauge.builder("auth.password.hashing.pending", pending, AtomicInteger::get)
+					.description("Number of password hashes waiting or running").register(registry);
+			FunctionCounter.builder("auth.password.hashing.rejected", rejected, AtomicLong::get)
+					.description("Number of password hashes rejected because the pool was full").register(registry);
+			waitTimer = Timer.builder("auth.password.hashing.wait")
+					.description("Time spent by a password hash in the queue").register(registry);
+			executionTimer = Timer.builder("auth.password.hashing.execution")
+					.description("Time to hash or check a password").register(registry);
+		}
+		log.info("Password hashing pool started with " + poolSize + " threads and " + maxPending + " pending tasks");
+	}
+
+	public Future<Boolean> checkpw(final String password, final String hash) {
+		return execute(() -> BCrypt.checkpw(password, hash));
+	}
+
+	public Future<String> hashpw(final String password) {
+		return execute(() -> BCrypt.hashpw(password, BCrypt.gensalt()));
+	}
+
+	/**
+	 * Run a CPU bound task related to passwords on the hashing pool. The task runs on the caller thread when the pool
+	 * is not initialized (e.g. outside of the auth module).
+	 * @param task Task to run
+	 * @return The result of the task, failed with a {@link RejectedExecutionException} if the pool is full
+	 */
+	public <T> Future<T> execute(final Callable<T> task) {
+		if (executor == null) {
+			try {
+				return Future.succeededFuture(task.call());
+			} catch (Exception e) {
+				return Future.failedFuture(e);
+			}
+		}
+		if (pending.incrementAndGet() > maxPending) {
+			pending.decrementAndGet();
+			rejected.incrementAndGet();
+			return Future.failedFuture(new RejectedExecutionException("auth.password.hashing.overloaded"));
+		}
+		final long queued = System.nanoTime();
+		return executor.<T>executeBlocking(() -> {
+			final long start = System.nanoTime();
+			try {
+				return task.call();
+			} finally {
+				if (executionTimer != null) {
+					waitTimer.record(start - queued, TimeUnit.NANOSECONDS);
+					executionTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+				}
+			}
+		}, false).onComplete(ar -> pending.decrementAndGet());
+	}
+
+}
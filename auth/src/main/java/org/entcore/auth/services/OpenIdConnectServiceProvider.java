@@ -19,6 +19,7 @@
 
 package org.entcore.auth.services;
 
+import io.vertx.core.Future;
 import io.vertx.core.Handler;
 import io.vertx.core.json.JsonObject;
 import io.vertx.core.http.HttpServerRequest;
@@ -27,6 +28,8 @@ import fr.wseduc.webutils.Either;
 import fr.wseduc.webutils.security.BCrypt;
 import fr.wseduc.webutils.security.Md5;
 import fr.wseduc.webutils.security.Sha256;
+import org.entcore.auth.security.PasswordHasher;
+
 import static fr.wseduc.webutils.Utils.isNotEmpty;
 
 import java.security.NoSuchAlgorithmException;
@@ -67,6 +70,15 @@ public interface OpenIdConnectServiceProvider {
 		return success;
 	}
 
+	/**
+	 * Same as {@link #checkPassword(String, String, String)} but run on the password hashing pool, as a BCrypt check
+	 * must not block the event loop.
+	 */
+	default Future<Boolean> checkPasswordAsync(String password, String neo4jPassword, String neo4jActivationCode)
+	{
+		return PasswordHasher.getInstance().execute(() -> checkPassword(password, neo4jPassword, neo4jActivationCode));
+	}
+
 	default void webhook(HttpServerRequest request)
 	{
 		request.response().setStatusCode(501).setStatusMessage("Not Implemented").end();
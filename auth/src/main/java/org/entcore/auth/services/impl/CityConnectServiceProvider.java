@@ -36,8 +36,6 @@ import io.vertx.core.buffer.Buffer;
 import io.vertx.core.eventbus.EventBus;
 import io.vertx.core.eventbus.Message;
 
-import java.security.NoSuchAlgorithmException;
-
 import static org.entcore.common.neo4j.Neo4jResult.validUniqueResultHandler;
 
 public class CityConnectServiceProvider implements OpenIdConnectServiceProvider {
@@ -122,8 +120,10 @@ public class CityConnectServiceProvider implements OpenIdConnectServiceProvider
 			public void handle(Either<String, JsonObject> event) {
 				if (event.isRight()) {
 					JsonObject res = event.right().getValue();
-					try {
-                        if (checkPassword(password, res.getString("password"), res.getString("activationCode")) == true) {
+					checkPasswordAsync(password, res.getString("password"), res.getString("activationCode")).onComplete(ar -> {
+                        if (ar.failed()) {
+                            handler.handle(new Either.Left<String, Object>(ar.cause().getMessage()));
+                        } else if (ar.result()) {
                             params.put("setFederated", setFederated);
                             neo4j.execute(QUERY_SET_MAPPING_CC, params.put("sub", payload.getString("sub")),
                                     validUniqueResultHandler(new Handler<Either<String, JsonObject>>() {
@@ -141,9 +141,7 @@ public class CityConnectServiceProvider implements OpenIdConnectServiceProvider
                         }
 						else
 							handler.handle(new Either.Left<String, Object>("auth.error.authenticationFailed"));
-					} catch (NoSuchAlgorithmException e) {
-						handler.handle(new Either.Left<String, Object>(e.getMessage()));
-					}
+					});
 				} else {
 					handler.handle(new Either.Left<String, Object>(event.left().getValue()));
 				}
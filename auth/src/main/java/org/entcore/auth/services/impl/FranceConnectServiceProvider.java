@@ -28,8 +28,6 @@ import org.entcore.common.neo4j.Neo4j;
 import io.vertx.core.Handler;
 import io.vertx.core.json.JsonObject;
 
-import java.security.NoSuchAlgorithmException;
-
 import static fr.wseduc.webutils.Utils.isNotEmpty;
 import static org.entcore.common.neo4j.Neo4jResult.validUniqueResultHandler;
 
@@ -105,8 +103,10 @@ public class FranceConnectServiceProvider implements OpenIdConnectServiceProvide
 			public void handle(Either<String, JsonObject> event) {
 				if (event.isRight()) {
 					JsonObject res = event.right().getValue();
-					try {
-                        if (checkPassword(password, res.getString("password"), res.getString("activationCode")) == true) {
+					checkPasswordAsync(password, res.getString("password"), res.getString("activationCode")).onComplete(ar -> {
+                        if (ar.failed()) {
+                            handler.handle(new Either.Left<String, Object>(ar.cause().getMessage()));
+                        } else if (ar.result()) {
                             params.put("setFederated", setFederated);
                             neo4j.execute(QUERY_SET_MAPPING_FC, params.put("sub", payload.getString("sub")),
                                     validUniqueResultHandler(new Handler<Either<String, JsonObject>>() {
@@ -124,9 +124,7 @@ public class FranceConnectServiceProvider implements OpenIdConnectServiceProvide
                         }
 						else
 							handler.handle(new Either.Left<String, Object>("auth.error.authenticationFailed"));
-					} catch (NoSuchAlgorithmException e) {
-						handler.handle(new Either.Left<String, Object>(e.getMessage()));
-					}
+					});
 				} else {
 					handler.handle(new Either.Left<String, Object>(event.left().getValue()));
 				}
@@ -41,6 +41,7 @@ import io.vertx.core.logging.LoggerFactory;
 import io.vertx.core.shareddata.LocalMap;
 import org.apache.commons.collections4.CollectionUtils;
 import org.entcore.auth.pojo.SendPasswordDestination;
+import org.entcore.auth.security.PasswordHasher;
 import org.entcore.common.email.EmailFactory;
 import org.entcore.common.events.EventStore;
 import org.entcore.common.http.renders.TemplatedEmailRenders;
@@ -159,80 +160,91 @@ public class DefaultUserAuthAccount extends TemplatedEmailRenders implements Use
 				"SET n.password = {password}, n.oldPasswords = {oldPasswords}, n.activationCode = null, n.email = {email}, n.emailSearchField=LOWER({email}), n.mobile = {phone}, n.needRevalidateTerms = {needRevalidateTerms})  " +
 				"RETURN n.password as password, n.id as id, HEAD(n.profiles) as profile, duplicates > 0 as hasDuplicate, " +
 				"n.login as login, n.loginAlias as loginAlias ";
-		final String encryptedPassword = BCrypt.hashpw(password, BCrypt.gensalt());
-		Map<String, Object> params = new HashMap<>();
-		params.put("login", login);
-		params.put("activationCode", activationCode);
-		params.put("password", encryptedPassword);
-		params.put("oldPasswords", new JsonArray().add(encryptedPassword));
-		params.put("email", email);
-		params.put("phone", phone);
-		params.put("allowActivateDuplicate", allowActivateDuplicateProfiles);
-		params.put("needRevalidateTerms", needRevalidateTerms);
-		neo.send(query, params, new Handler<Message<JsonObject>>(){
+		PasswordHasher.getInstance().hashpw(password).onComplete(hashed -> {
+			if (hashed.failed()) {
+				log.error("Error hashing password of user " + login, hashed.cause());
+				handler.handle(new Either.Left<String, String>("activation.error"));
+				return;
+			}
+			final String encryptedPassword = hashed.result();
+			Map<String, Object> params = new HashMap<>();
+			params.put("login", login);
+			params.put("activationCode", activationCode);
+			params.put("password", encryptedPassword);
+			params.put("oldPasswords", new JsonArray().add(encryptedPassword));
+			params.put("email", email);
+			params.put("phone", phone);
+			params.put("allowActivateDuplicate", allowActivateDuplicateProfiles);
+			params.put("needRevalidateTerms", needRevalidateTerms);
+			neo.send(query, params, new Handler<Message<JsonObject>>(){
 
-			@Override
-			public void handle(Message<JsonObject> res) {
-				if ("ok".equals(res.body().getString("status"))
-						&& res.body().getJsonObject("result").getJsonObject("0") != null) {
-					if(res.body().getJsonObject("result").getJsonObject("0").getBoolean("hasDuplicate")){
-						handler.handle(new Either.Left<String, String>("activation.error.duplicated"));
-						return;
-					}
-					JsonObject jo = new JsonObject()
-							.put("userId", res.body().getJsonObject("result").getJsonObject("0").getString("id"))
-							.put("profile", res.body().getJsonObject("result").getJsonObject("0").getString("profile"))
-							.put("request", new JsonObject()
-									.put("headers", new JsonObject()
-											.put("Accept-Language", I18n.acceptLanguage(request))
-											.put("Host", Renders.getHost(request))
-									)
-							);
-					if (isNotEmpty(theme)) {
-						jo.put("theme", theme);
-					}
-					Server.getEventBus(vertx).publish("activation.ack", jo);
-					vertx.eventBus().request("entcore.feeder", jo.put("action", "check-duplicates"), handlerToAsyncHandler(new Handler<Message<JsonObject>>()
-					{
-						@Override
-						public void handle(Message<JsonObject> message)
-						{
-							if("ok".equals(message.body().getString("status")) == false)
-								log.error("Failed to check duplicates for activated user " + jo.getString("userId"));
+				@Override
+				public void handle(Message<JsonObject> res) {
+					if ("ok".equals(res.body().getString("status"))
+							&& res.body().getJsonObject("result").getJsonObject("0") != null) {
+						if(res.body().getJsonObject("result").getJsonObject("0").getBoolean("hasDuplicate")){
+							handler.handle(new Either.Left<String, String>("activation.error.duplicated"));
+							return;
 						}
-					}));
-
-					storePasswordEvent(res.body().getJsonObject("result").getJsonObject("0").getString("login"),
-							res.body().getJsonObject("result").getJsonObject("0").getString("loginAlias"),
-							password,
-							res.body().getJsonObject("result").getJsonObject("0").getString("id"),
-							res.body().getJsonObject("result").getJsonObject("0").getString("profile"));
-					handler.handle(new Either.Right<String, String>(
-							res.body().getJsonObject("result").getJsonObject("0").getString("id")));
-				} else {
-					String q =
-							"MATCH (n:User) " +
-							"WHERE n." + loginFieldName + "={login} AND n.activationCode IS NULL " +
-							"AND NOT(n.password IS NULL) " +
-							"RETURN n.password as password, n.id as id";
-					Map<String, Object> p = new HashMap<>();
-					p.put("login", login);
-					neo.send(q, p, new Handler<Message<JsonObject>>() {
-						@Override
-						public void handle(Message<JsonObject> event) {
-							if ("ok".equals(event.body().getString("status")) &&
-									event.body().getJsonObject("result").getJsonObject("0") != null &&
-									BCrypt.checkpw(password, event.body().getJsonObject("result").getJsonObject("0")
-											.getString("password", ""))) {
-								handler.handle(new Either.Right<String, String>(
-										event.body().getJsonObject("result").getJsonObject("0").getString("id")));
-							} else {
-								handler.handle(new Either.Left<String, String>("activation.error"));
-							}
+						JsonObject jo = new JsonObject()
+								.put("userId", res.body().getJsonObject("result").getJsonObject("0").getString("id"))
+								.put("profile", res.body().getJsonObject("result").getJsonObject("0").getString("profile"))
+								.put("request", new JsonObject()
+										.put("headers", new JsonObject()
+												.put("Accept-Language", I18n.acceptLanguage(request))
+												.put("Host", Renders.getHost(request))
+										)
+								);
+						if (isNotEmpty(theme)) {
+							jo.put("theme", theme);
 						}
-					});
+						Server.getEventBus(vertx).publish("activation.ack", jo);
+						vertx.eventBus().request("entcore.feeder", jo.put("action", "check-duplicates"), handlerToAsyncHandler(new Handler<Message<JsonObject>>()
+						{
+							@Override
+							public void handle(Message<JsonObject> message)
+							{
+								if("ok".equals(message.body().getString("status")) == false)
+									log.error("Failed to check duplicates for activated user " + jo.getString("userId"));
+							}
+						}));
+
+						storePasswordEvent(res.body().getJsonObject("result").getJsonObject("0").getString("login"),
+								res.body().getJsonObject("result").getJsonObject("0").getString("loginAlias"),
+								password,
+								res.body().getJsonObject("result").getJsonObject("0").getString("id"),
+								res.body().getJsonObject("result").getJsonObject("0").getString("profile"));
+						handler.handle(new Either.Right<String, String>(
+								res.body().getJsonObject("result").getJsonObject("0").getString("id")));
+					} else {
+						String q =
+								"MATCH (n:User) " +
+								"WHERE n." + loginFieldName + "={login} AND n.activationCode IS NULL " +
+								"AND NOT(n.password IS NULL) " +
+								"RETURN n.password as password, n.id as id";
+						Map<String, Object> p = new HashMap<>();
+						p.put("login", login);
+						neo.send(q, p, new Handler<Message<JsonObject>>() {
+							@Override
+							public void handle(Message<JsonObject> event) {
+								if ("ok".equals(event.body().getString("status")) &&
+										event.body().getJsonObject("result").getJsonObject("0") != null) {
+									final JsonObject user = event.body().getJsonObject("result").getJsonObject("0");
+									PasswordHasher.getInstance().checkpw(password, user.getString("password", "")).onComplete(ar -> {
+										if (ar.succeeded() && Boolean.TRUE.equals(ar.result())) {
+											handler.handle(new Either.Right<String, String>(user.getString("id")));
+										} else {
+											handler.handle(new Either.Left<String, String>("activation.error"));
+										}
+									});
+								} else {
+									handler.handle(new Either.Left<String, String>("activation.error"));
+								}
+							}
+						});
+					}
 				}
-			}
+			});
 		});
 	}
 
@@ -994,29 +1006,41 @@ public class DefaultUserAuthAccount extends TemplatedEmailRenders implements Use
 				"SET u.otp = {otp}, u.otpiat = {otpiat} ";
 		final String otp = StringValidation.generateRandomCode(8);
 		final long now = System.currentTimeMillis();
-		final JsonObject params = new JsonObject()
-				.put("id", id)
-				.put("otp", BCrypt.hashpw(otp, BCrypt.gensalt()))
-				.put("otpiat", now);
-		Neo4j.getInstance().execute(query, params, res -> {
-			if ("ok".equals(res.body().getString("status"))) {
-				handler.handle(new Either.Right<>(new JsonObject().put("otp", otp).put("otpiat", now)));
-			} else {
-				handler.handle(new Either.Left<>(res.body().getString("message")));
+		PasswordHasher.getInstance().hashpw(otp).onComplete(hashed -> {
+			if (hashed.failed()) {
+				handler.handle(new Either.Left<>(hashed.cause().getMessage()));
+				return;
 			}
+			final JsonObject params = new JsonObject()
+					.put("id", id)
+					.put("otp", hashed.result())
+					.put("otpiat", now);
+			Neo4j.getInstance().execute(query, params, res -> {
+				if ("ok".equals(res.body().getString("status"))) {
+					handler.handle(new Either.Right<>(new JsonObject().put("otp", otp).put("otpiat", now)));
+				} else {
+					handler.handle(new Either.Left<>(res.body().getString("message")));
+				}
+			});
 		});
 	}
 
 	private void updatePassword(final Handler<JsonObject> handler, String query, String password, String login, Map<String, Object> params) {
 		getOldPasswords(login, "login")
 			.onFailure(th -> handler.handle(null))
-			.onSuccess(oldPasswords -> {
+			.onSuccess(oldPasswords -> PasswordHasher.getInstance().execute(() -> {
+				// the history check and the hash of the new password run in the same task of the hashing pool
 				final boolean newPasswordNeverUsed = CollectionUtils.isEmpty(oldPasswords) ||
 					oldPasswords.stream()
 						.limit(passwordHistoryLength)
 						.noneMatch(oldPdw -> BCrypt.checkpw(password, oldPdw));
-				if(newPasswordNeverUsed) {
-					final String pw = BCrypt.hashpw(password, BCrypt.gensalt());
+				return newPasswordNeverUsed ? BCrypt.hashpw(password, BCrypt.gensalt()) : null;
+			}).onComplete(hashed -> {
+				if (hashed.failed()) {
+					log.error("Error hashing password of user " + login, hashed.cause());
+					handler.handle(null);
+				} else if (hashed.result() != null) {
+					final String pw = hashed.result();
 					params.put("password", pw);
 					params.put("oldPasswords", getUpdatedListOfPasswords(pw, oldPasswords));
 					neo.send(query, params, res -> {
@@ -1049,7 +1073,7 @@ public class DefaultUserAuthAccount extends TemplatedEmailRenders implements Use
 					log.warn("User " + login + " tried to reset their password by using an old password");
 					handler.handle(null);
 				}
-			});
+			}));
 	}
 
 	/**
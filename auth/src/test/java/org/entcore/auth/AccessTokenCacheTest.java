@@ -0,0 +1,82 @@
+package org.entcore.auth;
+
+import fr.wseduc.mongodb.MongoDb;
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import io.vertx.ext.unit.TestContext;
+import io.vertx.ext.unit.junit.VertxUnitRunner;
+import org.entcore.auth.oauth.AccessTokenCache;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+@RunWith(VertxUnitRunner.class)
+public class AccessTokenCacheTest {
+
+    private Vertx vertx;
+    private AccessTokenCache cache;
+
+    @Before
+    public void setUp(TestContext context) {
+        vertx = Vertx.vertx();
+        cache = AccessTokenCache.create(vertx, new JsonObject().put("enabled", true).put("ttl", 60000L));
+    }
+
+    @After
+    public void tearDown(TestContext context) {
+        vertx.close(context.asyncAssertSuccess());
+    }
+
+    private JsonObject token(String token, String authId, int expiresIn) {
+        return new JsonObject().put("token", token).put("authId", authId)
+                .put("createdOn", MongoDb.now()).put("expiresIn", expiresIn);
+    }
+
+    @Test
+    public void testDisabled(TestContext context) {
+        final AccessTokenCache disabled = AccessTokenCache.create(vertx, null);
+        disabled.putToken("t1", token("t1", "a1", 3600), disabled.generation());
+        context.assertFalse(disabled.isEnabled());
+        context.assertNull(disabled.getToken("t1"));
+    }
+
+    @Test
+    public void testExpiredTokenIsNotServed(TestContext context) {
+        cache.putToken("t1", token("t1", "a1", 3600), cache.generation());
+        cache.putToken("t2", token("t2", "a1", -1), cache.generation());
+        context.assertEquals("a1", cache.getToken("t1").getString("authId"));
+        context.assertNull(cache.getToken("t2"));
+    }
+
+    @Test
+    public void testInvalidateAuthorizations(TestContext context) {
+        final long generation = cache.generation();
+        cache.putToken("t1", token("t1", "a1", 3600), generation);
+        cache.putToken("t2", token("t2", "a2", 3600), generation);
+        cache.putAuthorization("a1", new JsonObject().put("userId", "u1").put("clientId", "c1"), generation);
+        cache.invalidate(AccessTokenCache.invalidateAuthorizations(new JsonArray().add("a1")));
+        context.assertNull(cache.getToken("t1"));
+        context.assertNull(cache.getAuthorization("a1"));
+        context.assertNotNull(cache.getToken("t2"));
+        // a document read before the invalidation must not be cached after it
+        cache.putToken("t1", token("t1", "a1", 3600), generation);
+        context.assertNull(cache.getToken("t1"));
+    }
+
+    @Test
+    public void testInvalidateUser(TestContext context) {
+        final long generation = cache.generation();
+        cache.putToken("t1", token("t1", "a1", 3600), generation);
+        cache.putToken("t2", token("t2", "a2", 3600), generation);
+        cache.putAuthorization("a1", new JsonObject().put("userId", "u1").put("clientId", "c1"), generation);
+        cache.putAuthorization("a2", new JsonObject().put("userId", "u1").put("clientId", "c2"), generation);
+        cache.invalidate(AccessTokenCache.invalidateUser("u1", "c1"));
+        context.assertNull(cache.getToken("t1"));
+        context.assertNull(cache.getAuthorization("a1"));
+        context.assertNotNull(cache.getToken("t2"));
+        context.assertNotNull(cache.getAuthorization("a2"));
+    }
+
+}
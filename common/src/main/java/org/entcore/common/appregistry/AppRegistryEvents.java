@@ -30,6 +30,10 @@ public final class AppRegistryEvents {
 
 	public static final String IMPORT_SUCCEEDED = "IMPORT_SUCCEEDED";
 
+	public static final String STRUCTURE_CREATED = "STRUCTURE_CREATED";
+
+	public static final String APPLICATION_UPDATED = "APPLICATION_UPDATED";
+
 	private AppRegistryEvents() {}
 
 }
@@ -28,6 +28,7 @@ import io.vertx.core.json.JsonObject;
 
 import static org.entcore.common.appregistry.AppRegistryEvents.APP_REGISTRY_PUBLISH_ADDRESS;
 import static org.entcore.common.appregistry.AppRegistryEvents.IMPORT_SUCCEEDED;
+import static org.entcore.common.appregistry.AppRegistryEvents.STRUCTURE_CREATED;
 import static org.entcore.common.appregistry.AppRegistryEvents.USER_GROUP_UPDATED;
 
 public final class ApplicationUtils {
@@ -103,4 +104,12 @@ public final class ApplicationUtils {
 		);
 	}
 
+	public static void structureCreated(EventBus eb, String structureId, String externalId) {
+		eb.publish(APP_REGISTRY_PUBLISH_ADDRESS,
+				new JsonObject().put("type", STRUCTURE_CREATED)
+						.put("id", structureId)
+						.put("externalId", externalId)
+		);
+	}
+
 }
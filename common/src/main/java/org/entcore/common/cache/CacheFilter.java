@@ -15,6 +15,7 @@ import io.vertx.core.json.DecodeException;
 import io.vertx.core.json.JsonObject;
 import io.vertx.core.logging.Logger;
 import io.vertx.core.logging.LoggerFactory;
+import org.entcore.common.http.filter.BindingTable;
 import org.entcore.common.user.UserUtils;
 import org.entcore.common.utils.StringUtils;
 
@@ -23,7 +24,6 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.util.*;
-import java.util.regex.Matcher;
 
 public class CacheFilter implements Filter {
 
@@ -33,11 +33,17 @@ public class CacheFilter implements Filter {
     private final EventBus eb;
     private Map<String,JsonObject> cacheConfig;
     private final Set<Binding> cachedBindings=new HashSet<>();
+    private final BindingTable bindingTable;
 
     public CacheFilter(EventBus eb, Set<Binding> bindings, CacheService cacheService) {
+        this(eb, bindings, cacheService, new BindingTable(bindings));
+    }
+
+    public CacheFilter(EventBus eb, Set<Binding> bindings, CacheService cacheService, BindingTable bindingTable) {
         this.eb = eb;
         this.bindings = bindings;
         this.cacheService = cacheService;
+        this.bindingTable = bindingTable;
     }
 
     private void loadCacheConfig() {
@@ -76,16 +82,11 @@ public class CacheFilter implements Filter {
     }
 
     private Binding requestBinding(HttpServerRequest request) {
-        for (Binding binding: cachedBindings) {
-            if (!request.method().name().equals(binding.getMethod().name())) {
-                continue;
-            }
-            Matcher m = binding.getUriPattern().matcher(request.path());
-            if (m.matches()) {
-                return binding;
-            }
+        if (cachedBindings.isEmpty()) {
+            return null;
         }
-        return null;
+        final Binding binding = bindingTable.resolve(request);
+        return cachedBindings.contains(binding) ? binding : null;
     }
 
     private void saveToCache(String key, String value, CacheScope cacheScope, Integer ttl, HttpServerRequest request){
@@ -60,4 +60,14 @@ public interface CacheService {
     void prependToList(String key, String value, Handler<AsyncResult<Long>> handler);
 
     void removeLastFromList(String key, Handler<AsyncResult<String>> handler);
+
+    /**
+     * Prepend the same value to several lists and trim each of them to a maximum length.
+     * The lists are updated in batches instead of issuing one round trip per list.
+     * @param keys Keys of the lists
+     * @param value Value to prepend
+     * @param maxLength Maximum number of elements kept in each list
+     * @param handler Called once every list has been updated
+     */
+    void prependToListsAndTrim(List<String> keys, String value, int maxLength, Handler<AsyncResult<Void>> handler);
 }
@@ -0,0 +1,180 @@
+package org.entcore.common.cache;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.vertx.core.json.JsonObject;
+import io.vertx.micrometer.backends.BackendRegistries;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiPredicate;
+
+/**
+ * Bounded in-process cache with a time to live on each entry.
+ * <p>
+ * Entries are evicted in least recently used order when {@code maxSize} is reached and are considered absent once
+ * their ttl has elapsed. The cache is meant to hold small hot data close to the code using it (sessions, tokens,
+ * registries...) and must always be backed by an invalidation mechanism since it is never shared between nodes.
+ * </p>
+ * <p>
+ * All operations are synchronized, the cache can be shared between the instances of a verticle.
+ * </p>
+ * @param <K> Type of the keys
+ * @param <V> Type of the values
+ */
+public class LocalCache<K, V> {
+
+	private final int maxSize;
+	private final long ttl;
+	private final LinkedHashMap<K, Entry<V>> entries;
+	private final AtomicLong hits = new AtomicLong();
+	private final AtomicLong misses = new AtomicLong();
+	private final AtomicLong evictions = new AtomicLong();
+	private final AtomicLong invalidations = new AtomicLong();
+
+	/**
+	 * @param maxSize Maximum number of entries kept in the cache
+	 * @param ttl Time to live of an entry in milliseconds
+	 */
+	public LocalCache(final int maxSize, final long ttl) {
+		if (maxSize <= 0 || ttl <= 0) {
+			throw new IllegalArgumentException("local.cache.invalid.size.or.ttl");
+		}
+		this.maxSize = maxSize;
+		this.ttl = ttl;
+		this.entries = new LinkedHashMap<K, Entry<V>>(16, 0.75f, true) {
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<K, Entry<V>> eldest) {
+				final boolean evict = size() > LocalCache.this.maxSize;
+				if (evict) {
+					evictions.incrementAndGet();
+				}
+				return evict;
+			}
+		};
+	}
+
+	/**
+	 * Create a cache from a json configuration.
+	 * @param config Configuration containing {@code max-size} and {@code ttl} (in milliseconds)
+	 * @param defaultMaxSize Size used when the configuration does not specify it
+	 * @param defaultTtl Ttl used when the configuration does not specify it
+	 * @return The new cache
+	 */
+	public static <K, V> LocalCache<K, V> fromConfig(final JsonObject config, final int defaultMaxSize, final long defaultTtl) {
+		return new LocalCache<>(config.getInteger("max-size", defaultMaxSize), config.getLong("ttl", defaultTtl));
+	}
+
+	public synchronized V get(final K key) {
+		final Entry<V> entry = entries.get(key);
+		if (entry == null) {
+			misses.incrementAndGet();
+			return null;
+		}
+		if (entry.expiresAt < System.currentTimeMillis()) {
+			entries.remove(key);
+			misses.incrementAndGet();
+			return null;
+		}
+		hits.incrementAndGet();
+		return entry.value;
+	}
+
+	public synchronized void put(final K key, final V value) {
+		if (key == null || value == null) {
+			return;
+		}
+		entries.put(key, new Entry<>(value, System.currentTimeMillis() + ttl));
+	}
+
+	public synchronized void invalidate(final K key) {
+		if (key != null && entries.remove(key) != null) {
+			invalidations.incrementAndGet();
+		}
+	}
+
+	/**
+	 * Remove every entry matching the predicate. This operation is linear in the size of the cache.
+	 * @param predicate Test applied on each key and value
+	 */
+	public synchronized void invalidateIf(final BiPredicate<K, V> predicate) {
+		final Iterator<Map.Entry<K, Entry<V>>> it = entries.entrySet().iterator();
+		while (it.hasNext()) {
+			final Map.Entry<K, Entry<V>> e = it.next();
+			if (predicate.test(e.getKey(), e.getValue().value)) {
+				it.remove();
+				invalidations.incrementAndGet();
+			}
+		}
+	}
+
+	public synchronized void invalidateAll() {
+		invalidations.addAndGet(entries.size());
+		entries.clear();
+	}
+
+	public synchronized int size() {
+		return entries.size();
+	}
+
+	public long getHits() {
+		return hits.get();
+	}
+
+	public long getMisses() {
+		return misses.get();
+	}
+
+	public long getEvictions() {
+		return evictions.get();
+	}
+
+	public long getInvalidations() {
+		return invalidations.get();
+	}
+
+	public JsonObject stats() {
+		return new JsonObject()
+				.put("size", size())
+				.put("hits", getHits())
+				.put("misses", getMisses())
+				.put("evictions", getEvictions())
+				.put("invalidations", getInvalidations());
+	}
+
+	/**
+	 * Publish the statistics of the cache through micrometer when metrics are enabled.
+	 * @param name Name of the cache, used as the {@code cache} tag of the meters
+	 * @return this cache for fluency
+	 */
+	public LocalCache<K, V> registerMetrics(final String name) {
+		final MeterRegistry registry = BackendRegistries.getDefaultNow();
+		if (registry != null) {
+			Gauge.builder("local.cache.size", this, LocalCache::size)
+					.description("Number of entries in the local cache").tag("cache", name).register(registry);
+			FunctionCounter.builder("local.cache.hits", hits, AtomicLong::get)
+					.description("Number of local cache hits").tag("cache", name).register(registry);
+			FunctionCounter.builder("local.cache.misses", misses, AtomicLong::get)
+					.description("Number of local cache misses").tag("cache", name).register(registry);
+			FunctionCounter.builder("local.cache.evictions", evictions, AtomicLong::get)
+					.description("Number of entries evicted because the cache was full").tag("cache", name).register(registry);
+			FunctionCounter.builder("local.cache.invalidations", invalidations, AtomicLong::get)
+					.description("Number of entries explicitly invalidated").tag("cache", name).register(registry);
+		}
+		return this;
+	}
+
+	private static class Entry<V> {
+		private final V value;
+		private final long expiresAt;
+
+		private Entry(V value, long expiresAt) {
+			this.value = value;
+			this.expiresAt = expiresAt;
+		}
+	}
+
+}
@@ -3,6 +3,7 @@ package org.entcore.common.cache;
 import com.google.common.collect.Lists;
 import fr.wseduc.webutils.DefaultAsyncResult;
 import io.vertx.core.AsyncResult;
+import io.vertx.core.Future;
 import io.vertx.core.Handler;
 import io.vertx.core.Vertx;
 import io.vertx.core.json.JsonObject;
@@ -11,6 +12,7 @@ import org.entcore.common.redis.Redis;
 import org.entcore.common.user.UserInfos;
 
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 import java.util.Optional;
@@ -23,6 +25,15 @@ public class RedisCacheService implements CacheService {
     final String USER_KEY = "user:";
     final String LANG_KEY = "global:";
     final RedisAPI redis;
+    /** Number of lists updated by one script call. */
+    static final int PREPEND_BATCH_SIZE = 500;
+    /** LPUSH ARGV[1] then LTRIM to ARGV[2] elements on each key, in a single round trip. */
+    static final String PREPEND_AND_TRIM_SCRIPT =
+            "for i = 1, #KEYS do " +
+            "redis.call('LPUSH', KEYS[i], ARGV[1]) " +
+            "redis.call('LTRIM', KEYS[i], 0, tonumber(ARGV[2]) - 1) " +
+            "end " +
+            "return #KEYS";
 
     public RedisCacheService(final RedisAPI redis) {
         this.redis = redis;
@@ -146,6 +157,26 @@ public class RedisCacheService implements CacheService {
         });
     }
 
+    public void prependToListsAndTrim(List<String> keys, String value, int maxLength, Handler<AsyncResult<Void>> handler) {
+        if (keys == null || keys.isEmpty()) {
+            handler.handle(new DefaultAsyncResult<>(null));
+            return;
+        }
+        final List<Future<?>> futures = new ArrayList<>();
+        for (List<String> batch : Lists.partition(keys, PREPEND_BATCH_SIZE)) {
+            final List<String> args = new ArrayList<>(batch.size() + 4);
+            args.add(PREPEND_AND_TRIM_SCRIPT);
+            args.add(String.valueOf(batch.size()));
+            args.addAll(batch);
+            args.add(value);
+            args.add(String.valueOf(maxLength));
+            futures.add(redis.eval(args));
+        }
+        Future.all(futures).onComplete(res -> {
+            handler.handle(res.succeeded() ? new DefaultAsyncResult<>(null) : new DefaultAsyncResult<>(res.cause()));
+        });
+    }
+
     public void removeFromList(String key, String value, Handler<AsyncResult<Long>> handler){
         redis.lrem(key, "0", value).onComplete(res -> {
             handler.handle(new DefaultAsyncResult(res.succeeded() ? res.result() : res.cause()));
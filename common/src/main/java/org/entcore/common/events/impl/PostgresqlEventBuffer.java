@@ -0,0 +1,245 @@
+/*
+ * Copyright © "Open Digital Education", 2020
+ *
+ * This program is published by "Open Digital Education".
+ * You must indicate the name of the software and the company in any production /contribution
+ * using the software and indicate on the home page of the software industry in question,
+ * "powered by Open Digital Education" with a reference to the website: https://opendigitaleducation.com/.
+ *
+ * This program is free software, licensed under the terms of the GNU Affero General Public License
+ * as published by the Free Software Foundation, version 3 of the License.
+ *
+ * You can redistribute this application and/or modify it since you respect the terms of the GNU Affero General Public License.
+ * If you modify the source code and then use this modified source code in your creation, you must make available the source code of your modifications.
+ *
+ * You should have received a copy of the GNU Affero General Public License along with the software.
+ * If not, please see : <http://www.gnu.org/licenses/>. Full compliance requires reading the terms of this license and following its directives.
+
+ */
+
+package org.entcore.common.events.impl;
+
+import fr.wseduc.webutils.Either;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import io.vertx.core.Promise;
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import io.vertx.core.logging.Logger;
+import io.vertx.core.logging.LoggerFactory;
+import io.vertx.micrometer.backends.BackendRegistries;
+import io.vertx.pgclient.PgPool;
+import io.vertx.sqlclient.Tuple;
+import org.entcore.common.sql.Sql;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Write-behind buffer of the events persisted by {@link PostgresqlEventStore}.
+ * <p>
+ * Events are grouped by table and by set of columns, and each group is written with a single prepared multi-row
+ * insert when it reaches {@code batch-size} events or every {@code flush-interval} milliseconds. The rows are sent as
+ * one json array expanded by {@code json_populate_recordset}, so that the values are converted to the types of the
+ * columns exactly like the literals of the unbuffered insert.
+ * </p>
+ * <p>
+ * The number of events waiting or being written is bounded by {@code max-pending}. Once it is reached, new events are
+ * dropped and counted by the {@code event.store.buffer.dropped} meter until the database catches up : the producers
+ * are request handlers which must not wait for the event store, and writing the events one by one would only add load
+ * to a database which is already too slow. When a batch fails, its events are written one by one so that a single
+ * invalid event does not discard the others.
+ * </p>
+ */
+public class PostgresqlEventBuffer {
+
+	private static final Logger log = LoggerFactory.getLogger(PostgresqlEventBuffer.class);
+	private static final int DEFAULT_BATCH_SIZE = 500;
+	private static final long DEFAULT_FLUSH_INTERVAL = 1000L;
+	private static final int DEFAULT_MAX_PENDING = 10000;
+
+	private final Supplier<PgPool> pgClient;
+	private final int batchSize;
+	private final int maxPending;
+	private final long timerId;
+	private final Vertx vertx;
+	private final Map<String, Batch> batches = new HashMap<>();
+	private final AtomicInteger pending = new AtomicInteger();
+	private final AtomicLong dropped = new AtomicLong();
+	private final Timer flushTimer;
+
+	/**
+	 * @param vertx Vertx instance used for the flush timer
+	 * @param config The {@code write-behind} configuration : {@code batch-size}, {@code flush-interval} (in
+	 *               milliseconds) and {@code max-pending}
+	 * @param pgClient Supplier of the current pool of the store, which can be recreated
+	 * @param module Name of the module of the store, used as the {@code module} tag of the meters
+	 */
+	public PostgresqlEventBuffer(Vertx vertx, JsonObject config, Supplier<PgPool> pgClient, String module) {
+		this.vertx = vertx;
+		this.pgClient = pgClient;
+		this.batchSize = config.getInteger("batch-size", DEFAULT_BATCH_SIZE);
+		this.maxPending = config.getInteger("max-pending", DEFAULT_MAX_PENDING);
+		this.timerId = vertx.setPeriodic(config.getLong("flush-interval", DEFAULT_FLUSH_INTERVAL), t -> flush(null));
+		final MeterRegistry registry = BackendRegistries.getDefaultNow();
+		final String tag = (module != null) ? module : "";
+		if (registry != null) {
+			Gauge.builder("event.store.buffer.pending", pending, AtomicInteger::get)
+					.description("Number of events waiting to be written or being written").tag("module", tag)
+					.register(registry);
+			FunctionCounter.builder("event.store.buffer.dropped", dropped, AtomicLong::get)
+					.description("Number of events dropped because the buffer was full").tag("module", tag)
+					.register(registry);
+			flushTimer = Timer.builder("event.store.buffer.flush")
+					.description("Time to write a batch of events").tag("module", tag)
+					.register(registry);
+		} else {
+			flushTimer = null;
+		}
+	}
+
+	/**
+	 * Add an event to the buffer, or drop it if the buffer is full.
+	 * @param tableName Table of the event
+	 * @param event Columns of the event
+	 * @param handler Called once the batch of the event is written, or with an error if the event is dropped
+	 */
+	public void offer(String tableName, JsonObject event, Handler<Either<String, Void>> handler) {
+		if (pending.get() >= maxPending) {
+			if (dropped.getAndIncrement() % 1000 == 0) {
+				log.warn("Event store buffer full (" + maxPending + " pending events) : " + dropped.get() +
+						" events dropped since startup");
+			}
+			handler.handle(new Either.Left<>("event.store.buffer.full"));
+			return;
+		}
+		pending.incrementAndGet();
+		final Set<String> columns = new TreeSet<>(event.fieldNames());
+		final String key = tableName + columns;
+		final Batch full;
+		synchronized (batches) {
+			final Batch batch = batches.computeIfAbsent(key, k -> new Batch(tableName, columns));
+			batch.add(event, handler);
+			full = (batch.size() >= batchSize) ? batches.remove(key) : null;
+		}
+		if (full != null) {
+			write(full, null);
+		}
+	}
+
+	/**
+	 * Write every buffered event.
+	 * @param handler Called once all the batches are written, can be null
+	 */
+	public void flush(Handler<AsyncResult<Void>> handler) {
+		final List<Batch> toWrite;
+		synchronized (batches) {
+			toWrite = new ArrayList<>(batches.values());
+			batches.clear();
+		}
+		final List<Future<Void>> futures = new ArrayList<>();
+		for (Batch batch : toWrite) {
+			final Promise<Void> promise = Promise.promise();
+			write(batch, promise);
+			futures.add(promise.future());
+		}
+		if (handler != null) {
+			Future.join(futures).<Void>mapEmpty().onComplete(handler);
+		}
+	}
+
+	/**
+	 * Stop the flush timer and write the buffered events. Called when the verticle of the store is undeployed.
+	 */
+	public void close(Promise<Void> completion) {
+		vertx.cancelTimer(timerId);
+		flush(ar -> completion.complete());
+	}
+
+	private void write(Batch batch, Promise<Void> promise) {
+		final long start = System.nanoTime();
+		pgClient.get().preparedQuery(batch.query()).execute(Tuple.of(batch.rows), ar -> {
+			if (flushTimer != null) {
+				flushTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+			}
+			if (ar.succeeded()) {
+				pending.addAndGet(-batch.size());
+				for (Handler<Either<String, Void>> h : batch.handlers) {
+					h.handle(new Either.Right<>(null));
+				}
+				if (promise != null) {
+					promise.complete();
+				}
+			} else if (batch.size() > 1) {
+				log.warn("Error persisting a batch of " + batch.size() + " events in " + batch.tableName +
+						", retry one by one : " + ar.cause().getMessage());
+				final List<Future<Void>> futures = new ArrayList<>();
+				for (int i = 0; i < batch.size(); i++) {
+					final Batch single = new Batch(batch.tableName, batch.columns);
+					single.add(batch.rows.getJsonObject(i), batch.handlers.get(i));
+					final Promise<Void> p = Promise.promise();
+					write(single, p);
+					futures.add(p.future());
+				}
+				if (promise != null) {
+					Future.join(futures).<Void>mapEmpty().onComplete(promise);
+				}
+			} else {
+				pending.addAndGet(-batch.size());
+				log.error("Error persisting events on postgresql : " + batch.rows.encode(), ar.cause());
+				for (Handler<Either<String, Void>> h : batch.handlers) {
+					h.handle(new Either.Left<>("Error : " + ar.cause().getMessage() + ", Event : " + batch.rows.encode()));
+				}
+				if (promise != null) {
+					promise.complete();
+				}
+			}
+		});
+	}
+
+	private static class Batch {
+		private final String tableName;
+		private final Set<String> columns;
+		private final JsonArray rows = new JsonArray();
+		private final List<Handler<Either<String, Void>>> handlers = new ArrayList<>();
+
+		private Batch(String tableName, Set<String> columns) {
+			this.tableName = tableName;
+			this.columns = columns;
+		}
+
+		private void add(JsonObject row, Handler<Either<String, Void>> handler) {
+			rows.add(row);
+			handlers.add(handler);
+		}
+
+		private int size() {
+			return rows.size();
+		}
+
+		private String query() {
+			final StringBuilder fields = new StringBuilder();
+			for (String column : columns) {
+				fields.append(Sql.escapeField(column)).append(",");
+			}
+			fields.deleteCharAt(fields.length() - 1);
+			return "INSERT INTO " + tableName + " (" + fields + ") SELECT " + fields +
+					" FROM json_populate_recordset(NULL::" + tableName + ", $1::json)";
+		}
+	}
+
+}
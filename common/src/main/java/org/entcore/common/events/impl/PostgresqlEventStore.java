@@ -46,6 +46,7 @@ import io.vertx.pgclient.SslMode;
 import io.vertx.core.AsyncResult;
 import io.vertx.core.Future;
 import io.vertx.core.Handler;
+import io.vertx.core.impl.ContextInternal;
 import io.vertx.core.json.JsonArray;
 import io.vertx.core.json.JsonObject;
 
@@ -63,6 +64,7 @@ public class PostgresqlEventStore extends GenericEventStore {
 	private boolean enablePersistTimer = false;
 	private final AtomicInteger countNoAckReceive = new AtomicInteger(0);
 	private int maxNumberNoAck = 5;
+	private PostgresqlEventBuffer buffer;
 
 	public void init() {
 		init(ar -> {
@@ -126,6 +128,11 @@ public class PostgresqlEventStore extends GenericEventStore {
 					}
 				});
 				enablePersistTimer = eventStorePGConfig.getBoolean("enable-persist-fallback-timer", false);
+				final JsonObject writeBehindConfig = eventStorePGConfig.getJsonObject("write-behind");
+				if (buffer == null && writeBehindConfig != null && writeBehindConfig.getBoolean("enabled", false)) {
+					buffer = new PostgresqlEventBuffer(vertx, writeBehindConfig, () -> pgClient, module);
+					((ContextInternal) vertx.getOrCreateContext()).addCloseHook(buffer::close);
+				}
 			} else {
 				handler.handle(Future.failedFuture(new ValidationException("Missing postgresql config.")));
 			}
@@ -235,6 +242,10 @@ public class PostgresqlEventStore extends GenericEventStore {
 				e.put("ip", ip.substring(0, idxComma));
 			}
 		}
+		if (buffer != null) {
+			buffer.offer(tableName, e, handler);
+			return;
+		}
 		final String query = Sql.insertQuery(tableName, e);
 		pgClient.query(query).execute(ar -> {
 			if (ar.succeeded()) {
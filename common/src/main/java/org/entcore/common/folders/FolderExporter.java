@@ -6,6 +6,7 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
@@ -68,7 +69,7 @@ public class FolderExporter {
 		}
 	}
 
-	private void buildMapping(List<JsonObject> rows, FolderExporterContext context) {
+	protected void buildMapping(List<JsonObject> rows, FolderExporterContext context) {
 		for (JsonObject row : rows) {
 			context.namesByIds.put(row.getString("_id"), cleanName(row));
 		}
@@ -128,6 +129,32 @@ public class FolderExporter {
 		return name.replaceAll("/", "_").replaceAll("\\\\", "_").trim();
 	}
 
+	/**
+	 * Names of the files of a folder, suffixed when several files have the same name.
+	 * @return The names by file id
+	 */
+	protected JsonObject fileNames(FolderExporterContext context, List<JsonObject> docs) {
+		JsonObject nameByFileId = new JsonObject();
+		Map<String, Integer> nameCount = new HashMap<>();
+		for (JsonObject doc : docs) {
+			String fileId = DocumentHelper.getFileId(doc);
+			String name = cleanName(doc);
+			Integer count = nameCount.merge(name, 1, Integer::sum) - 1;
+			// if name already exists ... add suffix
+			if (count > 0) {
+				if (name.contains(".")) {
+					name = name.substring(0, name.indexOf(".")) + "_" + count + name.substring(name.indexOf("."));
+				} else {
+					name = name + "_" + count;
+				}
+			}
+			name = StringUtils.replaceForbiddenCharacters(name);
+			nameByFileId.put(fileId, name);
+			context.namesByIds.put(fileId,name);
+		}
+		return nameByFileId;
+	}
+
 	private CompositeFuture copyFiles(FolderExporterContext context) {
 		@SuppressWarnings("rawtypes")
 		List<Future> futures = new ArrayList<>();
@@ -135,25 +162,7 @@ public class FolderExporter {
 			Promise<JsonObject> future = Promise.promise();
 			futures.add(future.future());
 			List<JsonObject> docs = context.docByFolders.get(folderPath);
-			//
-			JsonObject nameByFileId = new JsonObject();
-			Map<String, Integer> nameCount = new HashMap<>();
-			for (JsonObject doc : docs) {
-				String fileId = DocumentHelper.getFileId(doc);
-				String name = cleanName(doc);
-				Integer count = nameCount.merge(name, 1, Integer::sum) - 1;
-				// if name already exists ... add suffix
-				if (count > 0) {
-					if (name.contains(".")) {
-						name = name.substring(0, name.indexOf(".")) + "_" + count + name.substring(name.indexOf("."));
-					} else {
-						name = name + "_" + count;
-					}
-				}
-				name = StringUtils.replaceForbiddenCharacters(name);
-				nameByFileId.put(fileId, name);
-				context.namesByIds.put(fileId,name);
-			}
+			JsonObject nameByFileId = fileNames(context, docs);
 			//
 			String[] ids = nameByFileId.fieldNames().stream().toArray(String[]::new);
 			storage.writeToFileSystem(ids, folderPath, nameByFileId, res -> {
@@ -179,4 +188,21 @@ public class FolderExporter {
 			return this.copyFiles(context);
 		}).map(context);
 	}
+
+	/**
+	 * Paths the files would be exported to, without copying them.
+	 * @return The documents by path, the paths starting with the base path of the context and separated by slashes
+	 */
+	public Map<String, JsonObject> filePaths(FolderExporterContext context, List<JsonObject> rows) {
+		this.buildMapping(rows, context);
+		final Map<String, JsonObject> paths = new LinkedHashMap<>();
+		for (Map.Entry<String, List<JsonObject>> folder : context.docByFolders.entrySet()) {
+			final String folderPath = folder.getKey().replace('\\', '/');
+			final JsonObject nameByFileId = fileNames(context, folder.getValue());
+			for (JsonObject doc : folder.getValue()) {
+				paths.put(folderPath + "/" + nameByFileId.getString(DocumentHelper.getFileId(doc)), doc);
+			}
+		}
+		return paths;
+	}
 }
@@ -1,15 +1,20 @@
 package org.entcore.common.folders.impl;
 
-import java.nio.file.Paths;
+import java.io.IOException;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
-import java.util.UUID;
-import java.util.zip.Deflater;
 
 import io.vertx.core.Promise;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.file.AsyncFile;
+import io.vertx.core.logging.Logger;
+import io.vertx.core.logging.LoggerFactory;
+import io.vertx.core.streams.ReadStream;
 import org.entcore.common.folders.FolderExporter;
 import org.entcore.common.storage.Storage;
-import org.entcore.common.utils.Zip;
+import org.entcore.common.utils.ZipStreamWriter;
 
 import io.vertx.core.Future;
 import io.vertx.core.file.FileSystem;
@@ -17,33 +22,35 @@ import io.vertx.core.http.HttpServerRequest;
 import io.vertx.core.http.HttpServerResponse;
 import io.vertx.core.json.JsonObject;
 
+/**
+ * Sends folders as a ZIP archive written while the files are read from the storage : the response starts with the
+ * first file and nothing is copied to the file system.
+ */
 class FolderExporterZip extends FolderExporter {
+	private static final Logger log = LoggerFactory.getLogger(FolderExporterZip.class);
+
 	static class ZipContext extends FolderExporterContext {
-		final String zipFullPath;
 		final String zipName;
 		final String baseName;
-		final String rootBase;
 
-		public ZipContext(String rootBase, String basePath, String baseName) {
-			super(basePath);
-			this.rootBase = rootBase;
+		public ZipContext(String baseName) {
+			// entries are relative to the root folder of the archive
+			super(baseName);
 			this.baseName = baseName;
 			this.zipName = this.baseName + ".zip";
-			// basePath is the root folder => so up and set filename
-			this.zipFullPath = Paths.get(this.basePath).resolve("..").resolve(this.zipName).normalize().toString();
 		}
 	}
 
-	private Future<JsonObject> createZip(ZipContext context) {
-		Promise<JsonObject> future = Promise.promise();
-		Zip.getInstance().zipFolder(context.basePath, context.zipFullPath, true, Deflater.NO_COMPRESSION, res -> {
-			if ("ok".equals(res.body().getString("status"))) {
-				future.complete(res.body());
-			} else {
-				future.fail(res.body().getString("message"));
-			}
-		});
-		return future.future();
+	private static class ZipFile {
+		final String fileId;
+		final String path;
+		final boolean compressed;
+
+		ZipFile(String fileId, String path, boolean compressed) {
+			this.fileId = fileId;
+			this.path = path;
+			this.compressed = compressed;
+		}
 	}
 
 	public FolderExporterZip(Storage storage, FileSystem fs) {
@@ -54,58 +61,98 @@ class FolderExporterZip extends FolderExporter {
 		super(storage, fs, throwErrors);
 	}
 
-	public Future<ZipContext> exportToZip(Optional<JsonObject> root, List<JsonObject> rows) {
-		UUID uuid = UUID.randomUUID();
-		String baseName = root.isPresent() ? root.get().getString("name", "archive") : "archive";
-		String rootBase = Paths.get(System.getProperty("java.io.tmpdir"), uuid.toString()).normalize().toString();
-		String basePath = Paths.get(System.getProperty("java.io.tmpdir"), uuid.toString(), baseName).normalize()
-				.toString();
-		ZipContext context = new ZipContext(rootBase, basePath, baseName);
-		return this.export(context, rows).compose(res -> {
-			return this.createZip(context);
-		}).map(res -> context);
+	private List<ZipFile> zipFiles(ZipContext context, List<JsonObject> rows) {
+		this.buildMapping(rows, context);
+		final List<ZipFile> files = new ArrayList<>();
+		for (Map.Entry<String, List<JsonObject>> folder : context.docByFolders.entrySet()) {
+			final String folderPath = folder.getKey().replace('\\', '/');
+			final JsonObject nameByFileId = fileNames(context, folder.getValue());
+			for (JsonObject doc : folder.getValue()) {
+				final String fileId = DocumentHelper.getFileId(doc);
+				final String name = nameByFileId.getString(fileId);
+				final JsonObject metadata = doc.getJsonObject("metadata", new JsonObject());
+				files.add(new ZipFile(fileId, folderPath + "/" + name,
+						ZipStreamWriter.isCompressed(name, metadata.getString("content-type"))));
+			}
+		}
+		return files;
 	}
 
-	public Future<Void> sendZip(HttpServerRequest req, ZipContext context) {
-		Promise<Void> future = Promise.promise();
+	public Future<ZipContext> sendZip(HttpServerRequest req, ZipContext context, List<JsonObject> rows) {
+		final List<ZipFile> files = zipFiles(context, rows);
 		final HttpServerResponse resp = req.response();
 		resp.putHeader("Content-Disposition", "attachment; filename=\"" + context.zipName + "\"");
 		resp.putHeader("Content-Type", "application/octet-stream");
 		resp.putHeader("Content-Description", "File Transfer");
 		resp.putHeader("Content-Transfer-Encoding", "binary");
-		resp.sendFile(context.zipFullPath, future);
-		return future.future();
-	}
-
-	public Future<ZipContext> exportAndSendZip(JsonObject root, List<JsonObject> rows, HttpServerRequest req, boolean clean) {
-		return this.exportToZip(Optional.ofNullable(root), rows).compose(res -> {
-			return this.sendZip(req, res).map((r)->res);
-		}).compose(res->{
-			if(clean){
-				return removeZip(res);
-			}else{
-				return Future.succeededFuture(res);
+		resp.setChunked(true);
+		final ZipStreamWriter zip = new ZipStreamWriter(resp);
+		// an aborted download never drains the response : the entry in progress must fail to release its file
+		resp.closeHandler(v -> zip.fail(new IOException("Connection closed while sending zip " + context.zipName)));
+		resp.exceptionHandler(zip::fail);
+		final long start = System.currentTimeMillis();
+		Future<Void> future = Future.succeededFuture();
+		for (ZipFile file : files) {
+			future = future.compose(v -> addFile(zip, context, file));
+		}
+		return future.compose(v -> zip.end()).map(v -> {
+			if (log.isDebugEnabled()) {
+				log.debug("Zip " + context.zipName + " sent : " + files.size() + " files, " + zip.written() +
+						" bytes in " + (System.currentTimeMillis() - start) + " ms");
+			}
+			return context;
+		}).recover(e -> {
+			log.error("Failed to send zip " + context.zipName, e);
+			if (resp.headWritten() && !resp.closed()) {
+				// the archive is incomplete : the client must not get a truncated but valid response
+				resp.reset();
 			}
+			return Future.failedFuture(e);
 		});
 	}
 
-	public Future<ZipContext> exportAndSendZip(List<JsonObject> rows, HttpServerRequest req, boolean clean) {
-		return this.exportToZip(Optional.empty(), rows).compose(res -> {
-			return this.sendZip(req, res).map((r)->res);
-		}).compose(res->{
-			if(clean){
-				return removeZip(res);
-			}else{
-				return Future.succeededFuture(res);
+	private Future<Void> addFile(ZipStreamWriter zip, ZipContext context, ZipFile file) {
+		return readFile(file.fileId).compose(content -> {
+			if (content == null) {
+				if (throwErrors) {
+					return Future.failedFuture("Could not read file " + file.fileId);
+				}
+				context.errors.add(new JsonObject().put("id", file.fileId).put("message", "file.not.found"));
+				log.error("Failed to export file : " + file.path + " - " + file.fileId);
+				return Future.succeededFuture();
+			}
+			if (content instanceof Buffer) {
+				return zip.addEntry(file.path, (Buffer) content, !file.compressed);
 			}
+			@SuppressWarnings("unchecked")
+			final ReadStream<Buffer> stream = (ReadStream<Buffer>) content;
+			return zip.addEntry(file.path, stream, !file.compressed).onComplete(ar -> {
+				if (stream instanceof AsyncFile) {
+					((AsyncFile) stream).close();
+				}
+			});
 		});
 	}
 
-	public Future<ZipContext> removeZip(ZipContext context){
-		Promise<ZipContext> future = Promise.promise();
-		this.fs.deleteRecursive(context.rootBase,true, resRmDir->{
-			future.complete();
-		});
-		return future.future();
+	/**
+	 * @return A read stream of the file, its content when the storage can not stream it, null if it is missing
+	 */
+	private Future<Object> readFile(String fileId) {
+		final Promise<Object> promise = Promise.promise();
+		try {
+			storage.readStreamFile(fileId, promise::complete);
+		} catch (RuntimeException e) {
+			storage.readFile(fileId, promise::complete);
+		}
+		return promise.future();
+	}
+
+	public Future<ZipContext> exportAndSendZip(JsonObject root, List<JsonObject> rows, HttpServerRequest req) {
+		String baseName = Optional.ofNullable(root).map(r -> r.getString("name", "archive")).orElse("archive");
+		return this.sendZip(req, new ZipContext(baseName), rows);
+	}
+
+	public Future<ZipContext> exportAndSendZip(List<JsonObject> rows, HttpServerRequest req) {
+		return this.exportAndSendZip(null, rows, req);
 	}
 }
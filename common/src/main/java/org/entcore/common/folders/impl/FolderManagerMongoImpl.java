@@ -614,8 +614,8 @@ public class FolderManagerMongoImpl implements FolderManager {
 						if (result.succeeded()) {
 							List<JsonObject> rows = result.result();
 							FolderExporterZip zipBuilder = new FolderExporterZip(storage, fileSystem, false);
-							zipBuilder.exportAndSendZip(bodyRoot, rows, request, true).onComplete(zipEvent -> {
-								if (zipEvent.failed()) {
+							zipBuilder.exportAndSendZip(bodyRoot, rows, request).onComplete(zipEvent -> {
+								if (zipEvent.failed() && !request.response().headWritten()) {
 									request.response().setStatusCode(500).end();
 								}
 							});
@@ -658,8 +658,8 @@ public class FolderManagerMongoImpl implements FolderManager {
 				}
 				// download multiple files
 				FolderExporterZip zipBuilder = new FolderExporterZip(storage, fileSystem, false);
-				zipBuilder.exportAndSendZip(all, request, true).onComplete(zipEvent -> {
-					if (zipEvent.failed()) {
+				zipBuilder.exportAndSendZip(all, request).onComplete(zipEvent -> {
+					if (zipEvent.failed() && !request.response().headWritten()) {
 						request.response().setStatusCode(500).end();
 					}
 				});
@@ -51,10 +51,12 @@ import org.entcore.common.http.response.SecurityHookRender;
 import org.entcore.common.http.response.OverrideThemeHookRender;
 import org.entcore.common.neo4j.Neo4j;
 import org.entcore.common.neo4j.Neo4jUtils;
+import org.entcore.common.postgres.IPostgresClient;
 import org.entcore.common.redis.Redis;
 import org.entcore.common.search.SearchingEvents;
 import org.entcore.common.search.SearchingHandler;
 import org.entcore.common.sql.DB;
+import org.entcore.common.sql.ReactiveSql;
 import org.entcore.common.sql.Sql;
 import org.entcore.common.trace.TraceFilter;
 import org.entcore.common.user.RepositoryEvents;
@@ -137,19 +139,20 @@ public abstract class BaseServer extends Server {
 		UserValidationFactory userValidationFactory = UserValidationFactory.getFactory();
 		userValidationFactory.init(vertx, config);
 
+		final BindingTable bindingTable = new BindingTable(securedUriBinding);
 		final LocalMap<Object, Object> server = vertx.sharedData().getLocalMap("server");
 		final Boolean cacheEnabled = (Boolean) server.getOrDefault("cache-filter", false);
 		if(Boolean.TRUE.equals(cacheEnabled)){
 			final CacheService cacheService = CacheService.create(vertx);
-			securityHandler.addFilter(new CacheFilter(getEventBus(vertx),securedUriBinding, cacheService));
+			securityHandler.addFilter(new CacheFilter(getEventBus(vertx),securedUriBinding, cacheService, bindingTable));
 		}
 
 		securityHandler.addFilter(new MandatoryUserValidationFilter(mfaProtectedBinding, getEventBus(vertx)));
 
 		if (config.getString("integration-mode","BUS").equals("HTTP")) {
-			securityHandler.addFilter(new HttpActionFilter(securedUriBinding, config, vertx, resourceProvider));
+			securityHandler.addFilter(new HttpActionFilter(securedUriBinding, config, vertx, resourceProvider, bindingTable));
 		} else {
-			securityHandler.addFilter(new ActionFilter(securedUriBinding, vertx, resourceProvider));
+			securityHandler.addFilter(new ActionFilter(securedUriBinding, vertx, resourceProvider, bindingTable));
 		}
 		vertx.eventBus().localConsumer("user.repository", repositoryHandler);
 		vertx.eventBus().localConsumer("search.searching", this.searchingHandler);
@@ -275,6 +278,12 @@ public abstract class BaseServer extends Server {
 		if (config.getBoolean("sql", false)) {
 			Sql.getInstance().init(getEventBus(vertx), node +
 					config.getString("sql-address", "sql.persistor"));
+			if (config.getBoolean("sql-reactive", false)) {
+				final ReactiveSql reactiveSql = new ReactiveSql(IPostgresClient.create(vertx, config, false, true));
+				reactiveSql.checkSettings()
+						.onSuccess(v -> Sql.getInstance().init(reactiveSql))
+						.onFailure(e -> log.error("Reactive sql disabled, the sql persistor is kept.", e));
+			}
 			schema = config.getString("db-schema", getPathPrefix(config).replaceAll("/", ""));
 
 			final JsonObject postgresConfig = config.getJsonObject("postgresConfig", new JsonObject());
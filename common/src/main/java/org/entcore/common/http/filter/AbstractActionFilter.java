@@ -24,11 +24,11 @@ import fr.wseduc.webutils.http.Renders;
 import fr.wseduc.webutils.request.filter.Filter;
 import fr.wseduc.webutils.security.ActionType;
 import fr.wseduc.webutils.security.SecureHttpServerRequest;
+import org.entcore.common.user.AuthorizedActions;
 import org.entcore.common.user.UserInfos;
 import org.entcore.common.user.UserUtils;
 import io.vertx.core.Handler;
 import io.vertx.core.http.HttpServerRequest;
-import io.vertx.core.json.JsonArray;
 import io.vertx.core.json.JsonObject;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -38,7 +38,6 @@ import java.net.URLEncoder;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Set;
-import java.util.regex.Matcher;
 
 import static fr.wseduc.webutils.Utils.getOrElse;
 import static org.entcore.common.utils.StringUtils.isEmpty;
@@ -51,10 +50,19 @@ public abstract class AbstractActionFilter implements Filter {
 	private static final Logger log = LoggerFactory.getLogger(AbstractActionFilter.class);
 	protected final Set<Binding> bindings;
 	protected final ResourcesProvider provider;
+	private final BindingTable bindingTable;
 
 	public AbstractActionFilter(Set<Binding> bindings, ResourcesProvider provider) {
+		this(bindings, provider, new BindingTable(bindings));
+	}
+
+	/**
+	 * @param bindingTable Table of the bindings, shared with the other filters of the verticle
+	 */
+	public AbstractActionFilter(Set<Binding> bindings, ResourcesProvider provider, BindingTable bindingTable) {
 		this.bindings = bindings;
 		this.provider = provider;
+		this.bindingTable = bindingTable;
 	}
 
 	protected void userIsAuthorized(HttpServerRequest request, JsonObject session,
@@ -105,16 +113,9 @@ public abstract class AbstractActionFilter implements Filter {
 
 	private void authorizeWorkflowAction(JsonObject session, Binding binding,
 										 Handler<Boolean> handler) {
-		JsonArray actions = session.getJsonArray("authorizedActions");
-		if (binding != null && binding.getServiceMethod() != null
-				&& actions != null && actions.size() > 0) {
-			for (Object a: actions) {
-				JsonObject action = (JsonObject) a;
-				if (binding.getServiceMethod().equals(action.getString("name"))) {
-					handler.handle(true);
-					return;
-				}
-			}
+		if (binding != null && AuthorizedActions.contains(session, binding.getServiceMethod())) {
+			handler.handle(true);
+			return;
 		}
 		if (session.getJsonObject("functions", new JsonObject()).containsKey("SUPER_ADMIN")) {
 			handler.handle(true);
@@ -124,27 +125,7 @@ public abstract class AbstractActionFilter implements Filter {
 	}
 
 	private Binding requestBinding(HttpServerRequest request) {
-		//check first if a route exact match
-		for (Binding binding: bindings) {
-			if (!request.method().name().equals(binding.getMethod().name())) {
-				continue;
-			}
-			final String uri = binding.getUriPattern().toString();
-			if (uri.equals(request.path())) {
-				return binding;
-			}
-		}
-		//then check if route regex match
-		for (Binding binding: bindings) {
-			if (!request.method().name().equals(binding.getMethod().name())) {
-				continue;
-			}
-			Matcher m = binding.getUriPattern().matcher(request.path());
-			if (m.matches()) {
-				return binding;
-			}
-		}
-		return null;
+		return bindingTable.resolve(request);
 	}
 
 	protected void clientIsAuthorizedByScope(SecureHttpServerRequest request, Handler<Boolean> handler) {
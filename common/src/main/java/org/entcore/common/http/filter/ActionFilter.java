@@ -43,7 +43,11 @@ public class ActionFilter extends AbstractActionFilter {
 	private final EventBus eb;
 
 	public ActionFilter(Set<Binding> bindings, Vertx vertx, ResourcesProvider provider) {
-		super(bindings, provider);
+		this(bindings, vertx, provider, new BindingTable(bindings));
+	}
+
+	public ActionFilter(Set<Binding> bindings, Vertx vertx, ResourcesProvider provider, BindingTable bindingTable) {
+		super(bindings, provider, bindingTable);
 		this.vertx = vertx;
 		this.eb = Server.getEventBus(vertx);
 	}
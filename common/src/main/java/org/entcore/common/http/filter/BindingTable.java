@@ -0,0 +1,175 @@
+/*
+ * Copyright © "Open Digital Education", 2017
+ *
+ * This program is published by "Open Digital Education".
+ * You must indicate the name of the software and the company in any production /contribution
+ * using the software and indicate on the home page of the software industry in question,
+ * "powered by Open Digital Education" with a reference to the website: https://opendigitaleducation.com/.
+ *
+ * This program is free software, licensed under the terms of the GNU Affero General Public License
+ * as published by the Free Software Foundation, version 3 of the License.
+ *
+ * You can redistribute this application and/or modify it since you respect the terms of the GNU Affero General Public License.
+ * If you modify the source code and then use this modified source code in your creation, you must make available the source code of your modifications.
+ *
+ * You should have received a copy of the GNU Affero General Public License along with the software.
+ * If not, please see : <http://www.gnu.org/licenses/>. Full compliance requires reading the terms of this license and following its directives.
+
+ */
+
+package org.entcore.common.http.filter;
+
+import fr.wseduc.webutils.http.Binding;
+import io.vertx.core.http.HttpServerRequest;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * Resolution of the {@link Binding} of a request, shared by the filters of a verticle.
+ * <p>
+ * The bindings are compiled, per http method, into a map of the exact uris and a trie of the literal prefixes of the
+ * uri patterns. A request is first looked up in the exact uris, then only the patterns whose literal prefix is a prefix
+ * of its path are evaluated, in the iteration order of the bindings. The result is the same as checking every binding
+ * for an exact uri then every pattern.
+ * </p>
+ * <p>
+ * The controllers are added after the filters are created, so the table is compiled on the first lookup and compiled
+ * again when the number of bindings changes.
+ * </p>
+ */
+public class BindingTable {
+
+	private static final String REGEX_CHARS = "\\.[]{}()*+?^$|";
+
+	private final Set<Binding> bindings;
+	private volatile Compiled compiled;
+
+	public BindingTable(Set<Binding> bindings) {
+		this.bindings = bindings;
+	}
+
+	public Binding resolve(HttpServerRequest request) {
+		return resolve(request.method().name(), request.path());
+	}
+
+	/**
+	 * @return The binding of the method and path, null if none matches
+	 */
+	public Binding resolve(String method, String path) {
+		Compiled c = compiled;
+		if (c == null || c.size != bindings.size()) {
+			c = compile();
+			compiled = c;
+		}
+		final MethodTable table = c.methods.get(method);
+		if (table == null || path == null) {
+			return null;
+		}
+		final Binding exact = table.exact.get(path);
+		if (exact != null) {
+			return exact;
+		}
+		Node node = table.root;
+		Candidate found = node.first(path, null);
+		for (int i = 0; i < path.length() && (node = node.children.get(path.charAt(i))) != null; i++) {
+			found = node.first(path, found);
+		}
+		return (found != null) ? found.binding : null;
+	}
+
+	private Compiled compile() {
+		final Map<String, MethodTable> methods = new HashMap<>();
+		int index = 0;
+		int size = 0;
+		for (Binding binding : bindings) {
+			size++;
+			if (binding == null || binding.getMethod() == null || binding.getUriPattern() == null) {
+				continue;
+			}
+			final MethodTable table = methods.computeIfAbsent(binding.getMethod().name(), k -> new MethodTable());
+			final Pattern pattern = binding.getUriPattern();
+			table.exact.putIfAbsent(pattern.toString(), binding);
+			final String prefix = literalPrefix(pattern);
+			Node node = table.root;
+			for (int i = 0; i < prefix.length(); i++) {
+				node = node.children.computeIfAbsent(prefix.charAt(i), k -> new Node());
+			}
+			node.candidates.add(new Candidate(index++, binding));
+		}
+		return new Compiled(size, methods);
+	}
+
+	/**
+	 * @return The characters every path matched by the pattern starts with, empty when it can not be determined
+	 */
+	static String literalPrefix(Pattern pattern) {
+		final String regex = pattern.pattern();
+		if (pattern.flags() != 0 || regex.indexOf('|') >= 0) {
+			return "";
+		}
+		final StringBuilder prefix = new StringBuilder();
+		for (int i = (regex.startsWith("^") ? 1 : 0); i < regex.length(); i++) {
+			final char c = regex.charAt(i);
+			if (REGEX_CHARS.indexOf(c) >= 0) {
+				// the last literal is optional or repeated
+				if ((c == '?' || c == '*' || c == '{') && prefix.length() > 0) {
+					prefix.setLength(prefix.length() - 1);
+				}
+				break;
+			}
+			prefix.append(c);
+		}
+		return prefix.toString();
+	}
+
+	private static final class Compiled {
+		private final int size;
+		private final Map<String, MethodTable> methods;
+
+		private Compiled(int size, Map<String, MethodTable> methods) {
+			this.size = size;
+			this.methods = methods;
+		}
+	}
+
+	private static final class MethodTable {
+		private final Map<String, Binding> exact = new HashMap<>();
+		private final Node root = new Node();
+	}
+
+	private static final class Node {
+		private final Map<Character, Node> children = new HashMap<>();
+		private final List<Candidate> candidates = new ArrayList<>();
+
+		/**
+		 * @return The candidate of this node matching the path if it comes before the one already found
+		 */
+		private Candidate first(String path, Candidate found) {
+			for (Candidate candidate : candidates) {
+				if (found != null && found.index < candidate.index) {
+					break;
+				}
+				if (candidate.binding.getUriPattern().matcher(path).matches()) {
+					return candidate;
+				}
+			}
+			return found;
+		}
+	}
+
+	private static final class Candidate {
+		private final int index;
+		private final Binding binding;
+
+		private Candidate(int index, Binding binding) {
+			this.index = index;
+			this.binding = binding;
+		}
+	}
+
+}
@@ -50,7 +50,12 @@ public class HttpActionFilter extends AbstractActionFilter {
 	private static final Logger log = LoggerFactory.getLogger(HttpActionFilter.class);
 	public HttpActionFilter(Set<Binding> bindings, JsonObject conf, Vertx vertx,
 			ResourcesProvider provider) {
-		super(bindings, provider);
+		this(bindings, conf, vertx, provider, new BindingTable(bindings));
+	}
+
+	public HttpActionFilter(Set<Binding> bindings, JsonObject conf, Vertx vertx,
+			ResourcesProvider provider, BindingTable bindingTable) {
+		super(bindings, provider, bindingTable);
 		this.vertx = vertx;
 		HttpClientOptions options = new HttpClientOptions()
 				.setDefaultHost("localhost")
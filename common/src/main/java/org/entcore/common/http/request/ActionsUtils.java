@@ -65,8 +65,7 @@ public class ActionsUtils {
 
 	public static boolean userHasWorkflowAction(UserInfos user, String expectedAction) {
 		if (user != null && expectedAction != null) {
-			return user.getAuthorizedActions().stream()
-					.anyMatch(action -> expectedAction.equals(action.getName()));
+			return user.hasAuthorizedAction(expectedAction);
 		}
 		return false;
 	}
@@ -29,6 +29,12 @@ public interface GraphDatabase {
 
 	void execute(String query, JsonObject params, Handler<JsonObject> handler);
 
+	/**
+	 * Execute a query and pass the rows one by one to rowHandler as they are decoded, without keeping the result.
+	 * @param handler Called once every row is handled, with a message if the query failed
+	 */
+	void executeStream(String query, JsonObject params, Handler<JsonObject> rowHandler, Handler<JsonObject> handler);
+
 	void executeBatch(JsonArray queries, Handler<JsonObject> handler);
 
 	void executeTransaction(JsonArray statements, Integer transactionId,
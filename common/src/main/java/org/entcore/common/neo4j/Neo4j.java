@@ -66,13 +66,14 @@ public class Neo4j {
 			serverUris = new fr.wseduc.webutils.collections.JsonArray().add(serverUri);
 		}
 
+		Neo4jRest rest = null;
 		if (serverUris != null) {
 			try {
 				URI[] uris = new URI[serverUris.size()];
 				for (int i = 0; i < serverUris.size(); i++) {
 					uris[i] = new URI(serverUris.getString(i));
 				}
-				database = new Neo4jRest(uris, config.getBoolean("slave-readonly", false), vertx,
+				rest = new Neo4jRest(uris, config.getBoolean("slave-readonly", false), vertx,
 						config.getLong("checkDelay", 3000l),
 						config.getInteger("poolSize", 16),
 						config.getBoolean("keepAlive", true),
@@ -80,6 +81,20 @@ public class Neo4j {
 			} catch (Exception e) {
 				log.error(e.getMessage(), e);
 			}
+		}
+		if ("bolt".equals(config.getString("driver")) && config.getString("bolt-uri") != null) {
+			try {
+				// the http client is only kept for the unmanaged extensions
+				database = new Neo4jBolt(vertx, config.getBoolean("slave-readonly", false),
+						config.getLong("checkDelay", 3000l),
+						config.getInteger("poolSize", 16),
+						config, rest);
+			} catch (Exception e) {
+				log.error(e.getMessage(), e);
+				database = rest;
+			}
+		} else if (serverUris != null) {
+			database = rest;
 		} else {
 			log.error("Invalid Neo4j URI");
 		}
@@ -117,6 +132,16 @@ public class Neo4j {
 		});
 	}
 
+	/**
+	 * Execute a read query and handle the rows one by one, as they are received, instead of building the whole result.
+	 * @param rowHandler Handler of each row
+	 * @param handler Called once the rows are handled, with the status of the query
+	 */
+	public void executeStream(String query, JsonObject params, Handler<JsonObject> rowHandler,
+			Handler<Message<JsonObject>> handler) {
+		database.executeStream(query, params, rowHandler, resultHandler(handler));
+	}
+
 	public void executeBatch(JsonArray queries, final Handler<Message<JsonObject>> handler) {
 		database.executeBatch(queries, resultHandler(handler));
 	}
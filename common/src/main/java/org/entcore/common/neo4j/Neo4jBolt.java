@@ -0,0 +1,499 @@
+/*
+ * Copyright © "Open Digital Education", 2017
+ *
+ * This program is published by "Open Digital Education".
+ * You must indicate the name of the software and the company in any production /contribution
+ * using the software and indicate on the home page of the software industry in question,
+ * "powered by Open Digital Education" with a reference to the website: https://opendigitaleducation.com/.
+ *
+ * This program is free software, licensed under the terms of the GNU Affero General Public License
+ * as published by the Free Software Foundation, version 3 of the License.
+ *
+ * You can redistribute this application and/or modify it since you respect the terms of the GNU Affero General Public License.
+ * If you modify the source code and then use this modified source code in your creation, you must make available the source code of your modifications.
+ *
+ * You should have received a copy of the GNU Affero General Public License along with the software.
+ * If not, please see : <http://www.gnu.org/licenses/>. Full compliance requires reading the terms of this license and following its directives.
+
+ */
+
+package org.entcore.common.neo4j;
+
+import io.vertx.core.Context;
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import io.vertx.core.logging.Logger;
+import io.vertx.core.logging.LoggerFactory;
+import org.neo4j.driver.v1.AccessMode;
+import org.neo4j.driver.v1.AuthTokens;
+import org.neo4j.driver.v1.Config;
+import org.neo4j.driver.v1.Driver;
+import org.neo4j.driver.v1.Record;
+import org.neo4j.driver.v1.Session;
+import org.neo4j.driver.v1.StatementRunner;
+import org.neo4j.driver.v1.Transaction;
+import org.neo4j.driver.v1.exceptions.Neo4jException;
+import org.neo4j.driver.v1.types.Entity;
+import org.neo4j.driver.v1.types.Node;
+import org.neo4j.driver.v1.types.Relationship;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.regex.Pattern;
+
+/**
+ * {@link GraphDatabase} using the Bolt protocol of the official driver, with a pool of connections, instead of the
+ * HTTP endpoints of {@link Neo4jRest}.
+ * <p>
+ * The results have the same shape as with {@link Neo4jRest}: the nodes and relationships are returned as
+ * {@code {data: properties, metadata}} by {@link #execute}, {@link #executeStream} and {@link #executeBatch}, like the
+ * cypher endpoint, and as their properties by {@link #executeTransaction}, like the transaction endpoint. The open
+ * transactions of {@link TransactionHelper} are
+ * bound to a session of the driver and identified by a local id, they are rolled back after
+ * {@code transaction-timeout} milliseconds without statement, like the transactions of the HTTP endpoint. The
+ * unmanaged extensions are only available over HTTP and are delegated to {@link Neo4jRest} when {@code server-uris}
+ * is also configured.
+ * </p>
+ */
+public class Neo4jBolt implements GraphDatabase {
+
+	private static final Logger logger = LoggerFactory.getLogger(Neo4jBolt.class);
+	private static final long DEFAULT_TRANSACTION_TIMEOUT = 60000L;
+
+	private final Vertx vertx;
+	private final Driver driver;
+	private final boolean ro;
+	private final GraphDatabase extensions;
+	private final long transactionTimeout;
+	private final ConcurrentMap<Integer, OpenTransaction> transactions = new ConcurrentHashMap<>();
+	private final AtomicInteger transactionIds = new AtomicInteger();
+	private final Pattern writingClausesPattern = Pattern.compile(
+			"(\\s+set\\s+|create\\s+|merge\\s+|delete\\s+|remove\\s+|foreach)", Pattern.CASE_INSENSITIVE);
+	private final long expireTimerId;
+	private final long checkTimerId;
+	private volatile boolean available = true;
+
+	private static final class OpenTransaction {
+		private final Session session;
+		private final Transaction transaction;
+		private volatile long lastAccess = System.currentTimeMillis();
+
+		private OpenTransaction(Session session, Transaction transaction) {
+			this.session = session;
+			this.transaction = transaction;
+		}
+	}
+
+	/**
+	 * @param neo4jConfig The neo4j configuration : {@code bolt-uri}, {@code username}, {@code password} and
+	 *                    {@code transaction-timeout} (in milliseconds)
+	 * @param extensions Client of the unmanaged extensions, can be null
+	 */
+	public Neo4jBolt(Vertx vertx, boolean ro, long checkDelay, int poolSize, JsonObject neo4jConfig,
+			GraphDatabase extensions) {
+		this.vertx = vertx;
+		this.ro = ro;
+		this.extensions = extensions;
+		this.transactionTimeout = neo4jConfig.getLong("transaction-timeout", DEFAULT_TRANSACTION_TIMEOUT);
+		final Config config = Config.build()
+				.withMaxConnectionPoolSize(poolSize)
+				.withConnectionAcquisitionTimeout(neo4jConfig.getLong("acquisition-timeout", 60000L), TimeUnit.MILLISECONDS)
+				.toConfig();
+		if (neo4jConfig.containsKey("username") && neo4jConfig.containsKey("password")) {
+			driver = org.neo4j.driver.v1.GraphDatabase.driver(neo4jConfig.getString("bolt-uri"),
+					AuthTokens.basic(neo4jConfig.getString("username"), neo4jConfig.getString("password")), config);
+		} else {
+			driver = org.neo4j.driver.v1.GraphDatabase.driver(neo4jConfig.getString("bolt-uri"), AuthTokens.none(), config);
+		}
+		expireTimerId = vertx.setPeriodic(Math.max(1000L, transactionTimeout / 2), t -> expireTransactions());
+		checkTimerId = vertx.setPeriodic(checkDelay, t -> checkAvailability());
+		logger.info("Neo4j bolt driver started on " + neo4jConfig.getString("bolt-uri"));
+	}
+
+	@Override
+	public JsonObject getMetrics() {
+		return new JsonObject()
+				.put("neo4j_instance_up", available ? 1L : 0L)
+				.put("neo4j_instance_down", available ? 0L : 1L)
+				.put("neo4j_instance_total", 1L)
+				.put("neo4j_open_transactions", transactions.size());
+	}
+
+	@Override
+	public void execute(String query, JsonObject params, Handler<JsonObject> handler) {
+		final AccessMode mode = (ro && !writingClausesPattern.matcher(query).find()) ? AccessMode.READ : AccessMode.WRITE;
+		final CompletionStage<JsonObject> stage = withSession(mode, session ->
+				session.runAsync(query, toParameters(params))
+						.thenCompose(cursor -> cursor.listAsync(record -> toRow(record, true)))
+						.thenApply(rows -> new JsonObject().put("result", toArray(rows))));
+		Future.fromCompletionStage(stage, vertx.getOrCreateContext()).onComplete(ar ->
+				handler.handle(ar.succeeded() ? ar.result() : queryError(ar.cause())));
+	}
+
+	@Override
+	public void executeStream(String query, JsonObject params, Handler<JsonObject> rowHandler,
+			Handler<JsonObject> handler) {
+		final Context context = vertx.getOrCreateContext();
+		final AccessMode mode = (ro && !writingClausesPattern.matcher(query).find()) ? AccessMode.READ : AccessMode.WRITE;
+		final CompletionStage<JsonObject> stage = withSession(mode, session ->
+				session.runAsync(query, toParameters(params))
+						.thenCompose(cursor -> cursor.forEachAsync(record -> {
+							final JsonObject row = toRow(record, true);
+							context.runOnContext(v -> rowHandler.handle(row));
+						}))
+						.thenApply(summary -> new JsonObject()));
+		Future.fromCompletionStage(stage, context).onComplete(ar ->
+				handler.handle(ar.succeeded() ? ar.result() : queryError(ar.cause())));
+	}
+
+	@Override
+	public void executeBatch(JsonArray queries, Handler<JsonObject> handler) {
+		final JsonArray statements = new JsonArray();
+		for (Object q : queries) {
+			if (!(q instanceof JsonObject)) continue;
+			statements.add(new JsonObject()
+					.put("statement", ((JsonObject) q).getString("query"))
+					.put("parameters", ((JsonObject) q).getJsonObject("params")));
+		}
+		final CompletionStage<JsonObject> stage = withSession(AccessMode.WRITE, session ->
+				session.writeTransactionAsync(tx -> run(tx, statements, true))).thenApply(results -> {
+					final JsonArray out = new fr.wseduc.webutils.collections.JsonArray();
+					for (int i = 0; i < results.size(); i++) {
+						out.add(new JsonObject().put("result", results.getJsonArray(i)).put("idx", (long) i));
+					}
+					return new JsonObject().put("results", out);
+				});
+		Future.fromCompletionStage(stage, vertx.getOrCreateContext()).onComplete(ar ->
+				handler.handle(ar.succeeded() ? ar.result() : queryError(ar.cause())));
+	}
+
+	@Override
+	public void executeTransaction(JsonArray statements, Integer transactionId, boolean commit,
+			Handler<JsonObject> handler) {
+		executeTransaction(statements, transactionId, commit, true, false, handler);
+	}
+
+	@Override
+	public void executeTransaction(final JsonArray statements, final Integer transactionId, final boolean commit,
+			final boolean allowRetry, final boolean forceReadOnly, final Handler<JsonObject> handler) {
+		final CompletionStage<JsonObject> stage;
+		if (transactionId == null && commit) {
+			final AccessMode mode = (forceReadOnly && ro) ? AccessMode.READ : AccessMode.WRITE;
+			stage = withSession(mode, session -> {
+				if (!allowRetry) {
+					return session.beginTransactionAsync().thenCompose(tx -> end(tx, run(tx, statements, false)));
+				}
+				// the transaction functions of the driver retry the transient errors
+				return (mode == AccessMode.READ) ? session.readTransactionAsync(tx -> run(tx, statements, false)) :
+						session.writeTransactionAsync(tx -> run(tx, statements, false));
+			}).thenApply(results -> new JsonObject().put("results", results));
+		} else if (transactionId == null) {
+			final Session session = driver.session((forceReadOnly && ro) ? AccessMode.READ : AccessMode.WRITE);
+			stage = session.beginTransactionAsync()
+					.whenComplete((tx, e) -> {
+						if (e != null) {
+							session.closeAsync();
+						}
+					})
+					.thenCompose(tx -> {
+						final int id = transactionIds.incrementAndGet();
+						final OpenTransaction open = new OpenTransaction(session, tx);
+						transactions.put(id, open);
+						return runInTransaction(id, open, statements, false);
+					});
+		} else {
+			final OpenTransaction open = transactions.get(transactionId);
+			if (open == null) {
+				handler.handle(new JsonObject().put("message", new JsonArray().add(new JsonObject()
+						.put("code", "Neo.ClientError.Transaction.TransactionNotFound")
+						.put("message", "Unrecognized transaction id. Transaction may have timed out and been rolled back.")
+				).encode()));
+				return;
+			}
+			stage = runInTransaction(transactionId, open, statements, commit);
+		}
+		Future.fromCompletionStage(stage, vertx.getOrCreateContext()).onComplete(ar ->
+				handler.handle(ar.succeeded() ? ar.result() : transactionError(ar.cause())));
+	}
+
+	@Override
+	public void resetTransactionTimeout(int transactionId, Handler<JsonObject> handler) {
+		final OpenTransaction open = transactions.get(transactionId);
+		if (open != null) {
+			open.lastAccess = System.currentTimeMillis();
+			handler.handle(new JsonObject().put("results", new JsonArray()).put("transactionId", transactionId));
+		} else {
+			handler.handle(new JsonObject().put("message", "Unrecognized transaction id : " + transactionId));
+		}
+	}
+
+	@Override
+	public void rollbackTransaction(int transactionId, Handler<JsonObject> handler) {
+		final OpenTransaction open = transactions.remove(transactionId);
+		if (open == null) {
+			handler.handle(new JsonObject().put("message", "Unrecognized transaction id : " + transactionId));
+			return;
+		}
+		Future.fromCompletionStage(end(open, false), vertx.getOrCreateContext()).onComplete(ar -> {
+			if (ar.succeeded()) {
+				handler.handle(new JsonObject());
+			} else {
+				logger.error("Error rollbacking transaction : " + transactionId, ar.cause());
+				handler.handle(transactionError(ar.cause()));
+			}
+		});
+	}
+
+	@Override
+	public void unmanagedExtension(String method, String uri, String body, Handler<JsonObject> handler) {
+		if (extensions != null) {
+			extensions.unmanagedExtension(method, uri, body, handler);
+		} else {
+			handler.handle(new JsonObject().put("message", "Unmanaged extensions require the server-uris configuration."));
+		}
+	}
+
+	@Override
+	public void close() {
+		vertx.cancelTimer(expireTimerId);
+		vertx.cancelTimer(checkTimerId);
+		for (Integer id : new ArrayList<>(transactions.keySet())) {
+			final OpenTransaction open = transactions.remove(id);
+			if (open != null) {
+				end(open, false);
+			}
+		}
+		driver.closeAsync();
+		if (extensions != null) {
+			extensions.close();
+		}
+	}
+
+	private CompletionStage<JsonObject> runInTransaction(int id, OpenTransaction open, JsonArray statements,
+			boolean commit) {
+		open.lastAccess = System.currentTimeMillis();
+		return run(open.transaction, statements, false).<CompletionStage<JsonObject>>handle((results, e) -> {
+			if (e != null) {
+				// like the http endpoint, a failed statement rolls back the transaction
+				transactions.remove(id);
+				return end(open, false).<JsonObject>handle((v, re) -> { throw wrap(e); });
+			}
+			if (commit) {
+				transactions.remove(id);
+				return end(open, true).thenApply(v -> new JsonObject().put("results", results));
+			}
+			return CompletableFuture.completedFuture(new JsonObject().put("results", results).put("transactionId", id));
+		}).thenCompose(Function.identity());
+	}
+
+	/**
+	 * Run the statements one after another.
+	 * @param cypherEntities Return the nodes and relationships like the cypher endpoint instead of the transaction one
+	 * @return The rows of each statement
+	 */
+	private static CompletionStage<JsonArray> run(StatementRunner runner, JsonArray statements,
+			boolean cypherEntities) {
+		final JsonArray results = new fr.wseduc.webutils.collections.JsonArray();
+		CompletionStage<Void> stage = CompletableFuture.completedFuture(null);
+		for (Object o : statements) {
+			if (!(o instanceof JsonObject)) continue;
+			final JsonObject statement = (JsonObject) o;
+			stage = stage.thenCompose(v -> runner.runAsync(statement.getString("statement"),
+					toParameters(statement.getJsonObject("parameters"))))
+					.thenCompose(cursor -> cursor.listAsync(record -> toRow(record, cypherEntities)))
+					.thenAccept(rows -> results.add(toArray(rows)));
+		}
+		return stage.thenApply(v -> results);
+	}
+
+	/**
+	 * Commit the transaction if the statements succeeded, roll it back otherwise.
+	 */
+	private static CompletionStage<JsonArray> end(Transaction tx, CompletionStage<JsonArray> statements) {
+		return statements.<CompletionStage<JsonArray>>handle((results, e) -> (e == null) ?
+				tx.commitAsync().thenApply(v -> results) :
+				tx.rollbackAsync().<JsonArray>handle((v, re) -> { throw wrap(e); })
+		).thenCompose(Function.identity());
+	}
+
+	private static CompletionStage<Void> end(OpenTransaction open, boolean commit) {
+		final CompletionStage<Void> end = commit ? open.transaction.commitAsync() : open.transaction.rollbackAsync();
+		return end.<CompletionStage<Void>>handle((v, e) -> open.session.closeAsync().<Void>thenApply(c -> {
+			if (e != null) {
+				throw wrap(e);
+			}
+			return null;
+		})).thenCompose(Function.identity());
+	}
+
+	private <T> CompletionStage<T> withSession(AccessMode mode, Function<Session, CompletionStage<T>> work) {
+		final Session session = driver.session(mode);
+		final CompletableFuture<T> result = new CompletableFuture<>();
+		CompletionStage<T> stage;
+		try {
+			stage = work.apply(session);
+		} catch (RuntimeException e) {
+			final CompletableFuture<T> failed = new CompletableFuture<>();
+			failed.completeExceptionally(e);
+			stage = failed;
+		}
+		stage.whenComplete((r, e) -> session.closeAsync().whenComplete((v, ce) -> {
+			if (e != null) {
+				result.completeExceptionally(e);
+			} else {
+				result.complete(r);
+			}
+		}));
+		return result;
+	}
+
+	private void expireTransactions() {
+		final long expired = System.currentTimeMillis() - transactionTimeout;
+		for (Map.Entry<Integer, OpenTransaction> e : transactions.entrySet()) {
+			if (e.getValue().lastAccess < expired && transactions.remove(e.getKey(), e.getValue())) {
+				logger.warn("Rollback expired transaction : " + e.getKey());
+				end(e.getValue(), false);
+			}
+		}
+	}
+
+	private void checkAvailability() {
+		withSession(AccessMode.READ, session -> session.runAsync("RETURN 1")
+				.thenCompose(cursor -> cursor.consumeAsync()))
+				.whenComplete((r, e) -> {
+					if (e != null && available) {
+						logger.error("Neo4j bolt server unavailable", e);
+					}
+					available = (e == null);
+				});
+	}
+
+	private static CompletionException wrap(Throwable e) {
+		return (e instanceof CompletionException) ? (CompletionException) e : new CompletionException(e);
+	}
+
+	private static Throwable unwrap(Throwable e) {
+		return (e instanceof CompletionException && e.getCause() != null) ? e.getCause() : e;
+	}
+
+	private static JsonObject queryError(Throwable t) {
+		final Throwable e = unwrap(t);
+		final JsonObject error = new JsonObject().put("message", e.getMessage());
+		if (e instanceof Neo4jException) {
+			error.put("exception", ((Neo4jException) e).code());
+		}
+		return error;
+	}
+
+	private static JsonObject transactionError(Throwable t) {
+		final Throwable e = unwrap(t);
+		final JsonObject error = new JsonObject().put("message", e.getMessage());
+		if (e instanceof Neo4jException) {
+			error.put("code", ((Neo4jException) e).code());
+		}
+		return new JsonObject().put("message", new JsonArray().add(error).encode());
+	}
+
+	private static Map<String, Object> toParameters(JsonObject params) {
+		if (params == null) {
+			return Collections.emptyMap();
+		}
+		final Map<String, Object> parameters = new HashMap<>();
+		for (Map.Entry<String, Object> e : params) {
+			parameters.put(e.getKey(), toParameter(e.getValue()));
+		}
+		return parameters;
+	}
+
+	private static Object toParameter(Object value) {
+		if (value instanceof JsonObject) {
+			return toParameters((JsonObject) value);
+		} else if (value instanceof JsonArray) {
+			final List<Object> list = new ArrayList<>(((JsonArray) value).size());
+			for (Object o : (JsonArray) value) {
+				list.add(toParameter(o));
+			}
+			return list;
+		}
+		return value;
+	}
+
+	private static JsonArray toArray(List<JsonObject> rows) {
+		final JsonArray array = new fr.wseduc.webutils.collections.JsonArray();
+		for (JsonObject row : rows) {
+			array.add(row);
+		}
+		return array;
+	}
+
+	private static JsonObject toRow(Record record, boolean cypherEntities) {
+		final JsonObject row = new fr.wseduc.webutils.collections.JsonObject();
+		final List<String> keys = record.keys();
+		for (int i = 0; i < keys.size(); i++) {
+			row.put(keys.get(i), toJson(record.get(i).asObject(), cypherEntities));
+		}
+		return row;
+	}
+
+	/**
+	 * Convert a value of the driver to the value decoded from the json of the HTTP endpoints, with the integers as
+	 * Integer when they fit.
+	 * @param cypherEntities Convert the nodes and relationships to {@code {data: properties, metadata}} like the cypher
+	 *                       endpoint, used by {@link Neo4jResult#fullNodeMerge}, instead of their properties like the
+	 *                       transaction endpoint
+	 */
+	static Object toJson(Object value, boolean cypherEntities) {
+		if (value == null || value instanceof String || value instanceof Boolean || value instanceof Double) {
+			return value;
+		} else if (value instanceof Long) {
+			final long l = (Long) value;
+			return (l >= Integer.MIN_VALUE && l <= Integer.MAX_VALUE) ? (Object) (int) l : value;
+		} else if (value instanceof Entity) {
+			final Object properties = toJson(((Entity) value).asMap(), cypherEntities);
+			if (!cypherEntities) {
+				return properties;
+			}
+			final JsonObject metadata = new JsonObject().put("id", ((Entity) value).id());
+			if (value instanceof Node) {
+				final JsonArray labels = new JsonArray();
+				for (String label : ((Node) value).labels()) {
+					labels.add(label);
+				}
+				metadata.put("labels", labels);
+			} else if (value instanceof Relationship) {
+				metadata.put("type", ((Relationship) value).type());
+			}
+			return new JsonObject().put("data", properties).put("metadata", metadata);
+		} else if (value instanceof Map) {
+			final JsonObject object = new JsonObject();
+			for (Map.Entry<?, ?> e : ((Map<?, ?>) value).entrySet()) {
+				object.put(String.valueOf(e.getKey()), toJson(e.getValue(), cypherEntities));
+			}
+			return object;
+		} else if (value instanceof List) {
+			final JsonArray array = new JsonArray();
+			for (Object o : (List<?>) value) {
+				array.add(toJson(o, cypherEntities));
+			}
+			return array;
+		} else if (value instanceof Number) {
+			return value;
+		}
+		return value.toString();
+	}
+
+}
@@ -0,0 +1,220 @@
+/* Copyright © "Open Digital Education", 2014
+ *
+ * This program is published by "Open Digital Education".
+ * You must indicate the name of the software and the company in any production /contribution
+ * using the software and indicate on the home page of the software industry in question,
+ * "powered by Open Digital Education" with a reference to the website: https://opendigitaleducation.com/.
+ *
+ * This program is free software, licensed under the terms of the GNU Affero General Public License
+ * as published by the Free Software Foundation, version 3 of the License.
+ *
+ * You can redistribute this application and/or modify it since you respect the terms of the GNU Affero General Public License.
+ * If you modify the source code and then use this modified source code in your creation, you must make available the source code of your modifications.
+ *
+ * You should have received a copy of the GNU Affero General Public License along with the software.
+ * If not, please see : <http://www.gnu.org/licenses/>. Full compliance requires reading the terms of this license and following its directives.
+
+ *
+ */
+
+package org.entcore.common.neo4j;
+
+import fr.wseduc.webutils.Either;
+import io.vertx.core.Handler;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import io.vertx.core.streams.ReadStream;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+/**
+ * Stream the rows of a Cypher query page by page, seeking on a sort key instead of using {@code SKIP}.
+ * <p>
+ * Each page is read with {@code ORDER BY <sortKeys> ASC LIMIT {limit}} appended to the query. The first page is read
+ * with a query without seek predicate, the next ones with a query filtering the rows after the last row read: the
+ * value of each sort key of this row is bound to the parameter {@code last<SortKey>}, e.g. {@code {lastLogin}} for
+ * the {@code login} key, and the predicate should be written so that it can be solved by a range seek on an index,
+ * e.g. {@code WHERE u.login > {lastLogin}}. Unlike {@code SKIP}, the rows before the cursor are then neither matched
+ * nor sorted again. The rows after the cursor are still sorted on each page, as Neo4j only reads an index in order
+ * from 3.5, so a page costs less as the stream moves forward but the whole read is not linear.
+ * </p>
+ * <p>
+ * The sort keys must identify a row: they must not be null and two rows must not share the same values, otherwise
+ * the rows sharing the key of the last row of a page are lost. Queries which may return a node several times must
+ * return distinct rows.
+ * </p>
+ * <p>
+ * The next page is only read once the rows of the current page are consumed, so a paused stream does not read the
+ * database.
+ * </p>
+ */
+public class Neo4jKeysetStream implements ReadStream<JsonObject> {
+
+	public static final int DEFAULT_PAGE_SIZE = 1000;
+
+	private final Neo4j neo4j;
+	private final String firstPageQuery;
+	private final String nextPageQuery;
+	private final JsonObject params;
+	private final String[] sortKeys;
+	private final int pageSize;
+	private final Deque<JsonObject> rows = new ArrayDeque<>();
+	private Handler<JsonObject> handler;
+	private Handler<Throwable> exceptionHandler;
+	private Handler<Void> endHandler;
+	private long demand = Long.MAX_VALUE;
+	private JsonObject last;
+	private boolean lastPage;
+	private boolean reading;
+	private boolean emitting;
+	private boolean ended;
+	private String[] removedKeys = new String[0];
+
+	/**
+	 * @param neo4j Neo4j client
+	 * @param firstPageQuery Query without {@code ORDER BY}, {@code SKIP} and {@code LIMIT}
+	 * @param nextPageQuery Same query with the seek predicate on the {@code last<SortKey>} parameters
+	 * @param params Parameters of the queries
+	 * @param pageSize Number of rows read by query
+	 * @param sortKeys Aliases of the keys identifying a row, in sort order
+	 */
+	public Neo4jKeysetStream(Neo4j neo4j, String firstPageQuery, String nextPageQuery, JsonObject params, int pageSize,
+			String... sortKeys) {
+		final String orderBy = " ORDER BY " + String.join(" ASC, ", sortKeys) + " ASC LIMIT {limit} ";
+		this.neo4j = neo4j;
+		this.firstPageQuery = firstPageQuery + orderBy;
+		this.nextPageQuery = nextPageQuery + orderBy;
+		this.params = (params != null) ? params : new JsonObject();
+		this.sortKeys = sortKeys;
+		this.pageSize = pageSize;
+	}
+
+	/**
+	 * Name of the parameter bound to the value of a sort key in the last row read, e.g. {@code lastLogin} for
+	 * {@code login}.
+	 */
+	public static String lastParam(String sortKey) {
+		return "last" + Character.toUpperCase(sortKey.charAt(0)) + sortKey.substring(1);
+	}
+
+	/**
+	 * Remove keys from the emitted rows, when they are only returned for the pagination (e.g. the id of a related node
+	 * making the sort key unique).
+	 */
+	public Neo4jKeysetStream removeKeys(String... keys) {
+		this.removedKeys = keys;
+		return this;
+	}
+
+	@Override
+	public Neo4jKeysetStream exceptionHandler(Handler<Throwable> handler) {
+		this.exceptionHandler = handler;
+		return this;
+	}
+
+	/**
+	 * Set the row handler, the first page is read once it is set.
+	 */
+	@Override
+	public Neo4jKeysetStream handler(Handler<JsonObject> handler) {
+		this.handler = handler;
+		if (handler != null) {
+			drain();
+		}
+		return this;
+	}
+
+	@Override
+	public Neo4jKeysetStream pause() {
+		demand = 0L;
+		return this;
+	}
+
+	@Override
+	public Neo4jKeysetStream resume() {
+		return fetch(Long.MAX_VALUE);
+	}
+
+	@Override
+	public Neo4jKeysetStream fetch(long amount) {
+		if (amount > 0L) {
+			demand += amount;
+			if (demand < 0L) {
+				demand = Long.MAX_VALUE;
+			}
+			drain();
+		}
+		return this;
+	}
+
+	@Override
+	public Neo4jKeysetStream endHandler(Handler<Void> endHandler) {
+		this.endHandler = endHandler;
+		return this;
+	}
+
+	private void drain() {
+		if (emitting || ended) {
+			return;
+		}
+		emitting = true;
+		try {
+			while (demand > 0L && handler != null && !rows.isEmpty()) {
+				if (demand != Long.MAX_VALUE) {
+					demand--;
+				}
+				handler.handle(rows.poll());
+			}
+		} finally {
+			emitting = false;
+		}
+		if (!rows.isEmpty() || reading || ended) {
+			return;
+		}
+		if (lastPage) {
+			ended = true;
+			if (endHandler != null) {
+				endHandler.handle(null);
+			}
+		} else if (demand > 0L && handler != null) {
+			readPage();
+		}
+	}
+
+	private void readPage() {
+		reading = true;
+		final JsonObject p = params.copy().put("limit", pageSize);
+		if (last != null) {
+			p.mergeIn(last);
+		}
+		neo4j.execute((last != null) ? nextPageQuery : firstPageQuery, p, res -> {
+			reading = false;
+			final Either<String, JsonArray> r = Neo4jResult.validResult(res);
+			if (r.isLeft()) {
+				ended = true;
+				if (exceptionHandler != null) {
+					exceptionHandler.handle(new Neo4jConnectionException(r.left().getValue()));
+				}
+				return;
+			}
+			final JsonArray page = r.right().getValue();
+			lastPage = page.size() < pageSize;
+			for (Object o : page) {
+				if (o instanceof JsonObject) {
+					final JsonObject row = (JsonObject) o;
+					last = new JsonObject();
+					for (String sortKey : sortKeys) {
+						last.put(lastParam(sortKey), row.getValue(sortKey));
+					}
+					for (String key : removedKeys) {
+						row.remove(key);
+					}
+					rows.add(row);
+				}
+			}
+			drain();
+		});
+	}
+
+}
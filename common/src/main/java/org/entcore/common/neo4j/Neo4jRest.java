@@ -19,10 +19,11 @@
 
 package org.entcore.common.neo4j;
 
+import io.vertx.core.Future;
 import io.vertx.core.Handler;
+import io.vertx.core.Promise;
 import io.vertx.core.Vertx;
 import io.vertx.core.buffer.Buffer;
-import io.vertx.core.http.HttpClient;
 import io.vertx.core.http.HttpClientRequest;
 import io.vertx.core.http.HttpClientResponse;
 import io.vertx.core.http.HttpMethod;
@@ -34,9 +35,12 @@ import io.vertx.core.logging.LoggerFactory;
 import org.entcore.common.utils.StringUtils;
 import org.entcore.common.utils.ExceptionUtils;
 
+import java.io.IOException;
 import java.net.URI;
 import java.util.Base64;
-import java.util.regex.Matcher;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Function;
 import java.util.regex.Pattern;
 
 public class Neo4jRest implements GraphDatabase {
@@ -48,6 +52,8 @@ public class Neo4jRest implements GraphDatabase {
 	private final String basePath;
 	private final Pattern writingClausesPattern = Pattern.compile(
 			"(\\s+set\\s+|create\\s+|merge\\s+|delete\\s+|remove\\s+|foreach)", Pattern.CASE_INSENSITIVE);
+	private static final int MAX_CLASSIFIED_QUERIES = 10000;
+	private final ConcurrentMap<String, Boolean> readQueries = new ConcurrentHashMap<>();
 	private boolean ignoreEmptyStateError = false;
 	private final String authorizationHeader;
 
@@ -90,7 +96,11 @@ public class Neo4jRest implements GraphDatabase {
 		final long count = this.nodeManager.getClients().size();
 		final long down = this.nodeManager.getClients().stream().filter(e->!e.isAvailable()).count();
 		final long up = this.nodeManager.getClients().stream().filter(e->e.isAvailable()).count();
-		return new JsonObject().put("neo4j_instance_up", up).put("neo4j_instance_down", down).put("neo4j_instance_total", count);
+		final JsonObject metrics = new JsonObject().put("neo4j_instance_up", up).put("neo4j_instance_down", down).put("neo4j_instance_total", count);
+		for (Neo4jRestClientNode node : this.nodeManager.getClients()) {
+			node.getMetrics().appendTo(metrics, "node=\"" + node.getUrl() + "\",type=\"" + node.getTypeName() + "\"");
+		}
+		return metrics;
 	}
 
 	private HttpClientRequest prepareRequest(final HttpClientRequest request){
@@ -142,16 +152,19 @@ public class Neo4jRest implements GraphDatabase {
 				public void handle(final HttpClientResponse resp) {
 					if (resp == null) {
 						handler.handle(new JsonObject().put("message", "Missing response from neo4j."));
+					} else if (resp.statusCode() == 200) {
+						parseResponse(resp, Neo4jRestResponseParser::cypher, null).onComplete(ar -> {
+							if (ar.succeeded()) {
+								handler.handle(ar.result());
+							} else {
+								handler.handle(new JsonObject().put("message", ar.cause().getMessage()));
+							}
+						});
 					} else {
 						resp.bodyHandler(b -> {
 							logger.debug(b.toString());
 							if (resp.statusCode() != 404 && resp.statusCode() != 500) {
-								JsonObject json = new JsonObject(b.toString("UTF-8"));
-								if (resp.statusCode() == 200) {
-									handler.handle(new JsonObject().put("result", transformJson(json)));
-								} else {
-									handler.handle(json);
-								}
+								handler.handle(new JsonObject(b.toString("UTF-8")));
 							} else {
 								handler.handle(new JsonObject().put("message",
 										resp.statusMessage() + " : " + b.toString()));
@@ -166,6 +179,73 @@ public class Neo4jRest implements GraphDatabase {
 		}
 	}
 
+	@Override
+	public void executeStream(String query, JsonObject p, final Handler<JsonObject> rowHandler,
+			final Handler<JsonObject> handler) {
+		final JsonObject body = new JsonObject()
+				.put("query", query)
+				.put("params", (p != null) ? p : new JsonObject());
+		logger.debug(body.encode());
+		try {
+			sendRequest("/cypher", body, true, resp -> {
+				if (resp == null) {
+					handler.handle(new JsonObject().put("message", "Missing response from neo4j."));
+				} else if (resp.statusCode() == 200) {
+					parseResponse(resp, Neo4jRestResponseParser::cypher, rowHandler).onComplete(ar -> {
+						if (ar.succeeded()) {
+							handler.handle(new JsonObject());
+						} else {
+							handler.handle(new JsonObject().put("message", ar.cause().getMessage()));
+						}
+					});
+				} else {
+					resp.bodyHandler(b -> handler.handle(new JsonObject().put("message",
+							resp.statusMessage() + " : " + b.toString())));
+				}
+			});
+		} catch (Neo4jConnectionException e) {
+			handler.handle(ExceptionUtils.exceptionToJson(e));
+			logger.error("Neo4j execution failed", e);
+		}
+	}
+
+	/**
+	 * Decode the body of a response as it is received, without buffering it.
+	 */
+	private Future<JsonObject> parseResponse(HttpClientResponse resp,
+			Function<Handler<JsonObject>, Neo4jRestResponseParser> parserFactory, Handler<JsonObject> rowHandler) {
+		final Promise<JsonObject> promise = Promise.promise();
+		final Neo4jRestResponseParser parser = parserFactory.apply(rowHandler);
+		resp.handler(chunk -> {
+			if (promise.future().isComplete()) {
+				return;
+			}
+			try {
+				parser.handle(chunk);
+			} catch (IOException | RuntimeException e) {
+				logger.error("Invalid response from neo4j", e);
+				promise.tryFail("Invalid response from neo4j : " + e.getMessage());
+			}
+		});
+		resp.exceptionHandler(e -> promise.tryFail(e));
+		resp.endHandler(v -> {
+			if (promise.future().isComplete()) {
+				return;
+			}
+			try {
+				final JsonObject json = parser.end();
+				if (logger.isDebugEnabled()) {
+					logger.debug(json.encode());
+				}
+				promise.tryComplete(json);
+			} catch (IOException | RuntimeException e) {
+				logger.error("Invalid response from neo4j", e);
+				promise.tryFail("Invalid response from neo4j : " + e.getMessage());
+			}
+		});
+		return promise.future();
+	}
+
 	@Override
 	public void executeBatch(JsonArray queries, final Handler<JsonObject> handler) {
 		JsonArray body = new fr.wseduc.webutils.collections.JsonArray();
@@ -247,56 +327,49 @@ public class Neo4jRest implements GraphDatabase {
 						logger.error("Received a null response from neo4J");
 						handler.handle(new JsonObject().put("message", "no answer from server"));
 					} else {
-						resp.bodyHandler(new Handler<Buffer>() {
-
-							@Override
-							public void handle(Buffer b) {
-								logger.debug(b.toString());
-								if (resp.statusCode() != 404 && resp.statusCode() != 500) {
-									JsonObject json = new JsonObject(b.toString("UTF-8"));
-									JsonArray results = json.getJsonArray("results");
-								if (json.getJsonArray("errors", new fr.wseduc.webutils.collections.JsonArray()).size() == 0 &&
-										results != null) {
-									JsonArray out = new fr.wseduc.webutils.collections.JsonArray();
-										for (Object o : results) {
-											if (!(o instanceof JsonObject)) continue;
-											out.add(transformJson((JsonObject) o));
-										}
-										json.put("results", out);
-										String commit = json.getString("commit");
-										if (commit != null) {
-											String[] c = commit.split("/");
-											if (c.length > 2) {
-												json.put("transactionId", Integer.parseInt(c[c.length - 2]));
-											}
-										}
-										json.remove("errors");
-										handler.handle(json);
-									} else {
-										if (transactionId == null && commit && allowRetry && json.getJsonArray("errors") != null && json.getJsonArray("errors").size() > 0) {
-											JsonArray errors = json.getJsonArray("errors");
-											for (Object o : errors) {
-												if (!(o instanceof JsonObject)) continue;
-												switch (((JsonObject) o).getString("code", "")) {
-													case "Neo.TransientError.Transaction.ConstraintsChanged":
-													case "Neo.TransientError.Transaction.DeadlockDetected":
-													case "Neo.TransientError.Transaction.InstanceStateChanged":
-													case "Neo.TransientError.Schema.SchemaModifiedConcurrently":
-														executeTransaction(statements, transactionId, commit, false, handler);
-														if (logger.isDebugEnabled()) {
-															logger.debug("Retry transaction : " + statements.encode());
-														}
-														return;
+						if (resp.statusCode() == 404 || resp.statusCode() == 500) {
+							resp.bodyHandler(b -> handler.handle(new JsonObject().put("message",
+									resp.statusMessage() + " : " + b.toString())));
+							return;
+						}
+						parseResponse(resp, Neo4jRestResponseParser::transaction, null).onComplete(ar -> {
+							if (ar.failed()) {
+								handler.handle(new JsonObject().put("message", ar.cause().getMessage()));
+								return;
+							}
+							final JsonObject json = ar.result();
+							final JsonArray results = json.getJsonArray("results");
+							if (json.getJsonArray("errors", new fr.wseduc.webutils.collections.JsonArray()).size() == 0 &&
+									results != null) {
+								String commit = json.getString("commit");
+								if (commit != null) {
+									String[] c = commit.split("/");
+									if (c.length > 2) {
+										json.put("transactionId", Integer.parseInt(c[c.length - 2]));
+									}
+								}
+								json.remove("errors");
+								handler.handle(json);
+							} else {
+								if (transactionId == null && commit && allowRetry && json.getJsonArray("errors") != null && json.getJsonArray("errors").size() > 0) {
+									JsonArray errors = json.getJsonArray("errors");
+									for (Object o : errors) {
+										if (!(o instanceof JsonObject)) continue;
+										switch (((JsonObject) o).getString("code", "")) {
+											case "Neo.TransientError.Transaction.ConstraintsChanged":
+											case "Neo.TransientError.Transaction.DeadlockDetected":
+											case "Neo.TransientError.Transaction.InstanceStateChanged":
+											case "Neo.TransientError.Schema.SchemaModifiedConcurrently":
+												executeTransaction(statements, transactionId, commit, false, handler);
+												if (logger.isDebugEnabled()) {
+													logger.debug("Retry transaction : " + statements.encode());
 												}
-											}
+												return;
 										}
-										handler.handle(new JsonObject().put("message",
-											json.getJsonArray("errors", new fr.wseduc.webutils.collections.JsonArray()).encode()));
 									}
-								} else {
-									handler.handle(new JsonObject().put("message",
-										resp.statusMessage() + " : " + b.toString()));
 								}
+								handler.handle(new JsonObject().put("message",
+									json.getJsonArray("errors", new fr.wseduc.webutils.collections.JsonArray()).encode()));
 							}
 						});
 					}
@@ -427,29 +500,34 @@ public class Neo4jRest implements GraphDatabase {
 
 	private void sendRequest(String path, Object body, boolean checkReadOnly, boolean forceReadOnly, int retry,
 			final Handler<HttpClientResponse> handler) throws Neo4jConnectionException {
-		HttpClient client = null;
+		Neo4jRestClientNode node = null;
 		if (forceReadOnly && ro) {
-			client = nodeManager.getSlaveClient();
+			node = nodeManager.getSlaveNode();
 		} else if (checkReadOnly && ro) {
 			String query = ((JsonObject) body).getString("query");
-			if (query != null) {
-				Matcher m = writingClausesPattern.matcher(query);
-				if (!m.find()) {
-					client = nodeManager.getSlaveClient();
-				}
+			if (query != null && isReadQuery(query)) {
+				node = nodeManager.getSlaveNode();
 			}
 		}
-		if (client == null) {
-			client = nodeManager.getMasterClient();
+		if (node == null) {
+			node = nodeManager.getMasterNode();
 		}
+		final Neo4jRestClientNodeMetrics metrics = node.getMetrics();
+		final long start = metrics.requestStarted();
 		final String b = Json.encode(body);
-		client.request(HttpMethod.POST, basePath + path)
+		node.getHttpClient().request(HttpMethod.POST, basePath + path)
 				.map(req -> req.putHeader("Content-Type", "application/json")
 						.putHeader("Accept", "application/json; charset=UTF-8"))
 				.map(this::prepareRequest)
 				.flatMap(r -> r.send(b))
-				.onSuccess(handler)
+				.onSuccess(resp -> {
+					// the request is in flight until its body is read, not only until its headers are received
+					final boolean serverError = resp.statusCode() >= 500;
+					resp.end().onComplete(ar -> metrics.requestEnded(start, serverError || ar.failed()));
+					handler.handle(resp);
+				})
 				.onFailure(event -> {
+					metrics.requestEnded(start, true);
 					logger.error("Neo4j error in request : " + path + " - " + b, event);
 					if (ignoreEmptyStateError && EMPTY_STATEMENTS_STRING.equals(b) && retry > 0) {
 						logger.warn("Retry sendRequest with empty statements.");
@@ -467,4 +545,19 @@ public class Neo4jRest implements GraphDatabase {
 
 	}
 
+	/**
+	 * The classification of the distinct query strings is kept, most queries are constants with parameters.
+	 * @return true if the query has no writing clause and can be sent to a slave
+	 */
+	private boolean isReadQuery(String query) {
+		Boolean read = readQueries.get(query);
+		if (read == null) {
+			read = !writingClausesPattern.matcher(query).find();
+			if (readQueries.size() < MAX_CLASSIFIED_QUERIES) {
+				readQueries.put(query, read);
+			}
+		}
+		return read;
+	}
+
 }
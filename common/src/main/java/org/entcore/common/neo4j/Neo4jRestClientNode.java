@@ -33,6 +33,7 @@ public class Neo4jRestClientNode {
     private LocalDateTime notAvailableFrom;
     private LocalDateTime notReadableFrom;
     private String moduleName = "";
+    private final Neo4jRestClientNodeMetrics metrics = new Neo4jRestClientNodeMetrics();
 
     Neo4jRestClientNode(final String url, final HttpClient httpClient, final long banDurationSecond) {
         this.url = url;
@@ -97,6 +98,10 @@ public class Neo4jRestClientNode {
         return httpClient;
     }
 
+    public Neo4jRestClientNodeMetrics getMetrics() {
+        return metrics;
+    }
+
     public Boolean getAvailable() {
         return available;
     }
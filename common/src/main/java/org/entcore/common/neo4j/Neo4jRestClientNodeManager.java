@@ -4,17 +4,41 @@ import io.vertx.core.Vertx;
 import io.vertx.core.http.HttpClient;
 import io.vertx.core.http.HttpClientOptions;
 import io.vertx.core.json.JsonObject;
+import io.vertx.core.logging.Logger;
+import io.vertx.core.logging.LoggerFactory;
 
 import java.net.URI;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
-import java.util.Random;
-import java.util.stream.Collectors;
+import java.util.concurrent.ThreadLocalRandom;
 
 public class Neo4jRestClientNodeManager {
-    private final Random random = new Random();
+    private static final Logger log = LoggerFactory.getLogger(Neo4jRestClientNodeManager.class);
+    /**
+     * Selection of the read node among the available slaves : two slaves are drawn at random and the least loaded is
+     * used, loaded meaning the most requests in flight ({@code least-outstanding}) or the highest latency weighted by
+     * the requests in flight ({@code ewma}). {@code random} keeps one of the two without looking at their load.
+     */
+    public enum ReadRouting {
+        RANDOM, LEAST_OUTSTANDING, EWMA;
+
+        /**
+         * @return The policy named {@code name}, {@code least-outstanding} when the name is unknown so that a typo in
+         * the configuration does not prevent the client from starting
+         */
+        public static ReadRouting fromConfig(String name) {
+            try {
+                return valueOf(name.toUpperCase().replace('-', '_'));
+            } catch (IllegalArgumentException e) {
+                log.warn("Unknown neo4j read-routing " + name + ", using least-outstanding");
+                return LEAST_OUTSTANDING;
+            }
+        }
+    }
+
     private final Neo4jRestClientCheck checker;
+    private final ReadRouting readRouting;
     private final List<Neo4jRestClientNode> clients = new ArrayList<>();
 
     public Neo4jRestClientNodeManager(URI[] uris, Vertx vertx, long checkDelay, int poolSize, boolean keepAlive, String authorizationHeader, JsonObject neo4jConfig) {
@@ -23,6 +47,7 @@ public class Neo4jRestClientNodeManager {
 
     public Neo4jRestClientNodeManager(URI[] uris, Vertx vertx, long checkDelay, int poolSize, boolean keepAlive, String authorizationHeader, JsonObject neo4jConfig, boolean autoStart) {
         final long banDurationSeconds = neo4jConfig.getLong("ban-duration-seconds", 60l);
+        this.readRouting = ReadRouting.fromConfig(neo4jConfig.getString("read-routing", "least-outstanding"));
         for (final URI uri : uris) {
             final HttpClientOptions options = new HttpClientOptions()
                     .setDefaultHost(uri.getHost())
@@ -104,13 +129,39 @@ public class Neo4jRestClientNodeManager {
 
     public Neo4jRestClientNode getSlaveNode() throws Neo4jConnectionException {
         try {
-            final List<Neo4jRestClientNode> slaves = clients.stream().filter(c -> c.isSlaveAvailable()).collect(Collectors.toList());
-            if (slaves.isEmpty()) {
+            // draw two distinct available slaves (reservoir sampling, without allocating a filtered list)
+            Neo4jRestClientNode first = null;
+            Neo4jRestClientNode second = null;
+            int count = 0;
+            for (final Neo4jRestClientNode node : clients) {
+                if (!node.isSlaveAvailable()) {
+                    continue;
+                }
+                count++;
+                if (count == 1) {
+                    first = node;
+                } else if (count == 2) {
+                    second = node;
+                } else {
+                    final int r = ThreadLocalRandom.current().nextInt(count);
+                    if (r == 0) {
+                        first = node;
+                    } else if (r == 1) {
+                        second = node;
+                    }
+                }
+            }
+            if (first == null) {
                 return getMasterNode();
-            } else {
-                final Neo4jRestClientNode item = slaves.get(random.nextInt(slaves.size()));
-                return item;
+            } else if (second == null) {
+                return first;
+            }
+            final double a = load(first);
+            final double b = load(second);
+            if (a == b) {
+                return ThreadLocalRandom.current().nextBoolean() ? first : second;
             }
+            return (a < b) ? first : second;
         } catch (Neo4jConnectionException e) {
             throw e;
         } catch (RuntimeException e) {
@@ -118,6 +169,18 @@ public class Neo4jRestClientNodeManager {
         }
     }
 
+    private double load(Neo4jRestClientNode node) {
+        final Neo4jRestClientNodeMetrics metrics = node.getMetrics();
+        switch (readRouting) {
+            case LEAST_OUTSTANDING:
+                return metrics.getInFlight();
+            case EWMA:
+                return (metrics.getLatencyEwma() + 1d) * (metrics.getInFlight() + 1);
+            default:
+                return 0d;
+        }
+    }
+
     public void close() {
         this.checker.stop(this);
         for (Neo4jRestClientNode client : clients) {
@@ -0,0 +1,100 @@
+package org.entcore.common.neo4j;
+
+import io.vertx.core.json.JsonObject;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Load and latency of the requests sent to a Neo4j node, used to route the read queries and exposed by
+ * {@link Neo4jRest#getMetrics()}.
+ * <p>
+ * A request is measured until the headers of its response are received. The moving averages are updated without
+ * lock, concurrent updates can lose a sample which is fine for routing.
+ * </p>
+ */
+public class Neo4jRestClientNodeMetrics {
+
+    private static final long[] BUCKETS_MS = { 5, 10, 25, 50, 100, 250, 500, 1000, 2500, 5000 };
+    private static final double ALPHA = 0.2;
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final LongAdder requests = new LongAdder();
+    private final LongAdder errors = new LongAdder();
+    private final LongAdder latencySumMs = new LongAdder();
+    private final LongAdder[] buckets = new LongAdder[BUCKETS_MS.length + 1];
+    private volatile double latencyEwma;
+    private volatile double errorRate;
+
+    Neo4jRestClientNodeMetrics() {
+        for (int i = 0; i < buckets.length; i++) {
+            buckets[i] = new LongAdder();
+        }
+    }
+
+    /**
+     * @return The start time of the request, to pass to {@link #requestEnded(long, boolean)}
+     */
+    public long requestStarted() {
+        inFlight.incrementAndGet();
+        return System.nanoTime();
+    }
+
+    public void requestEnded(long start, boolean error) {
+        inFlight.decrementAndGet();
+        final long ms = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        requests.increment();
+        latencySumMs.add(ms);
+        int i = 0;
+        while (i < BUCKETS_MS.length && ms > BUCKETS_MS[i]) {
+            i++;
+        }
+        buckets[i].increment();
+        if (error) {
+            errors.increment();
+        }
+        final double ewma = latencyEwma;
+        latencyEwma = (ewma == 0d) ? ms : ewma + ALPHA * (ms - ewma);
+        errorRate = errorRate + ALPHA * ((error ? 1d : 0d) - errorRate);
+    }
+
+    public int getInFlight() {
+        return inFlight.get();
+    }
+
+    /**
+     * @return Moving average of the latency in milliseconds, 0 before the first request
+     */
+    public double getLatencyEwma() {
+        return latencyEwma;
+    }
+
+    /**
+     * @return Moving average of the share of failed requests
+     */
+    public double getErrorRate() {
+        return errorRate;
+    }
+
+    /**
+     * Add the metrics of the node to the metrics of the client, in the prometheus text format.
+     * @param labels Labels of the node, e.g. {@code node="http://neo4j:7474",type="Slave"}
+     */
+    void appendTo(JsonObject metrics, String labels) {
+        metrics.put("neo4j_node_in_flight{" + labels + "}", inFlight.get());
+        metrics.put("neo4j_node_requests_total{" + labels + "}", requests.sum());
+        metrics.put("neo4j_node_errors_total{" + labels + "}", errors.sum());
+        metrics.put("neo4j_node_error_rate{" + labels + "}", errorRate);
+        metrics.put("neo4j_node_latency_ewma_ms{" + labels + "}", latencyEwma);
+        long cumulated = 0L;
+        for (int i = 0; i < buckets.length; i++) {
+            cumulated += buckets[i].sum();
+            final String le = (i < BUCKETS_MS.length) ? Long.toString(BUCKETS_MS[i]) : "+Inf";
+            metrics.put("neo4j_node_latency_ms_bucket{" + labels + ",le=\"" + le + "\"}", cumulated);
+        }
+        metrics.put("neo4j_node_latency_ms_sum{" + labels + "}", latencySumMs.sum());
+        metrics.put("neo4j_node_latency_ms_count{" + labels + "}", cumulated);
+    }
+
+}
@@ -0,0 +1,282 @@
+/*
+ * Copyright © "Open Digital Education", 2017
+ *
+ * This program is published by "Open Digital Education".
+ * You must indicate the name of the software and the company in any production /contribution
+ * using the software and indicate on the home page of the software industry in question,
+ * "powered by Open Digital Education" with a reference to the website: https://opendigitaleducation.com/.
+ *
+ * This program is free software, licensed under the terms of the GNU Affero General Public License
+ * as published by the Free Software Foundation, version 3 of the License.
+ *
+ * You can redistribute this application and/or modify it since you respect the terms of the GNU Affero General Public License.
+ * If you modify the source code and then use this modified source code in your creation, you must make available the source code of your modifications.
+ *
+ * You should have received a copy of the GNU Affero General Public License along with the software.
+ * If not, please see : <http://www.gnu.org/licenses/>. Full compliance requires reading the terms of this license and following its directives.
+
+ */
+
+package org.entcore.common.neo4j;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.async.ByteArrayFeeder;
+import io.vertx.core.Handler;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+/**
+ * Incremental decoder of the responses of the Neo4j REST endpoints.
+ * <p>
+ * The body is fed chunk by chunk to a non blocking Jackson parser, and the rows of the {@code columns}/{@code data}
+ * results are built directly as objects keyed by column, without decoding the whole response into a tree first. The
+ * {@code meta} of the rows is skipped. The rows are either collected, the document then has the same shape as the
+ * transformed responses ({@code results} as an array of arrays of rows for a transaction, {@code result} as an array of
+ * rows for a cypher query), or passed one by one to a row handler and not kept.
+ * </p>
+ */
+final class Neo4jRestResponseParser {
+
+	private static final JsonFactory factory = new JsonFactory();
+
+	private enum Kind { OBJECT, ARRAY, RESULTS, RESULT, DATA, ROW_OBJECT, ROW, SKIP }
+
+	private static final class Frame {
+		private final Kind kind;
+		private final Object container;
+		private String fieldName;
+		private JsonArray columns;
+		private JsonArray rows;
+		private int index;
+
+		private Frame(Kind kind, Object container) {
+			this.kind = kind;
+			this.container = container;
+		}
+	}
+
+	private final boolean transaction;
+	private final Handler<JsonObject> rowHandler;
+	private final JsonParser parser;
+	private final ByteArrayFeeder feeder;
+	private final Deque<Frame> stack = new ArrayDeque<>();
+	private Frame result;
+	private JsonObject document;
+
+	private Neo4jRestResponseParser(boolean transaction, Handler<JsonObject> rowHandler) {
+		this.transaction = transaction;
+		this.rowHandler = rowHandler;
+		try {
+			this.parser = factory.createNonBlockingByteArrayParser();
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		this.feeder = (ByteArrayFeeder) parser.getNonBlockingInputFeeder();
+	}
+
+	/**
+	 * Parser of a response of the transaction endpoint.
+	 * @param rowHandler Handler of the rows, null to collect them in the document
+	 */
+	static Neo4jRestResponseParser transaction(Handler<JsonObject> rowHandler) {
+		return new Neo4jRestResponseParser(true, rowHandler);
+	}
+
+	/**
+	 * Parser of a successful response of the cypher endpoint.
+	 * @param rowHandler Handler of the rows, null to collect them in the document
+	 */
+	static Neo4jRestResponseParser cypher(Handler<JsonObject> rowHandler) {
+		return new Neo4jRestResponseParser(false, rowHandler);
+	}
+
+	void handle(Buffer chunk) throws IOException {
+		final byte[] bytes = chunk.getBytes();
+		feeder.feedInput(bytes, 0, bytes.length);
+		consume();
+	}
+
+	/**
+	 * @return The decoded document
+	 * @throws IOException if the response is not a complete json object
+	 */
+	JsonObject end() throws IOException {
+		feeder.endOfInput();
+		consume();
+		parser.close();
+		if (document == null) {
+			throw new IOException("Unexpected end of neo4j response");
+		}
+		return document;
+	}
+
+	private void consume() throws IOException {
+		JsonToken token;
+		while ((token = parser.nextToken()) != null && token != JsonToken.NOT_AVAILABLE) {
+			switch (token) {
+				case START_OBJECT:
+				case START_ARRAY:
+					stack.push(start(token == JsonToken.START_OBJECT));
+					break;
+				case END_OBJECT:
+				case END_ARRAY:
+					end(stack.pop());
+					break;
+				case FIELD_NAME:
+					stack.peek().fieldName = parser.getCurrentName();
+					break;
+				case VALUE_STRING:
+					value(parser.getText());
+					break;
+				case VALUE_NUMBER_INT:
+				case VALUE_NUMBER_FLOAT:
+					value(parser.getNumberValue());
+					break;
+				case VALUE_TRUE:
+					value(Boolean.TRUE);
+					break;
+				case VALUE_FALSE:
+					value(Boolean.FALSE);
+					break;
+				case VALUE_NULL:
+					value(null);
+					break;
+				default:
+					break;
+			}
+		}
+	}
+
+	private Frame start(boolean object) {
+		final Frame parent = stack.peek();
+		final Kind kind;
+		if (parent == null) {
+			kind = (transaction || !object) ? Kind.OBJECT : Kind.RESULT;
+		} else {
+			switch (parent.kind) {
+				case OBJECT:
+					kind = (transaction && stack.size() == 1 && !object && "results".equals(parent.fieldName)) ?
+							Kind.RESULTS : (object ? Kind.OBJECT : Kind.ARRAY);
+					break;
+				case RESULTS:
+					kind = object ? Kind.RESULT : Kind.SKIP;
+					break;
+				case RESULT:
+					if ("data".equals(parent.fieldName) && !object) {
+						kind = Kind.DATA;
+					} else if ("columns".equals(parent.fieldName) && !object) {
+						kind = Kind.ARRAY;
+					} else {
+						kind = Kind.SKIP;
+					}
+					break;
+				case DATA:
+					kind = object ? Kind.ROW_OBJECT : Kind.ROW;
+					break;
+				case ROW_OBJECT:
+					kind = ("row".equals(parent.fieldName) && !object) ? Kind.ROW : Kind.SKIP;
+					break;
+				case SKIP:
+					kind = Kind.SKIP;
+					break;
+				default:
+					kind = object ? Kind.OBJECT : Kind.ARRAY;
+			}
+		}
+		final Frame frame;
+		switch (kind) {
+			case OBJECT:
+				frame = new Frame(kind, new JsonObject());
+				break;
+			case ARRAY:
+				frame = new Frame(kind, new JsonArray());
+				break;
+			case RESULTS:
+				frame = new Frame(kind, new fr.wseduc.webutils.collections.JsonArray());
+				break;
+			case RESULT:
+				frame = new Frame(kind, null);
+				frame.rows = new fr.wseduc.webutils.collections.JsonArray();
+				result = frame;
+				break;
+			case ROW:
+				frame = new Frame(kind, new fr.wseduc.webutils.collections.JsonObject());
+				break;
+			default:
+				frame = new Frame(kind, null);
+		}
+		return frame;
+	}
+
+	private void end(Frame frame) {
+		final Frame parent = stack.peek();
+		switch (frame.kind) {
+			case OBJECT:
+			case ARRAY:
+				if (parent == null) {
+					document = (JsonObject) frame.container;
+				} else {
+					value(frame.container);
+				}
+				break;
+			case RESULTS:
+				((JsonObject) parent.container).put("results", frame.container);
+				break;
+			case RESULT:
+				if (parent == null) {
+					document = new JsonObject().put("result", frame.rows);
+				} else {
+					((JsonArray) parent.container).add(frame.rows);
+				}
+				result = null;
+				break;
+			case ROW:
+				if (rowHandler != null) {
+					rowHandler.handle((JsonObject) frame.container);
+				} else if (result != null) {
+					result.rows.add(frame.container);
+				}
+				break;
+			default:
+				break;
+		}
+	}
+
+	private void value(Object value) {
+		final Frame frame = stack.peek();
+		if (frame == null) {
+			return;
+		}
+		switch (frame.kind) {
+			case OBJECT:
+				((JsonObject) frame.container).put(frame.fieldName, value);
+				break;
+			case ARRAY:
+				((JsonArray) frame.container).add(value);
+				break;
+			case RESULT:
+				if ("columns".equals(frame.fieldName) && value instanceof JsonArray) {
+					frame.columns = (JsonArray) value;
+				}
+				break;
+			case ROW:
+				final JsonArray columns = (result != null) ? result.columns : null;
+				if (columns != null && frame.index < columns.size()) {
+					((JsonObject) frame.container).put(columns.getString(frame.index), value);
+				}
+				frame.index++;
+				break;
+			default:
+				break;
+		}
+	}
+
+}
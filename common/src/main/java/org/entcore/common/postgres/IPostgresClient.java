@@ -16,6 +16,11 @@ import java.util.function.Function;
 public interface IPostgresClient {
     Future<RowSet<Row>> preparedQuery(String query, Tuple tuple);
 
+    /**
+     * Execute a query with the simple query protocol, without preparing it. The query can contain several statements.
+     */
+    Future<RowSet<Row>> query(String query);
+
     <T> Future<@Nullable T>  transaction(Function<SqlConnection, Future<@Nullable T>> function);
 
     Future<RowStream<Row>> queryStream(String query, Tuple tuple, int batchSize);
@@ -375,6 +375,14 @@ public class PostgresClient implements IPostgresClient {
         return promise.future();
     }
 
+    @Override
+    public Future<RowSet<Row>> query(final String query) {
+        if(this.pool == null){
+            this.pool = this.getClientPool();
+        }
+        return this.pool.query(query);
+    }
+
     @Override
     public Future<RowStream<Row>> queryStream(String query, Tuple tuple, int batchSize) {
         if(this.pool == null){
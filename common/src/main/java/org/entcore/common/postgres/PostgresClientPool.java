@@ -118,6 +118,11 @@ public class PostgresClientPool implements IPostgresClient {
         return future.future();
     }
 
+    @Override
+    public Future<RowSet<Row>> query(final String query) {
+        return this.pgPool.query(query).execute();
+    }
+
     public Future<RowStream<Row>> queryStream(final String query, final Tuple tuple, final int batchSize) {
         final Promise<RowStream<Row>> rowStreamPromise = Promise.promise();
         this.pgPool.withTransaction(sqlConnection -> {
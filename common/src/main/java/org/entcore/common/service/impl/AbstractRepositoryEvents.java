@@ -15,11 +15,14 @@ import io.vertx.core.logging.LoggerFactory;
 import org.bson.conversions.Bson;
 import org.entcore.common.folders.FolderExporter;
 import org.entcore.common.folders.FolderExporter.FolderExporterContext;
+import org.entcore.common.folders.impl.DocumentHelper;
 import org.entcore.common.storage.StorageFactory;
+import org.entcore.common.user.ExportEntries;
 import org.entcore.common.user.RepositoryEvents;
 import org.entcore.common.utils.Config;
 import org.entcore.common.utils.ResourceUtils;
 import org.entcore.common.utils.StringUtils;
+import org.entcore.common.utils.ZipStreamWriter;
 
 import java.io.File;
 import java.util.ArrayList;
@@ -59,11 +62,18 @@ public abstract class AbstractRepositoryEvents implements RepositoryEvents {
 		}
 	}
 
+	/**
+	 * @return The name of the folder of the module in the export, its title in the locale of the user
+	 */
+	protected Future<String> exportFolderName(String locale) {
+		return this.vertx.eventBus().request("portal", new JsonObject().put("action","getI18n").put("acceptLanguage",locale))
+				.map(json -> StringUtils.stripAccents(((JsonObject) json.body()).getString(title.toLowerCase())));
+	}
+
 	protected void createExportDirectory(String exportPath, String locale, final Handler<String> handler) {
-		this.vertx.eventBus().request("portal", new JsonObject().put("action","getI18n").put("acceptLanguage",locale), json -> {
+		exportFolderName(locale).onComplete(json -> {
 			if (json.succeeded()) {
-				final String path = exportPath + File.separator +
-						StringUtils.stripAccents(((JsonObject)json.result().body()).getString(title.toLowerCase()));
+				final String path = exportPath + File.separator + json.result();
 				vertx.fileSystem().mkdir(path, event -> {
 					if (event.succeeded()) {
 						handler.handle(path);
@@ -91,18 +101,7 @@ public abstract class AbstractRepositoryEvents implements RepositoryEvents {
 					public void handle(Message<JsonObject> event) {
 						JsonArray results = event.body().getJsonArray("results");
 						if ("ok".equals(event.body().getString("status")) && results != null && !results.isEmpty()) {
-							List<JsonObject> list = new ArrayList<>();
-							results.forEach(elem -> {
-								JsonObject doc = ((JsonObject) elem);
-								String filename = doc.getString("name");
-								String fileId = doc.getString("_id");
-								int dot = filename.lastIndexOf('.');
-								filename = dot > -1 ? filename.substring(0, dot) + "_" + fileId + filename.substring(dot)
-										: filename + "_" + fileId;
-								doc.put("name",filename);
-								doc.getJsonObject("metadata").put("filename",filename);
-								list.add(doc);
-							});
+							List<JsonObject> list = documentsDependancies(results);
 							String exportPathTmp = exportPath + "_tmp";
 							String exportPathFinal = exportPath + File.separator + "Documents";
 							exporter.export(new FolderExporterContext(exportPathTmp), list).onComplete(res -> {
@@ -138,6 +137,58 @@ public abstract class AbstractRepositoryEvents implements RepositoryEvents {
 	}
 
 
+	/**
+	 * Adds the documents linked by the resources to the folder of the module in the archive, in a
+	 * {@code Documents} folder as {@link #exportDocumentsDependancies} : the files are read from the storage by the
+	 * archive module and never copied to the file system.
+	 * @return A future failed if an entry could not be added to the archive
+	 */
+	protected Future<Void> streamDocumentsDependancies(JsonArray prevResults, ExportEntries entries) {
+		final JsonArray documentsIds = prevResults.isEmpty() ? new JsonArray() :
+				new JsonArray(ResourceUtils.extractIds(prevResults.encode()));
+		if (documentsIds.isEmpty()) {
+			return Future.succeededFuture();
+		}
+		final Promise<Void> promise = Promise.promise();
+		mongo.find("documents", MongoQueryBuilder.build(Filters.eq("_id", documentsIds)), event -> {
+			final JsonArray results = event.body().getJsonArray("results");
+			if (!"ok".equals(event.body().getString("status")) || results == null || results.isEmpty()) {
+				log.error(title + " : Failed to export document: " + event.body().getString("message"));
+				promise.complete();
+				return;
+			}
+			final Map<String, JsonObject> paths = exporter.filePaths(new FolderExporterContext("Documents"),
+					documentsDependancies(results));
+			Future<Void> future = Future.succeededFuture();
+			for (Map.Entry<String, JsonObject> path : paths.entrySet()) {
+				final JsonObject metadata = path.getValue().getJsonObject("metadata", new JsonObject());
+				future = future.compose(v -> entries.addFile(path.getKey(), DocumentHelper.getFileId(path.getValue()),
+						!ZipStreamWriter.isCompressed(path.getKey(), metadata.getString("content-type"))));
+			}
+			future.onComplete(promise);
+		});
+		return promise.future();
+	}
+
+	/**
+	 * @return The documents, their names suffixed by their id so that they are unique in the export
+	 */
+	private List<JsonObject> documentsDependancies(JsonArray results) {
+		List<JsonObject> list = new ArrayList<>();
+		results.forEach(elem -> {
+			JsonObject doc = ((JsonObject) elem);
+			String filename = doc.getString("name");
+			String fileId = doc.getString("_id");
+			int dot = filename.lastIndexOf('.');
+			filename = dot > -1 ? filename.substring(0, dot) + "_" + fileId + filename.substring(dot)
+					: filename + "_" + fileId;
+			doc.put("name",filename);
+			doc.getJsonObject("metadata").put("filename",filename);
+			list.add(doc);
+		});
+		return list;
+	}
+
 	public static void applyIdsChange(JsonObject docFragment, Map<String, String> oldIdsToNewIds)
 	{
 		if(docFragment == null)
@@ -28,6 +28,7 @@ import io.vertx.core.*;
 import org.bson.conversions.Bson;
 import org.entcore.common.mongodb.MongoDbConf;
 import org.entcore.common.share.impl.MongoDbShareService;
+import org.entcore.common.user.ExportEntries;
 import org.entcore.common.folders.impl.DocumentHelper;
 
 import io.vertx.core.eventbus.Message;
@@ -57,6 +58,7 @@ public class MongoDbRepositoryEvents extends AbstractRepositoryEvents {
 	protected final String revisionsCollection;
 	protected final String revisionIdAttribute;
 	private final FolderImporter fileImporter;
+	private final boolean streamExports;
 	protected final Map<String, String> collectionNameToImportPrefixMap = new LinkedHashMap<String, String>();
 
 	public MongoDbRepositoryEvents(Vertx vertx, JsonObject config, String managerRight, String revisionsCollection,
@@ -66,6 +68,7 @@ public class MongoDbRepositoryEvents extends AbstractRepositoryEvents {
 		this.revisionsCollection = revisionsCollection;
 		this.revisionIdAttribute = revisionIdAttribute;
 		this.fileImporter = vertx == null ? null : new FolderImporter(vertx, vertx.fileSystem(), vertx.eventBus());
+		this.streamExports = config.getBoolean("stream-exports", false);
 	}
 
 	@Override
@@ -306,16 +309,7 @@ public class MongoDbRepositoryEvents extends AbstractRepositoryEvents {
 			handler.handle(exported.get());
 		} else {
 			JsonObject resources = results.getJsonObject(0);
-			String fileId = resources.getString("_id");
-			String fileName = resources.getString("title");
-			if (fileName == null) {
-				fileName = resources.getString("name");
-			}
-			fileName = StringUtils.replaceForbiddenCharacters(fileName);
-			if (!usedFileName.add(fileName)) {
-				fileName += "_" + fileId;
-			}
-			final String filePath = exportPath + File.separator + fileName;
+			final String filePath = exportPath + File.separator + exportFileName(resources, usedFileName);
 			vertx.fileSystem().writeFile(filePath, resources.toBuffer(), new Handler<AsyncResult<Void>>() {
 				@Override
 				public void handle(AsyncResult<Void> event) {
@@ -331,6 +325,60 @@ public class MongoDbRepositoryEvents extends AbstractRepositoryEvents {
 		}
 	}
 
+	private static String exportFileName(JsonObject resources, Set<String> usedFileName) {
+		String fileName = resources.getString("title");
+		if (fileName == null) {
+			fileName = resources.getString("name");
+		}
+		fileName = StringUtils.replaceForbiddenCharacters(fileName);
+		if (!usedFileName.add(fileName)) {
+			fileName += "_" + resources.getString("_id");
+		}
+		return fileName;
+	}
+
+	/**
+	 * Sends the resources and their documents straight to the archive of the export, with the same layout as the
+	 * export directory.
+	 */
+	private Future<Void> streamResources(JsonArray results, boolean exportDocuments, ExportEntries entries) {
+		final Future<Void> documents = exportDocuments ? streamDocumentsDependancies(results, entries) :
+				Future.succeededFuture();
+		final Set<String> usedFileName = new HashSet<>();
+		Future<Void> future = documents;
+		for (Object resources : results) {
+			future = future.compose(v -> entries.add(exportFileName((JsonObject) resources, usedFileName),
+					((JsonObject) resources).toBuffer()));
+		}
+		return future;
+	}
+
+	private void exportToDirectory(JsonArray results, boolean exportDocuments, String exportPath, String locale,
+			AtomicBoolean exported, Handler<Boolean> handler) {
+		createExportDirectory(exportPath, locale, path -> {
+			if (path != null) {
+				Handler<Boolean> finish = new Handler<Boolean>() {
+					@Override
+					public void handle(Boolean bool) {
+						if (bool) {
+							exportFiles(results, path, new HashSet<String>(), exported, handler);
+						} else {
+							// Should never happen, export doesn't fail if docs export fail.
+							handler.handle(exported.get());
+						}
+					}
+				};
+
+				if(exportDocuments == true)
+					exportDocumentsDependancies(results, path, finish);
+				else
+					finish.handle(Boolean.TRUE);
+			} else {
+				handler.handle(exported.get());
+			}
+		});
+	}
+
 	/**
 	 * Override this method to filter the resources to export
 	 * @param resources The resources to filter
@@ -376,28 +424,21 @@ public class MongoDbRepositoryEvents extends AbstractRepositoryEvents {
 						for(int i = results.size(); i-->0;) {
 							DocumentHelper.clearComments(results.getJsonObject(i), true);
 						}
-						createExportDirectory(exportPath, locale, path -> {
-							if (path != null) {
-								Handler<Boolean> finish = new Handler<Boolean>() {
-									@Override
-									public void handle(Boolean bool) {
-										if (bool) {
-											exportFiles(results, path, new HashSet<String>(), exported, handler);
+						if (streamExports) {
+							// the archive module only accepts the entries of the exports it streams
+							exportFolderName(locale).compose(folder -> ExportEntries.open(eb, exportId, folder))
+									.onSuccess(entries -> streamResources(results, exportDocuments, entries).onComplete(ar -> {
+										if (ar.succeeded()) {
+											log.info(title + " exported successfully to the archive of " + exportId);
 										} else {
-											// Should never happen, export doesn't fail if docs export fail.
-											handler.handle(exported.get());
+											log.error(title + " : Could not stream the export " + exportId, ar.cause());
 										}
-									}
-								};
-
-								if(exportDocuments == true)
-									exportDocumentsDependancies(results, path, finish);
-								else
-									finish.handle(Boolean.TRUE);
-							} else {
-								handler.handle(exported.get());
-							}
-						});
+										handler.handle(ar.succeeded());
+									}))
+									.onFailure(e -> exportToDirectory(results, exportDocuments, exportPath, locale, exported, handler));
+						} else {
+							exportToDirectory(results, exportDocuments, exportPath, locale, exported, handler);
+						}
 					} else {
 						log.error(title + " : Could not proceed query " + query.encode(), event.body().getString("message"));
 						handler.handle(exported.get());
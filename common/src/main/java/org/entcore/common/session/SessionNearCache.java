@@ -0,0 +1,168 @@
+package org.entcore.common.session;
+
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import io.vertx.core.logging.Logger;
+import io.vertx.core.logging.LoggerFactory;
+import org.entcore.common.cache.LocalCache;
+import org.entcore.common.user.AuthorizedActions;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Node-local cache of the sessions returned by the session manager ({@code wse.session}) for the action {@code find}.
+ * <p>
+ * The cache is opt-in : it is only enabled when the {@code sessionNearCache} configuration is set with
+ * {@code "enabled": true}. Entries are keyed by session id or token id and are invalidated by the messages published
+ * by AuthManager on {@link #INVALIDATION_ADDRESS} whenever a session is dropped or its cache attributes change.
+ * </p>
+ * <p>
+ * As a cache hit does not reach the session store, the user's last activity is not refreshed. The ttl of the entries
+ * is therefore kept well under the session timeout so that an active user still refreshes their session regularly.
+ * The timeout is read from {@code session-timeout} in the cache configuration (the Starter copies the
+ * {@code session_timeout} of the platform configuration there), 30 minutes by default.
+ * </p>
+ */
+public class SessionNearCache {
+
+	public static final String CONFIG_KEY = "sessionNearCache";
+	public static final String INVALIDATION_ADDRESS = "wse.session.invalidate";
+	public static final String SESSION_TIMEOUT_KEY = "session-timeout";
+	/** Mirrors SessionStore.DEFAULT_SESSION_TIMEOUT from the session module. */
+	public static final long DEFAULT_SESSION_TIMEOUT = 30 * 60 * 1000L;
+	private static final int DEFAULT_MAX_SIZE = 10000;
+	private static final Logger log = LoggerFactory.getLogger(SessionNearCache.class);
+
+	private final LocalCache<String, JsonObject> cache;
+	private final AtomicLong generation = new AtomicLong();
+
+	private SessionNearCache(final LocalCache<String, JsonObject> cache) {
+		this.cache = cache;
+	}
+
+	/**
+	 * Create the cache of the current verticle from the {@code sessionNearCache} entry of the server map.
+	 * @param vertx Vertx instance used to listen to invalidation messages
+	 * @return The near cache, disabled if it is not configured
+	 */
+	public static SessionNearCache create(final Vertx vertx) {
+		final JsonObject config = getConfig(vertx);
+		if (!config.getBoolean("enabled", false)) {
+			return new SessionNearCache(null);
+		}
+		final long ttl = ttl(config);
+		final LocalCache<String, JsonObject> cache = new LocalCache<String, JsonObject>(
+				config.getInteger("max-size", DEFAULT_MAX_SIZE), ttl).registerMetrics("session");
+		final SessionNearCache nearCache = new SessionNearCache(cache);
+		vertx.eventBus().<JsonObject>consumer(INVALIDATION_ADDRESS, message -> nearCache.invalidate(message.body()));
+		log.info("Session near cache enabled with ttl " + ttl + " ms");
+		return nearCache;
+	}
+
+	/**
+	 * @return The ttl of the entries : the configured {@code ttl}, one thirtieth of the session timeout by default,
+	 * never more than one sixth of the session timeout.
+	 */
+	static long ttl(final JsonObject config) {
+		final long sessionTimeout = config.getLong(SESSION_TIMEOUT_KEY, DEFAULT_SESSION_TIMEOUT);
+		return Math.min(config.getLong("ttl", sessionTimeout / 30), sessionTimeout / 6);
+	}
+
+	public static JsonObject getConfig(final Vertx vertx) {
+		final Object config = vertx.sharedData().getLocalMap("server").get(CONFIG_KEY);
+		return (config instanceof String) ? new JsonObject((String) config) : new JsonObject();
+	}
+
+	/**
+	 * @return {@code true} if the near cache is configured on this platform.
+	 */
+	public static boolean isEnabled(final Vertx vertx) {
+		return getConfig(vertx).getBoolean("enabled", false);
+	}
+
+	/**
+	 * Build the invalidation message of sessions.
+	 * @param sessionIds Ids of the sessions (or tokens) to evict
+	 * @return The message to publish on {@link #INVALIDATION_ADDRESS}
+	 */
+	public static JsonObject invalidateSessions(final JsonArray sessionIds) {
+		return new JsonObject().put("sessionIds", sessionIds);
+	}
+
+	/**
+	 * Build the invalidation message of all the sessions of a user.
+	 * @param userId Id of the user whose sessions are evicted
+	 * @return The message to publish on {@link #INVALIDATION_ADDRESS}
+	 */
+	public static JsonObject invalidateUser(final String userId) {
+		return new JsonObject().put("userId", userId);
+	}
+
+	public boolean isEnabled() {
+		return cache != null;
+	}
+
+	/**
+	 * @return A marker to pass to {@link #put(String, JsonObject, long)} so that a session fetched before an
+	 * invalidation is not cached afterwards.
+	 */
+	public long generation() {
+		return generation.get();
+	}
+
+	/**
+	 * @param sessionId Id of the session or of the token
+	 * @return A copy of the cached session or {@code null}
+	 */
+	public JsonObject get(final String sessionId) {
+		if (cache == null || sessionId == null) {
+			return null;
+		}
+		final JsonObject session = cache.get(sessionId);
+		if (session == null) {
+			return null;
+		}
+		final JsonObject copy = session.copy();
+		AuthorizedActions.share(session, copy);
+		return copy;
+	}
+
+	public void put(final String sessionId, final JsonObject session, final long fetchGeneration) {
+		if (cache == null || sessionId == null || session == null) {
+			return;
+		}
+		if (fetchGeneration == generation.get()) {
+			final JsonObject copy = session.copy();
+			AuthorizedActions.names(copy);
+			cache.put(sessionId, copy);
+		}
+	}
+
+	public void invalidate(final JsonObject message) {
+		if (cache == null || message == null) {
+			return;
+		}
+		generation.incrementAndGet();
+		final JsonArray sessionIds = message.getJsonArray("sessionIds");
+		if (sessionIds != null) {
+			for (Object sessionId : sessionIds) {
+				if (sessionId instanceof String) {
+					cache.invalidate((String) sessionId);
+				}
+			}
+		}
+		final String userId = message.getString("userId");
+		if (userId != null) {
+			cache.invalidateIf((sessionId, session) -> userId.equals(session.getString("userId")));
+		}
+		if (message.getBoolean("all", false)) {
+			cache.invalidateAll();
+		}
+	}
+
+	public JsonObject stats() {
+		return cache != null ? cache.stats().put("enabled", true) : new JsonObject().put("enabled", false);
+	}
+
+}
@@ -303,18 +303,24 @@ public abstract class GenericShareService implements ShareService {
 			handler.handle(false);
 			return;
 		}
-		findVisibleProfilsGroups(eb, userId, true, new Handler<JsonArray>() {
-			@Override
-			public void handle(JsonArray visibleGroups) {
-				final List<String> visibleGroupsIds = new ArrayList<>();
-				for (int i = 0; i < visibleGroups.size(); i++) {
-					JsonObject j = visibleGroups.getJsonObject(i);
-					if (j != null && j.getString("id") != null) {
-						visibleGroupsIds.add(j.getString("id"));
+		UserUtils.verifyCommunication(eb, userId, Collections.singleton(groupId), allowed -> {
+			if (allowed.contains(groupId)) {
+				handler.handle(true);
+				return;
+			}
+			findVisibleProfilsGroups(eb, userId, true, new Handler<JsonArray>() {
+				@Override
+				public void handle(JsonArray visibleGroups) {
+					final List<String> visibleGroupsIds = new ArrayList<>();
+					for (int i = 0; i < visibleGroups.size(); i++) {
+						JsonObject j = visibleGroups.getJsonObject(i);
+						if (j != null && j.getString("id") != null) {
+							visibleGroupsIds.add(j.getString("id"));
+						}
 					}
+					handler.handle(visibleGroupsIds.contains(groupId));
 				}
-				handler.handle(visibleGroupsIds.contains(groupId));
-			}
+			});
 		});
 	}
 
@@ -323,18 +329,24 @@ public abstract class GenericShareService implements ShareService {
 			handler.handle(false);
 			return;
 		}
-		findVisibleUsers(eb, userId, false, new Handler<JsonArray>() {
-			@Override
-			public void handle(JsonArray visibleUsers) {
-				final List<String> visibleUsersIds = new ArrayList<>();
-				for (int i = 0; i < visibleUsers.size(); i++) {
-					JsonObject j = visibleUsers.getJsonObject(i);
-					if (j != null && j.getString("id") != null) {
-						visibleUsersIds.add(j.getString("id"));
+		UserUtils.verifyCommunication(eb, userId, Collections.singleton(userShareId), allowed -> {
+			if (allowed.contains(userShareId)) {
+				handler.handle(true);
+				return;
+			}
+			findVisibleUsers(eb, userId, false, new Handler<JsonArray>() {
+				@Override
+				public void handle(JsonArray visibleUsers) {
+					final List<String> visibleUsersIds = new ArrayList<>();
+					for (int i = 0; i < visibleUsers.size(); i++) {
+						JsonObject j = visibleUsers.getJsonObject(i);
+						if (j != null && j.getString("id") != null) {
+							visibleUsersIds.add(j.getString("id"));
+						}
 					}
+					handler.handle(visibleUsersIds.contains(userShareId));
 				}
-				handler.handle(visibleUsersIds.contains(userShareId));
-			}
+			});
 		});
 	}
 
@@ -478,25 +490,41 @@ public abstract class GenericShareService implements ShareService {
 		} else {
 			partitionSize = DEFAULT_SHARES_PARTITION_SIZE;
 		}
-		final List<List<String>> idsOfShareChunks = Lists.partition(getIdOfGroupsAndUsersConcernedByShares(originalShares, shareUpdates), partitionSize);
-		final List<Future<JsonArray>> visibleFutures = new ArrayList<>();
-		idsOfShareChunks.forEach(idsOfShareChunk -> {
-			final Promise<JsonArray> visiblePromise = Promise.promise();
-			final JsonArray idsOfShare = new JsonArray();
-			idsOfShareChunk.forEach(idsOfShare::add);
-			final JsonObject extraParams = new JsonObject()
-					.put("expectedIdsOfUsersAndGroups", idsOfShare);
-			UserUtils.findVisibles(eb, userId, customReturn,
-					extraParams,
-					true, true, false,
-					"fr", "AND (m.id IN {expectedIdsOfUsersAndGroups}) ",
-					visiblePromise::complete);
-			visibleFutures.add(visiblePromise.future());
-		});
-		Future.all(visibleFutures)
-				.map(futures -> futures.list().stream()
-						.map(result -> (JsonArray) result)
-						.collect(Collectors.toList()))
+		final List<String> idsOfShares = getIdOfGroupsAndUsersConcernedByShares(originalShares, shareUpdates);
+		// Users and groups the user can communicate with are checked in one batched query, only the
+		// remaining ones are searched in the visibles of the user
+		final Promise<Set<String>> verifiedPromise = Promise.promise();
+		UserUtils.verifyCommunication(eb, userId, idsOfShares, verifiedPromise::complete);
+		verifiedPromise.future().compose(verified -> {
+			final List<String> remainingIds = idsOfShares.stream()
+					.filter(id -> !verified.contains(id))
+					.collect(Collectors.toList());
+			final List<List<String>> idsOfShareChunks = Lists.partition(remainingIds, partitionSize);
+			final List<Future<JsonArray>> visibleFutures = new ArrayList<>();
+			idsOfShareChunks.forEach(idsOfShareChunk -> {
+				final Promise<JsonArray> visiblePromise = Promise.promise();
+				final JsonArray idsOfShare = new JsonArray();
+				idsOfShareChunk.forEach(idsOfShare::add);
+				final JsonObject extraParams = new JsonObject()
+						.put("expectedIdsOfUsersAndGroups", idsOfShare);
+				UserUtils.findVisibles(eb, userId, customReturn,
+						extraParams,
+						true, true, false,
+						"fr", "AND (m.id IN {expectedIdsOfUsersAndGroups}) ",
+						visiblePromise::complete);
+				visibleFutures.add(visiblePromise.future());
+			});
+			final JsonArray verifiedArray = new JsonArray();
+			verified.forEach(id -> verifiedArray.add(new JsonObject().put("id", id)));
+			return Future.all(visibleFutures)
+					.map(futures -> {
+						final List<JsonArray> chunks = futures.list().stream()
+								.map(result -> (JsonArray) result)
+								.collect(Collectors.toList());
+						chunks.add(verifiedArray);
+						return chunks;
+					});
+		})
 				.onSuccess(visibleChunks -> {
 					final JsonArray visibleArray = new JsonArray();
 					visibleChunks.forEach(visibleArray::addAll);
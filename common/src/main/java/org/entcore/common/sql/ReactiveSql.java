@@ -0,0 +1,445 @@
+/*
+ * Copyright © "Open Digital Education", 2014
+ *
+ * This program is published by "Open Digital Education".
+ * You must indicate the name of the software and the company in any production /contribution
+ * using the software and indicate on the home page of the software industry in question,
+ * "powered by Open Digital Education" with a reference to the website: https://opendigitaleducation.com/.
+ *
+ * This program is free software, licensed under the terms of the GNU Affero General Public License
+ * as published by the Free Software Foundation, version 3 of the License.
+ *
+ * You can redistribute this application and/or modify it since you respect the terms of the GNU Affero General Public License.
+ * If you modify the source code and then use this modified source code in your creation, you must make available the source code of your modifications.
+ *
+ * You should have received a copy of the GNU Affero General Public License along with the software.
+ * If not, please see : <http://www.gnu.org/licenses/>. Full compliance requires reading the terms of this license and following its directives.
+
+ */
+
+package org.entcore.common.sql;
+
+import fr.wseduc.webutils.eventbus.ResultMessage;
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import io.vertx.core.eventbus.DeliveryOptions;
+import io.vertx.core.eventbus.Message;
+import io.vertx.core.json.Json;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import io.vertx.core.logging.Logger;
+import io.vertx.core.logging.LoggerFactory;
+import io.vertx.sqlclient.Row;
+import io.vertx.sqlclient.RowIterator;
+import io.vertx.sqlclient.RowSet;
+import io.vertx.sqlclient.SqlConnection;
+import io.vertx.sqlclient.Tuple;
+import io.vertx.sqlclient.desc.ColumnDescriptor;
+import org.entcore.common.bus.ErrorMessage;
+import org.entcore.common.postgres.IPostgresClient;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.time.OffsetDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * {@link ISql} executing the statements directly on the reactive PostgreSQL pool of the module instead of sending
+ * them to the sql persistor on the event bus.
+ * <p>
+ * The responses have the same shape as the ones of the persistor, so {@link SqlResult} and the modules reading the
+ * bodies can not tell the difference : {@code fields}, {@code results} as arrays of values, {@code rows}, the json
+ * columns as strings and the timestamps formatted like the persistor does.
+ * </p>
+ * <p>
+ * Like the persistor, the {@code ?} parameters are sent as untyped literals so that postgres infers their type from
+ * the statement (a string can be compared to a uuid or inserted in a timestamp column) : the reactive client refuses
+ * a string for a parameter of another type, so the values are inlined rather than bound to a prepared statement.
+ * The numbers are inlined as numeric literals, the other values are quoted with {@link Sql#escapeValue(Object)},
+ * which is only safe with {@code standard_conforming_strings}, see {@link #checkSettings()}. The delivery options are
+ * ignored.
+ * </p>
+ */
+public class ReactiveSql implements ISql {
+
+	private static final Logger log = LoggerFactory.getLogger(ReactiveSql.class);
+	private static final DateTimeFormatter TIMESTAMP = DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss.SSS");
+	private static final DateTimeFormatter TIMESTAMP_TZ = DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss.SSSXXX");
+
+	private final IPostgresClient client;
+
+	public ReactiveSql(IPostgresClient client) {
+		this.client = client;
+	}
+
+	/**
+	 * Check that the server keeps the backslashes of the quoted strings, the values would not be escaped otherwise.
+	 * @return A failed future if {@code standard_conforming_strings} is not {@code on}
+	 */
+	public Future<Void> checkSettings() {
+		return client.query("SHOW standard_conforming_strings").compose(rowSet -> {
+			final RowIterator<Row> it = rowSet.iterator();
+			final String value = it.hasNext() ? it.next().getString(0) : null;
+			if (!"on".equalsIgnoreCase(value)) {
+				return Future.failedFuture("standard_conforming_strings must be on to inline the values : " + value);
+			}
+			return Future.succeededFuture();
+		});
+	}
+
+	@Override
+	public void prepared(String query, JsonArray values, Handler<Message<JsonObject>> handler) {
+		prepared(query, values, new DeliveryOptions(), handler);
+	}
+
+	@Override
+	public void prepared(String query, JsonArray values, DeliveryOptions deliveryOptions, Handler<Message<JsonObject>> handler) {
+		prepared(query, values, deliveryOptions).onSuccess(handler::handle);
+	}
+
+	@Override
+	public Future<Message<JsonObject>> prepared(String query, JsonArray values, DeliveryOptions deliveryOptions) {
+		final String statement;
+		try {
+			statement = bind(query, values);
+		} catch (RuntimeException e) {
+			return Future.succeededFuture(new ErrorMessage(e.getMessage()));
+		}
+		return respond(client.query(statement));
+	}
+
+	@Override
+	public void raw(String query, Handler<Message<JsonObject>> handler) {
+		respond(client.query(query)).onSuccess(handler::handle);
+	}
+
+	@Override
+	public void insert(String table, JsonObject params, Handler<Message<JsonObject>> handler) {
+		insert(table, params, null, handler);
+	}
+
+	@Override
+	public void insert(String table, JsonObject params, String returning, Handler<Message<JsonObject>> handler) {
+		if (params == null) {
+			handler.handle(new ErrorMessage("invalid.parameters"));
+			return;
+		}
+		JsonArray fields = new fr.wseduc.webutils.collections.JsonArray();
+		JsonArray values = new fr.wseduc.webutils.collections.JsonArray();
+		for (String attr : params.fieldNames()) {
+			fields.add(attr);
+			values.add(params.getValue(attr));
+		}
+		insert(table, fields, new fr.wseduc.webutils.collections.JsonArray().add(values), returning, handler);
+	}
+
+	@Override
+	public void insert(String table, JsonArray fields, JsonArray values, Handler<Message<JsonObject>> handler) {
+		insert(table, fields, values, null, handler);
+	}
+
+	@Override
+	public void insert(String table, JsonArray fields, JsonArray values, String returning,
+			Handler<Message<JsonObject>> handler) {
+		execute(new JsonObject()
+				.put("action", "insert")
+				.put("table", table)
+				.put("fields", fields)
+				.put("values", values)
+				.put("returning", returning), handler);
+	}
+
+	@Override
+	public void upsert(String table, JsonArray fields, JsonArray values, JsonArray conflictFields,
+			JsonArray updateFields, String returning, Handler<Message<JsonObject>> handler) {
+		execute(new JsonObject()
+				.put("action", "upsert")
+				.put("table", table)
+				.put("fields", fields)
+				.put("values", values)
+				.put("conflictFields", conflictFields)
+				.put("updateFields", updateFields)
+				.put("returning", returning), handler);
+	}
+
+	@Override
+	public void select(String table, JsonArray fields, Handler<Message<JsonObject>> handler) {
+		execute(new JsonObject()
+				.put("action", "select")
+				.put("table", table)
+				.put("fields", fields), handler);
+	}
+
+	@Override
+	public void transaction(JsonArray statements, Handler<Message<JsonObject>> handler) {
+		transaction(statements, new DeliveryOptions(), handler);
+	}
+
+	@Override
+	public void transaction(JsonArray statements, DeliveryOptions deliveryOptions, Handler<Message<JsonObject>> handler) {
+		final String[] queries = new String[statements == null ? 0 : statements.size()];
+		try {
+			for (int i = 0; i < queries.length; i++) {
+				queries[i] = statement(statements.getJsonObject(i));
+			}
+		} catch (RuntimeException e) {
+			handler.handle(new ErrorMessage(e.getMessage()));
+			return;
+		}
+		client.transaction(connection -> next(connection, queries, 0, new fr.wseduc.webutils.collections.JsonArray()))
+				.onSuccess(results -> handler.handle(new ResultMessage(new JsonObject()
+						.put("status", "ok")
+						.put("results", results))))
+				.onFailure(e -> handler.handle(error(e)));
+	}
+
+	private Future<JsonArray> next(SqlConnection connection, String[] queries, int index, JsonArray results) {
+		if (index >= queries.length) {
+			return Future.succeededFuture(results);
+		}
+		return connection.query(queries[index]).execute().compose(rowSet -> {
+			results.add(toJson(last(rowSet)));
+			return next(connection, queries, index + 1, results);
+		});
+	}
+
+	private void execute(JsonObject statement, Handler<Message<JsonObject>> handler) {
+		final String query;
+		try {
+			query = statement(statement);
+		} catch (RuntimeException e) {
+			handler.handle(new ErrorMessage(e.getMessage()));
+			return;
+		}
+		respond(client.query(query)).onSuccess(handler::handle);
+	}
+
+	private Future<Message<JsonObject>> respond(Future<RowSet<Row>> result) {
+		return result.map(rowSet -> (Message<JsonObject>) new ResultMessage(toJson(last(rowSet))))
+				.otherwise(ReactiveSql::error);
+	}
+
+	private static Message<JsonObject> error(Throwable e) {
+		log.error("Error executing sql statement", e);
+		return new ErrorMessage(e.getMessage());
+	}
+
+	/** Response of a statement, the result of the last statement when the command contains several. */
+	private static RowSet<Row> last(RowSet<Row> rowSet) {
+		RowSet<Row> last = rowSet;
+		while (last.next() != null) {
+			last = last.next();
+		}
+		return last;
+	}
+
+	static JsonObject toJson(RowSet<Row> rowSet) {
+		final JsonArray fields = new fr.wseduc.webutils.collections.JsonArray();
+		final List<ColumnDescriptor> columns = rowSet.columnDescriptors();
+		final boolean[] json = new boolean[columns == null ? 0 : columns.size()];
+		for (int i = 0; i < json.length; i++) {
+			final ColumnDescriptor column = columns.get(i);
+			fields.add(column.name());
+			json[i] = "JSON".equalsIgnoreCase(column.typeName()) || "JSONB".equalsIgnoreCase(column.typeName());
+		}
+		final JsonArray results = new fr.wseduc.webutils.collections.JsonArray();
+		for (Row row : rowSet) {
+			final JsonArray values = new fr.wseduc.webutils.collections.JsonArray();
+			for (int i = 0; i < row.size(); i++) {
+				values.add(toJsonValue(row.getValue(i), i < json.length && json[i]));
+			}
+			results.add(values);
+		}
+		return new JsonObject()
+				.put("status", "ok")
+				.put("fields", fields)
+				.put("results", results)
+				.put("rows", rowSet.rowCount());
+	}
+
+	private static Object toJsonValue(Object value, boolean json) {
+		if (value == null) {
+			return null;
+		} else if (json) {
+			return (value == Tuple.JSON_NULL) ? "null" : Json.encode(value);
+		} else if (value instanceof String || value instanceof Number || value instanceof Boolean) {
+			return value;
+		} else if (value instanceof LocalDateTime) {
+			return TIMESTAMP.format((LocalDateTime) value);
+		} else if (value instanceof OffsetDateTime) {
+			return TIMESTAMP_TZ.format((OffsetDateTime) value);
+		} else if (value instanceof UUID) {
+			return value.toString();
+		} else if (value instanceof Object[]) {
+			final JsonArray array = new fr.wseduc.webutils.collections.JsonArray();
+			for (Object item : (Object[]) value) {
+				array.add(toJsonValue(item, false));
+			}
+			return array;
+		} else {
+			return value.toString();
+		}
+	}
+
+	/**
+	 * Build the sql of a statement of the persistor protocol ({@code prepared}, {@code raw}, {@code insert},
+	 * {@code upsert} or {@code select}), with the values inlined.
+	 */
+	static String statement(JsonObject statement) {
+		final String action = statement.getString("action", "");
+		switch (action) {
+			case "prepared":
+				return bind(statement.getString("statement"), statement.getJsonArray("values"));
+			case "raw":
+				return statement.getString("command");
+			case "insert":
+			case "upsert":
+				final StringBuilder sb = new StringBuilder("INSERT INTO ").append(statement.getString("table"))
+						.append(" (").append(fields(statement.getJsonArray("fields"))).append(") VALUES ");
+				final JsonArray rows = statement.getJsonArray("values");
+				for (int i = 0; i < rows.size(); i++) {
+					final JsonArray row = rows.getJsonArray(i);
+					sb.append(i > 0 ? ",(" : "(");
+					for (int j = 0; j < row.size(); j++) {
+						sb.append(j > 0 ? "," : "").append(literal(row.getValue(j)));
+					}
+					sb.append(")");
+				}
+				if ("upsert".equals(action)) {
+					sb.append(" ON CONFLICT (").append(fields(statement.getJsonArray("conflictFields"))).append(")");
+					final JsonArray updateFields = statement.getJsonArray("updateFields");
+					if (updateFields == null || updateFields.isEmpty()) {
+						sb.append(" DO NOTHING");
+					} else {
+						sb.append(" DO UPDATE SET ");
+						for (int i = 0; i < updateFields.size(); i++) {
+							final String field = Sql.escapeField(updateFields.getString(i));
+							sb.append(i > 0 ? ", " : "").append(field).append(" = EXCLUDED.").append(field);
+						}
+					}
+				}
+				final String returning = statement.getString("returning");
+				if (returning != null && !returning.trim().isEmpty()) {
+					sb.append(" RETURNING ").append(returning);
+				}
+				return sb.toString();
+			case "select":
+				final JsonArray fields = statement.getJsonArray("fields");
+				return "SELECT " + ((fields == null || fields.isEmpty()) ? "*" : fields(fields)) +
+						" FROM " + statement.getString("table");
+			default:
+				throw new IllegalArgumentException("invalid.action : " + action);
+		}
+	}
+
+	private static String fields(JsonArray fields) {
+		final StringBuilder sb = new StringBuilder();
+		for (int i = 0; i < fields.size(); i++) {
+			final String field = fields.getString(i);
+			sb.append(i > 0 ? "," : "").append("*".equals(field) ? field : Sql.escapeField(field));
+		}
+		return sb.toString();
+	}
+
+	static String literal(Object value) {
+		if (value instanceof JsonObject || value instanceof JsonArray) {
+			return Sql.escapeValue(Json.encode(value));
+		} else if ((value instanceof Double && !Double.isFinite((Double) value)) ||
+				(value instanceof Float && !Float.isFinite((Float) value))) {
+			return "'" + value + "'";
+		} else if (value instanceof Number) {
+			final String number = (value instanceof BigDecimal) ? ((BigDecimal) value).toPlainString() : value.toString();
+			// a negative number following a minus would start a comment
+			return number.startsWith("-") ? "(" + number + ")" : number;
+		}
+		return Sql.escapeValue(value);
+	}
+
+	/**
+	 * Replace the {@code ?} parameters of the query by the literals of the values. The question marks in the strings,
+	 * the dollar-quoted strings, the quoted identifiers and the comments of the query are left as is.
+	 */
+	static String bind(String query, JsonArray values) {
+		final int size = (values == null) ? 0 : values.size();
+		final StringBuilder sb = new StringBuilder(query.length() + size * 8);
+		int index = 0;
+		int i = 0;
+		while (i < query.length()) {
+			final char c = query.charAt(i);
+			final int end;
+			if (c == '\'') {
+				final boolean escapes = i > 0 && (query.charAt(i - 1) == 'E' || query.charAt(i - 1) == 'e');
+				end = endOfQuoted(query, i, '\'', escapes);
+			} else if (c == '"') {
+				end = endOfQuoted(query, i, '"', false);
+			} else if (c == '$' && (i == 0 || !isIdentifierPart(query.charAt(i - 1))) && endOfDollarTag(query, i) > 0) {
+				final String tag = query.substring(i, endOfDollarTag(query, i));
+				final int close = query.indexOf(tag, i + tag.length());
+				end = (close < 0) ? query.length() : close + tag.length();
+			} else if (c == '-' && query.startsWith("--", i)) {
+				final int eol = query.indexOf('\n', i);
+				end = (eol < 0) ? query.length() : eol + 1;
+			} else if (c == '/' && query.startsWith("/*", i)) {
+				final int close = query.indexOf("*/", i + 2);
+				end = (close < 0) ? query.length() : close + 2;
+			} else if (c == '?') {
+				if (index >= size) {
+					throw new IllegalArgumentException("missing.parameter");
+				}
+				sb.append(literal(values.getValue(index++)));
+				i++;
+				continue;
+			} else {
+				sb.append(c);
+				i++;
+				continue;
+			}
+			sb.append(query, i, end);
+			i = end;
+		}
+		if (index < size) {
+			throw new IllegalArgumentException("too.many.parameters");
+		}
+		return sb.toString();
+	}
+
+	private static boolean isIdentifierPart(char c) {
+		return Character.isLetterOrDigit(c) || c == '_' || c == '$';
+	}
+
+	/**
+	 * @return The end of the tag of a dollar-quoted string starting at {@code start} ({@code $$} or {@code $tag$}),
+	 * -1 if it is not a tag (e.g. a positional parameter)
+	 */
+	private static int endOfDollarTag(String query, int start) {
+		int i = start + 1;
+		if (i < query.length() && (Character.isLetter(query.charAt(i)) || query.charAt(i) == '_')) {
+			while (i < query.length() && (Character.isLetterOrDigit(query.charAt(i)) || query.charAt(i) == '_')) {
+				i++;
+			}
+		}
+		return (i < query.length() && query.charAt(i) == '$') ? i + 1 : -1;
+	}
+
+	private static int endOfQuoted(String query, int start, char quote, boolean escapes) {
+		int i = start + 1;
+		while (i < query.length()) {
+			final char c = query.charAt(i);
+			if (escapes && c == '\\') {
+				i += 2;
+			} else if (c == quote) {
+				if (i + 1 < query.length() && query.charAt(i + 1) == quote) {
+					i += 2;
+				} else {
+					return i + 1;
+				}
+			} else {
+				i++;
+			}
+		}
+		return query.length();
+	}
+
+}
@@ -38,6 +38,7 @@ public class Sql implements ISql {
 
 	private String address;
 	private EventBus eb;
+	private ISql delegate;
 
 	private Sql() {}
 
@@ -63,6 +64,15 @@ public class Sql implements ISql {
 		return this;
 	}
 
+	/**
+	 * Execute the statements with the given implementation, e.g. {@link ReactiveSql}, instead of sending them to the
+	 * persistor. The callers of {@link #getInstance()} are unchanged.
+	 */
+	public Sql init(ISql delegate) {
+		this.delegate = delegate;
+		return this;
+	}
+
 	@Override
 	public void prepared(String query, JsonArray values, Handler<Message<JsonObject>> handler) {
 		prepared(query, values, new DeliveryOptions(), handler);
@@ -70,6 +80,10 @@ public class Sql implements ISql {
 
 	@Override
 	public void prepared(String query, JsonArray values, DeliveryOptions deliveryOptions, Handler<Message<JsonObject>> handler) {
+		if (delegate != null) {
+			delegate.prepared(query, values, deliveryOptions, handler);
+			return;
+		}
 		JsonObject j = new JsonObject()
 				.put("action", "prepared")
 				.put("statement", query)
@@ -79,6 +93,9 @@ public class Sql implements ISql {
 
 	@Override
 	public Future<Message<JsonObject>> prepared(String query, JsonArray values, DeliveryOptions deliveryOptions) {
+		if (delegate != null) {
+			return delegate.prepared(query, values, deliveryOptions);
+		}
 		Promise<Message<JsonObject>> responseMessagePromise = Promise.promise();
 		JsonObject message = new JsonObject()
 				.put("action", "prepared")
@@ -90,6 +107,10 @@ public class Sql implements ISql {
 
 	@Override
 	public void raw(String query, Handler<Message<JsonObject>> handler) {
+		if (delegate != null) {
+			delegate.raw(query, handler);
+			return;
+		}
 		JsonObject j = new JsonObject()
 				.put("action", "raw")
 				.put("command", query);
@@ -124,6 +145,10 @@ public class Sql implements ISql {
 	@Override
 	public void insert(String table, JsonArray fields, JsonArray values, String returning,
 										 Handler<Message<JsonObject>> handler) {
+		if (delegate != null) {
+			delegate.insert(table, fields, values, returning, handler);
+			return;
+		}
 		JsonObject j = new JsonObject()
 				.put("action", "insert")
 				.put("table", table)
@@ -139,6 +164,10 @@ public class Sql implements ISql {
 	public void upsert(String table, JsonArray fields, JsonArray values, JsonArray conflictFields,
 										 JsonArray updateFields, String returning,
 										 Handler<Message<JsonObject>> handler) {
+		if (delegate != null) {
+			delegate.upsert(table, fields, values, conflictFields, updateFields, returning, handler);
+			return;
+		}
 		JsonObject j = new JsonObject()
 				.put("action", "upsert")
 				.put("table", table)
@@ -154,6 +183,10 @@ public class Sql implements ISql {
 
 	@Override
 	public void select(String table, JsonArray fields, Handler<Message<JsonObject>> handler) {
+		if (delegate != null) {
+			delegate.select(table, fields, handler);
+			return;
+		}
 		JsonObject j = new JsonObject()
 				.put("action", "select")
 				.put("table", table)
@@ -168,6 +201,10 @@ public class Sql implements ISql {
 
 	@Override
 	public void transaction(JsonArray statements, DeliveryOptions deliveryOptions, Handler<Message<JsonObject>> handler) {
+		if (delegate != null) {
+			delegate.transaction(statements, deliveryOptions, handler);
+			return;
+		}
 		JsonObject j = new JsonObject()
 				.put("action", "transaction")
 				.put("statements", statements);
@@ -122,6 +122,11 @@ public class StorageFactory {
 				fileValidator.setNext(new ExtensionValidator(blockedExtensions));
 			}
 			((FileStorage) storage).setValidator(fileValidator);
+			final JsonObject locationCache = fs.getJsonObject("location-cache", new JsonObject());
+			if (locationCache.getBoolean("enabled", false)) {
+				((FileStorage) storage).setLocationCache(locationCache);
+			}
+			((FileStorage) storage).setParallelProbe(fs.getBoolean("parallel-probe", false));
 
 			JsonObject s3fallback = fs.getJsonObject("s3fallback");
 			if (s3fallback != null) {
@@ -132,9 +137,11 @@ public class StorageFactory {
 				final String region = s3fallback.getString("region");
 				final String accessKey = s3fallback.getString("access-key");
 				final String secretKey = s3fallback.getString("secret-key");
+				final int maxConcurrentDownloads = s3fallback.getInteger("max-concurrent-downloads", 16);
 				if (isNotEmpty(host) && isNotEmpty(name) && isNotEmpty(region) && isNotEmpty(accessKey) && isNotEmpty(secretKey)) {
 					S3FallbackStorage s3FallbackStorage = new S3FallbackStorage(
-							vertx, host, name, multiBuckets, nbStorageFolder, region, accessKey, secretKey);
+							vertx, host, name, multiBuckets, nbStorageFolder, region, accessKey, secretKey,
+							maxConcurrentDownloads);
 					((FileStorage) storage).setFallbackStorage(s3FallbackStorage);
 				}
 			}
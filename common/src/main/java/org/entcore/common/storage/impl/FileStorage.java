@@ -19,6 +19,7 @@
 
 package org.entcore.common.storage.impl;
 
+import org.entcore.common.cache.LocalCache;
 import org.entcore.common.utils.FileUtils;
 import fr.wseduc.webutils.DefaultAsyncResult;
 import static fr.wseduc.webutils.Utils.isNotEmpty;
@@ -72,7 +73,11 @@ public class FileStorage implements Storage {
 	private AntivirusClient antivirus;
 	private FileValidator validator;
 	private FallbackStorage fallbackStorage;
+	private LocalCache<String, Integer> locations;
+	private boolean parallelProbe;
 	private static final String STORAGE_ID = "file";
+	private static final int DEFAULT_LOCATION_CACHE_SIZE = 100000;
+	private static final long DEFAULT_LOCATION_CACHE_TTL = 3600000L;
 
 	public FileStorage(Vertx vertx, String basePath, boolean flat, final IMessagingClient messagingClient) {
 		this(vertx, new JsonArray().add(basePath), flat, messagingClient, new StorageFileAnalyzer.Configuration());
@@ -183,6 +188,9 @@ public class FileStorage implements Storage {
 							return;
 						}
 					}
+					if (uploadPath == null) {
+						indexWrittenFile(id);
+					}
 					handler.handle(res.put("_id", id)
 							.put("status", "ok")
 							.put("metadata", metadata));
@@ -285,7 +293,7 @@ public class FileStorage implements Storage {
 	public void writeBuffer(final String id, final Buffer buff, final String contentType, final String filename,
 							final Handler<JsonObject> handler) {
 		try {
-			writeBuffer(getWritePath(id), id, buff, contentType, filename, true, handler);
+			writeBuffer(getWritePath(id), id, buff, contentType, filename, true, indexOnSuccess(id, handler));
 		} catch (FileNotFoundException e) {
 			handler.handle(new JsonObject().put("status", "error").put("message", "invalid.path"));
 			log.warn(e.getMessage(), e);
@@ -335,7 +343,8 @@ public class FileStorage implements Storage {
 	@Override
 	public Future<JsonObject> writeBufferStream(String id, ReadStream<Buffer> bufferReadStream, String contentType, String filename) {
 		try {
-			return writeBufferStream(getWritePath(id), id, bufferReadStream, contentType, filename);
+			return writeBufferStream(getWritePath(id), id, bufferReadStream, contentType, filename)
+					.onSuccess(res -> indexWrittenFile(id));
 		} catch (FileNotFoundException e) {
 			log.warn(e.getMessage(), e);
 			return Future.failedFuture(String.format("%s: invalid.path", e.getMessage()));
@@ -440,7 +449,7 @@ public class FileStorage implements Storage {
 				@Override
 				public void handle(AsyncResult<Void> event) {
 					if (event.succeeded()) {
-						copyFilePath(filename, path, handler);
+						copyFilePath(filename, path, indexOnSuccess(id, handler));
 					} else {
 						handler.handle(new JsonObject().put("status", "error")
 								.put("message", event.cause().getMessage()));
@@ -641,6 +650,7 @@ public class FileStorage implements Storage {
 				fs.delete(path, new Handler<AsyncResult<Void>>() {
 					@Override
 					public void handle(AsyncResult<Void> event) {
+						invalidateLocation(id);
 						if (event.succeeded()) {
 							res.put("status", "ok");
 						} else {
@@ -672,6 +682,7 @@ public class FileStorage implements Storage {
 					fs.delete(path, new Handler<AsyncResult<Void>>() {
 						@Override
 						public void handle(AsyncResult<Void> event) {
+							invalidateLocation(o.toString());
 							if (event.failed()) {
 								errors.add(new JsonObject().put("id", o.toString())
 										.put("message", event.cause().getMessage()));
@@ -709,7 +720,7 @@ public class FileStorage implements Storage {
 				@Override
 				public void handle(AsyncResult<Void> event) {
 					if (event.succeeded()) {
-						copyFileId(id, path, newId, handler);
+						copyFileId(id, path, newId, indexOnSuccess(newId, handler));
 					} else {
 						handler.handle(new JsonObject().put("status", "error")
 								.put("message", event.cause().getMessage()));
@@ -886,11 +897,46 @@ public class FileStorage implements Storage {
 			} catch (FileNotFoundException e) {
 				handler.handle(Future.failedFuture(e));
 			}
+		} else {
+			final Integer idx = (locations != null) ? locations.get(file) : null;
+			if (idx != null && idx <= lastBucketIdx) {
+				getCachedReadPath(file, idx, handler);
+			} else {
+				lookupReadPath(file, handler);
+			}
+		}
+	}
+
+	private void lookupReadPath(String file, Handler<AsyncResult<String>> handler) {
+		if (parallelProbe) {
+			probeReadPath(file, handler);
 		} else {
 			getReadPath(file, 0, handler);
 		}
 	}
 
+	/**
+	 * The file may have been moved or removed by another instance since it was cached, it is looked up in every bucket
+	 * again when it is no longer in the cached one.
+	 */
+	private void getCachedReadPath(final String file, final int idx, final Handler<AsyncResult<String>> handler) {
+		final String p;
+		try {
+			p = getFilePath(file, basePaths.get(idx));
+		} catch (FileNotFoundException e) {
+			handler.handle(Future.failedFuture(e));
+			return;
+		}
+		fs.exists(p, ar -> {
+			if (ar.succeeded() && Boolean.TRUE.equals(ar.result())) {
+				handler.handle(Future.succeededFuture(p));
+			} else {
+				invalidateLocation(file);
+				lookupReadPath(file, handler);
+			}
+		});
+	}
+
 	private void getReadPath(final String file, final int idx, final Handler<AsyncResult<String>> handler) {
 		final String p;
 		try {
@@ -901,17 +947,86 @@ public class FileStorage implements Storage {
 		}
 		fs.exists(p, ar -> {
 			if (ar.succeeded() && Boolean.TRUE.equals(ar.result())) {
+				indexLocation(file, idx);
 				handler.handle(Future.succeededFuture(p));
 			} else if (idx < lastBucketIdx) {
 				getReadPath(file, idx + 1, handler);
-			} else if (fallbackStorage != null) {
-				fallbackStorage.downloadFile(file, p, handler);
 			} else {
-				handler.handle(Future.failedFuture(new FileNotFoundException("Not found file : " + file)));
+				readPathNotFound(file, p, handler);
+			}
+		});
+	}
+
+	/**
+	 * Look for the file in every bucket at once, the first bucket containing it wins as with the sequential lookup.
+	 */
+	private void probeReadPath(final String file, final Handler<AsyncResult<String>> handler) {
+		final List<String> paths = new ArrayList<>(basePaths.size());
+		try {
+			for (String basePath : basePaths) {
+				paths.add(getFilePath(file, basePath));
+			}
+		} catch (FileNotFoundException e) {
+			handler.handle(Future.failedFuture(e));
+			return;
+		}
+		final List<Future> futures = new ArrayList<>(paths.size());
+		for (String p : paths) {
+			futures.add(fs.exists(p).otherwise(Boolean.FALSE));
+		}
+		CompositeFuture.all(futures).onComplete(ar -> {
+			for (int i = 0; i < futures.size(); i++) {
+				if (Boolean.TRUE.equals(futures.get(i).result())) {
+					indexLocation(file, i);
+					handler.handle(Future.succeededFuture(paths.get(i)));
+					return;
+				}
 			}
+			readPathNotFound(file, paths.get(lastBucketIdx), handler);
 		});
 	}
 
+	private void readPathNotFound(final String file, final String writePath, final Handler<AsyncResult<String>> handler) {
+		if (fallbackStorage != null) {
+			fallbackStorage.downloadFile(file, writePath, ar -> {
+				if (ar.succeeded()) {
+					indexLocation(file, lastBucketIdx);
+				}
+				handler.handle(ar);
+			});
+		} else {
+			handler.handle(Future.failedFuture(new FileNotFoundException("Not found file : " + file)));
+		}
+	}
+
+	private void indexLocation(String file, int idx) {
+		if (locations != null) {
+			locations.put(file, idx);
+		}
+	}
+
+	private void indexWrittenFile(String id) {
+		indexLocation(id, lastBucketIdx);
+	}
+
+	private Handler<JsonObject> indexOnSuccess(final String id, final Handler<JsonObject> handler) {
+		if (locations == null) {
+			return handler;
+		}
+		return res -> {
+			if ("ok".equals(res.getString("status"))) {
+				indexWrittenFile(id);
+			}
+			handler.handle(res);
+		};
+	}
+
+	private void invalidateLocation(String file) {
+		if (locations != null) {
+			locations.invalidate(file);
+		}
+	}
+
 	@Override
 	public Future<List<FileInfo>> deleteByFilter(final String directory, final Function<FileInfo, Boolean> filter) {
 		final Promise<List<FileInfo>> rootPromise = Promise.promise();
@@ -975,4 +1090,25 @@ public class FileStorage implements Storage {
 		this.fallbackStorage = fallbackStorage;
 	}
 
+	/**
+	 * Remember in which bucket each file was found or written, so that reading it again only checks this bucket.
+	 * Only used when several paths are configured. The entries are invalidated when the file is removed through this
+	 * storage, or when the file is no longer in the cached bucket, it is then looked up in every bucket again.
+	 * @param config Configuration of the cache, {@code max-size} and {@code ttl} in milliseconds
+	 */
+	public void setLocationCache(JsonObject config) {
+		if (lastBucketIdx > 0) {
+			this.locations = LocalCache.<String, Integer>fromConfig(config, DEFAULT_LOCATION_CACHE_SIZE,
+					DEFAULT_LOCATION_CACHE_TTL).registerMetrics("file-locations");
+		}
+	}
+
+	/**
+	 * @param parallelProbe Check every bucket at once when the location of a file is unknown, instead of one after
+	 *                      the other
+	 */
+	public void setParallelProbe(boolean parallelProbe) {
+		this.parallelProbe = parallelProbe;
+	}
+
 }
@@ -5,6 +5,19 @@ import java.io.FileNotFoundException;
 import java.io.UnsupportedEncodingException;
 import java.security.InvalidKeyException;
 import java.security.NoSuchAlgorithmException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.vertx.core.Promise;
+import io.vertx.core.file.CopyOptions;
+import io.vertx.micrometer.backends.BackendRegistries;
 
 import io.vertx.core.http.*;
 import org.entcore.common.storage.FallbackStorage;
@@ -22,8 +35,18 @@ import io.vertx.core.http.HttpClientRequest;
 import io.vertx.core.logging.Logger;
 import io.vertx.core.logging.LoggerFactory;
 
+/**
+ * Download from S3 the files missing from the file system.
+ * <p>
+ * The concurrent downloads of the same file are coalesced : the first request downloads it and the others wait for
+ * its result. The file is written to a temporary file moved to its destination once complete, so it is never read
+ * partially. The number of simultaneous downloads is capped, the extra ones wait in a queue.
+ * </p>
+ */
 public class S3FallbackStorage implements FallbackStorage {
 
+    private static final int DEFAULT_MAX_CONCURRENT_DOWNLOADS = 16;
+
     private final FileSystem fs;
     private final HttpClient httpClient;
     private final boolean multiBuckets;
@@ -33,11 +56,25 @@ public class S3FallbackStorage implements FallbackStorage {
     private final String secretKey;
     private final String name;
     private final String host;
+    private final int maxConcurrentDownloads;
+    private final ConcurrentMap<String, Promise<String>> inFlight = new ConcurrentHashMap<>();
+    private final Deque<Runnable> pending = new ArrayDeque<>();
+    private int running;
+    private final AtomicLong downloads = new AtomicLong();
+    private final AtomicLong coalesced = new AtomicLong();
+    private final AtomicLong queued = new AtomicLong();
 
     private static final Logger log = LoggerFactory.getLogger(S3FallbackStorage.class);
 
     public S3FallbackStorage(Vertx vertx, String host, String name, boolean multiBuckets,
             int nbStorageFolder, String region, String accessKey, String secretKey) {
+        this(vertx, host, name, multiBuckets, nbStorageFolder, region, accessKey, secretKey,
+                DEFAULT_MAX_CONCURRENT_DOWNLOADS);
+    }
+
+    public S3FallbackStorage(Vertx vertx, String host, String name, boolean multiBuckets,
+            int nbStorageFolder, String region, String accessKey, String secretKey, int maxConcurrentDownloads) {
+        this.maxConcurrentDownloads = Math.max(1, maxConcurrentDownloads);
         this.multiBuckets = multiBuckets;
         this.nbStorageFolder = nbStorageFolder;
         this.region = region;
@@ -49,16 +86,88 @@ public class S3FallbackStorage implements FallbackStorage {
         HttpClientOptions options = new HttpClientOptions()
             .setDefaultHost(host)
             .setDefaultPort(443)
-            .setMaxPoolSize(16)
+            .setMaxPoolSize(this.maxConcurrentDownloads)
             .setSsl(true)
             .setConnectTimeout(1000)
             .setKeepAlive(false);
         this.httpClient = vertx.createHttpClient(options);
+        registerMetrics();
     }
 
+    /**
+     * Download the file, or wait for the download of the same file already in progress. The destination of a file is
+     * expected to be the same for all the requests.
+     */
     @Override
     public void downloadFile(String file,  String destination, Handler<AsyncResult<String>> handler) {
-        downloadFile(file, destination, 1, 3, handler);
+        final Promise<String> promise = Promise.promise();
+        final Promise<String> current = inFlight.putIfAbsent(file, promise);
+        if (current != null) {
+            coalesced.incrementAndGet();
+            current.future().onComplete(handler);
+            return;
+        }
+        promise.future().onComplete(handler);
+        acquire(() -> fs.exists(destination, exists -> {
+            // the file may have been moved to its destination between the check of the caller and this download
+            if (exists.succeeded() && Boolean.TRUE.equals(exists.result())) {
+                complete(file, promise, Future.succeededFuture(destination));
+            } else {
+                downloads.incrementAndGet();
+                downloadFile(file, destination, 1, 3, ar -> complete(file, promise, ar));
+            }
+        }));
+    }
+
+    private void complete(String file, Promise<String> promise, AsyncResult<String> result) {
+        inFlight.remove(file, promise);
+        release();
+        promise.handle(result);
+    }
+
+    private void acquire(Runnable download) {
+        synchronized (pending) {
+            if (running >= maxConcurrentDownloads) {
+                queued.incrementAndGet();
+                pending.add(download);
+                return;
+            }
+            running++;
+        }
+        download.run();
+    }
+
+    private void release() {
+        final Runnable next;
+        synchronized (pending) {
+            next = pending.poll();
+            if (next == null) {
+                running--;
+            }
+        }
+        if (next != null) {
+            next.run();
+        }
+    }
+
+    private int getRunning() {
+        synchronized (pending) {
+            return running;
+        }
+    }
+
+    private void registerMetrics() {
+        final MeterRegistry registry = BackendRegistries.getDefaultNow();
+        if (registry != null) {
+            FunctionCounter.builder("storage.fallback.downloads", downloads, AtomicLong::get)
+                    .description("Number of files downloaded from the fallback storage").register(registry);
+            FunctionCounter.builder("storage.fallback.coalesced", coalesced, AtomicLong::get)
+                    .description("Number of requests served by a download already in progress").register(registry);
+            FunctionCounter.builder("storage.fallback.queued", queued, AtomicLong::get)
+                    .description("Number of downloads delayed by the concurrency limit").register(registry);
+            Gauge.builder("storage.fallback.in.flight", this, S3FallbackStorage::getRunning)
+                    .description("Number of downloads in progress").register(registry);
+        }
     }
 
     private void downloadFile(String file, String destination, int storageIdx, int retryIndex, Handler<AsyncResult<String>> handler) {
@@ -75,10 +184,16 @@ public class S3FallbackStorage implements FallbackStorage {
                         resp.pause();
                         FileStorage.mkdirsIfNotExists(fs, file, destination, folderAr -> {
                             if (folderAr.succeeded()) {
-                                this.fs.open(destination, new OpenOptions(), asyncFile -> {
+                                final String tmp = destination + "." + UUID.randomUUID() + ".part";
+                                this.fs.open(tmp, new OpenOptions(), asyncFile -> {
                                     if (asyncFile.succeeded()) {
                                         resp.pipeTo(asyncFile.result(), h -> {
-                                            handler.handle(Future.succeededFuture(destination));
+                                            if (h.succeeded()) {
+                                                fs.move(tmp, destination, new CopyOptions().setReplaceExisting(true),
+                                                        moved -> handler.handle(moved.map(destination)));
+                                            } else {
+                                                fs.delete(tmp, deleted -> handler.handle(Future.failedFuture(h.cause())));
+                                            }
                                         });
                                     } else {
                                         handler.handle(Future.failedFuture(asyncFile.cause()));
@@ -103,12 +218,12 @@ public class S3FallbackStorage implements FallbackStorage {
                         }
                     }
             }
-                });
+                }).onFailure(e -> handler.handle(Future.failedFuture(e)));
             } catch (InvalidKeyException | NoSuchAlgorithmException | IllegalStateException
                      | UnsupportedEncodingException e) {
                 handler.handle(Future.failedFuture(e));
             }
-        });
+        }).onFailure(e -> handler.handle(Future.failedFuture(e)));
     }
 
     private String generateUri(String fileName, int storageIdx) {
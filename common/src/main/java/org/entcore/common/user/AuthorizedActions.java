@@ -0,0 +1,94 @@
+/*
+ * Copyright © "Open Digital Education", 2017
+ *
+ * This program is published by "Open Digital Education".
+ * You must indicate the name of the software and the company in any production /contribution
+ * using the software and indicate on the home page of the software industry in question,
+ * "powered by Open Digital Education" with a reference to the website: https://opendigitaleducation.com/.
+ *
+ * This program is free software, licensed under the terms of the GNU Affero General Public License
+ * as published by the Free Software Foundation, version 3 of the License.
+ *
+ * You can redistribute this application and/or modify it since you respect the terms of the GNU Affero General Public License.
+ * If you modify the source code and then use this modified source code in your creation, you must make available the source code of your modifications.
+ *
+ * You should have received a copy of the GNU Affero General Public License along with the software.
+ * If not, please see : <http://www.gnu.org/licenses/>. Full compliance requires reading the terms of this license and following its directives.
+
+ */
+
+package org.entcore.common.user;
+
+import com.google.common.collect.MapMaker;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Names of the authorized actions of a session, indexed once per session object.
+ * <p>
+ * The set is kept as long as the session object is reachable, keyed by identity, so the workflow checks done on the
+ * same session (filter, controllers) only hash the name of the action. The sessions of the near cache are copied on
+ * each hit : {@link #share(JsonObject, JsonObject)} gives the copy the set of the cached session.
+ * </p>
+ */
+public final class AuthorizedActions {
+
+	private static final ConcurrentMap<JsonObject, Set<String>> names = new MapMaker().weakKeys().makeMap();
+
+	private AuthorizedActions() {}
+
+	/**
+	 * @param session Session returned by the session manager
+	 * @return Names of the authorized actions of the session
+	 */
+	public static Set<String> names(JsonObject session) {
+		if (session == null) {
+			return Collections.emptySet();
+		}
+		Set<String> set = names.get(session);
+		if (set == null) {
+			set = index(session.getJsonArray("authorizedActions"));
+			names.put(session, set);
+		}
+		return set;
+	}
+
+	public static boolean contains(JsonObject session, String name) {
+		return name != null && names(session).contains(name);
+	}
+
+	/**
+	 * Index the copy of a session with the set of the original, if it was already computed.
+	 */
+	public static void share(JsonObject session, JsonObject copy) {
+		if (session == null || copy == null) {
+			return;
+		}
+		final Set<String> set = names.get(session);
+		if (set != null) {
+			names.put(copy, set);
+		}
+	}
+
+	private static Set<String> index(JsonArray actions) {
+		if (actions == null || actions.isEmpty()) {
+			return Collections.emptySet();
+		}
+		final Set<String> set = new HashSet<>(actions.size() * 2);
+		for (Object a : actions) {
+			if (a instanceof JsonObject) {
+				final String name = ((JsonObject) a).getString("name");
+				if (name != null) {
+					set.add(name);
+				}
+			}
+		}
+		return Collections.unmodifiableSet(set);
+	}
+
+}
@@ -0,0 +1,86 @@
+/* Copyright © "Open Digital Education", 2014
+ *
+ * This program is published by "Open Digital Education".
+ * You must indicate the name of the software and the company in any production /contribution
+ * using the software and indicate on the home page of the software industry in question,
+ * "powered by Open Digital Education" with a reference to the website: https://opendigitaleducation.com/.
+ *
+ * This program is free software, licensed under the terms of the GNU Affero General Public License
+ * as published by the Free Software Foundation, version 3 of the License.
+ *
+ * You can redistribute this application and/or modify it since you respect the terms of the GNU Affero General Public License.
+ * If you modify the source code and then use this modified source code in your creation, you must make available the source code of your modifications.
+ *
+ * You should have received a copy of the GNU Affero General Public License along with the software.
+ * If not, please see : <http://www.gnu.org/licenses/>. Full compliance requires reading the terms of this license and following its directives.
+
+ *
+ */
+
+package org.entcore.common.user;
+
+import io.vertx.core.Future;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.eventbus.DeliveryOptions;
+import io.vertx.core.eventbus.EventBus;
+
+/**
+ * Entries of an export sent straight to the archive being written, instead of files written in the export directory.
+ * The archive module only listens to the entries of an export it streams to the storage : {@link #open} fails
+ * otherwise and the resources must be written in the export directory.
+ * Each entry is acknowledged once it is written in the archive, the entries of a module are sent one after another.
+ */
+public class ExportEntries {
+
+	public static final String NAME_HEADER = "name";
+	public static final String FILE_ID_HEADER = "file-id";
+	public static final String COMPRESS_HEADER = "compress";
+	// an entry waits for the entries of the other modules before being written
+	private static final long SEND_TIMEOUT = 600000L;
+
+	private final EventBus eb;
+	private final String address;
+	private final String folder;
+
+	private ExportEntries(EventBus eb, String address, String folder) {
+		this.eb = eb;
+		this.address = address;
+		this.folder = folder;
+	}
+
+	public static String address(String exportId) {
+		return "entcore.export.entries." + exportId;
+	}
+
+	/**
+	 * Adds the folder of the module to the archive of the export.
+	 * @param folder Name of the folder of the module at the root of the archive
+	 * @return A future failed if the archive does not stream this export
+	 */
+	public static Future<ExportEntries> open(EventBus eb, String exportId, String folder) {
+		final ExportEntries entries = new ExportEntries(eb, address(exportId), folder);
+		return entries.send(new DeliveryOptions().addHeader(NAME_HEADER, folder + "/"), Buffer.buffer()).map(entries);
+	}
+
+	/**
+	 * @param name Path of the entry in the folder of the module
+	 */
+	public Future<Void> add(String name, Buffer content) {
+		return send(new DeliveryOptions().addHeader(NAME_HEADER, folder + "/" + name), content);
+	}
+
+	/**
+	 * Adds a file of the storage, read by the archive module.
+	 * @param name Path of the entry in the folder of the module
+	 * @param compress false for the files which are already compressed
+	 */
+	public Future<Void> addFile(String name, String fileId, boolean compress) {
+		return send(new DeliveryOptions().addHeader(NAME_HEADER, folder + "/" + name)
+				.addHeader(FILE_ID_HEADER, fileId).addHeader(COMPRESS_HEADER, Boolean.toString(compress)), Buffer.buffer());
+	}
+
+	private Future<Void> send(DeliveryOptions options, Buffer content) {
+		return eb.request(address, content, options.setSendTimeout(SEND_TIMEOUT)).mapEmpty();
+	}
+
+}
@@ -21,10 +21,14 @@ package org.entcore.common.user;
 
 import com.fasterxml.jackson.annotation.JsonAnyGetter;
 import com.fasterxml.jackson.annotation.JsonAnySetter;
+import com.fasterxml.jackson.annotation.JsonIgnore;
 
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 public class UserInfos {
 
@@ -287,6 +291,8 @@ public class UserInfos {
 	private String type;
 	private String login;
 	private List<Action> authorizedActions;
+	private Set<String> authorizedActionNames = Collections.emptySet();
+	private Map<String, Set<String>> authorizedActionNamesByController = Collections.emptyMap();
 	private List<Application> apps;
 	private List<String> groupsIds;
 	private List<String> classes;
@@ -381,6 +387,50 @@ public class UserInfos {
 
 	public void setAuthorizedActions(List<Action> authorizedActions) {
 		this.authorizedActions = authorizedActions;
+		final Set<String> names = new HashSet<>();
+		final Map<String, Set<String>> byController = new HashMap<>();
+		if (authorizedActions != null) {
+			for (Action action : authorizedActions) {
+				final String name = (action != null) ? action.getName() : null;
+				if (name == null) {
+					continue;
+				}
+				names.add(name);
+				final int idx = name.indexOf('|');
+				if (idx > 0) {
+					byController.computeIfAbsent(name.substring(0, idx), k -> new HashSet<>()).add(name);
+				}
+			}
+		}
+		for (Map.Entry<String, Set<String>> e : byController.entrySet()) {
+			e.setValue(Collections.unmodifiableSet(e.getValue()));
+		}
+		this.authorizedActionNames = Collections.unmodifiableSet(names);
+		this.authorizedActionNamesByController = Collections.unmodifiableMap(byController);
+	}
+
+	/**
+	 * @param name Name of the workflow action, i.e. {@code controller class|method}
+	 * @return {@code true} if the action is one of the authorized actions of the user
+	 */
+	public boolean hasAuthorizedAction(String name) {
+		return name != null && authorizedActionNames.contains(name);
+	}
+
+	/**
+	 * @return Names of the authorized actions, indexed when the actions are set
+	 */
+	@JsonIgnore
+	public Set<String> getAuthorizedActionNames() {
+		return authorizedActionNames;
+	}
+
+	/**
+	 * @param controller Fully qualified name of the controller of an application
+	 * @return Names of the authorized actions of this controller
+	 */
+	public Set<String> getAuthorizedActionNames(String controller) {
+		return authorizedActionNamesByController.getOrDefault(controller, Collections.emptySet());
 	}
 
 	public String getFirstName() {
@@ -53,11 +53,14 @@ import static org.entcore.common.http.filter.AppOAuthResourceProvider.getTokenId
 
 import io.vertx.core.shareddata.LocalMap;
 import org.entcore.common.neo4j.Neo4j;
+import org.entcore.common.session.SessionNearCache;
 import org.entcore.common.session.SessionRecreationRequest;
 import org.entcore.common.utils.HostUtils;
 import org.entcore.common.utils.StringUtils;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
@@ -75,6 +78,7 @@ public class UserUtils {
 	private static final String USERBOOK_ADDRESS = "userbook.preferences";
 	private static final Logger log = LoggerFactory.getLogger(UserUtils.class);
 	private static final String COMMUNICATION_USERS = "wse.communication.users";
+	private static final String COMMUNICATION = "wse.communication";
 	private static final String DIRECTORY = "directory";
 	public static final String SESSION_ADDRESS = "wse.session";
 	private static final JsonArray usersTypes = new fr.wseduc.webutils.collections.JsonArray().add("User");
@@ -84,6 +88,8 @@ public class UserUtils {
 	.put("action", "visibleManualGroups");
 	private static final long JWT_TOKEN_EXPIRATION_TIME = 600L;
 	private static final long LOG_SESSION_DELAY = 500L;
+	private static final SessionNearCache sessionNearCache = SessionNearCache.create(vertx);
+	private static final ObjectMapper mapper = new ObjectMapper();
 
 	private static void findUsers(final EventBus eb, HttpServerRequest request,
 								  final JsonObject query, final Handler<JsonArray> handler) {
@@ -246,6 +252,45 @@ public class UserUtils {
 		});
 	}
 
+	/**
+	 * Check in one call which users or groups a user can communicate with.
+	 * @param eb Event bus
+	 * @param senderId Id of the sender
+	 * @param recipientIds Ids of the users or groups to check
+	 * @param handler Called with the ids of the recipients the sender can communicate with, empty on error
+	 */
+	public static void verifyCommunication(EventBus eb, String senderId, Collection<String> recipientIds,
+			final Handler<Set<String>> handler) {
+		if (senderId == null || recipientIds == null || recipientIds.isEmpty()) {
+			handler.handle(new HashSet<>());
+			return;
+		}
+		final JsonObject m = new JsonObject()
+				.put("action", "verifyMany")
+				.put("senderId", senderId)
+				.put("recipientIds", new JsonArray(new ArrayList<>(recipientIds)));
+		eb.request(COMMUNICATION, m, new DeliveryOptions().setSendTimeout(DEFAULT_VISIBLES_TIMEOUT),
+				new Handler<AsyncResult<Message<JsonObject>>>() {
+
+			@Override
+			public void handle(AsyncResult<Message<JsonObject>> res) {
+				final Set<String> allowed = new HashSet<>();
+				if (res.succeeded() && "ok".equals(res.result().body().getString("status"))) {
+					final JsonObject result = res.result().body().getJsonObject("result", new JsonObject());
+					for (String recipientId : result.fieldNames()) {
+						if (Boolean.TRUE.equals(result.getBoolean(recipientId))) {
+							allowed.add(recipientId);
+						}
+					}
+				} else {
+					log.error("An error occurred while verifying communication of user " + senderId,
+							res.failed() ? res.cause() : null);
+				}
+				handler.handle(allowed);
+			}
+		});
+	}
+
 	public static void translateGroupsNames(JsonArray groups, String acceptLanguage) {
 		for (Object u : groups) {
 			if (!(u instanceof JsonObject)) continue;
@@ -574,6 +619,19 @@ public class UserUtils {
 
 	private static void findSession(EventBus eb, final HttpServerRequest request, JsonObject findSession, final boolean paused,
 			final Handler<JsonObject> handler) {
+		final String cacheKey = "find".equals(findSession.getString("action")) ? findSession.getString("sessionId") : null;
+		final JsonObject cachedSession = sessionNearCache.get(cacheKey);
+		if (cachedSession != null) {
+			if (request != null && !paused) {
+				request.resume();
+			}
+			if (request instanceof SecureHttpServerRequest) {
+				((SecureHttpServerRequest) request).setSession(cachedSession);
+			}
+			handler.handle(cachedSession);
+			return;
+		}
+		final long cacheGeneration = sessionNearCache.generation();
 		final long startSessionTime = System.currentTimeMillis();
 		eb.request(SESSION_ADDRESS, findSession, new Handler<AsyncResult<Message<JsonObject>>>() {
 
@@ -586,6 +644,7 @@ public class UserUtils {
 						request.resume();
 					}
 					if ("ok".equals(message.result().body().getString("status")) && session != null) {
+						sessionNearCache.put(cacheKey, session, cacheGeneration);
 						if (request instanceof SecureHttpServerRequest) {
 							((SecureHttpServerRequest) request).setSession(session);
 						}
@@ -647,7 +706,6 @@ public class UserUtils {
 		if (session == null) {
 			return null;
 		}
-		ObjectMapper mapper = new ObjectMapper();
 		try {
 			return mapper.readValue(session.encode(), UserInfos.class);
 		} catch (IOException e) {
@@ -0,0 +1,217 @@
+/*
+ * Copyright © "Open Digital Education", 2015
+ *
+ * This program is published by "Open Digital Education".
+ * You must indicate the name of the software and the company in any production /contribution
+ * using the software and indicate on the home page of the software industry in question,
+ * "powered by Open Digital Education" with a reference to the website: https://opendigitaleducation.com/.
+ *
+ * This program is free software, licensed under the terms of the GNU Affero General Public License
+ * as published by the Free Software Foundation, version 3 of the License.
+ *
+ * You can redistribute this application and/or modify it since you respect the terms of the GNU Affero General Public License.
+ * If you modify the source code and then use this modified source code in your creation, you must make available the source code of your modifications.
+ *
+ * You should have received a copy of the GNU Affero General Public License along with the software.
+ * If not, please see : <http://www.gnu.org/licenses/>. Full compliance requires reading the terms of this license and following its directives.
+
+ */
+
+package org.entcore.common.utils;
+
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import io.vertx.core.Promise;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.streams.ReadStream;
+import io.vertx.core.streams.WriteStream;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+/**
+ * In-memory pipe : the buffers written to this {@link WriteStream} are emitted by this {@link ReadStream}.
+ * <p>
+ * It connects a producer writing to a stream (e.g. {@link ZipStreamWriter}) to a consumer reading a stream (e.g.
+ * {@link org.entcore.common.storage.Storage#writeBufferStream}). The write queue is full when the bytes not yet read
+ * reach the max size, so a producer that respects the back-pressure holds at most that many bytes in memory.
+ * Both sides are expected to run on the same context.
+ * </p>
+ */
+public class BufferStreamPipe implements ReadStream<Buffer>, WriteStream<Buffer> {
+
+	private final Deque<Buffer> pending = new ArrayDeque<>();
+	private final Promise<Void> ended = Promise.promise();
+	private long maxSize;
+	private long buffered;
+	private long demand = Long.MAX_VALUE;
+	private boolean writeEnded;
+	private boolean draining;
+	private boolean full;
+	private Handler<Buffer> handler;
+	private Handler<Void> endHandler;
+	private Handler<Throwable> exceptionHandler;
+	private Handler<Void> drainHandler;
+
+	/**
+	 * @param maxSize Max number of bytes written and not read yet before the write queue is full
+	 */
+	public BufferStreamPipe(long maxSize) {
+		this.maxSize = maxSize;
+	}
+
+	/**
+	 * Fails the pipe, e.g. when the producer can not complete the content or the consumer stopped reading : the read
+	 * side gets the exception and the next writes fail.
+	 */
+	public synchronized void fail(Throwable cause) {
+		if (ended.tryFail(cause)) {
+			pending.clear();
+			buffered = 0;
+			if (exceptionHandler != null) {
+				exceptionHandler.handle(cause);
+			}
+			if (full && drainHandler != null) {
+				// wake up the producer so that it sees the failure
+				full = false;
+				drainHandler.handle(null);
+			}
+		}
+	}
+
+	@Override
+	public synchronized BufferStreamPipe exceptionHandler(Handler<Throwable> handler) {
+		this.exceptionHandler = handler;
+		return this;
+	}
+
+	@Override
+	public synchronized BufferStreamPipe handler(Handler<Buffer> handler) {
+		this.handler = handler;
+		drain();
+		return this;
+	}
+
+	@Override
+	public synchronized BufferStreamPipe pause() {
+		demand = 0;
+		return this;
+	}
+
+	@Override
+	public synchronized BufferStreamPipe resume() {
+		return fetch(Long.MAX_VALUE);
+	}
+
+	@Override
+	public synchronized BufferStreamPipe fetch(long amount) {
+		demand = (Long.MAX_VALUE - demand < amount) ? Long.MAX_VALUE : demand + amount;
+		drain();
+		return this;
+	}
+
+	@Override
+	public synchronized BufferStreamPipe endHandler(Handler<Void> endHandler) {
+		this.endHandler = endHandler;
+		drain();
+		return this;
+	}
+
+	@Override
+	public synchronized Future<Void> write(Buffer data) {
+		if (ended.future().failed()) {
+			return Future.failedFuture(ended.future().cause());
+		}
+		if (writeEnded) {
+			return Future.failedFuture(new IllegalStateException("Stream ended"));
+		}
+		if (data.length() > 0) {
+			pending.add(data);
+			buffered += data.length();
+			drain();
+		}
+		return Future.succeededFuture();
+	}
+
+	@Override
+	public void write(Buffer data, Handler<AsyncResult<Void>> handler) {
+		final Future<Void> f = write(data);
+		if (handler != null) {
+			f.onComplete(handler);
+		}
+	}
+
+	/**
+	 * @return A future completed when the read side has emitted every buffer and its end
+	 */
+	@Override
+	public synchronized Future<Void> end() {
+		writeEnded = true;
+		drain();
+		return ended.future();
+	}
+
+	@Override
+	public void end(Handler<AsyncResult<Void>> handler) {
+		final Future<Void> f = end();
+		if (handler != null) {
+			f.onComplete(handler);
+		}
+	}
+
+	@Override
+	public synchronized BufferStreamPipe setWriteQueueMaxSize(int maxSize) {
+		this.maxSize = maxSize;
+		return this;
+	}
+
+	@Override
+	public synchronized boolean writeQueueFull() {
+		if (buffered >= maxSize) {
+			full = true;
+		}
+		return full;
+	}
+
+	@Override
+	public synchronized BufferStreamPipe drainHandler(Handler<Void> handler) {
+		this.drainHandler = handler;
+		return this;
+	}
+
+	private void drain() {
+		if (draining) {
+			return;
+		}
+		draining = true;
+		try {
+			for (;;) {
+				while (demand > 0 && handler != null && !pending.isEmpty()) {
+					final Buffer buffer = pending.poll();
+					buffered -= buffer.length();
+					if (demand != Long.MAX_VALUE) {
+						demand--;
+					}
+					handler.handle(buffer);
+				}
+				if (full && buffered < maxSize / 2) {
+					full = false;
+					if (drainHandler != null) {
+						// the producer may write again : emit these buffers too
+						drainHandler.handle(null);
+						continue;
+					}
+				}
+				break;
+			}
+			if (writeEnded && pending.isEmpty() && endHandler != null && !ended.future().isComplete()) {
+				endHandler.handle(null);
+				ended.tryComplete();
+			}
+		} finally {
+			draining = false;
+		}
+	}
+
+}
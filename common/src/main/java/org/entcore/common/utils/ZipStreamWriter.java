@@ -0,0 +1,267 @@
+/*
+ * Copyright © "Open Digital Education", 2015
+ *
+ * This program is published by "Open Digital Education".
+ * You must indicate the name of the software and the company in any production /contribution
+ * using the software and indicate on the home page of the software industry in question,
+ * "powered by Open Digital Education" with a reference to the website: https://opendigitaleducation.com/.
+ *
+ * This program is free software, licensed under the terms of the GNU Affero General Public License
+ * as published by the Free Software Foundation, version 3 of the License.
+ *
+ * You can redistribute this application and/or modify it since you respect the terms of the GNU Affero General Public License.
+ * If you modify the source code and then use this modified source code in your creation, you must make available the source code of your modifications.
+ *
+ * You should have received a copy of the GNU Affero General Public License along with the software.
+ * If not, please see : <http://www.gnu.org/licenses/>. Full compliance requires reading the terms of this license and following its directives.
+
+ */
+
+package org.entcore.common.utils;
+
+import io.vertx.core.Future;
+import io.vertx.core.Promise;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.streams.ReadStream;
+import io.vertx.core.streams.WriteStream;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Writes a ZIP archive to a {@link WriteStream} (http response, file, ...) while its entries are read, without
+ * temporary files.
+ * <p>
+ * Entries are added one at a time : the future of an entry completes when its content has been written, the next one
+ * can then be added. The source of an entry is paused whenever the write queue of the output is full, so the memory
+ * used is bounded by the write queue size of the output. {@link #end()} writes the central directory and ends the
+ * output.
+ * </p>
+ * <p>
+ * A failed write fails the entry in progress. The output does not always report its failure on a write (e.g. a closed
+ * http response whose write queue stays full), so the owner of the output must call {@link #fail(Throwable)} when it
+ * closes or fails : the entry in progress fails, its source is no longer read, and the next entries fail.
+ * </p>
+ * <p>
+ * The entries that are already compressed (images, videos, archives, office documents) are written without
+ * compression, the others with the fastest compression level.
+ * </p>
+ */
+public class ZipStreamWriter {
+
+	private static final Set<String> COMPRESSED_EXTENSIONS = new HashSet<>(Arrays.asList(
+			"jpg", "jpeg", "png", "gif", "webp", "heic", "mp3", "mp4", "m4a", "m4v", "mov", "avi", "mkv", "webm",
+			"ogg", "ogv", "oga", "aac", "flac", "zip", "gz", "tgz", "bz2", "xz", "7z", "rar", "docx", "xlsx", "pptx",
+			"odt", "ods", "odp", "epub", "pdf"));
+
+	private final WriteStream<Buffer> out;
+	private final BufferOutputStream buffer = new BufferOutputStream();
+	private final ZipOutputStream zip = new ZipOutputStream(buffer);
+	private long written;
+	private boolean busy;
+	private Promise<Void> current;
+	private ReadStream<Buffer> currentContent;
+	private Throwable failure;
+
+	public ZipStreamWriter(WriteStream<Buffer> out) {
+		this.out = out;
+	}
+
+	/**
+	 * Stop writing the archive : the entry in progress fails and its source is no longer read, so that its owner can
+	 * close it, and the next entries fail.
+	 */
+	public void fail(Throwable cause) {
+		if (failure != null) {
+			return;
+		}
+		failure = cause;
+		if (currentContent != null) {
+			currentContent.handler(null);
+		}
+		if (current != null) {
+			failEntry(cause);
+		}
+	}
+
+	/**
+	 * @param name Path of the entry in the archive
+	 * @param content Content of the entry, resumed by the writer
+	 * @param compress Use {@link #isCompressed(String, String)} to skip the compression of media files
+	 */
+	public Future<Void> addEntry(String name, ReadStream<Buffer> content, boolean compress) {
+		final Promise<Void> promise = Promise.promise();
+		if (!startEntry(name, compress, promise)) {
+			return promise.future();
+		}
+		currentContent = content;
+		content.pause();
+		content.exceptionHandler(e -> {
+			content.handler(null);
+			failEntry(e);
+		});
+		content.endHandler(v -> {
+			try {
+				zip.closeEntry();
+				flush();
+				completeEntry();
+			} catch (IOException e) {
+				failEntry(e);
+			}
+		});
+		content.handler(chunk -> {
+			try {
+				zip.write(chunk.getBytes());
+				if (flush()) {
+					content.pause();
+					out.drainHandler(d -> content.resume());
+				}
+			} catch (IOException e) {
+				content.handler(null);
+				failEntry(e);
+			}
+		});
+		content.resume();
+		return promise.future();
+	}
+
+	public Future<Void> addEntry(String name, Buffer content, boolean compress) {
+		final Promise<Void> promise = Promise.promise();
+		if (!startEntry(name, compress, promise)) {
+			return promise.future();
+		}
+		try {
+			zip.write(content.getBytes());
+			zip.closeEntry();
+			if (flush()) {
+				out.drainHandler(d -> completeEntry());
+			} else {
+				completeEntry();
+			}
+		} catch (IOException e) {
+			failEntry(e);
+		}
+		return promise.future();
+	}
+
+	/**
+	 * Writes the central directory of the archive and ends the output.
+	 */
+	public Future<Void> end() {
+		if (failure != null) {
+			return Future.failedFuture(failure);
+		}
+		try {
+			zip.finish();
+			flush();
+		} catch (IOException e) {
+			return Future.failedFuture(e);
+		}
+		return out.end();
+	}
+
+	/**
+	 * @return Number of bytes of the archive written to the output
+	 */
+	public long written() {
+		return written;
+	}
+
+	/**
+	 * @return {@code true} if the file is already compressed, according to its name or its content type
+	 */
+	public static boolean isCompressed(String filename, String contentType) {
+		if (contentType != null && (contentType.startsWith("image/") || contentType.startsWith("video/") ||
+				contentType.startsWith("audio/")) && !contentType.startsWith("image/svg") &&
+				!contentType.startsWith("image/bmp")) {
+			return true;
+		}
+		return FileUtils.getFileExtension(filename != null ? filename : "")
+				.map(ext -> COMPRESSED_EXTENSIONS.contains(ext.toLowerCase())).orElse(false);
+	}
+
+	private boolean startEntry(String name, boolean compress, Promise<Void> promise) {
+		if (failure != null) {
+			promise.fail(failure);
+			return false;
+		}
+		if (busy) {
+			promise.fail(new IllegalStateException("Entry added before the end of the previous one : " + name));
+			return false;
+		}
+		try {
+			zip.setLevel(compress ? Deflater.BEST_SPEED : Deflater.NO_COMPRESSION);
+			zip.putNextEntry(new ZipEntry(name));
+			busy = true;
+			current = promise;
+			return true;
+		} catch (IOException e) {
+			promise.fail(e);
+			return false;
+		}
+	}
+
+	private void completeEntry() {
+		final Promise<Void> promise = current;
+		current = null;
+		currentContent = null;
+		busy = false;
+		if (promise != null) {
+			promise.tryComplete();
+		}
+	}
+
+	private void failEntry(Throwable cause) {
+		final Promise<Void> promise = current;
+		current = null;
+		currentContent = null;
+		busy = false;
+		if (promise != null) {
+			promise.tryFail(cause);
+		}
+	}
+
+	/**
+	 * Writes the bytes produced by the zip stream to the output.
+	 * @return {@code true} if the write queue of the output is full
+	 * @throws IOException if the output has already failed (closed response, failed pipe)
+	 */
+	private boolean flush() throws IOException {
+		final Buffer chunk = buffer.drain();
+		if (chunk.length() > 0) {
+			written += chunk.length();
+			final Future<Void> f = out.write(chunk);
+			if (f.failed()) {
+				throw new IOException(f.cause());
+			}
+		}
+		return out.writeQueueFull();
+	}
+
+	private static final class BufferOutputStream extends OutputStream {
+		private Buffer buffer = Buffer.buffer();
+
+		@Override
+		public void write(int b) {
+			buffer.appendByte((byte) b);
+		}
+
+		@Override
+		public void write(byte[] b, int off, int len) {
+			buffer.appendBytes(b, off, len);
+		}
+
+		private Buffer drain() {
+			final Buffer b = buffer;
+			buffer = Buffer.buffer();
+			return b;
+		}
+	}
+
+}
@@ -0,0 +1,56 @@
+package org.entcore.common.cache;
+
+import io.vertx.ext.unit.TestContext;
+import io.vertx.ext.unit.junit.VertxUnitRunner;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+@RunWith(VertxUnitRunner.class)
+public class LocalCacheTest {
+
+    @Test
+    public void testGetAndPut(final TestContext context) {
+        final LocalCache<String, String> cache = new LocalCache<>(10, 60000);
+        context.assertNull(cache.get("a"), "should miss on empty cache");
+        cache.put("a", "1");
+        context.assertEquals("1", cache.get("a"), "should hit after put");
+        context.assertEquals(1L, cache.getHits());
+        context.assertEquals(1L, cache.getMisses());
+    }
+
+    @Test
+    public void testLeastRecentlyUsedEviction(final TestContext context) {
+        final LocalCache<String, String> cache = new LocalCache<>(2, 60000);
+        cache.put("a", "1");
+        cache.put("b", "2");
+        cache.get("a");
+        cache.put("c", "3");
+        context.assertEquals(2, cache.size());
+        context.assertNull(cache.get("b"), "least recently used entry should be evicted");
+        context.assertEquals("1", cache.get("a"));
+        context.assertEquals(1L, cache.getEvictions());
+    }
+
+    @Test
+    public void testExpiration(final TestContext context) throws InterruptedException {
+        final LocalCache<String, String> cache = new LocalCache<>(10, 10);
+        cache.put("a", "1");
+        Thread.sleep(30);
+        context.assertNull(cache.get("a"), "entry should be expired");
+        context.assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void testInvalidation(final TestContext context) {
+        final LocalCache<String, String> cache = new LocalCache<>(10, 60000);
+        cache.put("a", "user1");
+        cache.put("b", "user1");
+        cache.put("c", "user2");
+        cache.invalidate("c");
+        context.assertNull(cache.get("c"));
+        cache.invalidateIf((k, v) -> "user1".equals(v));
+        context.assertEquals(0, cache.size());
+        context.assertEquals(3L, cache.getInvalidations());
+    }
+
+}
@@ -26,9 +26,12 @@ import static org.junit.Assert.assertTrue;
 
 import java.util.UUID;
 
+import io.vertx.core.Promise;
 import io.vertx.pgclient.PgConnectOptions;
 import io.vertx.pgclient.PgConnection;
 import io.vertx.pgclient.PgPool;
+import io.vertx.sqlclient.PoolOptions;
+import org.entcore.common.events.impl.PostgresqlEventBuffer;
 import org.entcore.common.events.impl.PostgresqlEventStore;
 import org.entcore.common.events.impl.PostgresqlEventStoreFactory;
 import org.entcore.common.user.UserInfos;
@@ -126,6 +129,47 @@ public class PostgresqlEventStoreTest {
         });
     }
 
+    @Test
+    public void testWriteBehindBuffer(TestContext context) {
+        Async async = context.async();
+        final JsonObject postgresql = eventStoreTestConfigJson.getJsonObject("postgresql");
+        final PgPool pool = PgPool.pool(vertx, new PgConnectOptions().setPort(postgresql.getInteger("port"))
+                .setHost(postgresql.getString("host")).setDatabase(postgresql.getString("database"))
+                .setUser(postgresql.getString("user")).setPassword(postgresql.getString("password")),
+                new PoolOptions().setMaxSize(1));
+        final PostgresqlEventBuffer buffer = new PostgresqlEventBuffer(vertx,
+                new JsonObject().put("batch-size", 2).put("flush-interval", 60000L), () -> pool, "Test");
+        final String prefix = UUID.randomUUID().toString().substring(0, 8);
+        for (int i = 0; i < 3; i++) {
+            buffer.offer("events.login_events",
+                    new JsonObject().put("id", prefix + "-" + i), either -> context.assertTrue(either.isRight()));
+        }
+        buffer.flush(context.asyncAssertSuccess(v ->
+            pool.query("SELECT count(*) AS nb FROM events.login_events WHERE id LIKE '" + prefix + "-%'").execute(
+                    context.asyncAssertSuccess(rows -> {
+                        context.assertEquals(3L, rows.iterator().next().getLong("nb"));
+                        async.complete();
+                    }))));
+    }
+
+    @Test
+    public void testWriteBehindBufferDropsWhenFull(TestContext context) {
+        final JsonObject postgresql = eventStoreTestConfigJson.getJsonObject("postgresql");
+        final PgPool pool = PgPool.pool(vertx, new PgConnectOptions().setPort(postgresql.getInteger("port"))
+                .setHost(postgresql.getString("host")).setDatabase(postgresql.getString("database"))
+                .setUser(postgresql.getString("user")).setPassword(postgresql.getString("password")),
+                new PoolOptions().setMaxSize(1));
+        final PostgresqlEventBuffer buffer = new PostgresqlEventBuffer(vertx, new JsonObject()
+                .put("batch-size", 10).put("max-pending", 1).put("flush-interval", 60000L), () -> pool, "Test");
+        buffer.offer("events.login_events", new JsonObject().put("id", UUID.randomUUID().toString()),
+                either -> context.assertTrue(either.isRight()));
+        buffer.offer("events.login_events", new JsonObject().put("id", UUID.randomUUID().toString()),
+                either -> context.assertTrue(either.isLeft(), "an event offered to a full buffer must be dropped"));
+        final Promise<Void> closed = Promise.promise();
+        buffer.close(closed);
+        closed.future().onComplete(context.asyncAssertSuccess());
+    }
+
     @Test
     public void testInsertUnknownEvents(TestContext context) {
         Async async = context.async();
@@ -0,0 +1,154 @@
+package org.entcore.common.http.filter;
+
+import fr.wseduc.webutils.http.Binding;
+import fr.wseduc.webutils.security.ActionType;
+import io.vertx.core.http.HttpMethod;
+import io.vertx.core.logging.Logger;
+import io.vertx.core.logging.LoggerFactory;
+import io.vertx.ext.unit.TestContext;
+import io.vertx.ext.unit.junit.VertxUnitRunner;
+import org.junit.Assume;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+@RunWith(VertxUnitRunner.class)
+public class BindingTableTest {
+
+    private static final Logger log = LoggerFactory.getLogger(BindingTableTest.class);
+    private static final HttpMethod[] METHODS = { HttpMethod.GET, HttpMethod.POST, HttpMethod.PUT, HttpMethod.DELETE };
+
+    /** Bindings shaped like the ones of the controllers : literal uris and uris with path parameters. */
+    private static Set<Binding> bindings(int size) {
+        final Set<Binding> bindings = new LinkedHashSet<>();
+        for (int i = 0; i < size; i++) {
+            final HttpMethod method = METHODS[i % METHODS.length];
+            final String resource = "/app" + (i % 7) + "/resource" + (i / 7);
+            final String uri;
+            switch (i % 3) {
+                case 0:
+                    uri = resource;
+                    break;
+                case 1:
+                    uri = resource + "/(?<id>[^/]+)";
+                    break;
+                default:
+                    uri = resource + "/(?<id>[^/]+)/sub/(?<subId>[^/]+)";
+            }
+            bindings.add(new Binding(method, Pattern.compile(uri), "method" + i, ActionType.WORKFLOW));
+        }
+        bindings.add(new Binding(HttpMethod.GET, Pattern.compile("/app0/resource0s?"), "optional", ActionType.WORKFLOW));
+        bindings.add(new Binding(HttpMethod.GET, Pattern.compile(".*/catch-all"), "catchAll", ActionType.WORKFLOW));
+        return bindings;
+    }
+
+    private static List<String[]> requests(Set<Binding> bindings) {
+        final List<String[]> requests = new ArrayList<>();
+        for (Binding binding : bindings) {
+            final String path = binding.getUriPattern().pattern()
+                    .replace("(?<id>[^/]+)", "c5b8d7c0-1f1e-4d3a-9e0a-3b1c2d4e5f60")
+                    .replace("(?<subId>[^/]+)", "42");
+            requests.add(new String[] { binding.getMethod().name(), path });
+        }
+        requests.add(new String[] { "GET", "/app0/resource0" });
+        requests.add(new String[] { "GET", "/app0/resource0s" });
+        requests.add(new String[] { "GET", "/anything/catch-all" });
+        requests.add(new String[] { "GET", "/unknown/path" });
+        requests.add(new String[] { "PATCH", "/app0/resource0" });
+        return requests;
+    }
+
+    /** Resolution of the filters before the table : exact uri then every pattern. */
+    private static Binding linear(Set<Binding> bindings, String method, String path) {
+        for (Binding binding : bindings) {
+            if (method.equals(binding.getMethod().name()) && binding.getUriPattern().toString().equals(path)) {
+                return binding;
+            }
+        }
+        for (Binding binding : bindings) {
+            if (method.equals(binding.getMethod().name()) && binding.getUriPattern().matcher(path).matches()) {
+                return binding;
+            }
+        }
+        return null;
+    }
+
+    @Test
+    public void testSameResolutionAsLinearScan(TestContext context) {
+        final Set<Binding> bindings = bindings(200);
+        final BindingTable table = new BindingTable(bindings);
+        for (String[] request : requests(bindings)) {
+            context.assertEquals(linear(bindings, request[0], request[1]), table.resolve(request[0], request[1]),
+                    request[0] + " " + request[1]);
+        }
+    }
+
+    @Test
+    public void testBindingsAddedAfterCreation(TestContext context) {
+        final Set<Binding> bindings = new LinkedHashSet<>();
+        final BindingTable table = new BindingTable(bindings);
+        context.assertNull(table.resolve("GET", "/late/1"));
+        final Binding late = new Binding(HttpMethod.GET, Pattern.compile("/late/(?<id>[^/]+)"), "late",
+                ActionType.AUTHENTICATED);
+        bindings.add(late);
+        context.assertEquals(late, table.resolve("GET", "/late/1"));
+    }
+
+    @Test
+    public void testLiteralPrefix(TestContext context) {
+        context.assertEquals("/app/list", BindingTable.literalPrefix(Pattern.compile("/app/list")));
+        context.assertEquals("/app/", BindingTable.literalPrefix(Pattern.compile("/app/(?<id>[^/]+)")));
+        context.assertEquals("/app/item", BindingTable.literalPrefix(Pattern.compile("/app/items?")));
+        context.assertEquals("/app", BindingTable.literalPrefix(Pattern.compile("^/app\\.json")));
+        context.assertEquals("", BindingTable.literalPrefix(Pattern.compile("/a|/b")));
+        context.assertEquals("", BindingTable.literalPrefix(Pattern.compile("/app", Pattern.CASE_INSENSITIVE)));
+    }
+
+    /**
+     * Time to resolve the binding of a request with the table and with the linear scan, for 50, 200 and 500
+     * bindings. Skipped unless run with {@code -Dbinding.benchmark=true}.
+     */
+    @Test
+    public void benchmark() {
+        Assume.assumeTrue(Boolean.getBoolean("binding.benchmark"));
+        for (int size : new int[] { 50, 200, 500 }) {
+            final Set<Binding> bindings = bindings(size);
+            final BindingTable table = new BindingTable(bindings);
+            final List<String[]> requests = requests(bindings);
+            final int iterations = 2_000_000 / size * 10;
+            for (int warmup = 0; warmup < 3; warmup++) {
+                run(table, bindings, requests, iterations / 10, true);
+                run(table, bindings, requests, iterations / 10, false);
+            }
+            final long tableNs = run(table, bindings, requests, iterations, true);
+            final long linearNs = run(table, bindings, requests, iterations / 10, false) * 10;
+            log.info(String.format("%d bindings : table %d ns/request, linear scan %d ns/request", size,
+                    tableNs / iterations, linearNs / iterations));
+        }
+    }
+
+    private static long run(BindingTable table, Set<Binding> bindings, List<String[]> requests, int iterations,
+            boolean useTable) {
+        int found = 0;
+        final long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            final String[] request = requests.get(i % requests.size());
+            final Binding binding = useTable ? table.resolve(request[0], request[1]) :
+                    linear(bindings, request[0], request[1]);
+            if (binding != null) {
+                found++;
+            }
+        }
+        final long elapsed = System.nanoTime() - start;
+        if (found == 0) {
+            throw new IllegalStateException("no binding resolved");
+        }
+        return elapsed;
+    }
+
+}
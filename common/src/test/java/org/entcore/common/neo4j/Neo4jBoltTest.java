@@ -0,0 +1,56 @@
+package org.entcore.common.neo4j;
+
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import io.vertx.ext.unit.TestContext;
+import io.vertx.ext.unit.junit.VertxUnitRunner;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.neo4j.driver.internal.InternalNode;
+import org.neo4j.driver.internal.InternalRelationship;
+import org.neo4j.driver.v1.Value;
+import org.neo4j.driver.v1.Values;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+@RunWith(VertxUnitRunner.class)
+public class Neo4jBoltTest {
+
+    private static InternalNode user() {
+        final Map<String, Value> properties = new HashMap<>();
+        properties.put("id", Values.value("user1"));
+        properties.put("level", Values.value(3L));
+        return new InternalNode(42L, Arrays.asList("User", "Visible"), properties);
+    }
+
+    @Test
+    public void testCypherEntities(TestContext context) {
+        final JsonObject node = (JsonObject) Neo4jBolt.toJson(user(), true);
+        context.assertEquals("user1", node.getJsonObject("data").getString("id"));
+        context.assertEquals(3, node.getJsonObject("data").getValue("level"));
+        context.assertEquals(42L, node.getJsonObject("metadata").getLong("id"));
+        context.assertEquals(new JsonArray().add("User").add("Visible"),
+                node.getJsonObject("metadata").getJsonArray("labels"));
+
+        final JsonObject relationship = (JsonObject) Neo4jBolt.toJson(new InternalRelationship(7L, 42L, 43L, "IN",
+                Collections.singletonMap("source", Values.value("MANUAL"))), true);
+        context.assertEquals("MANUAL", relationship.getJsonObject("data").getString("source"));
+        context.assertEquals("IN", relationship.getJsonObject("metadata").getString("type"));
+
+        final JsonArray nodes = (JsonArray) Neo4jBolt.toJson(Collections.singletonList(user()), true);
+        context.assertEquals("user1", nodes.getJsonObject(0).getJsonObject("data").getString("id"));
+    }
+
+    @Test
+    public void testTransactionEntities(TestContext context) {
+        final JsonObject node = (JsonObject) Neo4jBolt.toJson(user(), false);
+        context.assertEquals(new JsonObject().put("id", "user1").put("level", 3), node);
+
+        final JsonObject row = (JsonObject) Neo4jBolt.toJson(Collections.singletonMap("u", user()), false);
+        context.assertEquals("user1", row.getJsonObject("u").getString("id"));
+    }
+
+}
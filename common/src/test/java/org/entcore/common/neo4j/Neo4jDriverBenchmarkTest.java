@@ -0,0 +1,117 @@
+package org.entcore.common.neo4j;
+
+import io.vertx.core.Future;
+import io.vertx.core.Promise;
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import io.vertx.ext.unit.Async;
+import io.vertx.ext.unit.TestContext;
+import io.vertx.ext.unit.junit.VertxUnitRunner;
+import org.entcore.common.test.ConcurrentLoad;
+import org.junit.AfterClass;
+import org.junit.Assume;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.testcontainers.containers.Neo4jContainer;
+import org.testcontainers.utility.DockerImageName;
+
+import java.net.URI;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.IntFunction;
+
+/**
+ * Side by side throughput and allocation of {@link Neo4jRest} and {@link Neo4jBolt} on the queries of the session
+ * (user infos) and of the communication (visible users). Skipped unless run with {@code -Dneo4j.benchmark=true}.
+ */
+@RunWith(VertxUnitRunner.class)
+public class Neo4jDriverBenchmarkTest {
+
+    private static final int USERS = 2000;
+    private static final int ITERATIONS = Integer.getInteger("neo4j.benchmark.iterations", 2000);
+    private static final int CONCURRENCY = 16;
+    private static final String SESSION_QUERY =
+            "MATCH (n:User {id : {userId}}) " +
+            "OPTIONAL MATCH n-[:IN]->(gp:ProfileGroup)-[:DEPENDS]->(s:Structure) " +
+            "OPTIONAL MATCH n-[:IN]->(g:Group) " +
+            "RETURN n.id as userId, n.login as login, n.displayName as username, " +
+            "COLLECT(distinct s.id) as structures, COLLECT(distinct {id : g.id, name : g.name}) as groups";
+    private static final String VISIBLE_QUERY =
+            "MATCH (n:User {id : {userId}})-[:COMMUNIQUE]->(g:Group)<-[:IN]-(v:User) " +
+            "RETURN distinct v.id as id, v.displayName as displayName, v.profiles as profiles LIMIT 500";
+
+    private static Neo4jContainer<?> neo4jContainer;
+    private static Vertx vertx;
+    private static Neo4jRest rest;
+    private static Neo4jBolt bolt;
+
+    @BeforeClass
+    public static void setUp(TestContext context) throws Exception {
+        Assume.assumeTrue(Boolean.getBoolean("neo4j.benchmark"));
+        neo4jContainer = new Neo4jContainer<>(DockerImageName.parse("neo4j:3.5")).withoutAuthentication();
+        neo4jContainer.start();
+        vertx = Vertx.vertx();
+        final JsonObject config = new JsonObject().put("bolt-uri", neo4jContainer.getBoltUrl());
+        rest = new Neo4jRest(new URI[] { new URI(neo4jContainer.getHttpUrl() + "/db/data/") }, false, vertx,
+                3000L, CONCURRENCY, true, config);
+        bolt = new Neo4jBolt(vertx, false, 3000L, CONCURRENCY, config, null);
+        final Async async = context.async();
+        final String fixture =
+                "CREATE (s:Structure {id : 'structure'}) " +
+                "CREATE (pg:ProfileGroup:Group {id : 'profile-group', name : 'Students'})-[:DEPENDS]->(s) " +
+                "CREATE (cg:Group {id : 'class-group', name : 'Class'}) " +
+                "WITH pg, cg " +
+                "UNWIND range(1, {users}) as i " +
+                "CREATE (u:User {id : 'user' + i, login : 'login' + i, displayName : 'User ' + i, profiles : ['Student']}) " +
+                "CREATE u-[:IN]->pg, u-[:IN]->cg, u-[:COMMUNIQUE]->cg ";
+        rest.execute(fixture, new JsonObject().put("users", USERS), r -> {
+            context.assertNull(r.getString("message"), r.encode());
+            rest.execute("CREATE INDEX ON :User(id)", new JsonObject(), i -> async.complete());
+        });
+    }
+
+    @AfterClass
+    public static void tearDown() {
+        if (vertx != null) {
+            rest.close();
+            bolt.close();
+            vertx.close();
+        }
+        if (neo4jContainer != null) {
+            neo4jContainer.stop();
+        }
+    }
+
+    @Test
+    public void benchmarkSession(TestContext context) {
+        compare(context, SESSION_QUERY);
+    }
+
+    @Test
+    public void benchmarkVisibleUsers(TestContext context) {
+        compare(context, VISIBLE_QUERY);
+    }
+
+    private void compare(TestContext context, String query) {
+        final Map<String, IntFunction<Future<Void>>> clients = new LinkedHashMap<>();
+        clients.put("rest", i -> execute(rest, query, i));
+        clients.put("bolt", i -> execute(bolt, query, i));
+        ConcurrentLoad.compare(vertx, ITERATIONS, CONCURRENCY, clients).onComplete(context.asyncAssertSuccess());
+    }
+
+    private Future<Void> execute(GraphDatabase database, String query, int i) {
+        final Promise<Void> promise = Promise.promise();
+        database.execute(query, new JsonObject().put("userId", "user" + (1 + (i % USERS))), r -> {
+            final JsonArray result = r.getJsonArray("result");
+            if (result == null || result.isEmpty()) {
+                promise.fail(r.encode());
+            } else {
+                promise.complete();
+            }
+        });
+        return promise.future();
+    }
+
+}
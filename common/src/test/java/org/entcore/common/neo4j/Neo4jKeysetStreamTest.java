@@ -0,0 +1,105 @@
+package org.entcore.common.neo4j;
+
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import io.vertx.ext.unit.Async;
+import io.vertx.ext.unit.TestContext;
+import io.vertx.ext.unit.junit.VertxUnitRunner;
+import org.entcore.common.service.impl.BasicQuotaServiceTest;
+import org.junit.BeforeClass;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.testcontainers.containers.Neo4jContainer;
+
+@RunWith(VertxUnitRunner.class)
+public class Neo4jKeysetStreamTest {
+
+    @ClassRule
+    public static Neo4jContainer<?> neo4jContainer = BasicQuotaServiceTest.createNeo4jContainer();
+    private static final Vertx vertx = Vertx.vertx();
+    private static Neo4j neo4j;
+
+    @BeforeClass
+    public static void setUp(TestContext context) {
+        neo4j = Neo4j.getSpecificInstance();
+        neo4j.init(vertx, new JsonObject()
+                .put("server-uri", neo4jContainer.getHttpUrl() + "/db/data/").put("poolSize", 1));
+        final String fixture =
+                "UNWIND range(1, 25) as i " +
+                "CREATE (:KeysetUser {login : 'user' + CASE WHEN i < 10 THEN '0' ELSE '' END + i}) " +
+                "WITH count(*) as users " +
+                "CREATE (p1:KeysetParent {login : 'parent1'}), (p2:KeysetParent {login : 'parent2'}) " +
+                "CREATE (:KeysetChild {id : 'a'})-[:RELATED]->(p1), (:KeysetChild {id : 'b'})-[:RELATED]->(p1), " +
+                "(:KeysetChild {id : 'c'})-[:RELATED]->(p1), (:KeysetChild {id : 'd'})-[:RELATED]->(p2), " +
+                "(:KeysetChild {id : 'e'})-[:RELATED]->(p2)";
+        final Async async = context.async();
+        neo4j.execute(fixture, new JsonObject(), Neo4jResult.validEmptyHandler(r -> {
+            context.assertTrue(r.isRight(), r.isLeft() ? r.left().getValue() : null);
+            async.complete();
+        }));
+    }
+
+    @Test
+    public void testStreamAllPagesInOrder(TestContext context) {
+        final Async async = context.async();
+        final JsonArray logins = new JsonArray();
+        new Neo4jKeysetStream(neo4j,
+                "MATCH (u:KeysetUser) RETURN u.login as login",
+                "MATCH (u:KeysetUser) WHERE u.login > {lastLogin} RETURN u.login as login",
+                new JsonObject(), 10, "login")
+                .exceptionHandler(context::fail)
+                .endHandler(v -> {
+                    context.assertEquals(25, logins.size());
+                    context.assertEquals("user01", logins.getString(0));
+                    context.assertEquals("user11", logins.getString(10), "the second page must start after the cursor");
+                    context.assertEquals("user25", logins.getString(24));
+                    async.complete();
+                })
+                .handler(row -> logins.add(row.getString("login")));
+    }
+
+    @Test
+    public void testCompositeKeyAcrossPageBoundaries(TestContext context) {
+        final Async async = context.async();
+        final JsonArray rows = new JsonArray();
+        new Neo4jKeysetStream(neo4j,
+                "MATCH (c:KeysetChild)-[:RELATED]->(r:KeysetParent) RETURN r.login as login, c.id as childId",
+                "MATCH (c:KeysetChild)-[:RELATED]->(r:KeysetParent) " +
+                "WHERE r.login >= {lastLogin} AND (r.login > {lastLogin} OR c.id > {lastChildId}) " +
+                "RETURN r.login as login, c.id as childId",
+                new JsonObject(), 2, "login", "childId")
+                .removeKeys("childId")
+                .exceptionHandler(context::fail)
+                .endHandler(v -> {
+                    context.assertEquals(5, rows.size(), "rows sharing a login must not be lost between pages");
+                    context.assertEquals("parent1", rows.getJsonObject(2).getString("login"));
+                    context.assertEquals("parent2", rows.getJsonObject(3).getString("login"));
+                    context.assertFalse(rows.getJsonObject(0).containsKey("childId"));
+                    async.complete();
+                })
+                .handler(rows::add);
+    }
+
+    @Test
+    public void testFetchReadsOnDemand(TestContext context) {
+        final Async async = context.async();
+        final JsonArray logins = new JsonArray();
+        final Neo4jKeysetStream stream = new Neo4jKeysetStream(neo4j,
+                "MATCH (u:KeysetUser) RETURN u.login as login",
+                "MATCH (u:KeysetUser) WHERE u.login > {lastLogin} RETURN u.login as login",
+                new JsonObject(), 10, "login");
+        stream.pause();
+        stream.exceptionHandler(context::fail)
+                .endHandler(v -> context.fail("the stream must not end while paused"))
+                .handler(row -> logins.add(row.getString("login")));
+        stream.fetch(3L);
+        vertx.setTimer(500L, t -> {
+            context.assertEquals(3, logins.size());
+            context.assertEquals("user03", logins.getString(2));
+            async.complete();
+        });
+    }
+
+}
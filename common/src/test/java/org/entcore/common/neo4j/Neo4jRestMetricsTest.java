@@ -0,0 +1,73 @@
+package org.entcore.common.neo4j;
+
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonObject;
+import io.vertx.ext.unit.Async;
+import io.vertx.ext.unit.TestContext;
+import io.vertx.ext.unit.junit.VertxUnitRunner;
+import org.entcore.common.service.impl.BasicQuotaServiceTest;
+import org.junit.BeforeClass;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.testcontainers.containers.Neo4jContainer;
+
+import java.util.Map;
+
+@RunWith(VertxUnitRunner.class)
+public class Neo4jRestMetricsTest {
+
+    @ClassRule
+    public static Neo4jContainer<?> neo4jContainer = BasicQuotaServiceTest.createNeo4jContainer();
+    private static final Vertx vertx = Vertx.vertx();
+    private static Neo4j neo4j;
+
+    @BeforeClass
+    public static void setUp() {
+        neo4j = Neo4j.getSpecificInstance();
+        // unknown policy : the client must start with the default one instead of leaving the database unset
+        neo4j.init(vertx, new JsonObject()
+                .put("server-uri", neo4jContainer.getHttpUrl() + "/db/data/").put("poolSize", 1)
+                .put("read-routing", "least-outstandingg"));
+    }
+
+    @Test
+    public void testUnknownReadRoutingFallsBackToDefault(TestContext context) {
+        context.assertEquals(Neo4jRestClientNodeManager.ReadRouting.LEAST_OUTSTANDING,
+                Neo4jRestClientNodeManager.ReadRouting.fromConfig("least-outstandingg"));
+        context.assertEquals(Neo4jRestClientNodeManager.ReadRouting.EWMA,
+                Neo4jRestClientNodeManager.ReadRouting.fromConfig("ewma"));
+        final Async async = context.async();
+        neo4j.execute("RETURN 1 as one", new JsonObject(), Neo4jResult.validUniqueResultHandler(r -> {
+            context.assertTrue(r.isRight(), r.isLeft() ? r.left().getValue() : null);
+            async.complete();
+        }));
+    }
+
+    @Test
+    public void testInFlightBackToZeroOnceBodyIsRead(TestContext context) {
+        final Async async = context.async();
+        // large enough for the body to be received in several chunks after the headers
+        neo4j.execute("UNWIND range(1, 20000) as i RETURN i, 'row ' + i as label", new JsonObject(),
+                Neo4jResult.validResultHandler(r -> {
+                    context.assertTrue(r.isRight(), r.isLeft() ? r.left().getValue() : null);
+                    context.assertEquals(20000, r.right().getValue().size());
+                    vertx.setTimer(100L, t -> {
+                        final JsonObject metrics = neo4j.getMetrics();
+                        long inFlight = 0L;
+                        long requests = 0L;
+                        for (Map.Entry<String, Object> metric : metrics) {
+                            if (metric.getKey().startsWith("neo4j_node_in_flight{")) {
+                                inFlight += ((Number) metric.getValue()).longValue();
+                            } else if (metric.getKey().startsWith("neo4j_node_requests_total{")) {
+                                requests += ((Number) metric.getValue()).longValue();
+                            }
+                        }
+                        context.assertTrue(requests > 0L, metrics.encode());
+                        context.assertEquals(0L, inFlight, metrics.encode());
+                        async.complete();
+                    });
+                }));
+    }
+
+}
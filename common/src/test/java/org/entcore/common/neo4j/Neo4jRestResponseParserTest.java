@@ -0,0 +1,74 @@
+package org.entcore.common.neo4j;
+
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import io.vertx.ext.unit.TestContext;
+import io.vertx.ext.unit.junit.VertxUnitRunner;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+@RunWith(VertxUnitRunner.class)
+public class Neo4jRestResponseParserTest {
+
+    private static final String TRANSACTION =
+            "{\"commit\":\"http://localhost:7474/db/data/transaction/12/commit\",\"results\":[" +
+            "{\"columns\":[\"id\",\"name\",\"groups\"],\"data\":[" +
+            "{\"row\":[\"u1\",\"Élodie\",[{\"id\":\"g1\"}]],\"meta\":[null,null,[{\"id\":3}]]}," +
+            "{\"row\":[\"u2\",null,[]],\"meta\":[null,null,[]]}]}," +
+            "{\"columns\":[\"nb\"],\"data\":[{\"row\":[42],\"meta\":[null]}]}]," +
+            "\"transaction\":{\"expires\":\"Thu, 01 Jan 2026 00:00:00 +0000\"},\"errors\":[]}";
+
+    /** Feed the body in chunks of chunkSize bytes, splitting tokens and multi-byte characters. */
+    private static void feed(Neo4jRestResponseParser parser, String body, int chunkSize) throws IOException {
+        final byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        for (int i = 0; i < bytes.length; i += chunkSize) {
+            final int end = Math.min(bytes.length, i + chunkSize);
+            final byte[] chunk = new byte[end - i];
+            System.arraycopy(bytes, i, chunk, 0, chunk.length);
+            parser.handle(Buffer.buffer(chunk));
+        }
+    }
+
+    @Test
+    public void testTransaction(final TestContext context) throws IOException {
+        final Neo4jRestResponseParser parser = Neo4jRestResponseParser.transaction(null);
+        feed(parser, TRANSACTION, 7);
+        final JsonObject json = parser.end();
+        final JsonArray results = json.getJsonArray("results");
+        context.assertEquals(2, results.size());
+        final JsonArray users = results.getJsonArray(0);
+        context.assertEquals(2, users.size());
+        context.assertEquals("Élodie", users.getJsonObject(0).getString("name"));
+        context.assertEquals("g1", users.getJsonObject(0).getJsonArray("groups").getJsonObject(0).getString("id"));
+        context.assertTrue(users.getJsonObject(1).containsKey("name"));
+        context.assertNull(users.getJsonObject(1).getValue("name"));
+        context.assertEquals(42, results.getJsonArray(1).getJsonObject(0).getInteger("nb"));
+        context.assertEquals(0, json.getJsonArray("errors").size());
+        context.assertEquals("http://localhost:7474/db/data/transaction/12/commit", json.getString("commit"));
+        context.assertFalse(users.getJsonObject(0).containsKey("meta"));
+    }
+
+    @Test
+    public void testCypherRowHandler(final TestContext context) throws IOException {
+        final JsonArray rows = new JsonArray();
+        final Neo4jRestResponseParser parser = Neo4jRestResponseParser.cypher(rows::add);
+        feed(parser, "{\"columns\":[\"id\",\"score\"],\"data\":[[\"a\",1.5],[\"b\",true]]}", 3);
+        final JsonObject json = parser.end();
+        context.assertEquals(0, json.getJsonArray("result").size(), "rows should not be kept");
+        context.assertEquals(2, rows.size());
+        context.assertEquals(1.5, rows.getJsonObject(0).getDouble("score"));
+        context.assertEquals(true, rows.getJsonObject(1).getBoolean("score"));
+    }
+
+    @Test(expected = IOException.class)
+    public void testTruncatedResponse() throws IOException {
+        final Neo4jRestResponseParser parser = Neo4jRestResponseParser.transaction(null);
+        feed(parser, TRANSACTION.substring(0, 100), 16);
+        parser.end();
+    }
+
+}
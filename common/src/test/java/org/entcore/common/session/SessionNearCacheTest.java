@@ -0,0 +1,23 @@
+package org.entcore.common.session;
+
+import io.vertx.core.json.JsonObject;
+import io.vertx.ext.unit.TestContext;
+import io.vertx.ext.unit.junit.VertxUnitRunner;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+@RunWith(VertxUnitRunner.class)
+public class SessionNearCacheTest {
+
+    @Test
+    public void testTtlFollowsSessionTimeout(final TestContext context) {
+        context.assertEquals(60000L, SessionNearCache.ttl(new JsonObject()));
+        final JsonObject shortTimeout = new JsonObject().put(SessionNearCache.SESSION_TIMEOUT_KEY, 6 * 60 * 1000L);
+        context.assertEquals(12000L, SessionNearCache.ttl(shortTimeout));
+        context.assertEquals(60000L, SessionNearCache.ttl(shortTimeout.copy().put("ttl", 3600000L)),
+                "ttl must be capped from the configured session timeout");
+        final JsonObject longTimeout = new JsonObject().put(SessionNearCache.SESSION_TIMEOUT_KEY, 2 * 3600 * 1000L);
+        context.assertEquals(600000L, SessionNearCache.ttl(longTimeout.put("ttl", 600000L)));
+    }
+
+}
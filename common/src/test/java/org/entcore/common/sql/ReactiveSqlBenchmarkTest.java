@@ -0,0 +1,60 @@
+package org.entcore.common.sql;
+
+import io.vertx.core.Future;
+import io.vertx.core.eventbus.DeliveryOptions;
+import io.vertx.core.json.JsonArray;
+import io.vertx.ext.unit.TestContext;
+import io.vertx.ext.unit.junit.VertxUnitRunner;
+import org.entcore.common.test.ConcurrentLoad;
+import org.junit.AfterClass;
+import org.junit.Assume;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.IntFunction;
+
+/**
+ * Compares the throughput of the sql persistor on the event bus and of {@link ReactiveSql}.
+ * Skipped unless run with {@code -Dsql.benchmark=true}.
+ */
+@RunWith(VertxUnitRunner.class)
+public class ReactiveSqlBenchmarkTest {
+
+    private static final int ITERATIONS = Integer.getInteger("sql.benchmark.iterations", 5000);
+    private static final int CONCURRENCY = 16;
+
+    private static ReactiveSqlFixture fixture;
+
+    @BeforeClass
+    public static void setUp(TestContext context) {
+        Assume.assumeTrue(Boolean.getBoolean("sql.benchmark"));
+        fixture = new ReactiveSqlFixture();
+        fixture.start(context, CONCURRENCY);
+    }
+
+    @AfterClass
+    public static void tearDown() {
+        if (fixture != null) {
+            fixture.stop();
+        }
+    }
+
+    @Test
+    public void benchmark(TestContext context) {
+        final Map<String, IntFunction<Future<Void>>> clients = new LinkedHashMap<>();
+        clients.put("bus", i -> prepared(fixture.bus, i));
+        clients.put("reactive", i -> prepared(fixture.reactive, i));
+        ConcurrentLoad.compare(fixture.vertx, ITERATIONS, CONCURRENCY, clients)
+                .onComplete(context.asyncAssertSuccess());
+    }
+
+    private Future<Void> prepared(ISql sql, int i) {
+        return sql.prepared(ReactiveSqlFixture.QUERY, new JsonArray().add("owner" + (i % 100)), new DeliveryOptions())
+                .compose(r -> "ok".equals(r.body().getString("status")) ? Future.succeededFuture() :
+                        Future.failedFuture(r.body().encode()));
+    }
+
+}
@@ -0,0 +1,63 @@
+package org.entcore.common.sql;
+
+import io.vertx.core.DeploymentOptions;
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonObject;
+import io.vertx.ext.unit.Async;
+import io.vertx.ext.unit.TestContext;
+import org.entcore.common.postgres.IPostgresClient;
+import org.testcontainers.containers.PostgreSQLContainer;
+
+/**
+ * Postgres container with a {@code test.messages} table, queried through the sql persistor on the event bus and
+ * through {@link ReactiveSql}.
+ */
+final class ReactiveSqlFixture {
+
+    static final String QUERY =
+            "SELECT id, name, created, tags, data FROM test.messages WHERE owner = ? ORDER BY created DESC LIMIT 20";
+
+    final PostgreSQLContainer<?> postgreSQLContainer = new PostgreSQLContainer<>("postgres:14.3");
+    final Vertx vertx = Vertx.vertx();
+    ISql bus;
+    ISql reactive;
+
+    void start(TestContext context, int poolSize) {
+        postgreSQLContainer.start();
+        final JsonObject persistorConfig = new JsonObject().put("address", "sql.persistor")
+                .put("url", postgreSQLContainer.getJdbcUrl())
+                .put("username", postgreSQLContainer.getUsername())
+                .put("password", postgreSQLContainer.getPassword());
+        final JsonObject postgresConfig = new JsonObject().put("database", postgreSQLContainer.getDatabaseName())
+                .put("port", postgreSQLContainer.getMappedPort(PostgreSQLContainer.POSTGRESQL_PORT))
+                .put("host", postgreSQLContainer.getHost())
+                .put("user", postgreSQLContainer.getUsername())
+                .put("password", postgreSQLContainer.getPassword())
+                .put("pool-size", poolSize);
+        reactive = new ReactiveSql(IPostgresClient.create(vertx,
+                new JsonObject().put("postgresConfig", postgresConfig), false, true));
+        final Async async = context.async();
+        vertx.deployVerticle(fr.wseduc.sql.SqlPersistor.class.getName(),
+                new DeploymentOptions().setConfig(persistorConfig).setWorker(true).setInstances(1), ar -> {
+            context.assertTrue(ar.succeeded());
+            bus = Sql.createInstance(vertx.eventBus(), "sql.persistor");
+            final SqlStatementsBuilder s = new SqlStatementsBuilder();
+            s.raw("CREATE SCHEMA test");
+            s.raw("CREATE TABLE test.messages (id UUID PRIMARY KEY, owner VARCHAR(36), name VARCHAR(255), " +
+                    "created TIMESTAMP, tags VARCHAR(36)[], data JSONB)");
+            s.raw("INSERT INTO test.messages SELECT md5(i::text)::uuid, 'owner' || (i % 100), 'Message ' || i, " +
+                    "'2024-01-01'::timestamp + i * interval '1 minute', ARRAY['a', 'b'], " +
+                    "jsonb_build_object('i', i) FROM generate_series(1, 10000) i");
+            bus.transaction(s.build(), r -> {
+                context.assertEquals("ok", r.body().getString("status"), r.body().encode());
+                async.complete();
+            });
+        });
+    }
+
+    void stop() {
+        vertx.close();
+        postgreSQLContainer.stop();
+    }
+
+}
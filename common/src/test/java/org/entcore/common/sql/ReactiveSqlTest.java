@@ -0,0 +1,113 @@
+package org.entcore.common.sql;
+
+import io.vertx.core.eventbus.DeliveryOptions;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import io.vertx.ext.unit.Async;
+import io.vertx.ext.unit.TestContext;
+import io.vertx.ext.unit.junit.VertxUnitRunner;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+@RunWith(VertxUnitRunner.class)
+public class ReactiveSqlTest {
+
+    private static ReactiveSqlFixture fixture;
+
+    @BeforeClass
+    public static void setUp(TestContext context) {
+        fixture = new ReactiveSqlFixture();
+        fixture.start(context, 4);
+    }
+
+    @AfterClass
+    public static void tearDown() {
+        if (fixture != null) {
+            fixture.stop();
+        }
+    }
+
+    @Test
+    public void testBind(final TestContext context) {
+        final String query = "SELECT '?' as q, \"a?\" FROM t -- where ?\n" +
+                "WHERE id = ? AND /* ? */ name = ? AND data = E'\\'?' AND n IN (?,?) AND j = ?::jsonb";
+        final JsonArray values = new JsonArray().add("o'neil").add("x").add(3).add(2L)
+                .add(new JsonObject().put("a", 1));
+        context.assertEquals("SELECT '?' as q, \"a?\" FROM t -- where ?\n" +
+                "WHERE id = 'o''neil' AND /* ? */ name = 'x' AND data = E'\\'?' AND n IN (3,2) " +
+                "AND j = '{\"a\":1}'::jsonb", ReactiveSql.bind(query, values));
+    }
+
+    @Test
+    public void testBindDollarQuoted(final TestContext context) {
+        final String query = "SELECT $$it's ?$$, $fn$ ? $$ ? $fn$, $1, a$b FROM t WHERE n = ? AND m = ?-?";
+        final JsonArray values = new JsonArray().add(1.5d).add(3L).add(-2);
+        context.assertEquals("SELECT $$it's ?$$, $fn$ ? $$ ? $fn$, $1, a$b FROM t WHERE n = 1.5 AND m = 3-(-2)",
+                ReactiveSql.bind(query, values));
+    }
+
+    @Test
+    public void testNumberLiterals(final TestContext context) {
+        context.assertEquals("9007199254740993", ReactiveSql.literal(9007199254740993L));
+        context.assertEquals("(-1.25)", ReactiveSql.literal(-1.25d));
+        context.assertEquals("'NaN'", ReactiveSql.literal(Double.NaN));
+        context.assertEquals("'12'", ReactiveSql.literal("12"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testBindMissingParameter() {
+        ReactiveSql.bind("SELECT * FROM t WHERE a = ? AND b = ?", new JsonArray().add(1));
+    }
+
+    @Test
+    public void testUpsert(final TestContext context) {
+        final JsonObject upsert = new JsonObject()
+                .put("action", "upsert")
+                .put("table", "test.users")
+                .put("fields", new JsonArray().add("id").add("name"))
+                .put("values", new JsonArray().add(new JsonArray().add("u1").add("A"))
+                        .add(new JsonArray().add("u2").add(null)))
+                .put("conflictFields", new JsonArray().add("id"))
+                .put("updateFields", new JsonArray().add("name"))
+                .put("returning", "id");
+        context.assertEquals("INSERT INTO test.users (\"id\",\"name\") VALUES ('u1','A'),('u2',NULL) " +
+                "ON CONFLICT (\"id\") DO UPDATE SET \"name\" = EXCLUDED.\"name\" RETURNING id",
+                ReactiveSql.statement(upsert));
+    }
+
+    @Test
+    public void testSameResponses(TestContext context) {
+        final JsonArray values = new JsonArray().add("owner1");
+        final Async async = context.async();
+        fixture.bus.prepared(ReactiveSqlFixture.QUERY, values, new DeliveryOptions())
+                .onComplete(context.asyncAssertSuccess(expected -> fixture.reactive
+                        .prepared(ReactiveSqlFixture.QUERY, values, new DeliveryOptions())
+                        .onComplete(context.asyncAssertSuccess(actual -> {
+                    context.assertEquals(expected.body().getJsonArray("fields"), actual.body().getJsonArray("fields"));
+                    context.assertEquals(expected.body().getJsonArray("results"), actual.body().getJsonArray("results"));
+                    context.assertEquals(expected.body().getInteger("rows"), actual.body().getInteger("rows"));
+                    async.complete();
+                }))));
+    }
+
+    @Test
+    public void testInlinedValues(TestContext context) {
+        final String query = "SELECT id, name FROM test.messages WHERE id = ? AND name <> ? AND " +
+                "(data->>'i')::bigint BETWEEN ? AND ? AND $$o'neil ?$$ <> ?";
+        final JsonArray values = new JsonArray().add("c4ca4238-a0b9-2382-0dcc-509a6f75849b").add("o'neil \\ x")
+                .add(-1L).add(2.5d).add("x");
+        fixture.reactive.prepared(query, values, new DeliveryOptions()).onComplete(context.asyncAssertSuccess(r -> {
+            context.assertEquals("ok", r.body().getString("status"), r.body().encode());
+            context.assertEquals(new JsonArray().add(new JsonArray().add("c4ca4238-a0b9-2382-0dcc-509a6f75849b")
+                    .add("Message 1")), r.body().getJsonArray("results"));
+        }));
+    }
+
+    @Test
+    public void testCheckSettings(TestContext context) {
+        ((ReactiveSql) fixture.reactive).checkSettings().onComplete(context.asyncAssertSuccess());
+    }
+
+}
@@ -0,0 +1,100 @@
+package org.entcore.common.test;
+
+import io.vertx.core.Future;
+import io.vertx.core.Promise;
+import io.vertx.core.Vertx;
+import io.vertx.core.logging.Logger;
+import io.vertx.core.logging.LoggerFactory;
+
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntFunction;
+
+/**
+ * Runs asynchronous calls with a fixed number of calls in progress, to compare the throughput of several clients.
+ */
+public final class ConcurrentLoad {
+
+    private static final Logger log = LoggerFactory.getLogger(ConcurrentLoad.class);
+
+    private ConcurrentLoad() {}
+
+    /**
+     * Warms up every client with a quarter of the iterations, then measures them one after another and logs their
+     * throughput and the bytes allocated per call.
+     * @param calls Call of each client by name, taking the index of the call
+     */
+    public static Future<Void> compare(Vertx vertx, int iterations, int concurrency,
+            Map<String, IntFunction<Future<Void>>> calls) {
+        Future<Void> future = Future.succeededFuture();
+        for (IntFunction<Future<Void>> call : calls.values()) {
+            future = future.compose(v -> run(vertx, iterations / 4, concurrency, call));
+        }
+        for (Map.Entry<String, IntFunction<Future<Void>>> call : calls.entrySet()) {
+            future = future.compose(v -> measure(vertx, call.getKey(), iterations, concurrency, call.getValue()));
+        }
+        return future;
+    }
+
+    private static Future<Void> measure(Vertx vertx, String name, int iterations, int concurrency,
+            IntFunction<Future<Void>> call) {
+        final long allocated = allocatedBytes();
+        final long start = System.nanoTime();
+        return run(vertx, iterations, concurrency, call).map(v -> {
+            final long elapsed = System.nanoTime() - start;
+            log.info(String.format("%s : %d calls in %d ms, %.0f calls/s, %d KB allocated per call", name,
+                    iterations, elapsed / 1000000, iterations * 1e9 / elapsed,
+                    (allocatedBytes() - allocated) / iterations / 1024));
+            return null;
+        });
+    }
+
+    /**
+     * @return A future completed when every call succeeded, failed with the first failure otherwise
+     */
+    public static Future<Void> run(Vertx vertx, int iterations, int concurrency, IntFunction<Future<Void>> call) {
+        final Promise<Void> promise = Promise.promise();
+        if (iterations <= 0) {
+            promise.complete();
+            return promise.future();
+        }
+        final AtomicInteger sent = new AtomicInteger();
+        final AtomicInteger received = new AtomicInteger();
+        for (int i = 0; i < concurrency; i++) {
+            next(vertx, iterations, call, sent, received, promise);
+        }
+        return promise.future();
+    }
+
+    private static void next(Vertx vertx, int iterations, IntFunction<Future<Void>> call, AtomicInteger sent,
+            AtomicInteger received, Promise<Void> promise) {
+        final int i = sent.getAndIncrement();
+        if (i >= iterations) {
+            return;
+        }
+        vertx.runOnContext(c -> call.apply(i).onComplete(ar -> {
+            if (ar.failed()) {
+                promise.tryFail(ar.cause());
+            } else if (received.incrementAndGet() == iterations) {
+                promise.tryComplete();
+            } else {
+                next(vertx, iterations, call, sent, received, promise);
+            }
+        }));
+    }
+
+    /** Bytes allocated by every thread of the JVM, i.e. the event loops and the threads of the clients. */
+    private static long allocatedBytes() {
+        final com.sun.management.ThreadMXBean threads =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long total = 0L;
+        for (long allocated : threads.getThreadAllocatedBytes(threads.getAllThreadIds())) {
+            if (allocated > 0) {
+                total += allocated;
+            }
+        }
+        return total;
+    }
+
+}
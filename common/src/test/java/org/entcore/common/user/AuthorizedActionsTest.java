@@ -0,0 +1,106 @@
+package org.entcore.common.user;
+
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import io.vertx.core.logging.Logger;
+import io.vertx.core.logging.LoggerFactory;
+import io.vertx.ext.unit.TestContext;
+import io.vertx.ext.unit.junit.VertxUnitRunner;
+import org.junit.Assume;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+@RunWith(VertxUnitRunner.class)
+public class AuthorizedActionsTest {
+
+    private static final Logger log = LoggerFactory.getLogger(AuthorizedActionsTest.class);
+
+    private static JsonObject session(int size) {
+        final JsonArray actions = new JsonArray();
+        for (int i = 0; i < size; i++) {
+            actions.add(new JsonObject()
+                    .put("name", "org.entcore.app" + (i % 30) + ".controllers.Controller|action" + i)
+                    .put("displayName", "app" + (i % 30) + ".action" + i)
+                    .put("type", "SECURED_ACTION_WORKFLOW"));
+        }
+        return new JsonObject().put("userId", "u1").put("authorizedActions", actions);
+    }
+
+    /** Check done by the filters before the index : every action of the session. */
+    private static boolean linear(JsonObject session, String name) {
+        for (Object a : session.getJsonArray("authorizedActions")) {
+            if (name.equals(((JsonObject) a).getString("name"))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Test
+    public void testSessionActions(TestContext context) {
+        final JsonObject session = session(100);
+        context.assertTrue(AuthorizedActions.contains(session, "org.entcore.app1.controllers.Controller|action31"));
+        context.assertFalse(AuthorizedActions.contains(session, "org.entcore.app1.controllers.Controller|action32"));
+        context.assertFalse(AuthorizedActions.contains(session, null));
+        context.assertFalse(AuthorizedActions.contains(new JsonObject(), "any"));
+        context.assertTrue(AuthorizedActions.names(session) == AuthorizedActions.names(session));
+
+        final JsonObject copy = session.copy();
+        AuthorizedActions.share(session, copy);
+        context.assertTrue(AuthorizedActions.names(session) == AuthorizedActions.names(copy));
+    }
+
+    @Test
+    public void testUserInfosActions(TestContext context) {
+        final UserInfos user = UserUtils.sessionToUserInfos(session(100));
+        context.assertNotNull(user);
+        context.assertEquals(100, user.getAuthorizedActionNames().size());
+        context.assertTrue(user.hasAuthorizedAction("org.entcore.app1.controllers.Controller|action31"));
+        context.assertFalse(user.hasAuthorizedAction("org.entcore.app1.controllers.Controller|action32"));
+        context.assertFalse(user.hasAuthorizedAction(null));
+        context.assertEquals(4, user.getAuthorizedActionNames("org.entcore.app1.controllers.Controller").size());
+        context.assertTrue(user.getAuthorizedActionNames("unknown").isEmpty());
+        context.assertFalse(UserUtils.sessionToUserInfos(new JsonObject()).hasAuthorizedAction("any"));
+    }
+
+    /**
+     * Time of a workflow check on a session of 600 actions, with the index and with the scan of the actions.
+     * Skipped unless run with {@code -Dauthorization.benchmark=true}.
+     */
+    @Test
+    public void benchmark() {
+        Assume.assumeTrue(Boolean.getBoolean("authorization.benchmark"));
+        final JsonObject session = session(600);
+        final String[] names = new String[64];
+        for (int i = 0; i < names.length; i++) {
+            // half of the checks are granted, the other half scan every action
+            names[i] = "org.entcore.app" + (i % 30) + ".controllers.Controller|action" + (i % 2 == 0 ? i * 9 : 1000 + i);
+        }
+        final int iterations = 2_000_000;
+        for (int warmup = 0; warmup < 3; warmup++) {
+            run(session, names, iterations / 10, true);
+            run(session, names, iterations / 100, false);
+        }
+        final long indexedNs = run(session, names, iterations, true);
+        final long linearNs = run(session, names, iterations / 100, false) * 100;
+        log.info(String.format("600 actions : index %d ns/check, scan %d ns/check",
+                indexedNs / iterations, linearNs / iterations));
+    }
+
+    private static long run(JsonObject session, String[] names, int iterations, boolean indexed) {
+        int granted = 0;
+        final long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            final String name = names[i % names.length];
+            if (indexed ? AuthorizedActions.contains(session, name) : linear(session, name)) {
+                granted++;
+            }
+        }
+        final long elapsed = System.nanoTime() - start;
+        if (granted == 0) {
+            throw new IllegalStateException("no action granted");
+        }
+        return elapsed;
+    }
+
+}
@@ -0,0 +1,48 @@
+package org.entcore.common.user;
+
+import io.vertx.core.Vertx;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.json.JsonArray;
+import io.vertx.ext.unit.Async;
+import io.vertx.ext.unit.TestContext;
+import io.vertx.ext.unit.junit.VertxUnitRunner;
+import org.junit.AfterClass;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+@RunWith(VertxUnitRunner.class)
+public class ExportEntriesTest {
+
+    private static final Vertx vertx = Vertx.vertx();
+
+    @AfterClass
+    public static void tearDown() {
+        vertx.close();
+    }
+
+    @Test
+    public void testOpenFailsWhenTheExportIsNotStreamed(TestContext context) {
+        ExportEntries.open(vertx.eventBus(), "1_not-streamed", "Blog").onComplete(context.asyncAssertFailure());
+    }
+
+    @Test
+    public void testEntriesAreSentInTheFolderOfTheModule(TestContext context) {
+        final JsonArray received = new JsonArray();
+        vertx.eventBus().<Buffer>localConsumer(ExportEntries.address("2_streamed"), message -> {
+            received.add(message.headers().get(ExportEntries.NAME_HEADER) + "|"
+                    + message.headers().get(ExportEntries.FILE_ID_HEADER) + "|"
+                    + message.headers().get(ExportEntries.COMPRESS_HEADER) + "|" + message.body().toString());
+            message.reply(null);
+        });
+        final Async async = context.async();
+        ExportEntries.open(vertx.eventBus(), "2_streamed", "Blog")
+                .compose(entries -> entries.add("post", Buffer.buffer("{}"))
+                        .compose(v -> entries.addFile("Documents/image.png", "f1", false)))
+                .onComplete(context.asyncAssertSuccess(v -> {
+                    context.assertEquals(new JsonArray().add("Blog/|null|null|").add("Blog/post|null|null|{}")
+                            .add("Blog/Documents/image.png|f1|false|"), received);
+                    async.complete();
+                }));
+    }
+
+}
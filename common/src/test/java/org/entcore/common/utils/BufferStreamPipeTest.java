@@ -0,0 +1,81 @@
+package org.entcore.common.utils;
+
+import io.vertx.core.Vertx;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.file.AsyncFile;
+import io.vertx.core.file.OpenOptions;
+import io.vertx.ext.unit.Async;
+import io.vertx.ext.unit.TestContext;
+import io.vertx.ext.unit.junit.VertxUnitRunner;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.zip.ZipFile;
+
+@RunWith(VertxUnitRunner.class)
+public class BufferStreamPipeTest {
+
+    private Vertx vertx;
+    private File dir;
+
+    @Before
+    public void setUp() throws IOException {
+        vertx = Vertx.vertx();
+        dir = Files.createTempDirectory("buffer-pipe").toFile();
+    }
+
+    @After
+    public void tearDown(TestContext context) {
+        vertx.fileSystem().deleteRecursiveBlocking(dir.getAbsolutePath(), true);
+        vertx.close(context.asyncAssertSuccess());
+    }
+
+    @Test
+    public void testZipPipedToFile(TestContext context) {
+        final File zipFile = new File(dir, "export.zip");
+        final Async async = context.async();
+        vertx.runOnContext(c -> {
+            final BufferStreamPipe pipe = new BufferStreamPipe(16 * 1024);
+            final AsyncFile file = vertx.fileSystem().openBlocking(zipFile.getAbsolutePath(), new OpenOptions());
+            pipe.pipeTo(file).onComplete(context.asyncAssertSuccess(v -> {
+                try (ZipFile archive = new ZipFile(zipFile)) {
+                    context.assertEquals(3, archive.size());
+                    context.assertEquals(200_000L, archive.getEntry("export/data/big.bin").getSize());
+                } catch (IOException e) {
+                    context.fail(e);
+                }
+                async.complete();
+            }));
+            final ZipStreamWriter zip = new ZipStreamWriter(pipe);
+            zip.addEntry("export/", Buffer.buffer(), false)
+                    .compose(v -> zip.addEntry("export/Manifest.json", Buffer.buffer("{}"), true))
+                    .compose(v -> zip.addEntry("export/data/big.bin", Buffer.buffer(new byte[200_000]), true))
+                    .compose(v -> zip.end())
+                    .onComplete(context.asyncAssertSuccess());
+        });
+    }
+
+    @Test
+    public void testBackPressure(TestContext context) {
+        final BufferStreamPipe pipe = new BufferStreamPipe(10);
+        final StringBuilder read = new StringBuilder();
+        pipe.handler(b -> read.append(b.toString()));
+        pipe.pause();
+        pipe.write(Buffer.buffer("0123456789"));
+        context.assertTrue(pipe.writeQueueFull());
+        final Async drained = context.async();
+        pipe.drainHandler(v -> drained.complete());
+        pipe.resume();
+        context.assertEquals("0123456789", read.toString());
+        context.assertFalse(pipe.writeQueueFull());
+
+        pipe.fail(new IllegalStateException("consumer failed"));
+        pipe.write(Buffer.buffer("x")).onComplete(context.asyncAssertFailure());
+    }
+
+}
@@ -0,0 +1,187 @@
+package org.entcore.common.utils;
+
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import io.vertx.core.Vertx;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.file.AsyncFile;
+import io.vertx.core.file.OpenOptions;
+import io.vertx.core.streams.WriteStream;
+import io.vertx.ext.unit.Async;
+import io.vertx.ext.unit.TestContext;
+import io.vertx.ext.unit.junit.VertxUnitRunner;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+@RunWith(VertxUnitRunner.class)
+public class ZipStreamWriterTest {
+
+    private Vertx vertx;
+    private File dir;
+
+    @Before
+    public void setUp() throws IOException {
+        vertx = Vertx.vertx();
+        dir = Files.createTempDirectory("zip-stream").toFile();
+    }
+
+    @After
+    public void tearDown(TestContext context) {
+        vertx.fileSystem().deleteRecursiveBlocking(dir.getAbsolutePath(), true);
+        vertx.close(context.asyncAssertSuccess());
+    }
+
+    @Test
+    public void testEntriesFromStreamsAndBuffers(TestContext context) throws IOException {
+        final byte[] media = new byte[3 * 1024 * 1024];
+        new Random(42).nextBytes(media);
+        final File source = new File(dir, "media.jpg");
+        Files.write(source.toPath(), media);
+        final String text = "Bonjour\n";
+        final File zipFile = new File(dir, "archive.zip");
+
+        final AsyncFile out = vertx.fileSystem().openBlocking(zipFile.getAbsolutePath(), new OpenOptions());
+        // a small queue so that the source is paused while the output drains
+        out.setWriteQueueMaxSize(64 * 1024);
+        final AsyncFile in = vertx.fileSystem().openBlocking(source.getAbsolutePath(), new OpenOptions());
+        final ZipStreamWriter zip = new ZipStreamWriter(out);
+        final Async async = context.async();
+        zip.addEntry("folder/media.jpg", in, !ZipStreamWriter.isCompressed("media.jpg", null))
+                .compose(v -> zip.addEntry("folder/readme.txt", Buffer.buffer(text), true))
+                .compose(v -> zip.end())
+                .onComplete(context.asyncAssertSuccess(v -> {
+                    context.assertEquals(zipFile.length(), zip.written());
+                    try (ZipFile archive = new ZipFile(zipFile)) {
+                        final ZipEntry mediaEntry = archive.getEntry("folder/media.jpg");
+                        context.assertEquals((long) media.length, mediaEntry.getSize());
+                        try (InputStream is = archive.getInputStream(mediaEntry)) {
+                            context.assertTrue(Arrays.equals(media, readAll(is)));
+                        }
+                        try (InputStream is = archive.getInputStream(archive.getEntry("folder/readme.txt"))) {
+                            context.assertEquals(text, new String(readAll(is), "UTF-8"));
+                        }
+                    } catch (IOException e) {
+                        context.fail(e);
+                    }
+                    async.complete();
+                }));
+    }
+
+    @Test
+    public void testEntryAddedBeforePreviousEnd(TestContext context) throws IOException {
+        final File source = new File(dir, "a.txt");
+        Files.write(source.toPath(), new byte[1024]);
+        final AsyncFile out = vertx.fileSystem().openBlocking(new File(dir, "b.zip").getAbsolutePath(),
+                new OpenOptions());
+        final ZipStreamWriter zip = new ZipStreamWriter(out);
+        zip.addEntry("a.txt", vertx.fileSystem().openBlocking(source.getAbsolutePath(), new OpenOptions()), true);
+        zip.addEntry("b.txt", Buffer.buffer("b"), true).onComplete(context.asyncAssertFailure());
+    }
+
+    @Test
+    public void testFailWhileOutputFull(TestContext context) throws IOException {
+        final File source = new File(dir, "big.bin");
+        Files.write(source.toPath(), new byte[1024 * 1024]);
+        // like a response whose client is gone : the write queue stays full and never drains
+        final StalledWriteStream out = new StalledWriteStream(16 * 1024);
+        final Async async = context.async();
+        vertx.runOnContext(c -> {
+            final ZipStreamWriter zip = new ZipStreamWriter(out);
+            final AsyncFile in = vertx.fileSystem().openBlocking(source.getAbsolutePath(), new OpenOptions());
+            zip.addEntry("big.bin", in, false).onComplete(context.asyncAssertFailure(e -> {
+                context.assertEquals("closed", e.getMessage());
+                in.close().onComplete(context.asyncAssertSuccess());
+                zip.addEntry("next.txt", Buffer.buffer("next"), true).onComplete(context.asyncAssertFailure());
+                zip.end().onComplete(context.asyncAssertFailure(v -> async.complete()));
+            }));
+            vertx.setTimer(200L, t -> {
+                context.assertTrue(out.writeQueueFull());
+                zip.fail(new IOException("closed"));
+            });
+        });
+    }
+
+    @Test
+    public void testIsCompressed(TestContext context) {
+        context.assertTrue(ZipStreamWriter.isCompressed("photo.JPG", null));
+        context.assertTrue(ZipStreamWriter.isCompressed("noext", "video/mp4"));
+        context.assertTrue(ZipStreamWriter.isCompressed("report.docx", "application/octet-stream"));
+        context.assertFalse(ZipStreamWriter.isCompressed("drawing.svg", "image/svg+xml"));
+        context.assertFalse(ZipStreamWriter.isCompressed("notes.txt", "text/plain"));
+        context.assertFalse(ZipStreamWriter.isCompressed(null, null));
+    }
+
+    private static final class StalledWriteStream implements WriteStream<Buffer> {
+        private final int maxSize;
+        private int written;
+
+        private StalledWriteStream(int maxSize) {
+            this.maxSize = maxSize;
+        }
+
+        @Override
+        public WriteStream<Buffer> exceptionHandler(Handler<Throwable> handler) {
+            return this;
+        }
+
+        @Override
+        public Future<Void> write(Buffer data) {
+            written += data.length();
+            return Future.succeededFuture();
+        }
+
+        @Override
+        public void write(Buffer data, Handler<AsyncResult<Void>> handler) {
+            handler.handle(write(data));
+        }
+
+        @Override
+        public Future<Void> end() {
+            return Future.succeededFuture();
+        }
+
+        @Override
+        public void end(Handler<AsyncResult<Void>> handler) {
+            handler.handle(end());
+        }
+
+        @Override
+        public WriteStream<Buffer> setWriteQueueMaxSize(int maxSize) {
+            return this;
+        }
+
+        @Override
+        public boolean writeQueueFull() {
+            return written >= maxSize;
+        }
+
+        @Override
+        public WriteStream<Buffer> drainHandler(Handler<Void> handler) {
+            return this;
+        }
+    }
+
+    private static byte[] readAll(InputStream is) throws IOException {
+        final ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        final byte[] b = new byte[8192];
+        int n;
+        while ((n = is.read(b)) > 0) {
+            bos.write(b, 0, n);
+        }
+        return bos.toByteArray();
+    }
+
+}
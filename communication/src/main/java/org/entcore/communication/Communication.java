@@ -26,6 +26,7 @@ import org.entcore.common.notification.TimelineHelper;
 import org.entcore.communication.controllers.CommunicationController;
 import org.entcore.communication.filters.CommunicationFilter;
 import org.entcore.communication.services.impl.DefaultCommunicationService;
+import org.entcore.communication.services.impl.VisiblesCache;
 
 public class Communication extends BaseServer {
 
@@ -35,7 +36,9 @@ public class Communication extends BaseServer {
     TimelineHelper helper = new TimelineHelper(vertx, vertx.eventBus(), config);
 		CommunicationController communicationController = new CommunicationController();
 
-		communicationController.setCommunicationService(new DefaultCommunicationService(helper, config.getJsonArray("discoverVisibleExpectedProfile", new JsonArray())));
+		DefaultCommunicationService communicationService = new DefaultCommunicationService(helper, config.getJsonArray("discoverVisibleExpectedProfile", new JsonArray()));
+		communicationService.setVisiblesCache(VisiblesCache.create(vertx, config.getJsonObject("visibles-cache")));
+		communicationController.setCommunicationService(communicationService);
 
 		addController(communicationController);
 		setDefaultResourceFilter(new CommunicationFilter());
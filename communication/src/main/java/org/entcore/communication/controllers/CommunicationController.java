@@ -469,6 +469,16 @@ public class CommunicationController extends BaseController {
 				communicationService.applyRules(
 						message.body().getString("groupId"), responseHandler);
 				break;
+			case "verifyMany" :
+				communicationService.verifyMany(message.body().getString("senderId"),
+						message.body().getJsonArray("recipientIds"), event -> {
+					if (event.isRight()) {
+						message.reply(new JsonObject().put("status", "ok").put("result", event.right().getValue()));
+					} else {
+						responseHandler.handle(event);
+					}
+				});
+				break;
 			default:
 				message.reply(new JsonObject().put("status", "error")
 						.put("message", "invalid.action"));
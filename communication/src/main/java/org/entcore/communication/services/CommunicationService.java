@@ -148,6 +148,22 @@ public interface CommunicationService {
 	 */
 	void verify(String senderId, String recipientId, Handler<Either<String, JsonObject>> handler);
 
+	/**
+	 * Check in one query if a user can communicate with several users or groups, with the rules of
+	 * {@link #verify(String, String, Handler)}.
+	 * Returns JsonObject :
+	 * {
+	 * recipientId1 : true/false,
+	 * recipientId2 : true/false
+	 * }
+	 * Unknown recipients, blocked users and groups without users are returned with false, as they are not visible.
+	 *
+	 * @param senderId     id of the sender
+	 * @param recipientIds ids of the recipients, users or groups
+	 * @param handler      final handler
+	 */
+	void verifyMany(String senderId, JsonArray recipientIds, Handler<Either<String, JsonObject>> handler);
+
 	void getDiscoverVisibleUsers(String userId, JsonObject filter, final Handler<Either<String, JsonArray>> handler);
 
 	void getDiscoverVisibleStructures(final Handler<Either<String, JsonArray>> handler);
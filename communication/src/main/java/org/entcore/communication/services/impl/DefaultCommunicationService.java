@@ -59,12 +59,27 @@ public class DefaultCommunicationService implements CommunicationService {
 
 	private final TimelineHelper notifyTimeline;
 	final JsonArray discoverVisibleExpectedProfile = new JsonArray();
+	private VisiblesCache visiblesCache;
 
 	public DefaultCommunicationService(TimelineHelper notifyTimeline, JsonArray discoverVisibleExpectedProfile) {
 		this.notifyTimeline = notifyTimeline;
 		this.discoverVisibleExpectedProfile.addAll(discoverVisibleExpectedProfile);
 	}
 
+	public void setVisiblesCache(VisiblesCache visiblesCache) {
+		this.visiblesCache = visiblesCache;
+	}
+
+	private <T> Handler<Either<String, T>> invalidateVisibles(Handler<Either<String, T>> handler) {
+		return visiblesCache != null ? visiblesCache.invalidateOnSuccess(handler) : handler;
+	}
+
+	private void publishVisiblesInvalidation() {
+		if (visiblesCache != null) {
+			visiblesCache.publishInvalidation();
+		}
+	}
+
 	@Override
 	public void addLink(String startGroupId, String endGroupId, Handler<Either<String, JsonObject>> handler) {
 		String query =
@@ -75,7 +90,7 @@ public class DefaultCommunicationService implements CommunicationService {
 		JsonObject params = new JsonObject()
 				.put("startGroupId", startGroupId)
 				.put("endGroupId", endGroupId);
-		neo4j.execute(query, params, validUniqueResultHandler(handler));
+		neo4j.execute(query, params, validUniqueResultHandler(invalidateVisibles(handler)));
 	}
 
 	@Override
@@ -89,7 +104,7 @@ public class DefaultCommunicationService implements CommunicationService {
 		JsonObject params = new JsonObject()
 				.put("startGroupId", startGroupId)
 				.put("endGroupId", endGroupId);
-		neo4j.execute(query, params, validUniqueResultHandler(handler));
+		neo4j.execute(query, params, validUniqueResultHandler(invalidateVisibles(handler)));
 	}
 
 	@Override
@@ -101,7 +116,7 @@ public class DefaultCommunicationService implements CommunicationService {
 							"SET g.users = {direction} " +
 							"RETURN 0 as number ";
 			JsonObject params = new JsonObject().put("groupId", groupId).put("direction", direction.name());
-			neo4j.execute(query, params, validUniqueResultHandler(handler));
+			neo4j.execute(query, params, validUniqueResultHandler(invalidateVisibles(handler)));
 		} else {
 			String createRelationship;
 			switch (direction) {
@@ -122,7 +137,7 @@ public class DefaultCommunicationService implements CommunicationService {
 							"CREATE UNIQUE " + createRelationship +
 							"RETURN COUNT(*) as number ";
 			JsonObject params = new JsonObject().put("groupId", groupId).put("direction", direction.name());
-			neo4j.execute(query, params, validUniqueResultHandler(handler));
+			neo4j.execute(query, params, validUniqueResultHandler(invalidateVisibles(handler)));
 		}
 	}
 
@@ -162,7 +177,7 @@ public class DefaultCommunicationService implements CommunicationService {
 				}
 			});
 
-			neo4j.executeTransaction(sb.build(), null, true, validUniqueResultHandler(handler));
+			neo4j.executeTransaction(sb.build(), null, true, validUniqueResultHandler(invalidateVisibles(handler)));
 		} else {
 			handler.handle(new Either.Left<>("Error addLinkWithUsers: params can't be null"));
 		}
@@ -196,7 +211,7 @@ public class DefaultCommunicationService implements CommunicationService {
 						"DELETE r " +
 						"RETURN COUNT(*) as number ";
 		JsonObject params = new JsonObject().put("groupId", groupId);
-		neo4j.execute(query, params, validUniqueResultHandler(handler));
+		neo4j.execute(query, params, validUniqueResultHandler(invalidateVisibles(handler)));
 	}
 
 	@Override
@@ -243,7 +258,7 @@ public class DefaultCommunicationService implements CommunicationService {
 						"CREATE UNIQUE " + createRelationship +
 						"RETURN COUNT(*) as number ";
 		JsonObject params = new JsonObject().put("groupId", groupId).put("direction", direction.name());
-		neo4j.execute(query, params, validUniqueResultHandler(handler));
+		neo4j.execute(query, params, validUniqueResultHandler(invalidateVisibles(handler)));
 	}
 
 	@Override
@@ -275,7 +290,7 @@ public class DefaultCommunicationService implements CommunicationService {
 						"DELETE r " +
 						"RETURN COUNT(*) as number ";
 		JsonObject params = new JsonObject().put("groupId", groupId);
-		neo4j.execute(query, params, validUniqueResultHandler(handler));
+		neo4j.execute(query, params, validUniqueResultHandler(invalidateVisibles(handler)));
 	}
 
 	@Override
@@ -499,6 +514,9 @@ public class DefaultCommunicationService implements CommunicationService {
 		s.add(setVisible2, params);
 		neo4j.executeTransaction(s.build(), transactionId, commit.booleanValue(), event -> {
 			if ("ok".equals(event.body().getString("status"))) {
+				if (commit.booleanValue()) {
+					publishVisiblesInvalidation();
+				}
 				handler.handle(new Either.Right<>(event.body()));
 			} else {
 				handler.handle(new Either.Left<>(event.body().getString("message")));
@@ -552,7 +570,7 @@ public class DefaultCommunicationService implements CommunicationService {
 						"WITH DISTINCT v " +
 						"SET v:Visible ";
 		s.add(setVisible, params);
-		neo4j.executeTransaction(s.build(), null, true, validEmptyHandler(handler));
+		neo4j.executeTransaction(s.build(), null, true, validEmptyHandler(invalidateVisibles(handler)));
 	}
 
 	@Override
@@ -571,7 +589,7 @@ public class DefaultCommunicationService implements CommunicationService {
 					"OPTIONAL MATCH ()-[r1:COMMUNIQUE_DIRECT]->() " +
 					"DELETE r, r1 ";
 		}
-		neo4j.execute(query, params, validEmptyHandler(handler));
+		neo4j.execute(query, params, validEmptyHandler(invalidateVisibles(handler)));
 	}
 
 	@Override
@@ -585,6 +603,17 @@ public class DefaultCommunicationService implements CommunicationService {
 	public void visibleUsers(String userId, String structureId, JsonArray expectedTypes, boolean itSelf,
 							 boolean myGroup, boolean profile, String preFilter, String customReturn, JsonObject additionnalParams, String userProfile,
 							 final Handler<Either<String, JsonArray>> handler) {
+		if (visiblesCache != null && (structureId == null || structureId.trim().isEmpty())) {
+			visiblesCache.visibleIds(userId, myGroup, includeDirectVisibles(userProfile), visibleIds -> {
+				if (visibleIds.isLeft()) {
+					handler.handle(new Either.Left<>(visibleIds.left().getValue()));
+				} else {
+					cachedVisibleUsers(userId, visibleIds.right().getValue(), expectedTypes, itSelf, profile,
+							preFilter, customReturn, additionnalParams, handler);
+				}
+			});
+			return;
+		}
 		StringBuilder query = new StringBuilder();
 		JsonObject params = new JsonObject();
 		String condition = itSelf ? "" : "AND m.id <> {userId} ";
@@ -599,7 +628,7 @@ public class DefaultCommunicationService implements CommunicationService {
 			query.append("WITH (REDUCE(acc=[], groups IN COLLECT(COALESCE(g.communiqueWith, [])) | acc+groups) + ")
 					.append(myGroupQuery).append(") as comGroups ");
 			query.append("MATCH p=(g:Group)<-[:DEPENDS*0..1]-cg-[:COMMUNIQUE*0..1]->m ");
-			if (userProfile == null || "Student".equals(userProfile) || "Relative".equals(userProfile) || discoverVisibleExpectedProfile.contains(userProfile) ) {
+			if (includeDirectVisibles(userProfile)) {
 				union = new StringBuilder("MATCH p=(n:User)-[:COMMUNIQUE_DIRECT]->m " +
 						"WHERE n.id = {userId} AND (NOT(HAS(m.blocked)) OR m.blocked = false) ");
 			}
@@ -681,6 +710,69 @@ public class DefaultCommunicationService implements CommunicationService {
 		neo4j.execute(q, params, validResultHandler(handler));
 	}
 
+	private boolean includeDirectVisibles(String userProfile) {
+		return userProfile == null || "Student".equals(userProfile) || "Relative".equals(userProfile) ||
+				discoverVisibleExpectedProfile.contains(userProfile);
+	}
+
+	/**
+	 * Same projection as visibleUsers but starting from the users and groups precomputed by the visibles cache instead
+	 * of the communication graph traversal. Both are looked up by their unique id.
+	 */
+	private void cachedVisibleUsers(String userId, JsonArray visibleIds, JsonArray expectedTypes, boolean itSelf,
+			boolean profile, String preFilter, String customReturn, JsonObject additionnalParams,
+			final Handler<Either<String, JsonArray>> handler) {
+		StringBuilder query = new StringBuilder(
+				"MATCH (u:User) WHERE u.id IN {visibleIds} " +
+				"WITH COLLECT(u) as users " +
+				"OPTIONAL MATCH (g:Group) WHERE g.id IN {visibleIds} " +
+				"WITH users + COLLECT(g) as visibleNodes " +
+				"UNWIND visibleNodes as m " +
+				"WITH m " +
+				"WHERE (NOT(HAS(m.blocked)) OR m.blocked = false) " +
+				"AND (NOT(HAS(m.nbUsers)) OR m.nbUsers > 0) ");
+		if (preFilter != null) {
+			query.append(preFilter);
+		}
+		if (!itSelf) {
+			query.append("AND m.id <> {userId} ");
+		}
+		if (expectedTypes != null && expectedTypes.size() > 0) {
+			StringBuilder types = new StringBuilder();
+			for (Object o: expectedTypes) {
+				if (!(o instanceof String)) continue;
+				types.append(" OR m:").append((String) o);
+			}
+			query.append("AND (").append(types.substring(4)).append(") ");
+		}
+		String pcr = " ";
+		String pr = "";
+		if (profile) {
+			query.append("OPTIONAL MATCH m-[:IN*0..1]->pgp-[:DEPENDS*0..1]->(pg:ProfileGroup)-[:HAS_PROFILE]->(profile:Profile) ");
+			pcr = ", profile ";
+			pr = "profile.name as type, ";
+		}
+		pcr += ", COLLECT(position.id) as positionIds, COLLECT(position.name) as positionNames ";
+		pr += " COLLECT(position.id) as positionIds, COLLECT(position.name) as positionNames, ";
+		query.append(" OPTIONAL MATCH (m)-[:HAS_POSITION]->(position:UserPosition) ");
+		query.append("OPTIONAL MATCH (sub:Subject)<-[:TEACHES]-m ");
+		if (customReturn != null && !customReturn.trim().isEmpty()) {
+			query.append("WITH DISTINCT m as visibles, COLLECT(DISTINCT sub.label) AS subjects ").append(pcr);
+			query.append(customReturn);
+		} else {
+			query.append("RETURN distinct m.id as id, m.name as name, "
+							+ "m.login as login, m.displayName as username, ").append(pr)
+					.append("m.lastName as lastName, m.firstName as firstName, m.profiles as profiles "
+							+ "ORDER BY name, username ");
+		}
+		JsonObject params = new JsonObject();
+		if (additionnalParams != null) {
+			params.mergeIn(additionnalParams);
+		}
+		params.put("userId", userId).put("visibleIds", visibleIds);
+		neo4j.execute(query.toString(), params, validResultHandler(handler));
+	}
+
 	@Override
 	public void usersCanSeeMe(String userId, Handler<Either<String, JsonArray>> handler) {
 		String query =
@@ -1162,6 +1254,54 @@ public class DefaultCommunicationService implements CommunicationService {
 
 	}
 
+	@Override
+	public void verifyMany(String senderId, JsonArray recipientIds, Handler<Either<String, JsonObject>> handler) {
+		final JsonObject result = new JsonObject();
+		if (recipientIds == null || recipientIds.isEmpty()) {
+			handler.handle(new Either.Right<>(result));
+			return;
+		}
+		for (Object recipientId : recipientIds) {
+			if (recipientId instanceof String) {
+				result.put((String) recipientId, false);
+			}
+		}
+		String query = "MATCH (s:User {id: {senderId}}) "
+				+ "UNWIND {recipientIds} AS recipientId "
+				+ "OPTIONAL MATCH (r:User {id: recipientId}) "
+				+ "OPTIONAL MATCH (rg:Group {id: recipientId}) "
+				// blocked users and empty groups are excluded as in findVisibles
+				+ "RETURN recipientId, CASE "
+				+ "WHEN r IS NOT NULL THEN "
+				+ "(NOT(HAS(r.blocked)) OR r.blocked = false) AND ("
+				+ "exists((r)<-[:COMMUNIQUE*1..2]-()<-[:COMMUNIQUE]-(s)) OR "
+				+ "exists((r)<-[:COMMUNIQUE_DIRECT]-(s))) "
+				+ "WHEN rg IS NOT NULL THEN "
+				+ "(NOT(HAS(rg.blocked)) OR rg.blocked = false) AND (NOT(HAS(rg.nbUsers)) OR rg.nbUsers > 0) AND ("
+				+ "exists((s)-[:COMMUNIQUE*1..2]->()<-[:DEPENDS]-(rg)) OR "
+				+ "exists((rg)<-[:COMMUNIQUE]-()<-[:COMMUNIQUE]-(s)) OR "
+				+ "(exists((rg)<-[:COMMUNIQUE]-(s)) AND rg.users <> 'INCOMING')) "
+				+ "ELSE false END as " + CAN_COMMUNICATE_VERIFY;
+
+		JsonObject params = new JsonObject()
+				.put("senderId", senderId)
+				.put("recipientIds", new JsonArray(new ArrayList<>(result.fieldNames())));
+
+		neo4j.execute(query, params, validResultHandler(res -> {
+			if (res.isLeft()) {
+				log.error("Error when checking communication rights : " + res.left().getValue());
+				handler.handle(new Either.Left<>(res.left().getValue()));
+				return;
+			}
+			for (Object o : res.right().getValue()) {
+				if (!(o instanceof JsonObject)) continue;
+				final JsonObject row = (JsonObject) o;
+				result.put(row.getString("recipientId"), Boolean.TRUE.equals(row.getBoolean(CAN_COMMUNICATE_VERIFY)));
+			}
+			handler.handle(new Either.Right<>(result));
+		}));
+	}
+
 	/**
 	 * Return the list of users, with filtering on the structures, profiles and search
 	 * */
@@ -1258,6 +1398,7 @@ public class DefaultCommunicationService implements CommunicationService {
 				if(result.right().getValue().getInteger("number") > 0) {
 					sendNotificationTimeline(request, user, new JsonArray().add(recipientId), "");
 				}
+				publishVisiblesInvalidation();
 				handler.handle(new Either.Right<>(result.right().getValue()));
 			} else {
 				if (result.isLeft()) {
@@ -1280,7 +1421,7 @@ public class DefaultCommunicationService implements CommunicationService {
 
 		JsonObject params = new JsonObject().put("senderId", senderId).put("recipientId", recipientId);
 
-		neo4j.execute(query, params, validUniqueResultHandler(handler));
+		neo4j.execute(query, params, validUniqueResultHandler(invalidateVisibles(handler)));
 	}
 
 	/**
@@ -1429,6 +1570,7 @@ public class DefaultCommunicationService implements CommunicationService {
 					}
 					sendNotificationTimeline(request, user, usersToAdd, groupId);
 				}
+				publishVisiblesInvalidation();
 				handler.handle(new Either.Right<>(event.body()));
 			} else {
 				handler.handle(new Either.Left<>(event.body().getString("message")));
@@ -0,0 +1,151 @@
+package org.entcore.communication.services.impl;
+
+import fr.wseduc.webutils.Either;
+import io.vertx.core.Handler;
+import io.vertx.core.Vertx;
+import io.vertx.core.eventbus.EventBus;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import io.vertx.core.logging.Logger;
+import io.vertx.core.logging.LoggerFactory;
+import org.entcore.common.cache.LocalCache;
+import org.entcore.common.neo4j.Neo4j;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.entcore.common.appregistry.AppRegistryEvents.APP_REGISTRY_PUBLISH_ADDRESS;
+import static org.entcore.common.appregistry.AppRegistryEvents.IMPORT_SUCCEEDED;
+import static org.entcore.common.appregistry.AppRegistryEvents.USER_GROUP_UPDATED;
+import static org.entcore.common.neo4j.Neo4jResult.validResultHandler;
+
+/**
+ * Per user set of the nodes (users and groups) a user can communicate with.
+ * <p>
+ * The set is computed lazily with the communication graph traversal used by visibleUsers and kept in a bounded local
+ * cache, so that the visibles of a user are then read by id, through the unique constraints of User and Group,
+ * instead of walking the COMMUNIQUE relationships on each call.
+ * </p>
+ * <p>
+ * The whole cache is invalidated on every node when communication rules are modified through the communication
+ * service (see {@link #INVALIDATION_ADDRESS}), when a feeder import ends and when manual groups are updated. Other
+ * changes of the graph (e.g. a user moved by an administrator) are only seen once the ttl has elapsed, which is why the
+ * cache is opt-in and its ttl kept short.
+ * </p>
+ */
+public class VisiblesCache {
+
+	public static final String INVALIDATION_ADDRESS = "communication.visibles.invalidate";
+	private static final int DEFAULT_MAX_SIZE = 1000;
+	private static final long DEFAULT_TTL = 5 * 60 * 1000L;
+	private static final Logger log = LoggerFactory.getLogger(VisiblesCache.class);
+
+	private final Neo4j neo4j = Neo4j.getInstance();
+	private final EventBus eb;
+	private final LocalCache<String, JsonArray> cache;
+	private final AtomicLong generation = new AtomicLong();
+
+	private VisiblesCache(EventBus eb, LocalCache<String, JsonArray> cache) {
+		this.eb = eb;
+		this.cache = cache;
+	}
+
+	/**
+	 * @param vertx Vertx instance used to listen to invalidation messages
+	 * @param config The {@code visibles-cache} configuration : {@code enabled}, {@code max-size} and {@code ttl}
+	 * @return The cache or {@code null} if it is not enabled
+	 */
+	public static VisiblesCache create(Vertx vertx, JsonObject config) {
+		if (config == null || !config.getBoolean("enabled", false)) {
+			return null;
+		}
+		final LocalCache<String, JsonArray> cache = LocalCache.<String, JsonArray>fromConfig(
+				config, DEFAULT_MAX_SIZE, DEFAULT_TTL).registerMetrics("visibles");
+		final VisiblesCache visiblesCache = new VisiblesCache(vertx.eventBus(), cache);
+		vertx.eventBus().<JsonObject>consumer(INVALIDATION_ADDRESS, message -> visiblesCache.invalidateAll());
+		vertx.eventBus().<JsonObject>consumer(APP_REGISTRY_PUBLISH_ADDRESS, message -> {
+			final String type = message.body().getString("type");
+			if (IMPORT_SUCCEEDED.equals(type) || USER_GROUP_UPDATED.equals(type)) {
+				visiblesCache.invalidateAll();
+			}
+		});
+		log.info("Visibles cache enabled");
+		return visiblesCache;
+	}
+
+	/**
+	 * Get the ids of the users and groups visible by a user, computing them if they are not cached. The {@code id}
+	 * property is cached rather than the internal node id, which Neo4j reuses once a node is deleted.
+	 * @param userId Id of the user
+	 * @param myGroup Include the groups of the user whose users communicate together
+	 * @param direct Include the users linked to the user with a COMMUNIQUE_DIRECT relationship
+	 * @param handler Called with the array of the ids
+	 */
+	public void visibleIds(String userId, boolean myGroup, boolean direct,
+			Handler<Either<String, JsonArray>> handler) {
+		final String key = userId + ":" + myGroup + ":" + direct;
+		final JsonArray ids = cache.get(key);
+		if (ids != null) {
+			handler.handle(new Either.Right<>(ids));
+			return;
+		}
+		final long fetchGeneration = generation.get();
+		final String myGroupQuery = (myGroup) ? "COLLECT(CASE WHEN g.users = 'BOTH' THEN g.id ELSE '' END)" : "[]";
+		String query =
+				"MATCH (n:User {id: {userId}})-[:COMMUNIQUE]->(g:Group) " +
+				"WITH (REDUCE(acc=[], groups IN COLLECT(COALESCE(g.communiqueWith, [])) | acc+groups) + " +
+				myGroupQuery + ") as comGroups " +
+				"MATCH p=(g:Group)<-[:DEPENDS*0..1]-cg-[:COMMUNIQUE*0..1]->m " +
+				"WHERE g.id IN comGroups " +
+				"AND (length(p) < 1 OR (length(p) < 2 AND g.id <> cg.id) OR (length(p) < 2 AND m:User)) " +
+				"RETURN DISTINCT m.id as id ";
+		if (direct) {
+			query +=
+					"UNION " +
+					"MATCH (n:User {id: {userId}})-[:COMMUNIQUE_DIRECT]->m " +
+					"RETURN DISTINCT m.id as id ";
+		}
+		neo4j.execute(query, new JsonObject().put("userId", userId), validResultHandler(res -> {
+			if (res.isLeft()) {
+				handler.handle(new Either.Left<>(res.left().getValue()));
+				return;
+			}
+			final JsonArray visibleIds = new JsonArray();
+			for (Object o : res.right().getValue()) {
+				if (o instanceof JsonObject && ((JsonObject) o).getString("id") != null) {
+					visibleIds.add(((JsonObject) o).getString("id"));
+				}
+			}
+			if (fetchGeneration == generation.get()) {
+				cache.put(key, visibleIds);
+			}
+			handler.handle(new Either.Right<>(visibleIds));
+		}));
+	}
+
+	/**
+	 * Wrap the handler of a mutation of the communication rules so that the cache of every node is invalidated once
+	 * the mutation succeeded.
+	 */
+	public <T> Handler<Either<String, T>> invalidateOnSuccess(final Handler<Either<String, T>> handler) {
+		return res -> {
+			if (res.isRight()) {
+				publishInvalidation();
+			}
+			handler.handle(res);
+		};
+	}
+
+	public void publishInvalidation() {
+		eb.publish(INVALIDATION_ADDRESS, new JsonObject());
+	}
+
+	public void invalidateAll() {
+		generation.incrementAndGet();
+		cache.invalidateAll();
+	}
+
+	public JsonObject stats() {
+		return cache.stats();
+	}
+
+}
@@ -0,0 +1,53 @@
+package org.entcore.communication.services.impl;
+
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import io.vertx.ext.unit.Async;
+import io.vertx.ext.unit.TestContext;
+import io.vertx.ext.unit.junit.VertxUnitRunner;
+import org.entcore.common.notification.TimelineHelper;
+import org.entcore.test.TestHelper;
+import org.junit.BeforeClass;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.testcontainers.containers.Neo4jContainer;
+
+@RunWith(VertxUnitRunner.class)
+public class CommunicationVerifyManyTest {
+    private static final TestHelper test = TestHelper.helper();
+
+    @ClassRule
+    public static Neo4jContainer<?> neo4jContainer = test.database().createNeo4jContainer();
+    private static DefaultCommunicationService service;
+
+    @BeforeClass
+    public static void setUp(TestContext context) {
+        test.database().initNeo4j(context, neo4jContainer);
+        service = new DefaultCommunicationService(
+                new TimelineHelper(test.vertx(), test.vertx().eventBus(), new JsonObject()), new JsonArray());
+        final String graph =
+                "CREATE (s:User {id: 'sender'}), (v:User {id: 'visible'}), (b:User {id: 'blocked', blocked: true}), " +
+                "(g:Group {id: 'group', nbUsers: 2, users: 'BOTH'}), (e:Group {id: 'empty', nbUsers: 0, users: 'BOTH'}), " +
+                "(s)-[:COMMUNIQUE]->(g), (g)-[:COMMUNIQUE]->(v), (g)-[:COMMUNIQUE]->(b), (s)-[:COMMUNIQUE]->(e)";
+        test.database().executeNeo4j(graph, new JsonObject()).onComplete(context.asyncAssertSuccess());
+    }
+
+    @Test
+    public void testVerifyManyExcludesBlockedUsersAndEmptyGroups(TestContext context) {
+        final Async async = context.async();
+        final JsonArray recipients = new JsonArray().add("visible").add("blocked").add("group").add("empty")
+                .add("unknown");
+        service.verifyMany("sender", recipients, res -> {
+            context.assertTrue(res.isRight());
+            final JsonObject result = res.right().getValue();
+            context.assertTrue(result.getBoolean("visible"));
+            context.assertFalse(result.getBoolean("blocked"), "blocked users must not be reachable");
+            context.assertTrue(result.getBoolean("group"));
+            context.assertFalse(result.getBoolean("empty"), "groups without users must not be reachable");
+            context.assertFalse(result.getBoolean("unknown"));
+            async.complete();
+        });
+    }
+
+}
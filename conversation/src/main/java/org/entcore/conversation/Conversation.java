@@ -28,6 +28,7 @@ import org.entcore.conversation.controllers.ConversationController;
 import org.entcore.conversation.service.impl.ConversationRepositoryEvents;
 import org.entcore.conversation.service.impl.ConversationStorage;
 import org.entcore.conversation.service.impl.DeleteOrphan;
+import org.entcore.conversation.service.impl.ReconcileUnreadCounters;
 
 import java.text.ParseException;
 
@@ -58,6 +59,15 @@ public class Conversation extends BaseServer {
 				log.error("Invalid cron expression.", e);
 			}
 		}
+
+		final String reconcileUnreadCountersCron = config.getString("reconcileUnreadCountersCron");
+		if (reconcileUnreadCountersCron != null) {
+			try {
+				new CronTrigger(vertx, reconcileUnreadCountersCron).schedule(new ReconcileUnreadCounters());
+			} catch (ParseException e) {
+				log.error("Invalid cron expression.", e);
+			}
+		}
 	}
 
 }
@@ -533,6 +533,24 @@ public class ConversationController extends BaseController {
 			badRequest(request);
 			return;
 		}
+		// cursor : "<date>:<id>" of the last message of the previous page (empty for the first page),
+		// alternative to page which does not count the messages of the folder
+		final String cursor = request.params().get("cursor");
+		final Long cursorDate;
+		final String cursorId;
+		if (cursor != null && !cursor.trim().isEmpty()) {
+			final int separator = cursor.indexOf(':');
+			try {
+				cursorDate = Long.parseLong(cursor.substring(0, separator));
+			} catch (NumberFormatException | StringIndexOutOfBoundsException e) {
+				badRequest(request, "invalid.cursor");
+				return;
+			}
+			cursorId = cursor.substring(separator + 1);
+		} else {
+			cursorDate = null;
+			cursorId = null;
+		}
 		getUserInfos(eb, request, new Handler<UserInfos>() {
 			@Override
 			public void handle(final UserInfos user) {
@@ -545,7 +563,7 @@ public class ConversationController extends BaseController {
 					if (unread != null && !unread.isEmpty()) {
 						b = Boolean.valueOf(unread);
 					}
-					conversationService.list(folder, restrain, b, user, page, search, new Handler<Either<String, JsonArray>>() {
+					final Handler<Either<String, JsonArray>> listHandler = new Handler<Either<String, JsonArray>>() {
 						@Override
 						public void handle(Either<String, JsonArray> r) {
 							if (r.isRight()) {
@@ -562,7 +580,12 @@ public class ConversationController extends BaseController {
 								renderJson(request, error, 400);
 							}
 						}
-					});
+					};
+					if (cursor != null) {
+						conversationService.list(folder, restrain, b, user, cursorDate, cursorId, search, listHandler);
+					} else {
+						conversationService.list(folder, restrain, b, user, page, search, listHandler);
+					}
 				} else {
 					unauthorized(request);
 				}
@@ -20,6 +20,7 @@
 package org.entcore.conversation.filters;
 
 import static org.entcore.common.user.UserUtils.findVisibles;
+import static org.entcore.common.user.UserUtils.verifyCommunication;
 
 import java.util.ArrayList;
 import java.util.HashSet;
@@ -87,10 +88,26 @@ public class VisiblesFilter implements ResourcesProvider{
 
 				final Handler<Void> checkHandler = new Handler<Void>() {
 					public void handle(Void v) {
-						params.put("ids", new fr.wseduc.webutils.collections.JsonArray(new ArrayList<>(ids)));
-						findVisibles(neo.getEventBus(), user.getUserId(), customReturn, params, true, true, false, new Handler<JsonArray>() {
-							public void handle(JsonArray visibles) {
-								handler.handle(visibles.size() == ids.size());
+						if (ids.isEmpty()) {
+							handler.handle(true);
+							return;
+						}
+						// recipients are first checked in one batched query, only the remaining ones
+						// are searched in the visibles of the user
+						verifyCommunication(neo.getEventBus(), user.getUserId(), ids, new Handler<Set<String>>() {
+							public void handle(Set<String> allowed) {
+								final Set<String> remaining = new HashSet<>(ids);
+								remaining.removeAll(allowed);
+								if (remaining.isEmpty()) {
+									handler.handle(true);
+									return;
+								}
+								params.put("ids", new fr.wseduc.webutils.collections.JsonArray(new ArrayList<>(remaining)));
+								findVisibles(neo.getEventBus(), user.getUserId(), customReturn, params, true, true, false, new Handler<JsonArray>() {
+									public void handle(JsonArray visibles) {
+										handler.handle(visibles.size() == remaining.size());
+									}
+								});
 							}
 						});
 					}
@@ -61,6 +61,15 @@ public interface ConversationService {
 
 	void list(String folder, String restrain, Boolean unread, UserInfos user, int page, String searchWords, Handler<Either<String, JsonArray>> results);
 
+	/**
+	 * List the messages of a folder older than a cursor (keyset pagination).
+	 * Unlike {@link #list(String, String, Boolean, UserInfos, int, String, Handler)} the messages do not carry the
+	 * total count, which is served by {@link #count(String, String, Boolean, UserInfos, Handler)}.
+	 * @param cursorDate Date of the last message of the previous page, null for the first page
+	 * @param cursorId Id of the last message of the previous page, null for the first page
+	 */
+	void list(String folder, String restrain, Boolean unread, UserInfos user, Long cursorDate, String cursorId, String searchWords, Handler<Either<String, JsonArray>> results);
+
 	void listThreads(UserInfos user, int page, Handler<Either<String, JsonArray>> results);
 
 	void listThreadMessages(String threadId, int page, UserInfos user, Handler<Either<String, JsonArray>> results);
@@ -446,6 +446,11 @@ public class DefaultConversationService implements ConversationService {
 		neo.execute(query, params, validResultHandler(results));
 	}
 
+	@Override
+	public void list(String folder, String restrain, Boolean unread, UserInfos user, Long cursorDate, String cursorId, String searchWords, Handler<Either<String, JsonArray>> results) {
+
+	}
+
 	@Override
 	public void listThreads(UserInfos user, int page, Handler<Either<String, JsonArray>> results) {
 
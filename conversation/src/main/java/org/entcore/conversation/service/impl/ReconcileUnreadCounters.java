@@ -0,0 +1,148 @@
+/*
+ * Copyright © "Open Digital Education", 2017
+ *
+ * This program is published by "Open Digital Education".
+ * You must indicate the name of the software and the company in any production /contribution
+ * using the software and indicate on the home page of the software industry in question,
+ * "powered by Open Digital Education" with a reference to the website: https://opendigitaleducation.com/.
+ *
+ * This program is free software, licensed under the terms of the GNU Affero General Public License
+ * as published by the Free Software Foundation, version 3 of the License.
+ *
+ * You can redistribute this application and/or modify it since you respect the terms of the GNU Affero General Public License.
+ * If you modify the source code and then use this modified source code in your creation, you must make available the source code of your modifications.
+ *
+ * You should have received a copy of the GNU Affero General Public License along with the software.
+ * If not, please see : <http://www.gnu.org/licenses/>. Full compliance requires reading the terms of this license and following its directives.
+
+ */
+
+package org.entcore.conversation.service.impl;
+
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import io.vertx.core.Promise;
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import io.vertx.core.logging.Logger;
+import io.vertx.core.logging.LoggerFactory;
+import org.entcore.common.sql.Sql;
+import org.entcore.common.sql.SqlResult;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Recompute the unread counters of every user from the messages, to fix the drifts left by the incremental updates
+ * (e.g. messages deleted by another module or by the deletion of a user).
+ * <p>
+ * Users are reconciled by batches, one statement per batch, and only the counters whose value differs are written :
+ * a run never locks more than the counters of one batch, so sending and reading messages are not blocked by it.
+ * </p>
+ */
+public class ReconcileUnreadCounters implements Handler<Long> {
+
+	private static final Logger log = LoggerFactory.getLogger(ReconcileUnreadCounters.class);
+
+	private static final String NEXT_USERS =
+			"SELECT DISTINCT user_id FROM conversation.usermessages WHERE user_id > ? ORDER BY user_id LIMIT ?";
+
+	private static final String RECONCILE_USERS =
+			"WITH computed AS (" +
+			"SELECT um.user_id, COALESCE(um.folder_id, 'INBOX') as folder, COUNT(*) as unread " +
+			"FROM conversation.usermessages um JOIN conversation.messages m ON um.message_id = m.id " +
+			"WHERE um.user_id IN (%1$s) AND um.unread = true AND um.trashed = false AND m.state = 'SENT' " +
+			"AND (m.from <> um.user_id OR m.to @> to_jsonb(um.user_id) OR m.cc @> to_jsonb(um.user_id)) " +
+			"GROUP BY um.user_id, COALESCE(um.folder_id, 'INBOX')" +
+			"), updated AS (" +
+			"INSERT INTO conversation.usercounters AS c (user_id, folder, unread) " +
+			"SELECT user_id, folder, unread FROM computed " +
+			"ON CONFLICT (user_id, folder) DO UPDATE SET unread = EXCLUDED.unread WHERE c.unread <> EXCLUDED.unread " +
+			"RETURNING 1" +
+			"), deleted AS (" +
+			"DELETE FROM conversation.usercounters c WHERE c.user_id IN (%1$s) " +
+			"AND NOT EXISTS (SELECT 1 FROM computed WHERE computed.user_id = c.user_id AND computed.folder = c.folder) " +
+			"RETURNING 1" +
+			") SELECT (SELECT COUNT(*) FROM updated) + (SELECT COUNT(*) FROM deleted) as fixed";
+
+	private static final String DELETE_ORPHAN_COUNTERS =
+			"DELETE FROM conversation.usercounters c " +
+			"WHERE NOT EXISTS (SELECT 1 FROM conversation.usermessages um WHERE um.user_id = c.user_id)";
+
+	private final Sql sql = Sql.getInstance();
+	private final int batchSize;
+	private final AtomicBoolean running = new AtomicBoolean();
+
+	public ReconcileUnreadCounters() {
+		batchSize = Vertx.currentContext().config().getInteger("reconcile-unread-counters-batch-size", 200);
+	}
+
+	@Override
+	public void handle(Long event) {
+		if (!running.compareAndSet(false, true)) {
+			log.warn("Reconcile conversation unread counters already running");
+			return;
+		}
+		final long start = System.currentTimeMillis();
+		reconcileFrom("", 0L).compose(fixed -> deleteOrphanCounters().map(deleted -> fixed + deleted))
+				.onComplete(ar -> {
+			running.set(false);
+			if (ar.succeeded()) {
+				log.info("Successful reconcile conversation unread counters : " + ar.result() + " counters fixed in " +
+						(System.currentTimeMillis() - start) + " ms");
+			} else {
+				log.error("Reconcile conversation unread counters error : " + ar.cause().getMessage());
+			}
+		});
+	}
+
+	private Future<Long> reconcileFrom(String lastUserId, long fixed) {
+		final Promise<JsonArray> users = Promise.promise();
+		sql.prepared(NEXT_USERS, new JsonArray().add(lastUserId).add(batchSize), SqlResult.validResultHandler(res -> {
+			if (res.isRight()) {
+				users.complete(res.right().getValue());
+			} else {
+				users.fail(res.left().getValue());
+			}
+		}));
+		return users.future().compose(rows -> {
+			if (rows.isEmpty()) {
+				return Future.succeededFuture(fixed);
+			}
+			final JsonArray userIds = new JsonArray();
+			for (Object row : rows) {
+				userIds.add(((JsonObject) row).getString("user_id"));
+			}
+			return reconcile(userIds).compose(batchFixed -> rows.size() < batchSize ?
+					Future.succeededFuture(fixed + batchFixed) :
+					reconcileFrom(userIds.getString(userIds.size() - 1), fixed + batchFixed));
+		});
+	}
+
+	private Future<Long> reconcile(JsonArray userIds) {
+		final Promise<Long> promise = Promise.promise();
+		final String placeholders = Sql.listPrepared(userIds);
+		final JsonArray values = new JsonArray().addAll(userIds).addAll(userIds);
+		sql.prepared(String.format(RECONCILE_USERS, placeholders), values, SqlResult.validUniqueResultHandler(res -> {
+			if (res.isRight()) {
+				promise.complete(res.right().getValue().getLong("fixed", 0L));
+			} else {
+				promise.fail(res.left().getValue());
+			}
+		}));
+		return promise.future();
+	}
+
+	private Future<Long> deleteOrphanCounters() {
+		final Promise<Long> promise = Promise.promise();
+		sql.raw(DELETE_ORPHAN_COUNTERS, SqlResult.validRowsResultHandler(res -> {
+			if (res.isRight()) {
+				promise.complete(res.right().getValue().getLong("rows", 0L));
+			} else {
+				promise.fail(res.left().getValue());
+			}
+		}));
+		return promise.future();
+	}
+
+}
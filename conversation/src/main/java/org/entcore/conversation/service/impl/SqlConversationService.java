@@ -23,8 +23,10 @@ import static fr.wseduc.webutils.Utils.isNotEmpty;
 import static org.entcore.common.user.UserUtils.findVisibles;
 
 import java.util.ArrayList;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
 import java.util.UUID;
 
 import io.vertx.core.DeploymentOptions;
@@ -62,6 +64,7 @@ public class SqlConversationService implements ConversationService{
 	private final String attachmentTable;
 	private final String userMessageTable;
 	private final String userMessageAttachmentTable;
+	private final String userCounterTable;
 	private final boolean optimizedThreadList;
 	private int sendTimeout = DEFAULT_SENDTIMEOUT;
 
@@ -74,6 +77,7 @@ public class SqlConversationService implements ConversationService{
 		attachmentTable = schema + ".attachments";
 		userMessageTable = schema + ".usermessages";
 		userMessageAttachmentTable = schema + ".usermessagesattachments";
+		userCounterTable = schema + ".usercounters";
 		optimizedThreadList = vertx.getOrCreateContext().config().getBoolean("optimized-thread-list", false);
 	}
 
@@ -228,27 +232,51 @@ public class SqlConversationService implements ConversationService{
 					builder.prepared(insertUserThread, new fr.wseduc.webutils.collections.JsonArray().add(user.getUserId()).add(threadId).add(0));
 				}
 
+				// Recipients are inserted with set-based statements so that the size of the transaction does not depend
+				// on the number of recipients (broadcast groups can reach thousands of users).
+				final Set<String> recipientIds = new LinkedHashSet<>();
 				for(Object toObj : ids){
-					if(toObj.equals(user.getUserId()))
-						continue;
+					if(!toObj.equals(user.getUserId()))
+						recipientIds.add(toObj.toString());
+				}
+
+				if (!recipientIds.isEmpty()) {
+					final String recipients = new fr.wseduc.webutils.collections.JsonArray(new ArrayList<>(recipientIds)).encode();
 
-					builder.insert(userMessageTable, new JsonObject()
-						.put("user_id", toObj.toString())
-						.put("message_id", draftId)
-						.put("total_quota", totalQuota)
-					);
+					final String insertUserMessages =
+							"INSERT INTO " + userMessageTable + " (user_id, message_id, total_quota) " +
+							"SELECT r.user_id, ?, ?::bigint FROM jsonb_array_elements_text(?::jsonb) AS r(user_id)";
+					builder.prepared(insertUserMessages, new fr.wseduc.webutils.collections.JsonArray()
+							.add(draftId).add(totalQuota).add(recipients));
 
 					if (threadId != null) {
-						builder.prepared(insertUserThread, new fr.wseduc.webutils.collections.JsonArray().add(toObj.toString()).add(threadId).add(1));
+						final String insertUserThreads =
+								"INSERT INTO conversation.userthreads as ut (user_id,thread_id,nb_unread) " +
+								"SELECT r.user_id, ?, 1 FROM jsonb_array_elements_text(?::jsonb) AS r(user_id) " +
+								"ON CONFLICT (user_id,thread_id) DO UPDATE SET nb_unread = ut.nb_unread + 1 " +
+								"WHERE ut.user_id = EXCLUDED.user_id AND ut.thread_id = EXCLUDED.thread_id";
+						builder.prepared(insertUserThreads, new fr.wseduc.webutils.collections.JsonArray()
+								.add(threadId).add(recipients));
 					}
 
-					for(Object attachmentId : attachmentIds){
-						builder.insert(userMessageAttachmentTable, new JsonObject()
-							.put("user_id", toObj.toString())
-							.put("message_id", draftId)
-							.put("attachment_id", attachmentId.toString())
-						);
+					if (attachmentIds != null && !attachmentIds.isEmpty()) {
+						final String insertUserMessagesAttachments =
+								"INSERT INTO " + userMessageAttachmentTable + " (user_id, message_id, attachment_id) " +
+								"SELECT r.user_id, ?, a.attachment_id " +
+								"FROM jsonb_array_elements_text(?::jsonb) AS r(user_id) " +
+								"CROSS JOIN jsonb_array_elements_text(?::jsonb) AS a(attachment_id)";
+						builder.prepared(insertUserMessagesAttachments, new fr.wseduc.webutils.collections.JsonArray()
+								.add(draftId).add(recipients).add(attachmentIds.encode()));
 					}
+
+					final String incrUnreadCounters =
+							"INSERT INTO " + userCounterTable + " AS c (user_id, folder, unread) " +
+							"SELECT r.user_id, 'INBOX', 1 FROM jsonb_array_elements_text(?::jsonb) AS r(user_id) " +
+							"ON CONFLICT (user_id, folder) DO UPDATE SET unread = c.unread + 1";
+					builder.prepared(incrUnreadCounters, new fr.wseduc.webutils.collections.JsonArray().add(recipients));
+				}
+				if (ids.contains(user.getUserId())) {
+					refreshUnreadCounters(user.getUserId(), builder);
 				}
 
 				sql.transaction(builder.build(),new DeliveryOptions().setSendTimeout(sendTimeout), SqlResult.validUniqueResultHandler(0, result));
@@ -286,7 +314,46 @@ public class SqlConversationService implements ConversationService{
 				messageTable + " r ON um.message_id = r.parent_id AND r.from = um.user_id AND r.state= ? " +
 				"WHERE um.user_id = ? " + additionalWhere + " " +
 				"GROUP BY m.id, unread " +
-				"ORDER BY m.date DESC LIMIT " + LIST_LIMIT + " OFFSET " + skip;
+				"ORDER BY m.date DESC, m.id DESC LIMIT " + LIST_LIMIT + " OFFSET " + skip;
+
+		sql.prepared(query, values, SqlResult.validResultHandler(results, "attachments", "to", "toName", "cc", "ccName", "cci", "cciName", "displayNames"));
+	}
+
+	/**
+	 * The messages are read from the user's rows of usermessages in (message_date, message_id) order, through the
+	 * usermessages_user_date_idx index, and the page stops after LIST_LIMIT matching messages : a page only reads the
+	 * messages it returns and those filtered out before them. The total count is not computed, even for the first page.
+	 */
+	@Override
+	public void list(String folder, String restrain, Boolean unread, UserInfos user, Long cursorDate, String cursorId, final String searchText, Handler<Either<String, JsonArray>> results)
+	{
+		if ((cursorDate == null) != (cursorId == null)) {
+			results.handle(new Either.Left<String, JsonArray>("conversation.invalid.cursor"));
+			return;
+		}
+		JsonArray values = new fr.wseduc.webutils.collections.JsonArray();
+		String messagesFields = "m.id, m.subject, m.from, m.state, m.\"fromName\", m.to, m.\"toName\", m.cc, m.\"ccName\", m.cci, m.\"cciName\", m.\"displayNames\", m.date ";
+
+		values.add("SENT").add(user.getUserId());
+		String additionalWhere = addMessageConditionUnread(folder, values, unread, user) + " " +
+				addCompleteFolderCondition(values, restrain, unread, folder, user);
+
+		if(searchText != null){
+			additionalWhere += " AND m.text_searchable  @@ to_tsquery(m.language::regconfig, unaccent(?)) ";
+			values.add(StringUtils.join(checkAndComposeWordFromSearchText(searchText), " & "));
+		}
+		if (cursorDate != null) {
+			additionalWhere += " AND (um.message_date, um.message_id) < (?, ?) ";
+			values.add(cursorDate).add(cursorId);
+		}
+		String query = "SELECT "+messagesFields+", um.unread as unread, " +
+				"EXISTS(SELECT 1 FROM " + messageTable + " r " +
+				"WHERE r.parent_id = um.message_id AND r.from = um.user_id AND r.state = ?) AS response, " +
+				"EXISTS(SELECT 1 FROM " + userMessageAttachmentTable + " uma " +
+				"WHERE uma.user_id = um.user_id AND uma.message_id = um.message_id) AS \"hasAttachment\" " +
+				"FROM " + userMessageTable + " um JOIN " + messageTable + " m ON um.message_id = m.id " +
+				"WHERE um.user_id = ? " + additionalWhere + " " +
+				"ORDER BY um.message_date DESC, um.message_id DESC LIMIT " + LIST_LIMIT;
 
 		sql.prepared(query, values, SqlResult.validResultHandler(results, "attachments", "to", "toName", "cc", "ccName", "cci", "cciName", "displayNames"));
 	}
@@ -437,6 +504,7 @@ public class SqlConversationService implements ConversationService{
 		SqlStatementsBuilder builder = new SqlStatementsBuilder();
 		builder.prepared(query.toString(), values);
 		builder.prepared(deleteUserThreads, values2);
+		refreshUnreadCounters(user.getUserId(), builder);
 		sql.transaction(builder.build(), SqlResult.validUniqueResultHandler(0, result));
 	}
 
@@ -461,6 +529,7 @@ public class SqlConversationService implements ConversationService{
 		SqlStatementsBuilder builder = new SqlStatementsBuilder();
 		builder.prepared(query.toString(), values);
 		builder.prepared(deleteUserThreads, values2);
+		refreshUnreadCounters(user.getUserId(), builder);
 		sql.transaction(builder.build(), SqlResult.validUniqueResultHandler(0, result));
 
 	}
@@ -493,6 +562,7 @@ public class SqlConversationService implements ConversationService{
 		SqlStatementsBuilder builder = new SqlStatementsBuilder();
 		builder.prepared(query.toString(), values);
 		builder.prepared(insertUserThread, values2);
+		refreshUnreadCounters(user.getUserId(), builder);
 		sql.transaction(builder.build(), SqlResult.validUniqueResultHandler(0, result));
 	}
 
@@ -543,6 +613,15 @@ public class SqlConversationService implements ConversationService{
 					"WHERE um.user_id = ? AND um.message_id = ? AND um.unread = true) " +
 				"AND nb_unread > 0 ";
 
+		String decrUnreadCounter =
+				"UPDATE " + userCounterTable + " AS c " +
+				"SET unread = c.unread - 1 " +
+				"FROM " + userMessageTable + " um " +
+				"JOIN " + messageTable + " m on um.message_id = m.id " +
+				"WHERE um.user_id = ? AND um.message_id = ? AND um.unread = true AND um.trashed = false AND m.state = 'SENT' " +
+				"AND (m.from <> um.user_id OR m.to @> to_jsonb(um.user_id) OR m.cc @> to_jsonb(um.user_id)) " +
+				"AND c.user_id = um.user_id AND c.folder = COALESCE(um.folder_id, 'INBOX') AND c.unread > 0 ";
+
 		String updateQuery = "UPDATE " + userMessageTable + " " +
 			"SET unread = false " +
 			"WHERE user_id = ? AND message_id = ? ";
@@ -570,10 +649,11 @@ public class SqlConversationService implements ConversationService{
 			.add(messageId);
 
 		builder.prepared(decrUnreadThread, tValues);
+		builder.prepared(decrUnreadCounter, values);
 		builder.prepared(updateQuery, values);
 		builder.prepared(selectQuery, values);
 
-		sql.transaction(builder.build(), SqlResult.validUniqueResultHandler(2, result, "attachments", "to", "toName", "cc", "ccName", "displayNames", "cci", "cciName"));
+		sql.transaction(builder.build(), SqlResult.validUniqueResultHandler(3, result, "attachments", "to", "toName", "cc", "ccName", "displayNames", "cci", "cciName"));
 	}
 
 	@Override
@@ -581,6 +661,16 @@ public class SqlConversationService implements ConversationService{
 		if (validationParamsError(user, result, folder))
 			return;
 
+		if (unread != null && unread && (restrain != null || "INBOX".equals(folder.toUpperCase()))) {
+			String counterQuery =
+				"SELECT COALESCE((SELECT unread FROM " + userCounterTable + " WHERE user_id = ? AND folder = ?), 0) as count";
+			JsonArray counterValues = new fr.wseduc.webutils.collections.JsonArray()
+				.add(user.getUserId())
+				.add(restrain != null ? folder : "INBOX");
+			sql.prepared(counterQuery, counterValues, SqlResult.validUniqueResultHandler(result));
+			return;
+		}
+
 		JsonArray values = new fr.wseduc.webutils.collections.JsonArray();
 
 		String messageConditionUnread = addMessageConditionUnread(folder, values, unread, user);
@@ -716,6 +806,7 @@ public class SqlConversationService implements ConversationService{
 					threadIds.add(((JsonObject) row).getString("thread_id"));
 				}
 				recalculateNbUnreadInThreads(threadIds, user, builder);
+				refreshUnreadCounters(user.getUserId(), builder);
 
 				sql.transaction(builder.build(), SqlResult.validUniqueResultHandler(0, result));
 			} else {
@@ -740,6 +831,7 @@ public class SqlConversationService implements ConversationService{
 
 		builder.prepared(query.toString(), values);
 		recalculateNbUnreadInThreads(threadIds, user, builder);
+		refreshUnreadCounters(user.getUserId(), builder);
 		sql.transaction(builder.build(), SqlResult.validUniqueResultHandler(0, result));
 	}
 
@@ -758,6 +850,25 @@ public class SqlConversationService implements ConversationService{
 
 		builder.prepared(query, new JsonArray(threadIds).add(user.getUserId()));
 	}
+
+	/**
+	 * Recompute the unread counters of the inbox and of the folders of a user, in the same transaction as the
+	 * statements moving or flagging their messages.
+	 */
+	private void refreshUnreadCounters(String userId, SqlStatementsBuilder builder) {
+		final String resetCounters =
+				"UPDATE " + userCounterTable + " SET unread = 0 WHERE user_id = ? AND unread <> 0";
+		final String computeCounters =
+				"INSERT INTO " + userCounterTable + " (user_id, folder, unread) " +
+				"SELECT um.user_id, COALESCE(um.folder_id, 'INBOX'), COUNT(*) " +
+				"FROM " + userMessageTable + " um JOIN " + messageTable + " m on um.message_id = m.id " +
+				"WHERE um.user_id = ? AND um.unread = true AND um.trashed = false AND m.state = 'SENT' " +
+				"AND (m.from <> um.user_id OR m.to @> to_jsonb(um.user_id) OR m.cc @> to_jsonb(um.user_id)) " +
+				"GROUP BY um.user_id, COALESCE(um.folder_id, 'INBOX') " +
+				"ON CONFLICT (user_id, folder) DO UPDATE SET unread = EXCLUDED.unread";
+		builder.prepared(resetCounters, new JsonArray().add(userId));
+		builder.prepared(computeCounters, new JsonArray().add(userId));
+	}
 	private boolean isDuplicateError(String msg){
 		return msg.contains("violates unique constraint") || msg.contains("rompt la contrainte unique");
 	}
@@ -936,7 +1047,10 @@ public class SqlConversationService implements ConversationService{
 
 		query += generateInVars(messageIds, values);
 
-		sql.prepared(query, values, SqlResult.validUniqueResultHandler(result));
+		SqlStatementsBuilder builder = new SqlStatementsBuilder();
+		builder.prepared(query, values);
+		refreshUnreadCounters(user.getUserId(), builder);
+		sql.transaction(builder.build(), SqlResult.validUniqueResultHandler(0, result));
 	}
 
 	@Override
@@ -954,7 +1068,11 @@ public class SqlConversationService implements ConversationService{
 		values.add(user.getUserId());
 
 		query += generateInVars(messageIds, values);
-		sql.prepared(query, values, SqlResult.validUniqueResultHandler(result));
+
+		SqlStatementsBuilder builder = new SqlStatementsBuilder();
+		builder.prepared(query, values);
+		refreshUnreadCounters(user.getUserId(), builder);
+		sql.transaction(builder.build(), SqlResult.validUniqueResultHandler(0, result));
 	}
 
 	@Override
@@ -1045,6 +1163,7 @@ public class SqlConversationService implements ConversationService{
 
 
 		builder.prepared(deleteFolder, values);
+		refreshUnreadCounters(user.getUserId(), builder);
 
 		/* Perform the transaction */
 
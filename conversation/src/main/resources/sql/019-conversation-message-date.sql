@@ -0,0 +1,28 @@
+DROP INDEX IF EXISTS conversation.messages_date_id_idx;
+
+ALTER TABLE conversation.usermessages ADD COLUMN message_date BIGINT;
+
+UPDATE conversation.usermessages um SET message_date = m.date
+FROM conversation.messages m WHERE um.message_id = m.id;
+
+CREATE OR REPLACE FUNCTION conversation.setUserMessageDate() RETURNS TRIGGER AS $$
+    BEGIN
+        SELECT date INTO NEW.message_date FROM conversation.messages WHERE id = NEW.message_id;
+        RETURN NEW;
+    END;
+$$ LANGUAGE plpgsql;
+
+CREATE OR REPLACE FUNCTION conversation.updateUserMessagesDate() RETURNS TRIGGER AS $$
+    BEGIN
+        UPDATE conversation.usermessages SET message_date = NEW.date WHERE message_id = NEW.id;
+        RETURN NULL;
+    END;
+$$ LANGUAGE plpgsql;
+
+CREATE TRIGGER setUserMessageDate_trigger
+BEFORE INSERT ON conversation.usermessages
+    FOR EACH ROW EXECUTE PROCEDURE conversation.setUserMessageDate();
+
+CREATE TRIGGER updateUserMessagesDate_trigger
+AFTER UPDATE OF date ON conversation.messages
+    FOR EACH ROW WHEN (OLD.date IS DISTINCT FROM NEW.date) EXECUTE PROCEDURE conversation.updateUserMessagesDate();
@@ -36,8 +36,10 @@ import fr.wseduc.webutils.request.RequestUtils;
 import fr.wseduc.webutils.security.SecureHttpServerRequest;
 import io.vertx.core.*;
 import io.vertx.core.http.HttpServerRequest;
+import io.vertx.core.http.HttpServerResponse;
 import io.vertx.core.json.JsonArray;
 import io.vertx.core.json.JsonObject;
+import io.vertx.core.streams.ReadStream;
 import org.entcore.common.appregistry.ApplicationUtils;
 import org.entcore.common.datavalidation.EmailValidation;
 import org.entcore.common.datavalidation.MobileValidation;
@@ -1007,24 +1009,33 @@ public class UserController extends BaseController {
 	@MfaProtected()
 	public void listByLevel(HttpServerRequest request) {
 		final boolean stream = "application/x-ndjson".equals(request.headers().get("Accept"));
-		final Handler<Either<String, JsonArray>> h;
-		if (stream) {
-			h = r -> {
-				if (r.isRight()) {
-					if (!request.response().isChunked()) {
-						request.response().setChunked(true);
-					}
-					r.right().getValue().stream()
-							.forEach(o -> request.response().write(((JsonObject) o).encode() + "\n"));
-				} else {
-					request.response().end(r.left().getValue());
-				}
-			};
-		} else {
-			h = arrayResponseHandler(request);
+		if (!stream) {
+			userService.listByLevel(request.params().get("level"), request.params().get("notLevel"),
+					request.params().get("profile"), request.params().get("structureId"), false, arrayResponseHandler(request));
+			return;
 		}
-		userService.listByLevel(request.params().get("level"), request.params().get("notLevel"),
-				request.params().get("profile"), request.params().get("structureId"), stream, h);
+		final ReadStream<JsonObject> users = userService.streamByLevel(request.params().get("level"),
+				request.params().get("notLevel"), request.params().get("profile"), request.params().get("structureId"));
+		final HttpServerResponse response = request.response();
+		if (users == null) {
+			response.end();
+			return;
+		}
+		response.setChunked(true);
+		// stop reading the next pages if the client goes away
+		response.closeHandler(v -> users.pause());
+		users.exceptionHandler(e -> {
+			log.error("Error streaming users by level", e);
+			response.reset();
+		});
+		users.endHandler(v -> response.end());
+		users.handler(user -> {
+			response.write(user.encode() + "\n");
+			if (response.writeQueueFull()) {
+				users.pause();
+				response.drainHandler(v -> users.resume());
+			}
+		});
 	}
 
 	@Get("/user/:userId/attachment-school")
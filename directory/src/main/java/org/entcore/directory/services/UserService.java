@@ -25,6 +25,7 @@ import io.vertx.core.Handler;
 import io.vertx.core.http.HttpServerRequest;
 import io.vertx.core.json.JsonArray;
 import io.vertx.core.json.JsonObject;
+import io.vertx.core.streams.ReadStream;
 import org.entcore.common.user.UserInfos;
 import org.entcore.directory.pojo.TransversalSearchQuery;
 
@@ -159,6 +160,12 @@ public interface UserService {
 	void listByLevel(String levelContains, String levelNotContains, String profile, String structureId, boolean stream,
 					 Handler<Either<String, JsonArray>> handler);
 
+	/**
+	 * Stream the users of a level, read from Neo4j page by page.
+	 * @return The users, or null if the profile is not supported
+	 */
+	ReadStream<JsonObject> streamByLevel(String levelContains, String levelNotContains, String profile, String structureId);
+
 	void getMainStructure(String userId, JsonArray structuresToExclude, Handler<Either<String, JsonObject>> result);
 
 	void getAttachmentSchool(String userId, JsonArray structuresToExclude, Handler<Either<String, JsonObject>> result);
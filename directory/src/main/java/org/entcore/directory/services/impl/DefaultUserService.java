@@ -34,7 +34,9 @@ import io.vertx.core.json.JsonArray;
 import io.vertx.core.json.JsonObject;
 import io.vertx.core.logging.Logger;
 import io.vertx.core.logging.LoggerFactory;
+import io.vertx.core.streams.ReadStream;
 import org.entcore.common.neo4j.Neo4j;
+import org.entcore.common.neo4j.Neo4jKeysetStream;
 import org.entcore.common.neo4j.Neo4jResult;
 import org.entcore.common.user.DefaultFunctions;
 import org.entcore.common.user.UserInfos;
@@ -1240,7 +1242,54 @@ public class DefaultUserService implements UserService {
 	@Override
 	public void listByLevel(String levelContains, String levelNotContains, String profile, String structureId, boolean stream,
 			Handler<Either<String, JsonArray>> handler) {
+		if (stream) {
+			final ReadStream<JsonObject> rows = streamByLevel(levelContains, levelNotContains, profile, structureId);
+			if (rows == null) {
+				handler.handle(new Either.Left<>(""));
+				return;
+			}
+			rows.exceptionHandler(e -> handler.handle(new Either.Left<>(e.getMessage())));
+			rows.endHandler(v -> handler.handle(new Either.Left<>("")));
+			rows.handler(row -> handler.handle(new Either.Right<>(new JsonArray().add(row))));
+			return;
+		}
 		final JsonObject params = new JsonObject();
+		final String query = listByLevelQuery(levelContains, levelNotContains, profile, structureId, params, KeysetPage.NONE);
+		if (query == null) {
+			handler.handle(new Either.Right<>(new JsonArray()));
+			return;
+		}
+		neo.execute(query, params, validResultHandler(handler));
+	}
+
+	@Override
+	public ReadStream<JsonObject> streamByLevel(String levelContains, String levelNotContains, String profile,
+			String structureId) {
+		final JsonObject params = new JsonObject();
+		final String firstPageQuery = listByLevelQuery(levelContains, levelNotContains, profile, structureId, params,
+				KeysetPage.FIRST);
+		if (firstPageQuery == null) {
+			return null;
+		}
+		final String nextPageQuery = listByLevelQuery(levelContains, levelNotContains, profile, structureId, params,
+				KeysetPage.NEXT);
+		if ("Relative".equals(profile)) {
+			return new Neo4jKeysetStream(neo, firstPageQuery, nextPageQuery, params, LIMIT, "login", "childId")
+					.removeKeys("childId");
+		}
+		return new Neo4jKeysetStream(neo, firstPageQuery, nextPageQuery, params, LIMIT, "login");
+	}
+
+	private enum KeysetPage { NONE, FIRST, NEXT }
+
+	/**
+	 * @param keyset Pages read by {@link Neo4jKeysetStream}: the rows are made distinct, as a user can be matched
+	 *               through several groups, and the next pages seek on {lastLogin}. A relative is returned once per
+	 *               child so the relatives are paginated on their login and the id of the child.
+	 * @return The query, or null if the profile is not supported
+	 */
+	private String listByLevelQuery(String levelContains, String levelNotContains, String profile, String structureId,
+			JsonObject params, KeysetPage keyset) {
 		params.put("level", levelContains);
 		String levelFilter = "";
 		String structureMatcher = "";
@@ -1257,50 +1306,37 @@ public class DefaultUserService implements UserService {
 		if ("Student".equals(profile)) {
 			query = "MATCH (u:User)" + structureMatcher + " " +
 					"WHERE has(u.password) and u.level contains {level} " + levelFilter +
+					(keyset == KeysetPage.NEXT ? "AND u.login > {lastLogin} " : "") +
+					(keyset != KeysetPage.NONE ? "WITH DISTINCT u " : "") +
 					"RETURN u.id as id, u.ine as ine, head(u.profiles) as profile, u.lastName as lastName, u.firstName as firstName, " +
 					"u.login as login, u.loginAlias as loginAlias, u.email as email, u.mobile AS mobile, u.password as password ";
 		} else if ("Relative".equals(profile)) {
 			query = "MATCH (u:User)-[:RELATED]->(r:User)" + structureMatcher + " " +
 					"WHERE has(r.password) and u.level contains {level} " + levelFilter +
+					(keyset == KeysetPage.NEXT ?
+							"AND r.login >= {lastLogin} AND (r.login > {lastLogin} OR u.id > {lastChildId}) " : "") +
+					(keyset != KeysetPage.NONE ? "WITH DISTINCT u, r " : "") +
 					"RETURN r.id as id, u.ine as ine, head(r.profiles) as profile, r.lastName as lastName, r.firstName as firstName, " +
-					"r.login as login, r.loginAlias as loginAlias, r.email as email, r.mobile AS mobile, r.password as password ";
+					"r.login as login, r.loginAlias as loginAlias, r.email as email, r.mobile AS mobile, r.password as password " +
+					(keyset != KeysetPage.NONE ? ", u.id as childId " : "");
 		}
 		else if ("Teacher".equals(profile) || "Personnel".equals(profile))
 		{
 			query = "MATCH (u:User)" + structureMatcher + " " +
 							(levelContains != null ? "MATCH (u)-[:IN]->(:ProfileGroup {filter: {profile}})-[:DEPENDS]->(:Class {name:{level}}) " : "") +
 							"WHERE HAS(u.password) AND u.firstName IS NOT NULL AND u.lastName IS NOT NULL AND u.birthDate IS NOT NULL AND {profile} IN u.profiles " +
+							(keyset == KeysetPage.NEXT ? "AND u.login > {lastLogin} " : "") +
 							(levelNotContains != null ? "OPTIONAL MATCH (u)-[:IN]->(:ProfileGroup {filter: {profile}})-[:DEPENDS]->(c:Class {name:{notLevel}}) WITH u, c WHERE c = null " : "") +
+							(keyset != KeysetPage.NONE ? "WITH DISTINCT u " : "") +
 							"RETURN u.id as id, head(u.profiles) as profile, u.lastName as lastName, u.firstName as firstName, u.birthDate as birthDate, " +
 							"u.login as login, u.loginAlias as loginAlias, u.email as email, u.mobile AS mobile, u.password as password ";
 			params.put("profile", profile);
 		}
 		else
 		{
-			handler.handle(new Either.Right<>(new JsonArray()));
-			return;
+			query = null;
 		}
-		if (stream) {
-			query += "ORDER BY login ASC SKIP {skip} LIMIT {limit} ";
-			params.put("limit", LIMIT);
-			streamList(query, params, 0, LIMIT, handler);
-		} else {
-			neo.execute(query, params, validResultHandler(handler));
-		}
-	}
-
-	private void streamList(String query, JsonObject params, int skip, int limit, Handler<Either<String, JsonArray>> handler) {
-		neo.execute(query, params.copy().put("skip", skip), res -> {
-			Either<String, JsonArray> r = Neo4jResult.validResult(res);
-			handler.handle(r);
-			if (r.isRight()) {
-				if (r.right().getValue().size() == limit) {
-					streamList(query, params, skip + limit, limit, handler);
-				} else {
-					handler.handle(new Either.Left<>(""));
-				}
-			}
-		});
+		return query;
 	}
 
 	public void getMainStructure(String userId, JsonArray structuresToExclude, Handler<Either<String, JsonObject>> handler) {
@@ -27,6 +27,7 @@ import io.vertx.core.eventbus.Message;
 import io.vertx.core.json.JsonArray;
 import io.vertx.core.json.JsonObject;
 import io.vertx.core.json.Json;
+import org.entcore.common.appregistry.ApplicationUtils;
 import org.entcore.common.bus.MessageUtils;
 import org.entcore.common.events.EventStore;
 import org.entcore.common.events.EventStoreFactory;
@@ -117,7 +118,12 @@ public class ManualFeeder extends BusModBase {
 				public void handle(Message<JsonObject> event) {
 					final JsonArray results = event.body().getJsonArray("results");
 					if ("ok".equals(event.body().getString("status")) && results != null && results.size() > 0) {
-						message.reply(event.body().put("result", results.getJsonArray(0)));
+						final JsonArray created = results.getJsonArray(0);
+						if (commit && created.size() > 0) {
+							ApplicationUtils.structureCreated(eb, created.getJsonObject(0).getString("id"),
+									struct.getString("externalId"));
+						}
+						message.reply(event.body().put("result", created));
 					} else {
 						message.reply(event.body());
 					}
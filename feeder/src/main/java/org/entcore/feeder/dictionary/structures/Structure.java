@@ -528,13 +528,20 @@ public class Structure {
 		transactionHelper.add(query, params);
 	}
 
-	public static void list(String exportType, JsonArray attributes, Integer skip, Integer limit, TransactionHelper transactionHelper) {
+	/**
+	 * @param last External id of the last structure of the previous page, null for the first page
+	 * @param limit Size of the page, null to list every structure
+	 */
+	public static void list(String exportType, JsonArray attributes, String last, Integer limit, TransactionHelper transactionHelper) {
 		StringBuilder query = new StringBuilder("MATCH (s:Structure) ");
 		JsonObject params = new JsonObject();
 		if (isNotEmpty(exportType)) {
 			query.append("WHERE HAS(s.exports) AND {exportType} IN s.exports ");
 			params.put("exportType", exportType);
 		}
+		if (limit != null && last != null) {
+			query.append(isNotEmpty(exportType) ? "AND " : "WHERE ").append("s.externalId > {last} ");
+		}
 		if (attributes != null && attributes.size() > 0) {
 			query.append("RETURN DISTINCT");
 			for (Object attribute : attributes) {
@@ -545,11 +552,10 @@ public class Structure {
 		} else {
 			query.append("RETURN DISTINCT s ");
 		}
-		if (skip != null && limit != null) {
+		if (limit != null) {
 			query.append("ORDER BY externalId ASC " +
-					"SKIP {skip} " +
 					"LIMIT {limit} ");
-			params.put("skip", skip);
+			params.put("last", last);
 			params.put("limit", limit);
 		}
 		transactionHelper.add(query.toString(), params);
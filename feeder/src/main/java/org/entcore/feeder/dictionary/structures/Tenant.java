@@ -66,9 +66,16 @@ public class Tenant {
 		transactionHelper.add(query, params);
 	}
 
-	public static void list(JsonArray attributes, Integer skip, Integer limit, TransactionHelper transactionHelper) {
+	/**
+	 * @param last External id of the last tenant of the previous page, null for the first page
+	 * @param limit Size of the page, null to list every tenant
+	 */
+	public static void list(JsonArray attributes, String last, Integer limit, TransactionHelper transactionHelper) {
 		StringBuilder query = new StringBuilder("MATCH (t:Tenant) ");
 		JsonObject params = new JsonObject();
+		if (limit != null && last != null) {
+			query.append("WHERE t.externalId > {last} ");
+		}
 		if (attributes != null && attributes.size() > 0) {
 			query.append("RETURN DISTINCT");
 			for (Object attribute : attributes) {
@@ -79,11 +86,10 @@ public class Tenant {
 		} else {
 			query.append("RETURN DISTINCT t ");
 		}
-		if (skip != null && limit != null) {
+		if (limit != null) {
 			query.append("ORDER BY externalId ASC " +
-					"SKIP {skip} " +
 					"LIMIT {limit} ");
-			params.put("skip", skip);
+			params.put("last", last);
 			params.put("limit", limit);
 		}
 		transactionHelper.add(query.toString(), params);
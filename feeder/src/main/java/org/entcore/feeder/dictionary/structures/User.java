@@ -823,7 +823,12 @@ public class User {
 		transactionHelper.add(query, params);
 	}
 
-	public static void list(String exportType, JsonArray profiles, JsonArray attributes, Integer skip, Integer limit,
+	/**
+	 * @param last External id of the last user of the previous page, null for the first page. The pages are read by
+	 *             seeking on the external id rather than with SKIP, which would sort again the users already exported.
+	 * @param limit Size of the page, null to list every user
+	 */
+	public static void list(String exportType, JsonArray profiles, JsonArray attributes, String last, Integer limit,
 			TransactionHelper transactionHelper) {
 		StringBuilder query = new StringBuilder();
 		JsonObject params = new JsonObject();
@@ -833,6 +838,9 @@ public class User {
 			filter = "AND HAS(s0.exports) AND {exportType} IN s0.exports ";
 			params.put("exportType", exportType);
 		}
+		if (limit != null && last != null) {
+			filter += "AND u.externalId > {last} ";
+		}
 		if (attributes != null && attributes.contains("manualAndFunctionalGroups")) {
 			unionManualGroups = " + COLLECT(DISTINCT { structureExternalId : s.externalId, id: g.id, name: g.name }) as manualAndFunctionalGroups ";
 		}
@@ -867,11 +875,10 @@ public class User {
 		} else {
 			query.append(" RETURN DISTINCT u ");
 		}
-		if (skip != null && limit != null) {
+		if (limit != null) {
 			query.append("ORDER BY externalId ASC " +
-					"SKIP {skip} " +
 					"LIMIT {limit} ");
-			params.put("skip", skip);
+			params.put("last", last);
 			params.put("limit", limit);
 		}
 		transactionHelper.add(query.toString(), params);
@@ -63,6 +63,7 @@ public abstract class BaseExportProcessing implements ExportProcessing {
 				}
 				final int nbHandlers = (nb % nbByFile == 0) ? nb / nbByFile : nb / nbByFile + 1;
 				final Handler[] handlers = new Handler[nbHandlers + 1];
+				final String[] last = new String[1];
 				handlers[handlers.length - 1] = new Handler<Void>() {
 					@Override
 					public void handle(Void v) {
@@ -86,7 +87,7 @@ public abstract class BaseExportProcessing implements ExportProcessing {
 					handlers[i] = new Handler<Void>() {
 						@Override
 						public void handle(Void v) {
-							list(j*nbByFile, nbByFile, new Handler<JsonArray>() {
+							list(last[0], nbByFile, new Handler<JsonArray>() {
 								@Override
 								public void handle(JsonArray objects) {
 									if (objects == null) {
@@ -94,6 +95,10 @@ public abstract class BaseExportProcessing implements ExportProcessing {
 										return;
 									}
 									if (objects.size() > 0) {
+										final Object lastObject = objects.getValue(objects.size() - 1);
+										if (lastObject instanceof JsonObject) {
+											last[0] = ((JsonObject) lastObject).getString("externalId");
+										}
 										try {
 											if (!concat) {
 												writeDocument(j, objects);
@@ -239,7 +244,11 @@ public abstract class BaseExportProcessing implements ExportProcessing {
 
 	protected abstract void count(Handler<Integer> handler);
 
-	protected abstract void list(Integer skip, Integer limit, Handler<JsonArray> entities);
+	/**
+	 * @param last External id of the last entity of the previous page, null for the first page
+	 * @param limit Size of the page
+	 */
+	protected abstract void list(String last, Integer limit, Handler<JsonArray> entities);
 
 	protected void error(String reason, Handler<Message<JsonObject>> handler) {
 		log.error(reason);
@@ -86,11 +86,11 @@ public class EtabEducNatExportProcessing extends BaseExportProcessing {
 	}
 
 	@Override
-	protected void list(final Integer skip, final Integer limit, final Handler<JsonArray> handler) {
+	protected void list(final String last, final Integer limit, final Handler<JsonArray> handler) {
 		TransactionManager.executeTransaction(new Function<TransactionHelper, Message<JsonObject>>() {
 			@Override
 			public void apply(TransactionHelper value) {
-				Structure.list(EliotExporter.ELIOT, attributes, skip, limit, value);
+				Structure.list(EliotExporter.ELIOT, attributes, last, limit, value);
 			}
 
 			@Override
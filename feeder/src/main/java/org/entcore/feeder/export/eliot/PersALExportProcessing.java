@@ -60,7 +60,7 @@ public class PersALExportProcessing extends BaseExportProcessing {
 	}
 
 	@Override
-	protected void list(final Integer skip, final Integer limit, final Handler<JsonArray> handler) {
+	protected void list(final String last, final Integer limit, final Handler<JsonArray> handler) {
 		TransactionManager.executeTransaction(new Function<TransactionHelper, Message<JsonObject>>() {
 			@Override
 			public void apply(TransactionHelper value) {
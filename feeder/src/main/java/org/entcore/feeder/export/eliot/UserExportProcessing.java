@@ -83,11 +83,11 @@ public abstract class UserExportProcessing extends BaseExportProcessing {
 	}
 
 	@Override
-	protected void list(final Integer skip, final Integer limit, final Handler<JsonArray> handler) {
+	protected void list(final String last, final Integer limit, final Handler<JsonArray> handler) {
 		TransactionManager.executeTransaction(new Function<TransactionHelper, Message<JsonObject>>() {
 			@Override
 			public void apply(TransactionHelper value) {
-				User.list(EliotExporter.ELIOT, profiles, attributes, skip, limit, value);
+				User.list(EliotExporter.ELIOT, profiles, attributes, last, limit, value);
 			}
 
 			@Override
@@ -35,6 +35,7 @@ import org.entcore.common.email.EmailFactory;
 import org.entcore.common.http.BaseServer;
 import org.entcore.common.notification.TimelineHelper;
 import org.entcore.common.pdf.PdfFactory;
+import org.entcore.common.session.SessionNearCache;
 import org.entcore.common.utils.MapFactory;
 import org.entcore.infra.controllers.*;
 import org.entcore.infra.cron.HardBounceTask;
@@ -135,6 +136,14 @@ public class Starter extends BaseServer {
 			if (oauthCache != null) {
 				serverMap.put("oauthCache", oauthCache.encode());
 			}
+			JsonObject sessionNearCache = config.getJsonObject("sessionNearCache");
+			if (sessionNearCache != null) {
+				final Object sessionTimeout = config.getValue("session_timeout");
+				if (sessionTimeout instanceof Number && !sessionNearCache.containsKey(SessionNearCache.SESSION_TIMEOUT_KEY)) {
+					sessionNearCache.put(SessionNearCache.SESSION_TIMEOUT_KEY, ((Number) sessionTimeout).longValue());
+				}
+				serverMap.put("sessionNearCache", sessionNearCache.encode());
+			}
 			serverMap.put("cache-enabled", config.getBoolean("cache-enabled", false));
 			final String csp = config.getString("content-security-policy");
 			if (isNotEmpty(csp)) {
@@ -0,0 +1,2 @@
+CREATE INDEX CONCURRENTLY IF NOT EXISTS usermessages_user_date_idx
+ON conversation.usermessages (user_id, message_date DESC, message_id DESC);
@@ -36,6 +36,7 @@ import org.apache.commons.lang3.tuple.Pair;
 import org.entcore.common.cache.CacheService;
 import org.entcore.common.neo4j.Neo4j;
 import org.entcore.common.redis.Redis;
+import org.entcore.common.session.SessionNearCache;
 import org.entcore.common.session.SessionRecreationRequest;
 import org.entcore.common.utils.StringUtils;
 import org.vertx.java.busmods.BusModBase;
@@ -53,13 +54,17 @@ public class AuthManager extends BusModBase implements Handler<Message<JsonObjec
 	public static final String OAUTH_AUTH_INFO_COLLECTION = "authorizations";
 	public static final String OAUTH_ACCESS_TOKEN_COLLECTION = "tokens";
 	public static final String CAS_COLLECTION = "authcas";
+	/** Mirrors AccessTokenCache.INVALIDATION_ADDRESS from the auth module. */
+	public static final String OAUTH_TOKENS_INVALIDATION_ADDRESS = "auth.oauth.tokens.invalidate";
 
 	protected MongoDb mongo;
 	protected Neo4j neo4j;
 	protected SessionStore sessionStore;
+	protected StructureMappingCache structureMappingCache;
 	protected CacheService OAuthCacheService;
 	protected Boolean cluster;
 	protected boolean xsrfOnAuth;
+	protected boolean sessionNearCacheEnabled;
 
 	public void start() {
 		super.start();
@@ -75,8 +80,20 @@ public class AuthManager extends BusModBase implements Handler<Message<JsonObjec
 		mongo.init(vertx.eventBus(), node + config.getString("mongo-address", "wse.mongodb.persistor"));
 
 		sessionStore = new MapSessionStore(vertx, cluster, config);
+		structureMappingCache = new StructureMappingCache(vertx, neo4j, config);
 
 		this.xsrfOnAuth = config.getBoolean("xsrfOnAuth", true);
+		this.sessionNearCacheEnabled = SessionNearCache.isEnabled(vertx);
+		if (sessionNearCacheEnabled) {
+			final Object sessionTimeout = config.getValue("session_timeout");
+			final long nearCacheTimeout = SessionNearCache.getConfig(vertx)
+					.getLong(SessionNearCache.SESSION_TIMEOUT_KEY, SessionNearCache.DEFAULT_SESSION_TIMEOUT);
+			if (sessionTimeout instanceof Number && ((Number) sessionTimeout).longValue() != nearCacheTimeout) {
+				logger.warn("Session near cache ttl computed from a session timeout of " + nearCacheTimeout +
+						" ms instead of " + sessionTimeout + " ms : set sessionNearCache." +
+						SessionNearCache.SESSION_TIMEOUT_KEY);
+			}
+		}
 
 		try
 		{
@@ -231,6 +248,8 @@ public class AuthManager extends BusModBase implements Handler<Message<JsonObjec
 
 		Handler<Either<String, Void>> finalHandler = event ->
 		{
+			// sessions and tokens may have been dropped even if a later step failed
+			publishSessionInvalidation(SessionNearCache.invalidateUser(userId));
 			if (event.isRight()) {
 				sendOK(message);
 			} else {
@@ -284,6 +303,8 @@ public class AuthManager extends BusModBase implements Handler<Message<JsonObjec
 					JsonArray resArray = result.body().getJsonArray("results");
 					JsonArray authIds = new JsonArray();
 					JsonObject authIdFilter = new JsonObject().put("authId", new JsonObject().put("$in", authIds));
+					JsonArray droppedAuthIds = new JsonArray();
+					JsonArray droppedTokenIds = new JsonArray();
 					for(int i = resArray.size(); i-- > 0;)
 						authIds.add(resArray.getJsonObject(i).getString("_id"));
 
@@ -307,6 +328,10 @@ public class AuthManager extends BusModBase implements Handler<Message<JsonObjec
 								handler.handle(new Either.Left<String, Void>(tokenRes.body().getString("message")));
 							else
 							{
+								if(droppedAuthIds.isEmpty() == false)
+									eb.publish(OAUTH_TOKENS_INVALIDATION_ADDRESS, new JsonObject().put("authIds", droppedAuthIds));
+								if(droppedTokenIds.isEmpty() == false)
+									publishSessionInvalidation(SessionNearCache.invalidateSessions(droppedTokenIds));
 								if(immediate)
 									mongo.delete(OAUTH_AUTH_INFO_COLLECTION, userFilter, authHandler);
 								else
@@ -337,6 +362,8 @@ public class AuthManager extends BusModBase implements Handler<Message<JsonObjec
 										userFilter.put("_id", new JsonObject().put("$ne", resArray.getJsonObject(i).getString("authId")));
 										continue;
 									}
+									droppedAuthIds.add(resArray.getJsonObject(i).getString("authId"));
+									droppedTokenIds.add(tokenId);
 
 									if(OAuthCacheService != null)
 									{
@@ -524,6 +551,9 @@ public class AuthManager extends BusModBase implements Handler<Message<JsonObjec
 			.onSuccess(session -> {
 				message.reply(session);
 				final String sessionId = request.getSessionId();
+				if (sessionId != null) {
+					publishSessionInvalidation(SessionNearCache.invalidateSessions(new JsonArray().add(sessionId)));
+				}
 				// TODO update metrics
 				if(sessionId != null && !request.isRefreshOnly()) {
 					sessionStore.dropSession(sessionId, dropSessionResult -> {
@@ -750,6 +780,7 @@ public class AuthManager extends BusModBase implements Handler<Message<JsonObjec
 
 	private void dropSession(Message<JsonObject> message, String sessionId, JsonObject meta) {
 		sessionStore.dropSession(sessionId, ar -> {
+			publishSessionInvalidation(SessionNearCache.invalidateSessions(new JsonArray().add(sessionId)));
 			if (ar.succeeded()) {
 				if (getOrElse(config.getBoolean("slo"), false)) {
 					final String userId = ar.result().getString("userId");
@@ -802,6 +833,7 @@ public class AuthManager extends BusModBase implements Handler<Message<JsonObjec
 
 		sessionStore.addCacheAttribute(sessionId, key, value, ar -> {
 			if (ar.succeeded()) {
+				publishSessionInvalidation(SessionNearCache.invalidateSessions(new JsonArray().add(sessionId)));
 				sendOK(message);
 			} else {
 				logger.error("Error adding cache attribute in session", ar.cause());
@@ -830,6 +862,7 @@ public class AuthManager extends BusModBase implements Handler<Message<JsonObjec
 
 		sessionStore.addCacheAttributeByUserId(userId, key, value, ar -> {
 			if (ar.succeeded()) {
+				publishSessionInvalidation(SessionNearCache.invalidateUser(userId));
 				sendOK(message);
 			} else {
 				logger.error("Error adding cache attribute in session", ar.cause());
@@ -853,6 +886,7 @@ public class AuthManager extends BusModBase implements Handler<Message<JsonObjec
 
 		sessionStore.dropCacheAttributeByUserId(userId, key, ar -> {
 			if (ar.succeeded()) {
+				publishSessionInvalidation(SessionNearCache.invalidateUser(userId));
 				sendOK(message);
 			} else {
 				logger.error("Error dropping cache attribute in session", ar.cause());
@@ -861,6 +895,16 @@ public class AuthManager extends BusModBase implements Handler<Message<JsonObjec
 		});
 	}
 
+	/**
+	 * Evict sessions from the near caches of every module when a session is dropped or modified.
+	 * @param invalidation Invalidation message built by {@link SessionNearCache}
+	 */
+	private void publishSessionInvalidation(final JsonObject invalidation) {
+		if (sessionNearCacheEnabled) {
+			eb.publish(SessionNearCache.INVALIDATION_ADDRESS, invalidation);
+		}
+	}
+
 	public void generateSessionInfos(final String userId, final Handler<JsonObject> handler) {
 		final String query =
 				"MATCH (n:User {id : {id}}) " +
@@ -900,182 +944,29 @@ public class AuthManager extends BusModBase implements Handler<Message<JsonObjec
 					"application: app.name, " +
 					"mandatory: ANY(a IN authorizations WHERE HAS(a.mandatory) AND a.mandatory = true)"+
 				"}) as widgets";
-		final String query4 = "MATCH (s:Structure) return s.id as id, s.externalId as externalId";
-		final String query5 = "MATCH (u:User {id: {id}})-[:PREFERS]->(uac:UserAppConf) RETURN uac AS preferences";
+		final String query4 = "MATCH (u:User {id: {id}})-[:PREFERS]->(uac:UserAppConf) RETURN uac AS preferences";
 		JsonObject params = new JsonObject();
 		params.put("id", userId);
 		JsonArray statements = new JsonArray()
 				.add(new JsonObject().put("statement", query).put("parameters", params))
 				.add(new JsonObject().put("statement", query2).put("parameters", params))
 				.add(new JsonObject().put("statement", query3).put("parameters", params))
-				.add(new JsonObject().put("statement", query4))
-				.add(new JsonObject().put("statement", query5).put("parameters", params));
+				.add(new JsonObject().put("statement", query4).put("parameters", params));
 		neo4j.executeTransaction(statements, null, true, false, true,
 				new Handler<Message<JsonObject>>() {
 
 			@Override
 			public void handle(Message<JsonObject> message) {
 				JsonArray results = message.body().getJsonArray("results");
-				if ("ok".equals(message.body().getString("status")) && results != null && results.size() == 5 &&
+				if ("ok".equals(message.body().getString("status")) && results != null && results.size() == 4 &&
 						results.getJsonArray(0).size() > 0 && results.getJsonArray(1).size() > 0) {
-					JsonObject j = results.getJsonArray(0).getJsonObject(0);
-					JsonObject j2 = results.getJsonArray(1).getJsonObject(0);
-					JsonObject j3 = results.getJsonArray(2).getJsonObject(0);
-					JsonObject structureMapping = new JsonObject();
-					for (Object o : results.getJsonArray(3)) {
-						if (!(o instanceof JsonObject)) continue;
-						JsonObject jsonObject = (JsonObject) o;
-						structureMapping.put(jsonObject.getString("externalId"), jsonObject.getString("id"));
-					}
-					j.put("userId", userId);
-					JsonObject functions = new JsonObject();
-					JsonArray actions = new JsonArray();
-					JsonArray apps = new JsonArray();
-					for (Object o : getOrElse(j2.getJsonArray("authorizedActions"), new JsonArray())) {
-						if (!(o instanceof JsonArray)) continue;
-						JsonArray a = (JsonArray) o;
-						actions.add(new JsonObject()
-								.put("name", a.getString(0))
-								.put("displayName", a.getString(1))
-								.put("type", a.getString(2)));
-					}
-					for (Object o : getOrElse(j2.getJsonArray("apps"), new JsonArray())) {
-						if (!(o instanceof JsonArray)) continue;
-						JsonArray a = (JsonArray) o;
-						apps.add(new JsonObject()
-										.put("name", (String) a.getString(0))
-										.put("address", (String) a.getString(1))
-										.put("icon", (String) a.getString(2))
-										.put("target", (String) a.getString(3))
-										.put("displayName", (String) a.getString(4))
-										.put("display", ((a.getValue(5) == null) || a.getBoolean(5)))
-										.put("prefix", (String) a.getString(6))
-										.put("casType", (String) a.getString(7))
-										.put("scope", (JsonArray) a.getJsonArray(8))
-										.put("isExternal", a.getBoolean(9))
-						);
-					}
-					for (Object o : getOrElse(j.getJsonArray("aafFunctions"), new JsonArray())) {
+					final Set<String> structureExternalIds = new HashSet<>();
+					for (Object o : getOrElse(results.getJsonArray(0).getJsonObject(0).getJsonArray("aafFunctions"), new JsonArray())) {
 						if (o == null) continue;
-						String [] sf = o.toString().split("\\$");
-						if (sf.length == 5) {
-							JsonObject jo = functions.getJsonObject(sf[1]);
-							if (jo == null) {
-								jo = new JsonObject().put("code", sf[1])
-										.put("functionName", sf[2])
-										.put("scope", new JsonArray())
-										.put("structureExternalIds", new JsonArray())
-										.put("subjects", new JsonObject());
-								functions.put(sf[1], jo);
-							}
-							JsonObject subject = jo.getJsonObject("subjects").getJsonObject(sf[3]);
-							if (subject == null) {
-								subject = new JsonObject()
-										.put("subjectCode", sf[3])
-										.put("subjectName", sf[4])
-										.put("scope", new JsonArray())
-										.put("structureExternalIds", new JsonArray());
-								jo.getJsonObject("subjects").put(sf[3], subject);
-							}
-							jo.getJsonArray("structureExternalIds").add(sf[0]);
-							subject.getJsonArray("structureExternalIds").add(sf[0]);
-							String sid = structureMapping.getString(sf[0]);
-							if (sid != null) {
-								jo.getJsonArray("scope").add(sid);
-								subject.getJsonArray("scope").add(sid);
-							}
-						}
-					}
-					j.remove("aafFunctions");
-					for (Object o : getOrElse(j.getJsonArray("functions"), new JsonArray())) {
-						if (!(o instanceof JsonArray)) continue;
-						JsonArray a = (JsonArray) o;
-						String code = a.getString(0);
-						if (code != null) {
-							functions.put(code, new JsonObject()
-									.put("code", code)
-									.put("scope", a.getJsonArray(1))
-							);
-						}
-					}
-					final JsonObject children = new JsonObject();
-					final List<String> childrenIds = new ArrayList<String>();
-					for (Object o : getOrElse(j.getJsonArray("childrenInfo"), new JsonArray())) {
-						if (!(o instanceof JsonArray)) continue;
-						final JsonArray a = (JsonArray) o;
-						final String childId = a.getString(0);
-						if (childId != null) {
-							childrenIds.add(childId);
-							JsonObject jo = children.getJsonObject(childId);
-							if (jo == null) {
-								jo = new JsonObject()
-										.put("lastName", a.getString(1))
-										.put("firstName", a.getString(2));
-								children.put(childId, jo);
-							}
-						}
-					}
-					j.remove("childrenInfo");
-					final List<String> classesIds = new ArrayList<String>();
-					final List<String> classesNames = new ArrayList<String>() ;
-					for (Object o : getOrElse(j.getJsonArray("classes"), new JsonArray())) {
-						if (!(o instanceof JsonArray)) continue;
-						final JsonArray c = (JsonArray) o;
-						if (c.getString(0) != null) {
-							classesIds.add(c.getString(0));
-							classesNames.add(c.getString(1));
-						}
+						structureExternalIds.add(o.toString().split("\\$")[0]);
 					}
-					j.remove("classes");
-					final List<String> structureIds = new ArrayList<>();
-					final List<String> structureNames = new ArrayList<>();
-					final Set<String> uai = new HashSet<>();
-					boolean hasApp = false;
-					boolean attachedToOneStructure = false;
-					boolean allAttachedStructuresIgnoreMFA = true;
-					for (Object o : getOrElse(j.getJsonArray("structures"), new JsonArray())) {
-						if (!(o instanceof JsonArray)) continue;
-						final JsonArray s = (JsonArray) o;
-						if (s.getString(0) != null) {
-							structureIds.add(s.getString(0));
-							structureNames.add(StringUtils.trimToBlank(s.getString(1)));
-							if (!StringUtils.isEmpty(s.getString(2))) {
-								uai.add(s.getString(2));
-							}
-							if(!hasApp && getOrElse(s.getBoolean(3), false)) {
-								hasApp = true;
-							}
-							if(allAttachedStructuresIgnoreMFA && Boolean.FALSE.equals(getOrElse(s.getBoolean(4), false))) {
-								// This structure does not ignore MFA, so...
-								allAttachedStructuresIgnoreMFA = false;
-							}
-							attachedToOneStructure = true;
-						}
-					}
-					// ignoreMFA is true iif 
-					boolean ignoreMFA = attachedToOneStructure && allAttachedStructuresIgnoreMFA;
-					j.remove("structures");
-					j.put("structures", new JsonArray(structureIds));
-					j.put("structureNames", new JsonArray(structureNames));
-					j.put("uai", new JsonArray(new ArrayList<>(uai)));
-					j.put("hasApp", hasApp);
-					j.put("ignoreMFA", ignoreMFA);
-					j.put("classes", new JsonArray(classesIds));
-					j.put("realClassesNames", new JsonArray(classesNames));
-					j.put("functions", functions);
-					j.put("authorizedActions", actions);
-					j.put("apps", apps);
-					j.put("childrenIds", new JsonArray(childrenIds));
-					j.put("children", children);
-					final JsonObject cache = (results.getJsonArray(4) != null && results.getJsonArray(4).size() > 0 &&
-							results.getJsonArray(4).getJsonObject(0) != null) ? results.getJsonArray(4).getJsonObject(0) : new JsonObject();
-					j.put("cache", cache);
-					j.put("widgets", getOrElse(j3.getJsonArray("widgets"), new JsonArray()));
-					//return unique options
-					Set<String> uniquOption = new HashSet<>(j.getJsonArray("optionEnabled", new JsonArray()).getList());
-					j.put("optionEnabled", new JsonArray(new ArrayList(uniquOption)));
-					//
-					handler.handle(j);
+					structureMappingCache.resolve(structureExternalIds, structureMapping ->
+							handler.handle(buildSessionInfos(userId, results, structureMapping)));
 				} else {
 					handler.handle(null);
 				}
@@ -1083,4 +974,159 @@ public class AuthManager extends BusModBase implements Handler<Message<JsonObjec
 		});
 	}
 
+	private JsonObject buildSessionInfos(final String userId, final JsonArray results, final JsonObject structureMapping) {
+		final JsonObject j = results.getJsonArray(0).getJsonObject(0);
+		JsonObject j2 = results.getJsonArray(1).getJsonObject(0);
+		JsonObject j3 = results.getJsonArray(2).getJsonObject(0);
+		j.put("userId", userId);
+		JsonObject functions = new JsonObject();
+		JsonArray actions = new JsonArray();
+		JsonArray apps = new JsonArray();
+		for (Object o : getOrElse(j2.getJsonArray("authorizedActions"), new JsonArray())) {
+			if (!(o instanceof JsonArray)) continue;
+			JsonArray a = (JsonArray) o;
+			actions.add(new JsonObject()
+					.put("name", a.getString(0))
+					.put("displayName", a.getString(1))
+					.put("type", a.getString(2)));
+		}
+		for (Object o : getOrElse(j2.getJsonArray("apps"), new JsonArray())) {
+			if (!(o instanceof JsonArray)) continue;
+			JsonArray a = (JsonArray) o;
+			apps.add(new JsonObject()
+							.put("name", (String) a.getString(0))
+							.put("address", (String) a.getString(1))
+							.put("icon", (String) a.getString(2))
+							.put("target", (String) a.getString(3))
+							.put("displayName", (String) a.getString(4))
+							.put("display", ((a.getValue(5) == null) || a.getBoolean(5)))
+							.put("prefix", (String) a.getString(6))
+							.put("casType", (String) a.getString(7))
+							.put("scope", (JsonArray) a.getJsonArray(8))
+							.put("isExternal", a.getBoolean(9))
+			);
+		}
+		for (Object o : getOrElse(j.getJsonArray("aafFunctions"), new JsonArray())) {
+			if (o == null) continue;
+			String [] sf = o.toString().split("\\$");
+			if (sf.length == 5) {
+				JsonObject jo = functions.getJsonObject(sf[1]);
+				if (jo == null) {
+					jo = new JsonObject().put("code", sf[1])
+							.put("functionName", sf[2])
+							.put("scope", new JsonArray())
+							.put("structureExternalIds", new JsonArray())
+							.put("subjects", new JsonObject());
+					functions.put(sf[1], jo);
+				}
+				JsonObject subject = jo.getJsonObject("subjects").getJsonObject(sf[3]);
+				if (subject == null) {
+					subject = new JsonObject()
+							.put("subjectCode", sf[3])
+							.put("subjectName", sf[4])
+							.put("scope", new JsonArray())
+							.put("structureExternalIds", new JsonArray());
+					jo.getJsonObject("subjects").put(sf[3], subject);
+				}
+				jo.getJsonArray("structureExternalIds").add(sf[0]);
+				subject.getJsonArray("structureExternalIds").add(sf[0]);
+				String sid = structureMapping.getString(sf[0]);
+				if (sid != null) {
+					jo.getJsonArray("scope").add(sid);
+					subject.getJsonArray("scope").add(sid);
+				}
+			}
+		}
+		j.remove("aafFunctions");
+		for (Object o : getOrElse(j.getJsonArray("functions"), new JsonArray())) {
+			if (!(o instanceof JsonArray)) continue;
+			JsonArray a = (JsonArray) o;
+			String code = a.getString(0);
+			if (code != null) {
+				functions.put(code, new JsonObject()
+						.put("code", code)
+						.put("scope", a.getJsonArray(1))
+				);
+			}
+		}
+		final JsonObject children = new JsonObject();
+		final List<String> childrenIds = new ArrayList<String>();
+		for (Object o : getOrElse(j.getJsonArray("childrenInfo"), new JsonArray())) {
+			if (!(o instanceof JsonArray)) continue;
+			final JsonArray a = (JsonArray) o;
+			final String childId = a.getString(0);
+			if (childId != null) {
+				childrenIds.add(childId);
+				JsonObject jo = children.getJsonObject(childId);
+				if (jo == null) {
+					jo = new JsonObject()
+							.put("lastName", a.getString(1))
+							.put("firstName", a.getString(2));
+					children.put(childId, jo);
+				}
+			}
+		}
+		j.remove("childrenInfo");
+		final List<String> classesIds = new ArrayList<String>();
+		final List<String> classesNames = new ArrayList<String>() ;
+		for (Object o : getOrElse(j.getJsonArray("classes"), new JsonArray())) {
+			if (!(o instanceof JsonArray)) continue;
+			final JsonArray c = (JsonArray) o;
+			if (c.getString(0) != null) {
+				classesIds.add(c.getString(0));
+				classesNames.add(c.getString(1));
+			}
+		}
+		j.remove("classes");
+		final List<String> structureIds = new ArrayList<>();
+		final List<String> structureNames = new ArrayList<>();
+		final Set<String> uai = new HashSet<>();
+		boolean hasApp = false;
+		boolean attachedToOneStructure = false;
+		boolean allAttachedStructuresIgnoreMFA = true;
+		for (Object o : getOrElse(j.getJsonArray("structures"), new JsonArray())) {
+			if (!(o instanceof JsonArray)) continue;
+			final JsonArray s = (JsonArray) o;
+			if (s.getString(0) != null) {
+				structureIds.add(s.getString(0));
+				structureNames.add(StringUtils.trimToBlank(s.getString(1)));
+				if (!StringUtils.isEmpty(s.getString(2))) {
+					uai.add(s.getString(2));
+				}
+				if(!hasApp && getOrElse(s.getBoolean(3), false)) {
+					hasApp = true;
+				}
+				if(allAttachedStructuresIgnoreMFA && Boolean.FALSE.equals(getOrElse(s.getBoolean(4), false))) {
+					// This structure does not ignore MFA, so...
+					allAttachedStructuresIgnoreMFA = false;
+				}
+				attachedToOneStructure = true;
+			}
+		}
+		// ignoreMFA is true iif 
+		boolean ignoreMFA = attachedToOneStructure && allAttachedStructuresIgnoreMFA;
+		j.remove("structures");
+		j.put("structures", new JsonArray(structureIds));
+		j.put("structureNames", new JsonArray(structureNames));
+		j.put("uai", new JsonArray(new ArrayList<>(uai)));
+		j.put("hasApp", hasApp);
+		j.put("ignoreMFA", ignoreMFA);
+		j.put("classes", new JsonArray(classesIds));
+		j.put("realClassesNames", new JsonArray(classesNames));
+		j.put("functions", functions);
+		j.put("authorizedActions", actions);
+		j.put("apps", apps);
+		j.put("childrenIds", new JsonArray(childrenIds));
+		j.put("children", children);
+		final JsonObject cache = (results.getJsonArray(3) != null && results.getJsonArray(3).size() > 0 &&
+				results.getJsonArray(3).getJsonObject(0) != null) ? results.getJsonArray(3).getJsonObject(0) : new JsonObject();
+		j.put("cache", cache);
+		j.put("widgets", getOrElse(j3.getJsonArray("widgets"), new JsonArray()));
+		//return unique options
+		Set<String> uniquOption = new HashSet<>(j.getJsonArray("optionEnabled", new JsonArray()).getList());
+		j.put("optionEnabled", new JsonArray(new ArrayList(uniquOption)));
+		//
+		return j;
+	}
+
 }
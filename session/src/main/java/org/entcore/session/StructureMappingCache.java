@@ -0,0 +1,132 @@
+package org.entcore.session;
+
+import io.vertx.core.Handler;
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import io.vertx.core.logging.Logger;
+import io.vertx.core.logging.LoggerFactory;
+import org.entcore.common.neo4j.Neo4j;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.entcore.common.appregistry.AppRegistryEvents.APP_REGISTRY_PUBLISH_ADDRESS;
+import static org.entcore.common.appregistry.AppRegistryEvents.IMPORT_SUCCEEDED;
+import static org.entcore.common.appregistry.AppRegistryEvents.STRUCTURE_CREATED;
+
+/**
+ * Mapping of structures external ids to their ids, used to compute the scope of the aaf functions of a session.
+ * <p>
+ * The mapping is loaded at startup, reloaded when a feeder import ends and periodically, and updated incrementally
+ * when a structure is created. External ids which are not known yet are resolved with a targeted query and added to
+ * the mapping, so a session is never built from a stale mapping.
+ * </p>
+ */
+public class StructureMappingCache {
+
+	private static final Logger logger = LoggerFactory.getLogger(StructureMappingCache.class);
+	private static final long DEFAULT_REFRESH_DELAY = 60 * 60 * 1000L;
+
+	private final Neo4j neo4j;
+	private final Map<String, String> mapping = new ConcurrentHashMap<>();
+	/** External ids found in users functions which do not match any structure, cleared on each reload. */
+	private final Set<String> unknownExternalIds = ConcurrentHashMap.newKeySet();
+
+	public StructureMappingCache(Vertx vertx, Neo4j neo4j, JsonObject config) {
+		this.neo4j = neo4j;
+		vertx.eventBus().<JsonObject>consumer(APP_REGISTRY_PUBLISH_ADDRESS, message -> {
+			final String type = message.body().getString("type");
+			if (IMPORT_SUCCEEDED.equals(type)) {
+				reload();
+			} else if (STRUCTURE_CREATED.equals(type)) {
+				final String id = message.body().getString("id");
+				final String externalId = message.body().getString("externalId");
+				if (id != null && externalId != null) {
+					mapping.put(externalId, id);
+					unknownExternalIds.remove(externalId);
+				}
+			}
+		});
+		final long refreshDelay = config.getLong("structure-mapping-refresh-delay", DEFAULT_REFRESH_DELAY);
+		if (refreshDelay > 0) {
+			vertx.setPeriodic(refreshDelay, timerId -> reload());
+		}
+		reload();
+	}
+
+	public void reload() {
+		neo4j.execute("MATCH (s:Structure) RETURN s.id as id, s.externalId as externalId", new JsonObject(), event -> {
+			final JsonArray res = event.body().getJsonArray("result");
+			if ("ok".equals(event.body().getString("status")) && res != null) {
+				final Map<String, String> loaded = toMap(res);
+				mapping.putAll(loaded);
+				mapping.keySet().retainAll(loaded.keySet());
+				unknownExternalIds.clear();
+				logger.info("Structure mapping loaded with " + loaded.size() + " structures");
+			} else {
+				logger.error("Error loading structure mapping : " + event.body().getString("message"));
+			}
+		});
+	}
+
+	/**
+	 * Get the ids of structures from their external ids.
+	 * @param externalIds External ids to resolve
+	 * @param handler Called with a json object mapping each known external id to the id of the structure
+	 */
+	public void resolve(final Collection<String> externalIds, final Handler<JsonObject> handler) {
+		final JsonObject result = new JsonObject();
+		final List<String> missing = new ArrayList<>();
+		for (String externalId : externalIds) {
+			final String id = mapping.get(externalId);
+			if (id != null) {
+				result.put(externalId, id);
+			} else if (!unknownExternalIds.contains(externalId)) {
+				missing.add(externalId);
+			}
+		}
+		if (missing.isEmpty()) {
+			handler.handle(result);
+			return;
+		}
+		final String query =
+				"MATCH (s:Structure) WHERE s.externalId IN {externalIds} " +
+				"RETURN s.id as id, s.externalId as externalId";
+		neo4j.execute(query, new JsonObject().put("externalIds", new JsonArray(missing)), event -> {
+			final JsonArray res = event.body().getJsonArray("result");
+			if ("ok".equals(event.body().getString("status")) && res != null) {
+				final Map<String, String> found = toMap(res);
+				mapping.putAll(found);
+				for (String externalId : missing) {
+					final String id = found.get(externalId);
+					if (id != null) {
+						result.put(externalId, id);
+					} else {
+						unknownExternalIds.add(externalId);
+					}
+				}
+			} else {
+				logger.error("Error resolving structures " + missing + " : " + event.body().getString("message"));
+			}
+			handler.handle(result);
+		});
+	}
+
+	private static Map<String, String> toMap(JsonArray structures) {
+		final Map<String, String> m = new ConcurrentHashMap<>();
+		for (Object o : structures) {
+			if (!(o instanceof JsonObject)) continue;
+			final JsonObject s = (JsonObject) o;
+			if (s.getString("externalId") != null && s.getString("id") != null) {
+				m.put(s.getString("externalId"), s.getString("id"));
+			}
+		}
+		return m;
+	}
+
+}
@@ -0,0 +1,47 @@
+package org.entcore.test.load
+
+import io.gatling.core.Predef._
+import io.gatling.http.Predef._
+import scala.concurrent.duration._
+import scala.io.Source
+
+import Auth._
+
+/**
+ * Send latency of a message according to its number of recipients.
+ * Every user of logins.csv (login;password) sends messages to the first -Drecipients ids of recipients.txt (one user id
+ * per line). Run it with 10, 100, 1000 and 5000 recipients and compare the response time percentiles of the
+ * "Envoi du message" request between two versions of the platform.
+ */
+class ConversationFanOutSimulation extends Simulation {
+
+	val httpProtocol = http
+		.baseURL(System.getProperty("baseURL", "http://one"))
+		.disableFollowRedirect
+		.acceptHeader("application/json, text/plain, */*")
+		.acceptEncodingHeader("gzip, deflate")
+		.acceptLanguageHeader("fr,fr-fr;q=0.8,en-us;q=0.5,en;q=0.3")
+		.userAgentHeader("Mozilla/5.0 (X11; Linux i686; rv:17.0) Gecko/20131030 Firefox/17.0 Iceweasel/17.0.10")
+
+	val senders = Integer.getInteger("users", 10).intValue
+	val messages = Integer.getInteger("messages", 10).intValue
+	val recipients = Integer.getInteger("recipients", 100).intValue
+
+	val to = Source.fromFile(System.getProperty("recipientsFile", "recipients.txt")).getLines()
+		.map(_.trim).filter(_.nonEmpty).take(recipients).map("\"" + _ + "\"").mkString(",")
+
+	val scn = scenario("Conversation fan-out " + recipients)
+		.feed(ssv("logins.csv").circular)
+		.exec(login("${login}", "${password}"))
+		.repeat(messages) {
+			exec(http("Envoi du message")
+				.post("/conversation/send")
+				.header("Content-Type", "application/json;charset=UTF-8")
+				.body(StringBody("""{"subject":"fan-out","body":"<p>fan-out</p>","cc":[],"to":[""" + to + """]}"""))
+				.check(status.is(200)))
+			.pause(100 milliseconds)
+		}
+
+	setUp(scn.inject(rampUsers(senders) over (10 seconds))).protocols(httpProtocol)
+
+}
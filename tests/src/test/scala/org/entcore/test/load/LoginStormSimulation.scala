@@ -0,0 +1,47 @@
+package org.entcore.test.load
+
+import io.gatling.core.Predef._
+import io.gatling.http.Predef._
+import scala.concurrent.duration._
+
+import Auth._
+
+/**
+ * Morning login wave : every user of logins.csv (login;password) logs in within a short window.
+ * Compare the response time percentiles of the "Connexion" request between two versions of the platform.
+ * The number of users and the ramp duration can be set with -Dusers and -Dramp (in seconds).
+ * During the wave, -Dprobes users request the auth context without password check, their response time shows
+ * whether the password checks block the other requests of the auth module.
+ */
+class LoginStormSimulation extends Simulation {
+
+	val httpProtocol = http
+		.baseURL(System.getProperty("baseURL", "http://one"))
+		.disableFollowRedirect
+		.acceptHeader("*/*")
+		.acceptEncodingHeader("gzip, deflate")
+		.acceptLanguageHeader("fr,fr-fr;q=0.8,en-us;q=0.5,en;q=0.3")
+		.userAgentHeader("Mozilla/5.0 (X11; Linux i686; rv:17.0) Gecko/20131030 Firefox/17.0 Iceweasel/17.0.10")
+
+	val users = Integer.getInteger("users", 1000).intValue
+	val ramp = Integer.getInteger("ramp", 60).intValue
+	val probes = Integer.getInteger("probes", 10).intValue
+
+	val scn = scenario("Login storm")
+		.feed(ssv("logins.csv").circular)
+		.exec(login("${login}", "${password}"))
+
+	val probe = scenario("Auth probe")
+		.during(ramp seconds) {
+			exec(http("Contexte auth")
+				.get("/auth/context")
+				.check(status.is(200)))
+			.pause(200 milliseconds)
+		}
+
+	setUp(
+		scn.inject(rampUsers(users) over (ramp seconds)),
+		probe.inject(atOnceUsers(probes))
+	).protocols(httpProtocol)
+
+}
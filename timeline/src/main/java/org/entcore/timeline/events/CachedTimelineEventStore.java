@@ -109,38 +109,18 @@ public class CachedTimelineEventStore implements TimelineEventStore {
             copy.put("created", copy.getJsonObject("date"));
             copy.put("_id", resOriginal.getString("_id", ""));
             shouldAddToCache(copy).onComplete(resShouldAdd -> {
-                final List<Future<?>> futures = new ArrayList<>();
                 if(resShouldAdd.succeeded() && resShouldAdd.result()){
+                    final List<String> keys = new ArrayList<>(recipients.size());
                     for (Object recipient : recipients) {
                         final JsonObject recipientJson = (JsonObject) recipient;
-                        final Promise<Void> future = Promise.promise();
-                        futures.add(future.future());
-                        final String key = getKey(recipientJson.getString("userId"));
-                        cacheService.prependToList(key, copy.encode(), res -> {
-                            if (res.succeeded()) {
-                                if (res.result().intValue() > this.pageSize) {
-                                    cacheService.removeLastFromList(key, resRemove -> {
-                                        if (resRemove.succeeded()) {
-                                            future.complete(null);
-                                        } else {
-                                            future.fail(resRemove.cause());
-                                        }
-                                    });
-                                } else {
-                                    future.complete(null);
-                                }
-                            } else {
-                                future.fail(res.cause());
-                            }
-                        });
+                        keys.add(getKey(recipientJson.getString("userId")));
                     }
+                    cacheService.prependToListsAndTrim(keys, copy.encode(), this.pageSize, res -> {
+                        if (!res.succeeded()) {
+                            logger.error("Failed to add event:", res.cause());
+                        }
+                    });
                 }
-                //call original store
-                Future.all(futures).onComplete(res -> {
-                    if (!res.succeeded()) {
-                        logger.error("Failed to add event:", res.cause());
-                    }
-                });
             });
         });
     }
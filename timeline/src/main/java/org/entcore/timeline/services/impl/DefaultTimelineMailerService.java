@@ -19,7 +19,6 @@
 
 package org.entcore.timeline.services.impl;
 
-import com.mongodb.client.model.Filters;
 import fr.wseduc.mongodb.MongoDb;
 import fr.wseduc.mongodb.MongoQueryBuilder;
 import fr.wseduc.webutils.Either;
@@ -28,6 +27,8 @@ import fr.wseduc.webutils.Server;
 import fr.wseduc.webutils.email.EmailSender;
 import fr.wseduc.webutils.http.Renders;
 import io.vertx.core.AsyncResult;
+import io.vertx.core.Future;
+import io.vertx.core.Promise;
 import io.vertx.core.eventbus.DeliveryOptions;
 import io.vertx.core.shareddata.LocalMap;
 import org.entcore.common.email.EmailFactory;
@@ -55,6 +56,7 @@ import java.io.Writer;
 import java.text.SimpleDateFormat;
 import java.util.*;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 import static com.mongodb.client.model.Filters.*;
@@ -72,7 +74,10 @@ public class DefaultTimelineMailerService extends Renders implements TimelineMai
 	private HashMap<String, JsonObject> lazyEventsI18n;
 	private final EmailSender emailSender;
 	private final int USERS_LIMIT;
+	private final int DAILY_USERS_LIMIT;
+	private final int MAIL_CONCURRENCY;
 	private final long QUERY_TIMEOUT;
+	private static final int USER_NOTIFICATIONS_LIMIT = 1000;
 	private final MongoDb mongo = MongoDb.getInstance();
 	private final Neo4j neo4j = Neo4j.getInstance();
 
@@ -81,7 +86,9 @@ public class DefaultTimelineMailerService extends Renders implements TimelineMai
 		eb = Server.getEventBus(vertx);
 		EmailFactory emailFactory = new EmailFactory(this.vertx, config);
 		emailSender = emailFactory.getSenderWithPriority(EmailFactory.PRIORITY_VERY_LOW);
-		USERS_LIMIT = config.getInteger("users-loop-limit", 25);
+		USERS_LIMIT = config.getInteger("users-loop-limit", 500);
+		DAILY_USERS_LIMIT = config.getInteger("daily-users-loop-limit", Math.min(USERS_LIMIT, 50));
+		MAIL_CONCURRENCY = config.getInteger("digest-mail-concurrency", 10);
 		QUERY_TIMEOUT = config.getLong("query-timeout", 300000L);
 		super.init(vertx, config);
 	}
@@ -96,6 +103,8 @@ public class DefaultTimelineMailerService extends Renders implements TimelineMai
 		eb = Server.getEventBus(vertx);
 		emailSender = source.emailSender;
 		USERS_LIMIT = source.USERS_LIMIT;
+		DAILY_USERS_LIMIT = source.DAILY_USERS_LIMIT;
+		MAIL_CONCURRENCY = source.MAIL_CONCURRENCY;
 		QUERY_TIMEOUT = source.QUERY_TIMEOUT;
 		super.init(vertx, config);
 
@@ -293,10 +302,6 @@ public class DefaultTimelineMailerService extends Renders implements TimelineMai
 	}
 
 	protected void sendDailyMails(Optional<Date> forDate, int dayDelta, final Handler<Either<String, JsonObject>> handler){
-		final DefaultTimelineMailerService that = this;
-		final HttpServerRequest request = new JsonHttpServerRequest(new JsonObject());
-		final AtomicInteger userPagination = new AtomicInteger(0);
-		final AtomicInteger endPage = new AtomicInteger(0);
 		final Calendar dayDate = Calendar.getInstance();
 		if(forDate.isPresent()) dayDate.setTime(forDate.get());
 		dayDate.add(Calendar.DAY_OF_MONTH, dayDelta);
@@ -313,187 +318,7 @@ public class DefaultTimelineMailerService extends Renders implements TimelineMai
 		weekEndDate.set(Calendar.SECOND, 0);
 		weekEndDate.set(Calendar.MILLISECOND, 0);
 
-		final JsonObject results = new JsonObject()
-				.put("mails.sent", 0)
-				.put("users.ko", 0);
-		final JsonObject notificationsDefaults = new JsonObject();
-		final List<String> notifiedUsers = new ArrayList<>();
-
-		final Handler<Boolean> userContinuationHandler = new Handler<Boolean>() {
-
-			private final Handler<Boolean> continuation = this;
-			private final Handler<JsonArray> usersHandler = new Handler<JsonArray>() {
-				public void handle(final JsonArray users) {
-					final int nbUsers = users.size();
-					if(nbUsers == 0){
-						log.info("[DailyMails] Page0 : " + userPagination.get() + "/" + endPage.get());
-						continuation.handle(userPagination.get() != endPage.get());
-						return;
-					}
-					final AtomicInteger usersCountdown = new AtomicInteger(nbUsers);
-
-					final Handler<Void> usersEndHandler = new Handler<Void>() {
-						public void handle(Void v) {
-							if(usersCountdown.decrementAndGet() <= 0){
-								log.info("[DailyMails] Page : " + userPagination.get() + "/" + endPage.get());
-								continuation.handle(userPagination.get() != endPage.get());
-							}
-						}
-					};
-
-					final JsonArray userIds = new JsonArray();
-					for(Object userObj : users)
-						userIds.add(((JsonObject) userObj).getString("id", ""));
-					NotificationUtils.getUsersPreferences(eb, userIds, "language: uac.language, displayName: u.displayName", new Handler<JsonArray>(){
-						public void handle(JsonArray preferences) {
-							for(Object userObj : preferences){
-								final JsonObject userPrefs = (JsonObject) userObj;
-								final String userDomain = userPrefs.getString("lastDomain", I18n.DEFAULT_DOMAIN);
-								final String userScheme = userPrefs.getString("lastScheme", "http");
-								String mutableUserLanguage = "fr";
-								try {
-									mutableUserLanguage = getOrElse(new JsonObject(getOrElse(userPrefs.getString("language"), "{}", false)).getString("default-domain"), "fr", false);
-								} catch(Exception e) {
-									log.error("UserId [" + userPrefs.getString("userId", "") + "] - Bad language preferences format");
-								}
-								final String userLanguage = mutableUserLanguage;
-								final String userDisplayName = getOrElse(userPrefs.getString("displayName"), "", true);
-
-								getUserNotifications(userPrefs.getString("userId", ""), dayDate.getTime(), weekEndDate.getTime(), new Handler<JsonArray>(){
-									public void handle(JsonArray notifications) {
-										if(notifications.size() == 0){
-											usersEndHandler.handle(null);
-											return;
-										}
-
-										SimpleDateFormat formatter = new SimpleDateFormat("EEE, d MMM yyyy HH:mm:ss", Locale.forLanguageTag(userLanguage));
-										final JsonArray dates = new JsonArray();
-										final JsonArray templates = new JsonArray();
-
-										for(Object notificationObj : notifications){
-											JsonObject notification = (JsonObject) notificationObj;
-											final String notificationName =
-													notification.getString("type","").toLowerCase() + "." +
-															notification.getString("event-type", "").toLowerCase();
-											if(notificationsDefaults.getJsonObject(notificationName) == null)
-												continue;
-
-											JsonObject notificationPreference = userPrefs
-													.getJsonObject("preferences", new JsonObject())
-													.getJsonObject("config", new JsonObject())
-													.getJsonObject(notificationName, new JsonObject());
-											if(TimelineNotificationsLoader.Frequencies.DAILY.name().equals(
-													notificationPrefsMixin("defaultFrequency", notificationPreference, notificationsDefaults.getJsonObject(notificationName))) &&
-													!TimelineNotificationsLoader.Restrictions.INTERNAL.name().equals(
-															notificationPrefsMixin("restriction", notificationPreference, notificationsDefaults.getJsonObject(notificationName))) &&
-													!TimelineNotificationsLoader.Restrictions.HIDDEN.name().equals(
-															notificationPrefsMixin("restriction", notificationPreference, notificationsDefaults.getJsonObject(notificationName)))){
-												templates.add(new JsonObject()
-														.put("template", notificationsDefaults.getJsonObject(notificationName, new JsonObject()).getString("template", ""))
-														.put("params", notification.getJsonObject("params", new JsonObject())));
-												dates.add(formatter.format(MongoDb.parseIsoDate(notification.getJsonObject("date"))));
-											}
-										}
-										if(templates.size() > 0){
-
-											JsonObject templateParams = new JsonObject()
-													.put("nestedTemplatesArray", templates)
-													.put("notificationDates", dates)
-													.put("displayName", userDisplayName);
-
-											new DefaultTimelineMailerService(that).processTimelineTemplate(templateParams, "", "notifications/daily-mail.html",
-													userDomain, userScheme, userLanguage, false, new Handler<String>() {
-														public void handle(final String processedTemplate) {
-															//On completion : log
-															final Handler<AsyncResult<Message<JsonObject>>> completionHandler = event -> {
-																if(event.failed() || "error".equals(event.result().body().getString("status", "error"))){
-																	log.error("[Timeline daily emails] Error while sending mail : ", event.cause());
-																	results.put("users.ko", results.getInteger("users.ko") + 1);
-																} else {
-																	results.put("mails.sent", results.getInteger("mails.sent") + 1);
-																}
-																usersEndHandler.handle(null);
-															};
-
-															//Translate mail title
-															JsonArray keys = new JsonArray()
-																	.add("timeline.daily.mail.subject.header");
-															translateTimeline(keys, userDomain, userLanguage, new Handler<JsonArray>() {
-																public void handle(JsonArray translations) {
-																	//Send mail containing the "daily" notifications
-																	emailSender.sendEmail(config, request,
-																			userPrefs.getString("userMail", ""),
-																			null,
-																			null,
-																			translations.getString(0),
-																			processedTemplate,
-																			null,
-																			false,
-																			completionHandler);
-																}
-															});
-														}
-													});
-										} else {
-											usersEndHandler.handle(null);
-										}
-
-									}
-								});
-							}
-						}
-					});
-				}
-			};
-
-			public void handle(Boolean continuation) {
-				if(continuation){
-					getImpactedUsers(notifiedUsers, userPagination.getAndIncrement(), new Handler<Either<String,JsonArray>>() {
-						public void handle(Either<String, JsonArray> event) {
-							if(event.isLeft()){
-								log.error("[sendDailyMails] Error while retrieving impacted users : " + event.left().getValue());
-								handler.handle(new Either.Left<String, JsonObject>(event.left().getValue()));
-							} else {
-								JsonArray users = event.right().getValue();
-								usersHandler.handle(users);
-							}
-						}
-					});
-				} else {
-					handler.handle(new Either.Right<String, JsonObject>(results));
-				}
-			}
-		};
-
-		getRecipientsUsers(dayDate.getTime(), weekEndDate.getTime(), new Handler<JsonArray>() {
-			@Override
-			public void handle(JsonArray event) {
-				if (event != null && event.size() > 0) {
-					notifiedUsers.addAll(event.getList());
-					endPage.set((event.size() / USERS_LIMIT) + (event.size() % USERS_LIMIT != 0 ? 1 : 0));
-					results.put("users.recipients", notifiedUsers.size());
-					results.put("users.pages", endPage.get());
-				} else {
-					results.put("users.recipients", 0);
-					results.put("users.pages", 0);
-					handler.handle(new Either.Right<String, JsonObject>(results));
-					return;
-				}
-				getNotificationsDefaults(new Handler<JsonArray>() {
-					public void handle ( final JsonArray notifications){
-						if (notifications == null) {
-							log.error("[sendDailyMails] Error while retrieving notifications defaults.");
-						} else {
-							for (Object notifObj : notifications) {
-								final JsonObject notif = (JsonObject) notifObj;
-								notificationsDefaults.put(notif.getString("key", ""), notif);
-							}
-							userContinuationHandler.handle(true);
-						}
-					}
-				});
-			}
-		});
+		sendDigestMails(TimelineNotificationsLoader.Frequencies.DAILY, dayDate.getTime(), weekEndDate.getTime(), handler);
 	}
 
 	@Override
@@ -507,10 +332,6 @@ public class DefaultTimelineMailerService extends Renders implements TimelineMai
 	}
 
 	protected void sendWeeklyMails(Optional<Date> forDate, int dayDelta, final Handler<Either<String, JsonObject>> handler) {
-		final DefaultTimelineMailerService that = this;
-		final HttpServerRequest request = new JsonHttpServerRequest(new JsonObject());
-		final AtomicInteger userPagination = new AtomicInteger(0);
-		final AtomicInteger endPage = new AtomicInteger(0);
 		final Calendar weekDate = Calendar.getInstance();
 		if(forDate.isPresent()) weekDate.setTime(forDate.get());
 		weekDate.add(Calendar.DAY_OF_MONTH, dayDelta - 6);
@@ -527,206 +348,323 @@ public class DefaultTimelineMailerService extends Renders implements TimelineMai
 		weekEndDate.set(Calendar.SECOND, 0);
 		weekEndDate.set(Calendar.MILLISECOND, 0);
 
-		final JsonObject results = new JsonObject()
-				.put("mails.sent", 0)
-				.put("users.ko", 0);
-		final JsonObject notificationsDefaults = new JsonObject();
-		final List<String> notifiedUsers = new ArrayList<>();
-
-		final Handler<Boolean> userContinuationHandler = new Handler<Boolean>() {
-
-			private final Handler<Boolean> continuation = this;
-			private final Handler<JsonArray> usersHandler = new Handler<JsonArray>() {
-				public void handle(final JsonArray users) {
-					final int nbUsers = users.size();
-					if (nbUsers == 0) {
-						log.info("[WeeklyMails] Page0 : " + userPagination.get() + "/" + endPage.get());
-						continuation.handle(userPagination.get() != endPage.get());
-						return;
-					}
-					final AtomicInteger usersCountdown = new AtomicInteger(nbUsers);
-
-					final Handler<Void> usersEndHandler = new Handler<Void>() {
-						public void handle(Void v) {
-							if (usersCountdown.decrementAndGet() <= 0) {
-								log.info("[WeeklyMails] Page : " + userPagination.get() + "/" + endPage.get());
-								continuation.handle(userPagination.get() != endPage.get());
-							}
-						}
-					};
-
-					final JsonArray userIds = new JsonArray();
-					for (Object userObj : users)
-						userIds.add(((JsonObject) userObj).getString("id", ""));
-					NotificationUtils.getUsersPreferences(eb, userIds, "language: uac.language, displayName: u.displayName", new Handler<JsonArray>() {
-						public void handle(JsonArray preferences) {
-							for (Object userObj : preferences) {
-								final JsonObject userPrefs = (JsonObject) userObj;
-								final String userDomain = userPrefs.getString("lastDomain", I18n.DEFAULT_DOMAIN);
-								final String userScheme = userPrefs.getString("lastScheme", "http");
-								String mutableUserLanguage = "fr";
-								try {
-									mutableUserLanguage = getOrElse(new JsonObject(getOrElse(userPrefs.getString("language"), "{}", false)).getString("default-domain"), "fr", false);
-								} catch (Exception e) {
-									log.error("UserId [" + userPrefs.getString("userId", "") + "] - Bad language preferences format");
-								}
-								final String userLanguage = mutableUserLanguage;
-								final String userDisplayName = getOrElse(userPrefs.getString("displayName"), "", true);
-
-								getAggregatedUserNotifications(userPrefs.getString("userId", ""), weekDate.getTime(), weekEndDate.getTime(), new Handler<JsonArray>() {
-									public void handle(JsonArray notifications) {
-										if (notifications.size() == 0) {
-											usersEndHandler.handle(null);
-											return;
-										}
-
-										final JsonArray weeklyNotifications = new JsonArray();
-
-										for (Object notificationObj : notifications) {
-											JsonObject notification = (JsonObject) notificationObj;
-											final String notificationName =
-													notification.getString("type", "").toLowerCase() + "." +
-															notification.getString("event-type", "").toLowerCase();
-											if (notificationsDefaults.getJsonObject(notificationName) == null)
-												continue;
-
-											JsonObject notificationPreference = userPrefs
-													.getJsonObject("preferences", new JsonObject())
-													.getJsonObject("config", new JsonObject())
-													.getJsonObject(notificationName, new JsonObject());
-											if (TimelineNotificationsLoader.Frequencies.WEEKLY.name().equals(
-													notificationPrefsMixin("defaultFrequency", notificationPreference, notificationsDefaults.getJsonObject(notificationName))) &&
-													!TimelineNotificationsLoader.Restrictions.INTERNAL.name().equals(
-															notificationPrefsMixin("restriction", notificationPreference, notificationsDefaults.getJsonObject(notificationName))) &&
-													!TimelineNotificationsLoader.Restrictions.HIDDEN.name().equals(
-															notificationPrefsMixin("restriction", notificationPreference, notificationsDefaults.getJsonObject(notificationName)))) {
-												notification.put("notificationName", notificationName);
-												weeklyNotifications.add(notification);
-											}
-										}
-
-										final JsonObject weeklyNotificationsObj = new JsonObject();
-										final JsonArray weeklyNotificationsGroupedArray = new JsonArray();
-										for (Object notif : weeklyNotifications) {
-											JsonObject notification = (JsonObject) notif;
-											if (!weeklyNotificationsObj.containsKey(notification.getString("type").toLowerCase()))
-												weeklyNotificationsObj.put(notification.getString("type").toLowerCase(), new JsonObject()
-														.put("link", notificationsDefaults
-																.getJsonObject(notification.getString("notificationName")).getString("app-address", ""))
-														.put("event-types", new JsonArray()));
-											weeklyNotificationsObj
-													.getJsonObject(notification.getString("type").toLowerCase())
-													.getJsonArray(("event-types"), new JsonArray())
-													.add(notification);
-										}
-
-										for (String key : weeklyNotificationsObj.getMap().keySet()) {
-											weeklyNotificationsGroupedArray.add(new JsonObject()
-													.put("type", key)
-													.put("link", weeklyNotificationsObj.getJsonObject(key).getString("link", ""))
-													.put("event-types", weeklyNotificationsObj.getJsonObject(key).getJsonArray("event-types")));
-										}
-
-										if (weeklyNotifications.size() > 0) {
-
-											JsonObject templateParams = new JsonObject().put("notifications", weeklyNotificationsGroupedArray);
-											templateParams.put("displayName", userDisplayName);
-
-											new DefaultTimelineMailerService(that).processTimelineTemplate(templateParams, "", "notifications/weekly-mail.html",
-													userDomain, userScheme, userLanguage, false, new Handler<String>() {
-														public void handle(final String processedTemplate) {
-															//On completion : log
-															final Handler<AsyncResult<Message<JsonObject>>> completionHandler = event -> {
-																if (event.failed() || "error".equals(event.result().body().getString("status", "error"))) {
-																	log.error("[Timeline weekly emails] Error while sending mail : ", event.cause());
-																	results.put("users.ko", results.getInteger("users.ko") + 1);
-																} else {
-																	results.put("mails.sent", results.getInteger("mails.sent") + 1);
-																}
-																usersEndHandler.handle(null);
-															};
-
-															//Translate mail title
-															JsonArray keys = new JsonArray()
-																	.add("timeline.weekly.mail.subject.header");
-															translateTimeline(keys, userDomain, userLanguage, new Handler<JsonArray>() {
-																public void handle(JsonArray translations) {
-																	//Send mail containing the "weekly" notifications
-																	emailSender.sendEmail(config, request,
-																			userPrefs.getString("userMail", ""),
-																			null,
-																			null,
-																			translations.getString(0),
-																			processedTemplate,
-																			null,
-																			false,
-																			completionHandler);
-																}
-															});
-														}
-													});
-										} else {
-											usersEndHandler.handle(null);
-										}
+		sendDigestMails(TimelineNotificationsLoader.Frequencies.WEEKLY, weekDate.getTime(), weekEndDate.getTime(), handler);
+	}
 
-									}
-								});
-							}
-						}
-					});
-				}
-			};
-
-			public void handle(Boolean continuation) {
-				if (continuation) {
-					getImpactedUsers(notifiedUsers, userPagination.getAndIncrement(), new Handler<Either<String, JsonArray>>() {
-						public void handle(Either<String, JsonArray> event) {
-							if (event.isLeft()) {
-								log.error("[sendWeeklyMails] Error while retrieving impacted users : " + event.left().getValue());
-								handler.handle(new Either.Left<String, JsonObject>(event.left().getValue()));
-							} else {
-								JsonArray users = event.right().getValue();
-								usersHandler.handle(users);
-							}
-						}
-					});
-				} else {
-					handler.handle(new Either.Right<String, JsonObject>(results));
-				}
-			}
-		};
-		getRecipientsUsers(weekDate.getTime(), weekEndDate.getTime(), new Handler<JsonArray>() {
+	/**
+	 * Sends the daily or weekly digests of the notifications between two dates.
+	 * <p>
+	 * The recipients are processed by batches of {@code users-loop-limit} users, {@code daily-users-loop-limit} for
+	 * the daily digests which carry the parameters of every notification : for each batch, the users having an email
+	 * address, their preferences and their notifications (grouped by recipient in a single aggregation) are fetched
+	 * with one query each, then the mails are rendered and sent with at most {@code digest-mail-concurrency} mails in
+	 * progress. A batch whose notifications do not fit in one cursor batch is split until they do. The users of a
+	 * batch whose notifications could not be fetched are counted in {@code users.ko}.
+	 * </p>
+	 */
+	private void sendDigestMails(final TimelineNotificationsLoader.Frequencies frequency, final Date from, final Date to,
+			final Handler<Either<String, JsonObject>> handler) {
+		final Digest digest = new Digest(frequency, from, to,
+				TimelineNotificationsLoader.Frequencies.DAILY.equals(frequency) ? DAILY_USERS_LIMIT : USERS_LIMIT);
+		getRecipientsUsers(from, to, new Handler<JsonArray>() {
 			@Override
 			public void handle(JsonArray event) {
+				digest.roundTrips.incrementAndGet();
 				if (event != null && event.size() > 0) {
-					notifiedUsers.addAll(event.getList());
-					endPage.set((event.size() / USERS_LIMIT) + (event.size() % USERS_LIMIT != 0 ? 1 : 0));
-					results.put("users.recipients", notifiedUsers.size());
-					results.put("users.pages", endPage.get());
+					digest.recipients.addAll(event.getList());
+					digest.results.put("users.recipients", digest.recipients.size());
+					digest.results.put("users.pages", (event.size() / digest.batchSize) + (event.size() % digest.batchSize != 0 ? 1 : 0));
 				} else {
-					results.put("users.recipients", 0);
-					results.put("users.pages", 0);
-					handler.handle(new Either.Right<String, JsonObject>(results));
+					digest.results.put("users.recipients", 0);
+					digest.results.put("users.pages", 0);
+					handler.handle(new Either.Right<String, JsonObject>(digest.end()));
 					return;
 				}
 				getNotificationsDefaults(new Handler<JsonArray>() {
 					public void handle(final JsonArray notifications) {
+						digest.roundTrips.incrementAndGet();
 						if (notifications == null) {
-							log.error("[sendWeeklyMails] Error while retrieving notifications defaults.");
-						} else {
-							for (Object notifObj : notifications) {
-								final JsonObject notif = (JsonObject) notifObj;
-								notificationsDefaults.put(notif.getString("key", ""), notif);
-							}
-							userContinuationHandler.handle(true);
+							log.error(digest.logPrefix + " Error while retrieving notifications defaults.");
+							handler.handle(new Either.Left<String, JsonObject>("notifications.defaults.error"));
+							return;
+						}
+						for (Object notifObj : notifications) {
+							final JsonObject notif = (JsonObject) notifObj;
+							digest.notificationsDefaults.put(notif.getString("key", ""), notif);
 						}
+						sendDigestBatch(digest, 0, handler);
 					}
 				});
+			}
+		});
+	}
 
+	private void sendDigestBatch(final Digest digest, final int page, final Handler<Either<String, JsonObject>> handler) {
+		final int fromIdx = page * digest.batchSize;
+		if (fromIdx >= digest.recipients.size()) {
+			final JsonObject results = digest.end();
+			log.info(digest.logPrefix + " " + results.encode());
+			handler.handle(new Either.Right<String, JsonObject>(results));
+			return;
+		}
+		final List<String> recipients = digest.recipients.subList(fromIdx,
+				Math.min(fromIdx + digest.batchSize, digest.recipients.size()));
+		final Handler<Void> next = v -> {
+			log.info(digest.logPrefix + " Page : " + (page + 1) + "/" + digest.results.getInteger("users.pages"));
+			sendDigestBatch(digest, page + 1, handler);
+		};
+		getImpactedUsers(recipients, event -> {
+			digest.roundTrips.incrementAndGet();
+			if (event.isLeft()) {
+				log.error(digest.logPrefix + " Error while retrieving impacted users : " + event.left().getValue());
+				handler.handle(new Either.Left<String, JsonObject>(event.left().getValue()));
+				return;
 			}
+			final JsonArray userIds = new JsonArray();
+			for (Object userObj : event.right().getValue()) {
+				userIds.add(((JsonObject) userObj).getString("id", ""));
+			}
+			if (userIds.isEmpty()) {
+				next.handle(null);
+				return;
+			}
+			NotificationUtils.getUsersPreferences(eb, userIds, "language: uac.language, displayName: u.displayName", preferences -> {
+				digest.roundTrips.incrementAndGet();
+				if (preferences == null) {
+					log.error(digest.logPrefix + " Error while retrieving users preferences.");
+					digest.results.put("users.ko", digest.results.getInteger("users.ko") + userIds.size());
+					next.handle(null);
+					return;
+				}
+				getRecipientsNotifications(digest, userIds, notificationsResult -> {
+					if (notificationsResult.isLeft()) {
+						log.error(digest.logPrefix + " Error while retrieving notifications : " + notificationsResult.left().getValue());
+						digest.results.put("users.ko", digest.results.getInteger("users.ko") + userIds.size());
+						next.handle(null);
+						return;
+					}
+					final Map<String, JsonArray> notificationsByUser = notificationsResult.right().getValue();
+					final List<JsonObject> users = new ArrayList<>();
+					for (Object userObj : preferences) {
+						final JsonObject userPrefs = (JsonObject) userObj;
+						if (notificationsByUser.containsKey(userPrefs.getString("userId", ""))) {
+							users.add(userPrefs);
+						}
+					}
+					forEachBounded(users, MAIL_CONCURRENCY, userPrefs -> sendDigestMail(digest, userPrefs,
+							notificationsByUser.get(userPrefs.getString("userId", "")))).onComplete(ar -> next.handle(null));
+				});
+			});
 		});
 	}
 
+	private Future<Void> sendDigestMail(final Digest digest, final JsonObject userPrefs, final JsonArray notifications) {
+		final Promise<Void> promise = Promise.promise();
+		final String userDomain = userPrefs.getString("lastDomain", I18n.DEFAULT_DOMAIN);
+		final String userScheme = userPrefs.getString("lastScheme", "http");
+		String mutableUserLanguage = "fr";
+		try {
+			mutableUserLanguage = getOrElse(new JsonObject(getOrElse(userPrefs.getString("language"), "{}", false)).getString("default-domain"), "fr", false);
+		} catch(Exception e) {
+			log.error("UserId [" + userPrefs.getString("userId", "") + "] - Bad language preferences format");
+		}
+		final String userLanguage = mutableUserLanguage;
+		final JsonObject templateParams = TimelineNotificationsLoader.Frequencies.DAILY.equals(digest.frequency) ?
+				dailyMailParameters(digest, userPrefs, notifications, userLanguage) :
+				weeklyMailParameters(digest, userPrefs, notifications);
+		if (templateParams == null) {
+			promise.complete();
+			return promise.future();
+		}
+		templateParams.put("displayName", getOrElse(userPrefs.getString("displayName"), "", true));
+		final String name = digest.frequency.name().toLowerCase();
+		new DefaultTimelineMailerService(this).processTimelineTemplate(templateParams, "", "notifications/" + name + "-mail.html",
+				userDomain, userScheme, userLanguage, false, new Handler<String>() {
+					public void handle(final String processedTemplate) {
+						//On completion : log
+						final Handler<AsyncResult<Message<JsonObject>>> completionHandler = event -> {
+							if(event.failed() || "error".equals(event.result().body().getString("status", "error"))){
+								log.error("[Timeline " + name + " emails] Error while sending mail : ", event.cause());
+								digest.results.put("users.ko", digest.results.getInteger("users.ko") + 1);
+							} else {
+								digest.results.put("mails.sent", digest.results.getInteger("mails.sent") + 1);
+							}
+							promise.complete();
+						};
+
+						//Translate mail title
+						JsonArray keys = new JsonArray()
+								.add("timeline." + name + ".mail.subject.header");
+						translateTimeline(keys, userDomain, userLanguage, new Handler<JsonArray>() {
+							public void handle(JsonArray translations) {
+								//Send mail containing the notifications of the period
+								emailSender.sendEmail(config, digest.request,
+										userPrefs.getString("userMail", ""),
+										null,
+										null,
+										translations.getString(0),
+										processedTemplate,
+										null,
+										false,
+										completionHandler);
+							}
+						});
+					}
+				});
+		return promise.future();
+	}
+
+	/**
+	 * @return The parameters of the daily mail template, null if no notification has to be sent by mail
+	 */
+	private JsonObject dailyMailParameters(Digest digest, JsonObject userPrefs, JsonArray notifications, String userLanguage) {
+		SimpleDateFormat formatter = new SimpleDateFormat("EEE, d MMM yyyy HH:mm:ss", Locale.forLanguageTag(userLanguage));
+		final JsonArray dates = new JsonArray();
+		final JsonArray templates = new JsonArray();
+
+		for(Object notificationObj : notifications){
+			JsonObject notification = (JsonObject) notificationObj;
+			final String notificationName = notificationName(notification);
+			if(!isSentByMail(digest, userPrefs, notificationName))
+				continue;
+			templates.add(new JsonObject()
+					.put("template", digest.notificationsDefaults.getJsonObject(notificationName, new JsonObject()).getString("template", ""))
+					.put("params", notification.getJsonObject("params", new JsonObject())));
+			dates.add(formatter.format(MongoDb.parseIsoDate(notification.getJsonObject("date"))));
+		}
+		if (templates.isEmpty()) {
+			return null;
+		}
+		return new JsonObject()
+				.put("nestedTemplatesArray", templates)
+				.put("notificationDates", dates);
+	}
+
+	/**
+	 * @return The parameters of the weekly mail template, null if no notification has to be sent by mail
+	 */
+	private JsonObject weeklyMailParameters(Digest digest, JsonObject userPrefs, JsonArray notifications) {
+		final JsonObject weeklyNotificationsObj = new JsonObject();
+		for (Object notificationObj : notifications) {
+			JsonObject notification = (JsonObject) notificationObj;
+			final String notificationName = notificationName(notification);
+			if (!isSentByMail(digest, userPrefs, notificationName))
+				continue;
+			notification.put("notificationName", notificationName);
+			final String type = notification.getString("type").toLowerCase();
+			if (!weeklyNotificationsObj.containsKey(type))
+				weeklyNotificationsObj.put(type, new JsonObject()
+						.put("link", digest.notificationsDefaults.getJsonObject(notificationName).getString("app-address", ""))
+						.put("event-types", new JsonArray()));
+			weeklyNotificationsObj.getJsonObject(type).getJsonArray("event-types").add(notification);
+		}
+		if (weeklyNotificationsObj.isEmpty()) {
+			return null;
+		}
+		final JsonArray weeklyNotificationsGroupedArray = new JsonArray();
+		for (String key : weeklyNotificationsObj.getMap().keySet()) {
+			weeklyNotificationsGroupedArray.add(new JsonObject()
+					.put("type", key)
+					.put("link", weeklyNotificationsObj.getJsonObject(key).getString("link", ""))
+					.put("event-types", weeklyNotificationsObj.getJsonObject(key).getJsonArray("event-types")));
+		}
+		return new JsonObject().put("notifications", weeklyNotificationsGroupedArray);
+	}
+
+	private static String notificationName(JsonObject notification) {
+		return notification.getString("type", "").toLowerCase() + "." +
+				notification.getString("event-type", "").toLowerCase();
+	}
+
+	/**
+	 * @return true if the notification is sent in the digest of the user, according to its preferences or the defaults
+	 */
+	private boolean isSentByMail(Digest digest, JsonObject userPrefs, String notificationName) {
+		final JsonObject defaults = digest.notificationsDefaults.getJsonObject(notificationName);
+		if (defaults == null) {
+			return false;
+		}
+		JsonObject notificationPreference = userPrefs
+				.getJsonObject("preferences", new JsonObject())
+				.getJsonObject("config", new JsonObject())
+				.getJsonObject(notificationName, new JsonObject());
+		final String restriction = notificationPrefsMixin("restriction", notificationPreference, defaults);
+		return digest.frequency.name().equals(notificationPrefsMixin("defaultFrequency", notificationPreference, defaults)) &&
+				!TimelineNotificationsLoader.Restrictions.INTERNAL.name().equals(restriction) &&
+				!TimelineNotificationsLoader.Restrictions.HIDDEN.name().equals(restriction);
+	}
+
+	/**
+	 * Runs the action on every item, with at most {@code concurrency} actions in progress.
+	 * The returned future completes when every action has completed, whether it succeeded or failed.
+	 */
+	private static <T> Future<Void> forEachBounded(List<T> items, int concurrency, Function<T, Future<Void>> action) {
+		final Promise<Void> promise = Promise.promise();
+		if (items.isEmpty()) {
+			promise.complete();
+			return promise.future();
+		}
+		final AtomicInteger nextIdx = new AtomicInteger();
+		final AtomicInteger completed = new AtomicInteger();
+		final Handler<Void> worker = new Handler<Void>() {
+			public void handle(Void v) {
+				final int i = nextIdx.getAndIncrement();
+				if (i >= items.size()) {
+					return;
+				}
+				Future<Void> f;
+				try {
+					f = action.apply(items.get(i));
+				} catch (RuntimeException e) {
+					log.error("Error while sending digest mail", e);
+					f = Future.failedFuture(e);
+				}
+				f.onComplete(ar -> {
+					if (completed.incrementAndGet() == items.size()) {
+						promise.complete();
+					} else {
+						handle(null);
+					}
+				});
+			}
+		};
+		for (int i = 0; i < Math.min(concurrency, items.size()); i++) {
+			worker.handle(null);
+		}
+		return promise.future();
+	}
+
+	/** State of a daily or weekly digest run. */
+	private static final class Digest {
+		private final TimelineNotificationsLoader.Frequencies frequency;
+		private final Date from;
+		private final Date to;
+		private final String logPrefix;
+		private final long start = System.currentTimeMillis();
+		private final HttpServerRequest request = new JsonHttpServerRequest(new JsonObject());
+		private final List<String> recipients = new ArrayList<>();
+		private final JsonObject notificationsDefaults = new JsonObject();
+		private final AtomicInteger roundTrips = new AtomicInteger();
+		private final int batchSize;
+		private final JsonObject results = new JsonObject()
+				.put("mails.sent", 0)
+				.put("users.ko", 0);
+
+		private Digest(TimelineNotificationsLoader.Frequencies frequency, Date from, Date to, int batchSize) {
+			this.frequency = frequency;
+			this.from = from;
+			this.to = to;
+			this.batchSize = batchSize;
+			this.logPrefix = TimelineNotificationsLoader.Frequencies.DAILY.equals(frequency) ? "[DailyMails]" : "[WeeklyMails]";
+		}
+
+		private JsonObject end() {
+			return results
+					.put("db.round-trips", roundTrips.get())
+					.put("duration", System.currentTimeMillis() - start);
+		}
+	}
+
 		@Override
 	public void getNotificationsDefaults(final Handler<JsonArray> handler) {
 		configService.list(new Handler<Either<String, JsonArray>>() {
@@ -758,38 +696,6 @@ public class DefaultTimelineMailerService extends Renders implements TimelineMai
 		});
 	}
 
-	/**
-	 * Retrieves all timeline notifications from mongodb for a single user, from a specific date in the past.
-	 *
-	 * @param userId : Userid
-	 * @param from : The starting date
-	 * @param handler : Handles the notifications
-	 */
-	private void getUserNotifications(String userId, Date from, Date to, final Handler<JsonArray> handler){
-		JsonObject matcher = MongoQueryBuilder.build(
-				and(
-						Filters.elemMatch("recipients", Filters.eq("userId", userId)),
-						gte("date", from),
-						lt("date",to)
-						));
-
-		JsonObject keys = new JsonObject()
-				.put("_id", 0)
-				.put("type", 1)
-				.put("event-type", 1)
-				.put("params", 1)
-				.put("date", 1);
-		mongo.find("timeline", matcher, null, keys, new Handler<Message<JsonObject>>() {
-			public void handle(Message<JsonObject> event) {
-				if("error".equals(event.body().getString("status", "error"))){
-					handler.handle(new JsonArray());
-				} else {
-					handler.handle(event.body().getJsonArray("results"));
-				}
-			}
-		});
-	}
-
 	/**
 	 * Returns either user preferences or defaults when the user has not chosen specific values.
 	 *
@@ -836,41 +742,71 @@ public class DefaultTimelineMailerService extends Renders implements TimelineMai
 	}
 
 	/**
-	 * Retrieves users having an email address, paginated.
+	 * Retrieves the users having an email address among a batch of recipients.
 	 *
-	 * @param page : Page number
+	 * @param recipients : Ids of the recipients of the batch
 	 * @param handler : Handles the users
 	 */
-	private void getImpactedUsers(List<String> recipients, int page, final Handler<Either<String, JsonArray>> handler){
-		int fromIdx = page * USERS_LIMIT;
-		int toIdx = page * USERS_LIMIT + USERS_LIMIT;
-		if (fromIdx >= recipients.size()) {
-			handler.handle(new Either.Right<String, JsonArray>(new JsonArray()));
-			return;
-		}
-		if (toIdx > recipients.size()) {
-			toIdx = recipients.size();
-		}
+	private void getImpactedUsers(List<String> recipients, final Handler<Either<String, JsonArray>> handler){
 		final String query =
 				"MATCH (u:User)-[:IN]->(g:Group)-[:AUTHORIZED]->(r:Role)-[:AUTHORIZE]->(act:WorkflowAction) " +
 				"WHERE u.id IN {notifiedUsers} AND u.activationCode IS NULL AND u.email IS NOT NULL AND length(u.email) > 0 " +
 				"AND act.name = \"org.entcore.timeline.controllers.TimelineController|mixinConfig\"" +
 				"RETURN DISTINCT u.email as mail, u.id as id ";
 		JsonObject params = new JsonObject()
-				.put("notifiedUsers", new JsonArray(recipients.subList(fromIdx, toIdx)));
+				.put("notifiedUsers", new JsonArray(new ArrayList<>(recipients)));
 		neo4j.execute(query, params, Neo4jResult.validResultHandler(handler));
 	}
 
 	/**
-	 * Retrieves an aggregated list of notifications from mongodb for a single user.
+	 * Retrieves the notifications of a batch of users from mongodb, grouped by recipient in a single aggregation.
 	 *
-	 *  Notifications are grouped by type & event-type.
-	 * @param userId : Userid
-	 * @param from : Starting date in the past
-	 * @param to : End date used to filter notifications
-	 * @param handler: Handles the notifications
+	 * Only the first batch of the cursor is read, it is limited to 16MB : when the cursor has more results, the users
+	 * are split in two halves fetched one after the other, down to a single user who then gets their
+	 * {@value #USER_NOTIFICATIONS_LIMIT} most recent notifications.
+	 * @param digest : Frequency and period of the digest
+	 * @param userIds : Ids of the recipients
+	 * @param handler: Handles the notifications by user id
 	 */
-	private void getAggregatedUserNotifications(String userId, Date from, Date to, final Handler<JsonArray> handler){
+	private void getRecipientsNotifications(Digest digest, JsonArray userIds,
+			final Handler<Either<String, Map<String, JsonArray>>> handler) {
+		aggregateRecipientsNotifications(digest, userIds, 0, result -> {
+			if (result.isRight() || !"notifications.aggregation.truncated".equals(result.left().getValue())) {
+				handler.handle(result);
+				return;
+			}
+			if (userIds.size() == 1) {
+				log.warn(digest.logPrefix + " Too many notifications for user " + userIds.getString(0) +
+						", only the " + USER_NOTIFICATIONS_LIMIT + " most recent are sent.");
+				aggregateRecipientsNotifications(digest, userIds, USER_NOTIFICATIONS_LIMIT, handler);
+				return;
+			}
+			final int half = userIds.size() / 2;
+			final JsonArray firstHalf = new JsonArray(new ArrayList<>(userIds.getList().subList(0, half)));
+			final JsonArray secondHalf = new JsonArray(new ArrayList<>(userIds.getList().subList(half, userIds.size())));
+			getRecipientsNotifications(digest, firstHalf, firstResult -> {
+				if (firstResult.isLeft()) {
+					handler.handle(firstResult);
+					return;
+				}
+				getRecipientsNotifications(digest, secondHalf, secondResult -> {
+					if (secondResult.isRight()) {
+						secondResult.right().getValue().putAll(firstResult.right().getValue());
+					}
+					handler.handle(secondResult);
+				});
+			});
+		});
+	}
+
+	/**
+	 * Daily digests get every notification, weekly digests get the notifications counted by type & event-type.
+	 * @param limit : Maximum number of notifications by user, the most recent ones, 0 for all of them. Only meant for
+	 * a single user : the limit applies to the notifications of all the users.
+	 * @param handler : Left {@code notifications.aggregation.truncated} if the results exceed the first cursor batch
+	 */
+	private void aggregateRecipientsNotifications(Digest digest, JsonArray userIds, int limit,
+			final Handler<Either<String, Map<String, JsonArray>>> handler){
 		final JsonObject aggregation = new JsonObject();
 		JsonArray pipeline = new JsonArray();
 		aggregation
@@ -879,32 +815,56 @@ public class DefaultTimelineMailerService extends Renders implements TimelineMai
 				.put("pipeline", pipeline)
 				.put("cursor", new JsonObject().put("batchSize", Integer.MAX_VALUE));
 
+		final List<String> ids = userIds.getList();
 		JsonObject matcher = MongoQueryBuilder.build(
 				and(
-						Filters.elemMatch("recipients", Filters.eq("userId", userId)),
-						gte("date", from),
-						lt("date", to)
+						in("recipients.userId", ids),
+						gte("date", digest.from),
+						lt("date", digest.to)
 						));
-		JsonObject grouper = new JsonObject("{ \"_id\" : { \"type\": \"$type\", \"event-type\": \"$event-type\"}, \"count\": { \"$sum\": 1 } }");
-		JsonObject transformer = new JsonObject("{ \"type\": \"$_id.type\", \"event-type\": \"$_id.event-type\", \"count\": 1, \"_id\": 0 }");
 
 		pipeline.add(new JsonObject().put("$match", matcher));
-		pipeline.add(new JsonObject().put("$group", grouper));
-		pipeline.add(new JsonObject().put("$project", transformer));
+		pipeline.add(new JsonObject().put("$project", new JsonObject()
+				.put("_id", 0).put("type", 1).put("event-type", 1).put("params", 1).put("date", 1)
+				.put("recipients.userId", 1)));
+		pipeline.add(new JsonObject().put("$unwind", "$recipients"));
+		pipeline.add(new JsonObject().put("$match", MongoQueryBuilder.build(in("recipients.userId", ids))));
+		if (limit > 0) {
+			pipeline.add(new JsonObject().put("$sort", new JsonObject().put("date", -1)));
+			pipeline.add(new JsonObject().put("$limit", limit));
+		}
+		if (TimelineNotificationsLoader.Frequencies.DAILY.equals(digest.frequency)) {
+			pipeline.add(new JsonObject().put("$group", new JsonObject("{ \"_id\" : \"$recipients.userId\", " +
+					"\"notifications\": { \"$push\": { \"type\": \"$type\", \"event-type\": \"$event-type\", " +
+					"\"params\": \"$params\", \"date\": \"$date\" } } }")));
+		} else {
+			pipeline.add(new JsonObject().put("$group", new JsonObject("{ \"_id\" : { \"userId\": \"$recipients.userId\", " +
+					"\"type\": \"$type\", \"event-type\": \"$event-type\"}, \"count\": { \"$sum\": 1 } }")));
+			pipeline.add(new JsonObject().put("$group", new JsonObject("{ \"_id\" : \"$_id.userId\", " +
+					"\"notifications\": { \"$push\": { \"type\": \"$_id.type\", \"event-type\": \"$_id.event-type\", " +
+					"\"count\": \"$count\" } } }")));
+		}
 
-		mongo.command(aggregation.toString(), new Handler<Message<JsonObject>>() {
-			@Override
-			public void handle(Message<JsonObject> event) {
-				if("error".equals(event.body().getString("status", "error"))){
-					handler.handle(new JsonArray());
-				} else {
-					handler.handle(
-							event.body().getJsonObject("result", new JsonObject())
-									.getJsonObject("cursor", new JsonObject())
-									.getJsonArray("firstBatch", new JsonArray()));
-				}
+		mongo.command(aggregation.toString(), new DeliveryOptions().setSendTimeout(QUERY_TIMEOUT), event -> {
+			digest.roundTrips.incrementAndGet();
+			if("error".equals(event.body().getString("status", "error"))){
+				log.error("getRecipientsNotifications failed: " + event.body().encode());
+				handler.handle(new Either.Left<>(event.body().getString("message", "notifications.aggregation.error")));
+				return;
 			}
-
+			final JsonObject cursor = event.body().getJsonObject("result", new JsonObject())
+					.getJsonObject("cursor", new JsonObject());
+			final Object cursorId = cursor.getValue("id");
+			if (cursorId instanceof Number && ((Number) cursorId).longValue() != 0L) {
+				handler.handle(new Either.Left<>("notifications.aggregation.truncated"));
+				return;
+			}
+			final Map<String, JsonArray> notifications = new HashMap<>();
+			for (Object o : cursor.getJsonArray("firstBatch", new JsonArray())) {
+				final JsonObject userNotifications = (JsonObject) o;
+				notifications.put(userNotifications.getString("_id"), userNotifications.getJsonArray("notifications"));
+			}
+			handler.handle(new Either.Right<>(notifications));
 		});
 	}
 